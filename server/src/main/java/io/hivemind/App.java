@@ -17,9 +17,22 @@ package io.hivemind;
 
 import io.hivemind.configuration.HiveConfig;
 import io.hivemind.configuration.LogConfig;
+import io.hivemind.data.DataProcessor;
+import io.hivemind.data.change.ChangeLog;
+import io.hivemind.data.log.InMemoryLog;
+import io.hivemind.data.log.StateLog;
+import io.hivemind.data.log.WriteAheadLog;
+import io.hivemind.data.snapshot.SnapshotStore;
+import io.hivemind.data.snapshot.StateSnapshot;
+import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.HiveException;
+import io.hivemind.exception.UnstartableException;
+import io.hivemind.manager.HiveManager;
 import io.hivemind.server.netty.NettyServer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
+import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
 
 /**
@@ -45,6 +58,14 @@ public class App {
         LOGGER.log(INFO, "Starting Hivemind....");
 
         HiveConfig config = HiveConfig.getInstance();
+        DataProcessor.getInstance().parallelizeComparisons(config.getComparisonPool(), config.getParallelComparisonThreshold());
+        DataProcessor.getInstance().cacheComparisons(config.getComparisonCacheSize());
+        DataProcessor.getInstance().retainHistory(config.getHistoryDepth());
+        StateSnapshot snapshot = (config.isSnapshotEnabled() ? readSnapshot(config) : null);
+        StateLog log = recover(config, snapshot);
+        ChangeLog changeLog = (config.isChangesEnabled() ? openChangeLog(config) : null);
+        DataProcessor.getInstance().recordChanges(changeLog);
+        new HiveManager().start(config.getHistoryMemoryBudget(), (config.isSnapshotEnabled() ? config.getSnapshotInterval() : 0));
         HiveServer server;
         switch (config.getServerType()) {
             case NETTY -> {
@@ -61,8 +82,73 @@ public class App {
             }
         }
 
-        server.start();
+        // Stopping writes a snapshot, the logs are closed after
+        HiveServer stoppable = server;
+        Thread shutdown = new Thread(() -> {
+            stoppable.stop();
+            log.close();
+            if (changeLog != null) {
+                changeLog.close();
+            }
+        }, "hive-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        try {
+            server.start();
+        } catch (UnstartableException ex) {
+            Runtime.getRuntime().removeShutdownHook(shutdown);
+            throw ex;
+        }
 
         LOGGER.log(INFO, "....Hivemind is up and running at port {0}", String.valueOf(config.getPort()));
     }
+
+    /**
+     * Reads the newest snapshot, snapshots are written to the same directory
+     * from then on
+     */
+    private static StateSnapshot readSnapshot(final HiveConfig config) throws UnstartableException {
+        LOGGER.log(INFO, "Reading snapshot from {0}", config.getSnapshotDirectory());
+        try {
+            SnapshotStore store = new SnapshotStore(config.getSnapshotDirectory(), config.getSnapshotRetained());
+            DataProcessor.getInstance().snapshotTo(store);
+            return store.readNewest();
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Not able to read the snapshots", ex);
+            throw new UnstartableException(HiveCeption.SNAPSHOT_FAILED_TO_READ);
+        }
+    }
+
+    /**
+     * Opens the change log, continuing after the last change recorded
+     */
+    private static ChangeLog openChangeLog(final HiveConfig config) throws UnstartableException {
+        LOGGER.log(INFO, "Recording changes in {0}", config.getChangesDirectory());
+        try {
+            return new ChangeLog(config.getChangesDirectory(), config.getChangesSegmentSize(), config.getChangesRetentionSize(),
+                    TimeUnit.HOURS.toMillis(config.getChangesRetentionHours()), config.getChangesFsync());
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Not able to open the change log", ex);
+            throw new UnstartableException(HiveCeption.CHANGE_LOG_FAILED_TO_OPEN);
+        }
+    }
+
+    /**
+     * Recovers the state of the snapshot and the state written ahead after it
+     * before the last shutdown, from then on state transitions are written
+     * ahead when enabled
+     *
+     * @return the log to close when shutting down
+     */
+    private static StateLog recover(final HiveConfig config, final StateSnapshot snapshot) throws UnstartableException {
+        try {
+            StateLog log = (config.isWalEnabled()
+                    ? new WriteAheadLog(config.getWalDirectory(), config.getWalSegmentSize(), config.getWalFsync(), config.getWalFsyncInterval())
+                    : new InMemoryLog());
+            DataProcessor.getInstance().recover(snapshot, log);
+            return log;
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Not able to open the write-ahead log", ex);
+            throw new UnstartableException(HiveCeption.WRITE_AHEAD_LOG_FAILED_TO_OPEN);
+        }
+    }
 }
@@ -32,7 +32,8 @@ public interface HiveServer {
     public void start() throws UnstartableException;
 
     /**
-     * Stop the server (graceful shutdown)
+     * Stop the server (graceful shutdown), writing a snapshot of the state of
+     * the hive once requests are no longer processed
      */
     public void stop();
 }
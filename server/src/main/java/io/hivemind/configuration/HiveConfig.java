@@ -16,6 +16,7 @@
 package io.hivemind.configuration;
 
 import io.hivemind.constant.ConsistencyModel;
+import io.hivemind.constant.Durability;
 import io.hivemind.constant.ServerType;
 import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.HiveException;
@@ -24,8 +25,11 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
+import java.nio.file.Path;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -46,6 +50,28 @@ public class HiveConfig {
     private int port;
     private int maxThreads;
     private int maxQueuedTasks;
+    private int comparisonParallelism;
+    private int parallelComparisonThreshold;
+    private ForkJoinPool comparisonPool;
+    private int comparisonCacheSize;
+    private int historyDepth;
+    private long historyMemoryBudget;
+    private boolean walEnabled;
+    private Path walDirectory;
+    private long walSegmentSize;
+    private Durability walFsync;
+    private long walFsyncInterval;
+    private boolean snapshotEnabled;
+    private Path snapshotDirectory;
+    private long snapshotInterval;
+    private int snapshotRetained;
+    private boolean changesEnabled;
+    private Path changesDirectory;
+    private long changesSegmentSize;
+    private long changesRetentionSize;
+    private long changesRetentionHours;
+    private Durability changesFsync;
+    private int longPollTimeout;
 
     private static HiveConfig instance;
 
@@ -56,6 +82,42 @@ public class HiveConfig {
     private static final String KEY_PORT = "port";
     private static final String KEY_MAX_THREADS = "max.threads";
     private static final String KEY_MAX_QUEUED_TASKS = "max.queued.tasks";
+    private static final String KEY_COMPARISON_PARALLELISM = "comparison.parallelism";
+    private static final String KEY_PARALLEL_COMPARISON_THRESHOLD = "comparison.parallel.threshold";
+    private static final int DEFAULT_PARALLEL_COMPARISON_THRESHOLD = 1_000_000;
+    private static final String KEY_COMPARISON_CACHE_SIZE = "comparison.cache.size";
+    private static final int DEFAULT_COMPARISON_CACHE_SIZE = 1024;
+    private static final String KEY_HISTORY_DEPTH = "history.depth";
+    private static final int DEFAULT_HISTORY_DEPTH = 3;
+    private static final String KEY_HISTORY_MEMORY_BUDGET = "history.memory.budget";
+    private static final long DEFAULT_HISTORY_MEMORY_BUDGET = 67_108_864;
+    private static final String KEY_WAL_ENABLED = "wal.enabled";
+    private static final String KEY_WAL_DIRECTORY = "wal.directory";
+    private static final String DEFAULT_WAL_DIRECTORY = "hive-wal";
+    private static final String KEY_WAL_SEGMENT_SIZE = "wal.segment.size";
+    private static final long DEFAULT_WAL_SEGMENT_SIZE = 67_108_864;
+    private static final String KEY_WAL_FSYNC = "wal.fsync";
+    private static final String KEY_WAL_FSYNC_INTERVAL = "wal.fsync.interval";
+    private static final long DEFAULT_WAL_FSYNC_INTERVAL = 100;
+    private static final String KEY_SNAPSHOT_ENABLED = "snapshot.enabled";
+    private static final String KEY_SNAPSHOT_DIRECTORY = "snapshot.directory";
+    private static final String DEFAULT_SNAPSHOT_DIRECTORY = "hive-snapshots";
+    private static final String KEY_SNAPSHOT_INTERVAL = "snapshot.interval";
+    private static final long DEFAULT_SNAPSHOT_INTERVAL = 300;
+    private static final String KEY_SNAPSHOT_RETAINED = "snapshot.retained";
+    private static final int DEFAULT_SNAPSHOT_RETAINED = 2;
+    private static final String KEY_CHANGES_ENABLED = "changes.enabled";
+    private static final String KEY_CHANGES_DIRECTORY = "changes.directory";
+    private static final String DEFAULT_CHANGES_DIRECTORY = "hive-changes";
+    private static final String KEY_CHANGES_SEGMENT_SIZE = "changes.segment.size";
+    private static final long DEFAULT_CHANGES_SEGMENT_SIZE = 67_108_864;
+    private static final String KEY_CHANGES_RETENTION_SIZE = "changes.retention.size";
+    private static final long DEFAULT_CHANGES_RETENTION_SIZE = 1_073_741_824;
+    private static final String KEY_CHANGES_RETENTION_HOURS = "changes.retention.hours";
+    private static final long DEFAULT_CHANGES_RETENTION_HOURS = 168;
+    private static final String KEY_CHANGES_FSYNC = "changes.fsync";
+    private static final String KEY_LONGPOLL_TIMEOUT = "longpoll.timeout";
+    private static final int DEFAULT_LONGPOLL_TIMEOUT = 30;
 
     private static final Logger LOGGER = System.getLogger(HiveConfig.class.getName());
 
@@ -115,6 +177,186 @@ public class HiveConfig {
         return maxQueuedTasks;
     }
 
+    /**
+     * @return the amount of threads comparing large essences in parallel, 1
+     * or less when essences are compared sequentially
+     */
+    public int getComparisonParallelism() {
+        return comparisonParallelism;
+    }
+
+    /**
+     * @return the amount of tuples of both essences together from which
+     * essences are compared in parallel
+     */
+    public int getParallelComparisonThreshold() {
+        return parallelComparisonThreshold;
+    }
+
+    /**
+     * @return the maximum amount of results of comparing with latest that are
+     * cached, 0 or less when results are not cached
+     */
+    public int getComparisonCacheSize() {
+        return comparisonCacheSize;
+    }
+
+    /**
+     * @return the amount of essences kept per synchronizer
+     */
+    public int getHistoryDepth() {
+        return historyDepth;
+    }
+
+    /**
+     * @return the amount of bytes the essences stored for synchronizers may
+     * use before being compacted, 0 or less when not compacted in the
+     * background
+     */
+    public long getHistoryMemoryBudget() {
+        return historyMemoryBudget;
+    }
+
+    /**
+     * @return true when state transitions are written ahead to disk, so the
+     * state is recovered after a restart
+     */
+    public boolean isWalEnabled() {
+        return walEnabled;
+    }
+
+    /**
+     * @return the directory of the segments of the write-ahead log
+     */
+    public Path getWalDirectory() {
+        return walDirectory;
+    }
+
+    /**
+     * @return the size of a segment of the write-ahead log in bytes
+     */
+    public long getWalSegmentSize() {
+        return walSegmentSize;
+    }
+
+    /**
+     * @return when transitions written ahead are forced to disk
+     */
+    public Durability getWalFsync() {
+        return walFsync;
+    }
+
+    /**
+     * @return the interval in milliseconds of forcing transitions to disk,
+     * when forced every interval
+     */
+    public long getWalFsyncInterval() {
+        return walFsyncInterval;
+    }
+
+    /**
+     * @return true when snapshots of the state are written, periodically and
+     * when stopping, and read when starting
+     */
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    /**
+     * @return the directory of the snapshots
+     */
+    public Path getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * @return the interval in seconds of writing snapshots, 0 or less to only
+     * write a snapshot when stopping
+     */
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * @return the amount of snapshots kept
+     */
+    public int getSnapshotRetained() {
+        return snapshotRetained;
+    }
+
+    /**
+     * @return true when the data received and the deletions detected are
+     * recorded in the change log
+     */
+    public boolean isChangesEnabled() {
+        return changesEnabled;
+    }
+
+    /**
+     * @return the directory of the segments of the change log
+     */
+    public Path getChangesDirectory() {
+        return changesDirectory;
+    }
+
+    /**
+     * @return the size of a segment of the change log in bytes
+     */
+    public long getChangesSegmentSize() {
+        return changesSegmentSize;
+    }
+
+    /**
+     * @return the size in bytes of the change log before removing the oldest
+     * changes, 0 or less to not remove by size
+     */
+    public long getChangesRetentionSize() {
+        return changesRetentionSize;
+    }
+
+    /**
+     * @return the hours changes are kept at least, 0 or less to not remove by
+     * time
+     */
+    public long getChangesRetentionHours() {
+        return changesRetentionHours;
+    }
+
+    /**
+     * @return when changes are forced to disk
+     */
+    public Durability getChangesFsync() {
+        return changesFsync;
+    }
+
+    /**
+     * @return the amount of seconds a request having nothing to respond is
+     * held at most, waiting for the state of its synchronizer to change, 0 or
+     * less when requests are not held
+     */
+    public int getLongPollTimeout() {
+        return longPollTimeout;
+    }
+
+    /**
+     * Get the fork join pool large essences are compared on
+     * <p>
+     * having {config.comparison.parallelism} threads, created once and shared
+     * by all comparisons. Essences having less then
+     * {config.comparison.parallel.threshold} tuples are compared on the thread
+     * of the request</p>
+     *
+     * @return the pool or null when essences are compared sequentially
+     * @see io.hivemind.data.comparison.EssenceComparator
+     */
+    public synchronized ForkJoinPool getComparisonPool() {
+        if (comparisonPool == null && comparisonParallelism > 1) {
+            comparisonPool = new ForkJoinPool(comparisonParallelism);
+        }
+
+        return comparisonPool;
+    }
+
     /**
      * Get a thread pool executor for the hive mind
      * <p>
@@ -135,6 +377,28 @@ public class HiveConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    /**
+     * Get an executor for responding to held requests
+     * <p>
+     * having {config.maxthreads} threads where each thread is killed after 60
+     * seconds idle time having an unbounded queue, a task is never run by the
+     * thread submitting it. Held requests are resumed by the thread changing
+     * the state of their synchronizer, running them on that thread would have
+     * it process the requests of other synchronizers</p>
+     *
+     * @return the thread pool executor
+     */
+    public ThreadPoolExecutor getHeldRequestExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads,
+                maxThreads,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
     private void loadConfiguration() throws UnstartableException {
         InputStream configurationFile = getClass().getResourceAsStream(APP_PROPERTIES);
         if (configurationFile != null) {
@@ -169,6 +433,15 @@ public class HiveConfig {
         setPort(properties);
         setMaxThreads(properties);
         setMaxQueuedTasks(properties);
+        setComparisonParallelism(properties);
+        setParallelComparisonThreshold(properties);
+        setComparisonCacheSize(properties);
+        setHistoryDepth(properties);
+        setHistoryMemoryBudget(properties);
+        setWal(properties);
+        setSnapshot(properties);
+        setChanges(properties);
+        setLongPollTimeout(properties);
     }
 
     private void setServerType(final Properties properties) {
@@ -219,4 +492,141 @@ public class HiveConfig {
             LOGGER.log(WARNING, "Failed to determine maximum queued tasks, will default to 100", ex);
         }
     }
+
+    private void setComparisonParallelism(final Properties properties) {
+        try {
+            comparisonParallelism = (properties.containsKey(KEY_COMPARISON_PARALLELISM)
+                    ? Integer.valueOf(properties.getProperty(KEY_COMPARISON_PARALLELISM))
+                    : Runtime.getRuntime().availableProcessors());
+        } catch (NumberFormatException ex) {
+            comparisonParallelism = Runtime.getRuntime().availableProcessors();
+            LOGGER.log(WARNING, "Failed to determine comparison parallelism, will default to the amount of processors", ex);
+        }
+    }
+
+    private void setParallelComparisonThreshold(final Properties properties) {
+        try {
+            parallelComparisonThreshold = (properties.containsKey(KEY_PARALLEL_COMPARISON_THRESHOLD)
+                    ? Integer.valueOf(properties.getProperty(KEY_PARALLEL_COMPARISON_THRESHOLD))
+                    : DEFAULT_PARALLEL_COMPARISON_THRESHOLD);
+        } catch (NumberFormatException ex) {
+            parallelComparisonThreshold = DEFAULT_PARALLEL_COMPARISON_THRESHOLD;
+            LOGGER.log(WARNING, "Failed to determine parallel comparison threshold, will default to 1000000", ex);
+        }
+    }
+
+    private void setComparisonCacheSize(final Properties properties) {
+        try {
+            comparisonCacheSize = (properties.containsKey(KEY_COMPARISON_CACHE_SIZE)
+                    ? Integer.valueOf(properties.getProperty(KEY_COMPARISON_CACHE_SIZE))
+                    : DEFAULT_COMPARISON_CACHE_SIZE);
+        } catch (NumberFormatException ex) {
+            comparisonCacheSize = DEFAULT_COMPARISON_CACHE_SIZE;
+            LOGGER.log(WARNING, "Failed to determine comparison cache size, will default to 1024", ex);
+        }
+    }
+
+    private void setHistoryDepth(final Properties properties) {
+        try {
+            historyDepth = (properties.containsKey(KEY_HISTORY_DEPTH)
+                    ? Integer.valueOf(properties.getProperty(KEY_HISTORY_DEPTH))
+                    : DEFAULT_HISTORY_DEPTH);
+        } catch (NumberFormatException ex) {
+            historyDepth = DEFAULT_HISTORY_DEPTH;
+            LOGGER.log(WARNING, "Failed to determine history depth, will default to 3", ex);
+        }
+    }
+
+    private void setHistoryMemoryBudget(final Properties properties) {
+        try {
+            historyMemoryBudget = (properties.containsKey(KEY_HISTORY_MEMORY_BUDGET)
+                    ? Long.valueOf(properties.getProperty(KEY_HISTORY_MEMORY_BUDGET))
+                    : DEFAULT_HISTORY_MEMORY_BUDGET);
+        } catch (NumberFormatException ex) {
+            historyMemoryBudget = DEFAULT_HISTORY_MEMORY_BUDGET;
+            LOGGER.log(WARNING, "Failed to determine history memory budget, will default to 67108864", ex);
+        }
+    }
+
+    private void setWal(final Properties properties) {
+        walEnabled = Boolean.parseBoolean(properties.getProperty(KEY_WAL_ENABLED));
+        walDirectory = Path.of(properties.getProperty(KEY_WAL_DIRECTORY, DEFAULT_WAL_DIRECTORY));
+        try {
+            walSegmentSize = (properties.containsKey(KEY_WAL_SEGMENT_SIZE)
+                    ? Long.valueOf(properties.getProperty(KEY_WAL_SEGMENT_SIZE))
+                    : DEFAULT_WAL_SEGMENT_SIZE);
+            walFsyncInterval = (properties.containsKey(KEY_WAL_FSYNC_INTERVAL)
+                    ? Long.valueOf(properties.getProperty(KEY_WAL_FSYNC_INTERVAL))
+                    : DEFAULT_WAL_FSYNC_INTERVAL);
+        } catch (NumberFormatException ex) {
+            walSegmentSize = DEFAULT_WAL_SEGMENT_SIZE;
+            walFsyncInterval = DEFAULT_WAL_FSYNC_INTERVAL;
+            LOGGER.log(WARNING, "Failed to determine write-ahead log sizes, will default to 67108864 and 100", ex);
+        }
+        try {
+            walFsync = (properties.containsKey(KEY_WAL_FSYNC)
+                    ? Durability.valueOf(properties.getProperty(KEY_WAL_FSYNC).toUpperCase())
+                    : Durability.INTERVAL);
+        } catch (IllegalArgumentException ex) {
+            walFsync = Durability.INTERVAL;
+            LOGGER.log(WARNING, "Failed to determine write-ahead log fsync, will default to interval", ex);
+        }
+    }
+
+    private void setSnapshot(final Properties properties) {
+        snapshotEnabled = Boolean.parseBoolean(properties.getProperty(KEY_SNAPSHOT_ENABLED));
+        snapshotDirectory = Path.of(properties.getProperty(KEY_SNAPSHOT_DIRECTORY, DEFAULT_SNAPSHOT_DIRECTORY));
+        try {
+            snapshotInterval = (properties.containsKey(KEY_SNAPSHOT_INTERVAL)
+                    ? Long.valueOf(properties.getProperty(KEY_SNAPSHOT_INTERVAL))
+                    : DEFAULT_SNAPSHOT_INTERVAL);
+            snapshotRetained = (properties.containsKey(KEY_SNAPSHOT_RETAINED)
+                    ? Integer.valueOf(properties.getProperty(KEY_SNAPSHOT_RETAINED))
+                    : DEFAULT_SNAPSHOT_RETAINED);
+        } catch (NumberFormatException ex) {
+            snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+            snapshotRetained = DEFAULT_SNAPSHOT_RETAINED;
+            LOGGER.log(WARNING, "Failed to determine snapshot interval and retained, will default to 300 and 2", ex);
+        }
+    }
+
+    private void setChanges(final Properties properties) {
+        changesEnabled = Boolean.parseBoolean(properties.getProperty(KEY_CHANGES_ENABLED));
+        changesDirectory = Path.of(properties.getProperty(KEY_CHANGES_DIRECTORY, DEFAULT_CHANGES_DIRECTORY));
+        try {
+            changesSegmentSize = (properties.containsKey(KEY_CHANGES_SEGMENT_SIZE)
+                    ? Long.valueOf(properties.getProperty(KEY_CHANGES_SEGMENT_SIZE))
+                    : DEFAULT_CHANGES_SEGMENT_SIZE);
+            changesRetentionSize = (properties.containsKey(KEY_CHANGES_RETENTION_SIZE)
+                    ? Long.valueOf(properties.getProperty(KEY_CHANGES_RETENTION_SIZE))
+                    : DEFAULT_CHANGES_RETENTION_SIZE);
+            changesRetentionHours = (properties.containsKey(KEY_CHANGES_RETENTION_HOURS)
+                    ? Long.valueOf(properties.getProperty(KEY_CHANGES_RETENTION_HOURS))
+                    : DEFAULT_CHANGES_RETENTION_HOURS);
+        } catch (NumberFormatException ex) {
+            changesSegmentSize = DEFAULT_CHANGES_SEGMENT_SIZE;
+            changesRetentionSize = DEFAULT_CHANGES_RETENTION_SIZE;
+            changesRetentionHours = DEFAULT_CHANGES_RETENTION_HOURS;
+            LOGGER.log(WARNING, "Failed to determine change log sizes, will default to 67108864, 1073741824 and 168", ex);
+        }
+        try {
+            changesFsync = (properties.containsKey(KEY_CHANGES_FSYNC)
+                    ? Durability.valueOf(properties.getProperty(KEY_CHANGES_FSYNC).toUpperCase())
+                    : Durability.INTERVAL);
+        } catch (IllegalArgumentException ex) {
+            changesFsync = Durability.INTERVAL;
+            LOGGER.log(WARNING, "Failed to determine change log fsync, will default to interval", ex);
+        }
+    }
+
+    private void setLongPollTimeout(final Properties properties) {
+        try {
+            longPollTimeout = (properties.containsKey(KEY_LONGPOLL_TIMEOUT)
+                    ? Integer.valueOf(properties.getProperty(KEY_LONGPOLL_TIMEOUT))
+                    : DEFAULT_LONGPOLL_TIMEOUT);
+        } catch (NumberFormatException ex) {
+            longPollTimeout = DEFAULT_LONGPOLL_TIMEOUT;
+            LOGGER.log(WARNING, "Failed to determine long poll timeout, will default to 30", ex);
+        }
+    }
 }
@@ -17,14 +17,15 @@ package io.hivemind.constant;
 
 /**
  * Identification for content types the application differs in. The server is
- * only interested in it being hive essence or not. The server passed data
- * onward and does not read it.
+ * only interested in it being hive essence or not, either as text or binary.
+ * The server passed data onward and does not read it.
  *
  * @author Patrick-4488
  */
 public enum ContentType {
 
     HIVE_ESSENCE("application/hive-essence"),
+    HIVE_ESSENCE_BINARY("application/hive-essence+binary"),
     OTHER("other");
 
     private final String value;
@@ -41,23 +42,38 @@ public enum ContentType {
         return value;
     }
 
+    /**
+     * @return true if this is a hive essence, either as text or binary
+     */
+    public boolean isHiveEssence() {
+        return OTHER != this;
+    }
+
     /**
      * Determine the content type based on the value. This is the preferred way
      * to create this enum.
      *
      * @param value the value to determine the content type for
-     * @return the content type (either HIVE_ESSENCE or OTHER)
+     * @return the content type (either HIVE_ESSENCE, HIVE_ESSENCE_BINARY or
+     * OTHER)
      */
     public static ContentType enumFor(final String value) {
         if (value != null && !value.isEmpty()) {
             String lowerValue = value.toLowerCase();
-            String hiveEssence = HIVE_ESSENCE.getValue();
-            String secondPart = hiveEssence.split(SLASH)[1];
-            if (hiveEssence.equals(lowerValue) || secondPart.equals(lowerValue)) {
+            if (matches(HIVE_ESSENCE, lowerValue)) {
                 return HIVE_ESSENCE;
+            } else if (matches(HIVE_ESSENCE_BINARY, lowerValue)) {
+                return HIVE_ESSENCE_BINARY;
             }
         }
 
         return OTHER;
     }
+
+    private static boolean matches(final ContentType type, final String lowerValue) {
+        String typeValue = type.getValue();
+        String secondPart = typeValue.split(SLASH)[1];
+
+        return typeValue.equals(lowerValue) || secondPart.equals(lowerValue);
+    }
 }
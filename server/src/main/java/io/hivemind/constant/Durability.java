@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.constant;
+
+/**
+ * When the state logged by the hive is forced to disk
+ *
+ * @author Patrick-4488
+ * @see io.hivemind.data.log.WriteAheadLog
+ */
+public enum Durability {
+
+    /**
+     * Every state transition waits until it has been forced to disk.
+     * Transitions logged concurrently are forced together
+     */
+    ALWAYS,
+    /**
+     * Transitions are forced to disk periodically, a crash loses at most the
+     * transitions of the last interval
+     */
+    INTERVAL,
+    /**
+     * Transitions are only forced to disk when a segment is full or the log is
+     * closed, the operating system writes them in the meantime
+     */
+    NEVER;
+}
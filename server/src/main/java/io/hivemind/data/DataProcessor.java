@@ -15,43 +15,130 @@
  */
 package io.hivemind.data;
 
+import io.hivemind.constant.ContentType;
+import io.hivemind.data.change.ChangeLog;
+import io.hivemind.data.change.ChangeRecord;
+import io.hivemind.data.comparison.ComparisonCache;
 import io.hivemind.data.comparison.ComparisonResult;
+import io.hivemind.data.comparison.EssenceBitmap;
 import io.hivemind.data.comparison.EssenceComparator;
+import io.hivemind.data.comparison.EssenceDigest;
+import io.hivemind.data.comparison.EssenceTuples;
 import io.hivemind.data.comparison.EssenceValidator;
+import io.hivemind.data.log.InMemoryLog;
+import io.hivemind.data.log.LogRecord;
+import io.hivemind.data.log.StateLog;
+import io.hivemind.data.snapshot.SnapshotStore;
+import io.hivemind.data.snapshot.StateSnapshot;
 import io.hivemind.constant.Outcome;
 import io.hivemind.exception.InvalidEssenceException;
-import java.util.AbstractMap.SimpleEntry;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
 import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Data processor processes data received from requests
+ * <p>
+ * Requests are processed concurrently. Work for a single synchronizer
+ * (traceparent) is serialized by a lock stripe, work for different
+ * synchronizers runs in parallel on concurrent maps. The requests, prepared
+ * data and priority request of a synchronizer are changed by other
+ * synchronizers as well, guarded by the inbox of the synchronizer. An inbox is
+ * only taken while holding a stripe and never while holding another inbox, so
+ * the order in which locks are taken is fixed. The latest observed
+ * essence is an immutable snapshot, comparisons run against it without any
+ * lock and only the transition to a new latest is a compare-and-set, retried
+ * when another synchronizer changed latest in the meantime.</p>
+ * <p>
+ * Results of comparing with latest are cached by the digests of both essences,
+ * synchronizers in the same state sending the same essence are compared once.
+ * The cache is invalidated whenever latest changes.</p>
+ * <p>
+ * Essences stored for synchronizers are interned, synchronizers having the
+ * same essence reference the same observed data. Every synchronizer keeps a
+ * history of a fixed depth, the oldest essence is released when adding to a
+ * full history.</p>
+ * <p>
+ * Every state transition is applied through the state log, which can write it
+ * ahead to disk so the state is recovered after a restart by replaying the
+ * log. Transitions are logged while holding the lock guarding the state
+ * transitioned, a request awaits its transitions being forced to disk once it
+ * no longer holds any lock. A snapshot of the state at a checkpoint of the log shortens the
+ * replay to the transitions after the checkpoint.</p>
+ * <p>
+ * Data received and deletions detected can be recorded in a change log as
+ * well, so they can be read again after being received.</p>
+ * <p>
+ * Requests having nothing to respond can await a change of the state of their
+ * synchronizer, being a new latest, data prepared for it or a request for it,
+ * instead of the synchronizer polling for it. A change is completed once the
+ * request changing the state no longer holds any lock, what awaits the change
+ * may process requests of other synchronizers on the same thread.</p>
+ * <p>
+ * The state itself is kept by {@link HiveState}, which also restores it from
+ * a snapshot or the log. Synchronizers sending the fingerprint, summary or
+ * sketch of their essence instead of the essence are processed by
+ * {@link EssenceProtocol}.</p>
  *
  * @author Patrick-4488
  */
 public class DataProcessor {
 
-    private Map.Entry<String, ObservedData> latestObserved;
-    private final Map<String, Map<String, ObservedData>> dataRequest;
-    private final Map<String, ObservedData> priorityRequest;
-    private final Map<String, List<ObservedData>> storedData;
-    private final Map<String, PreparedData> preparedData;
+    private final HiveState state;
+    private final EssenceProtocol protocol;
+    private final Map<String, CompletableFuture<Void>> awaitedChanges;
+    private final Object[] stripes;
+    private final Object[] inboxes;
+    // Comparators reuse their buffers, one per thread keeps them unshared
+    private volatile ThreadLocal<EssenceComparator> comparators;
+    private volatile ComparisonCache comparisonCache;
+    private volatile StateLog stateLog;
+    private volatile SnapshotStore snapshotStore;
+    private volatile ChangeLog changeLog;
 
     private static DataProcessor instance;
 
+    // Power of two, allows selecting a stripe by masking the hash
+    private static final int STRIPES = 64;
+    private static final int DEFAULT_COMPARISON_CACHE_SIZE = 1024;
+    private static final ThreadLocal<EssenceTuples> TUPLES = ThreadLocal.withInitial(EssenceTuples::new);
+    // Changes made by the thread, completed once it no longer holds any lock
+    private static final ThreadLocal<List<CompletableFuture<Void>>> CHANGES = ThreadLocal.withInitial(ArrayList::new);
     private static final System.Logger LOGGER = System.getLogger(DataProcessor.class.getName());
 
-    private DataProcessor() {
-        dataRequest = new HashMap<>();
-        priorityRequest = new HashMap<>();
-        storedData = new HashMap<>();
-        preparedData = new HashMap<>();
+    /**
+     * Only the single instance is used, other instances compare the stripes
+     * with less of them, 1 being a single lock for all synchronizers
+     *
+     * @param stripes the amount of stripes, a power of two
+     * @see #getInstance()
+     */
+    DataProcessor(final int stripes) {
+        state = new HiveState();
+        protocol = new EssenceProtocol(this, state);
+        awaitedChanges = new ConcurrentHashMap<>();
+        comparators = ThreadLocal.withInitial(EssenceComparator::new);
+        comparisonCache = new ComparisonCache(DEFAULT_COMPARISON_CACHE_SIZE);
+        stateLog = new InMemoryLog();
+        this.stripes = new Object[stripes];
+        inboxes = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Object();
+            inboxes[i] = new Object();
+        }
     }
 
     /**
@@ -61,12 +148,170 @@ public class DataProcessor {
      */
     public static synchronized DataProcessor getInstance() {
         if (instance == null) {
-            instance = new DataProcessor();
+            instance = new DataProcessor(STRIPES);
         }
 
         return instance;
     }
 
+    /**
+     * Compare large essences in parallel on the pool, replacing the
+     * comparators of all threads
+     *
+     * @param pool the pool to compare on, null to compare sequentially
+     * @param threshold the amount of tuples of both essences together from
+     * which they are compared in parallel
+     * @see EssenceComparator
+     */
+    public void parallelizeComparisons(final ForkJoinPool pool, final int threshold) {
+        comparators = ThreadLocal.withInitial(() -> new EssenceComparator(pool, threshold));
+    }
+
+    /**
+     * Cache the results of comparing with latest, replacing the cache and its
+     * counters
+     *
+     * @param size the maximum amount of results cached, 0 or less to not
+     * cache results
+     * @see ComparisonCache
+     */
+    public void cacheComparisons(final int size) {
+        comparisonCache = new ComparisonCache(size);
+    }
+
+    /**
+     * @return the cache of the results of comparing with latest
+     */
+    public ComparisonCache getComparisonCache() {
+        return comparisonCache;
+    }
+
+    /**
+     * Keep a history of the given depth for every synchronizer, applies to
+     * synchronizers of which no history is kept yet
+     *
+     * @param depth the amount of observed data kept per synchronizer, at least
+     * 1
+     * @see EssenceHistory
+     */
+    public void retainHistory(final int depth) {
+        state.retainHistory(depth);
+    }
+
+    /**
+     * Write snapshots of the state to the store
+     *
+     * @param store the store, null to not write snapshots
+     * @see #writeSnapshot()
+     */
+    public void snapshotTo(final SnapshotStore store) {
+        this.snapshotStore = store;
+    }
+
+    /**
+     * Record the data received and the deletions detected from now on
+     *
+     * @param log the change log, null to not record changes
+     * @see ChangeLog
+     */
+    public void recordChanges(final ChangeLog log) {
+        this.changeLog = log;
+    }
+
+    /**
+     * @return the change log or null when changes are not recorded
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Recover the state from the log, replacing all current state, and log
+     * every state transition from now on. Must be called before processing
+     * requests
+     *
+     * @param log the log to recover from and to log to
+     * @throws IOException when the log can not be read
+     * @see io.hivemind.data.log.WriteAheadLog
+     */
+    public void recover(final StateLog log) throws IOException {
+        recover(null, log);
+    }
+
+    /**
+     * Recover the state from the snapshot and the transitions logged after its
+     * checkpoint
+     *
+     * @see #recover(io.hivemind.data.log.StateLog)
+     * @param snapshot the snapshot to recover from, null to replay the log
+     * from the start
+     */
+    public void recover(final StateSnapshot snapshot, final StateLog log) throws IOException {
+        LOGGER.log(INFO, "Recovering state from {0}", log.getClass().getSimpleName());
+
+        clearState();
+        long checkpoint = 0;
+        if (snapshot != null) {
+            state.restore(snapshot);
+            checkpoint = snapshot.getCheckpoint();
+        }
+        long[] replayed = new long[1];
+        log.replay(checkpoint, logRecord -> {
+            state.apply(logRecord);
+            replayed[0]++;
+        });
+        stateLog = log;
+        comparisonCache.invalidate();
+        changedAll();
+        released();
+
+        LOGGER.log(INFO, "Recovered state from {0} transitions after checkpoint {1}, having {2} synchronizers", replayed[0], checkpoint, state.size());
+    }
+
+    /**
+     * Capture the state at a checkpoint of the log. Only references are taken
+     * while holding every stripe, so no transition is applied, the data is
+     * written after. The state last stored for every synchronizer is kept
+     * until written
+     *
+     * @return the state
+     * @throws IOException when the checkpoint can not be logged
+     */
+    public StateSnapshot snapshot() throws IOException {
+        AtomicReference<HiveState.Captured> captured = new AtomicReference<>();
+        long checkpoint = exclusively(0, () -> stateLog.checkpoint(() -> captured.set(state.capture())));
+
+        return state.snapshot(captured.get(), checkpoint);
+    }
+
+    /**
+     * Write a snapshot of the state to the store, when snapshots are written.
+     * Transitions covered by all snapshots kept are removed from the log
+     *
+     * @return false when snapshots are not written
+     * @throws IOException when the snapshot can not be written
+     * @see #snapshotTo(io.hivemind.data.snapshot.SnapshotStore)
+     */
+    public synchronized boolean writeSnapshot() throws IOException {
+        SnapshotStore store = snapshotStore;
+        if (store == null) {
+            return false;
+        }
+
+        store.write(snapshot());
+        stateLog.truncate(store.oldestCheckpoint());
+
+        return true;
+    }
+
+    /**
+     * @return estimation of the memory used by the essences stored for
+     * synchronizers, in bytes
+     */
+    public long storedDataInBytes() {
+        return state.sizeInBytes();
+    }
+
     /**
      * Process data received.When the received data has content type:
      * <ul>
@@ -96,21 +341,49 @@ public class DataProcessor {
      * essence has been received
      * @see EssenceValidator
      */
-    public synchronized PreparedData processData(final byte[] data, final boolean isHiveEssence, final String requestedType, final String traceparent) throws InvalidEssenceException {
+    public PreparedData processData(final byte[] data, final boolean isHiveEssence, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        return processData(data, (isHiveEssence ? ContentType.HIVE_ESSENCE : ContentType.OTHER), requestedType, traceparent);
+    }
+
+    /**
+     * Process data received having the given content type. An essence received
+     * in binary (HIVE_ESSENCE_BINARY) is decoded and stored as text, being
+     * compared the same as an essence received as text
+     *
+     * @see #processData(byte[], boolean, java.lang.String, java.lang.String)
+     * @param data the data (hive essence / data to provide)
+     * @param contentType the content type of the data, HIVE_ESSENCE,
+     * HIVE_ESSENCE_BINARY or OTHER
+     * @param requestedType the (specific) content type that a synchronizer
+     * requests data in (this value is only set when a synchronizer diverts from
+     * default)
+     * @param traceparent the traceparent
+     * @return the PreparedData or DataRequest or null
+     * @throws io.hivemind.exception.InvalidEssenceException when invalid
+     * essence has been received
+     */
+    public PreparedData processData(final byte[] data, final ContentType contentType, final String requestedType, final String traceparent) throws InvalidEssenceException {
         LOGGER.log(INFO, "Processing data received from {0} having {1} bytes of "
                 + "content", traceparent, (data != null ? data.length : "0"));
 
-        if (!priorityRequest.containsKey(traceparent)) {
-            if (isHiveEssence) {
-                processHiveEssence(data, requestedType, traceparent);
-            } else if (data != null && data.length != 0) {
-                processDataReceived(data, requestedType, traceparent);
+        if (traceparent == null) {
+            LOGGER.log(WARNING, "Received data without traceparent, unable to determine the synchronizer");
+            return null;
+        }
+
+        PreparedData dataResult = process(traceparent, () -> {
+            if (contentType.isHiveEssence()) {
+                processHiveEssence(data, contentType, requestedType, traceparent);
             } else {
-                LOGGER.log(WARNING, "Received data request from {0} but without any data", traceparent);
+                if (data != null && data.length != 0) {
+                    processDataReceived(data, requestedType, traceparent);
+                } else {
+                    LOGGER.log(WARNING, "Received data request from {0} but without any data", traceparent);
+                }
+                storeData(data, EssenceDigest.of(data), null, traceparent);
             }
-            storeData(data, traceparent);
-        }
-        PreparedData dataResult = determineDataResult(priorityRequest.containsKey(traceparent), traceparent);
+            return true;
+        });
 
         LOGGER.log(INFO, "Finished processing data received from {0}, resulting in: {1}", traceparent,
                 (dataResult == null ? "null" : dataResult.getClass().getSimpleName()));
@@ -118,20 +391,170 @@ public class DataProcessor {
         return dataResult;
     }
 
+    /**
+     * Process the fingerprint of the essence of a synchronizer, received
+     * instead of the essence. When the fingerprint matches latest or the
+     * essence last received from the synchronizer, the essence is known and
+     * does not have to be received again. A known essence not being latest is
+     * compared with latest, the result is the same as when the essence would
+     * have been received. When the fingerprint does not match, the essence is
+     * requested.
+     *
+     * @param fingerprint the fingerprint of the essence of the synchronizer
+     * @param requestedType the (specific) content type that a synchronizer
+     * requests data in
+     * @param traceparent the traceparent
+     * @return the PreparedData, DataRequest, EssenceRequest or null
+     * @see io.hivemind.data.comparison.EssenceFingerprint
+     */
+    public PreparedData processFingerprint(final String fingerprint, final String requestedType, final String traceparent) {
+        return protocol.processFingerprint(fingerprint, requestedType, traceparent);
+    }
+
+    /**
+     * Process the nodes of a level of the summary of the essence of a
+     * synchronizer, received after its fingerprint did not match. The nodes are
+     * compared with the summary of latest, the nodes that differ are responded
+     * for the synchronizer to descend into. Latest is not changed, descending
+     * does not require a lock.
+     *
+     * @param level the level of the nodes, 1 being below the root
+     * @param nodes the nodes of the synchronizer, every node being
+     * `node,hash;`
+     * @param traceparent the traceparent
+     * @return the EssenceRequest having the nodes that differ, or having no
+     * nodes when the synchronizer has to send its essence instead
+     * @see EssenceSummary
+     */
+    public PreparedData processSummary(final int level, final byte[] nodes, final String traceparent) {
+        return protocol.processSummary(level, nodes, traceparent);
+    }
+
+    /**
+     * Process the tuples of the leaves of the summary that differ, received
+     * from a synchronizer having descended its summary. The essence of the
+     * synchronizer is completed with the tuples of latest in the other leaves
+     * and processed the same as when the essence would have been received.
+     * When latest changed while descending, the completed essence does not
+     * match the fingerprint and the essence is requested.
+     *
+     * @param data the tuples of the leaves, as text
+     * @param leaves the leaves that differ, as `leaf,leaf`
+     * @param fingerprint the fingerprint of the essence of the synchronizer
+     * @param requestedType the (specific) content type that a synchronizer
+     * requests data in
+     * @param traceparent the traceparent
+     * @return the PreparedData, DataRequest, EssenceRequest or null
+     * @throws io.hivemind.exception.InvalidEssenceException when invalid
+     * essence has been completed
+     * @see EssenceSummary#complete(byte[], java.lang.String, byte[])
+     */
+    public PreparedData processSummaryEssence(final byte[] data, final String leaves, final String fingerprint, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        return protocol.processSummaryEssence(data, leaves, fingerprint, requestedType, traceparent);
+    }
+
+    /**
+     * Process the sketch of the essence of a synchronizer, received after its
+     * fingerprint did not match. The sketch is reconciled with the sketch of
+     * latest, the essence of the synchronizer is determined from the tuples
+     * that differ and processed the same as when the essence would have been
+     * received. When the sketch can not be decoded, having more tuples that
+     * differ then it can hold, the essence is requested.
+     *
+     * @param sketch the sketch of the essence of the synchronizer
+     * @param cells the amount of cells of the sketch
+     * @param fingerprint the fingerprint of the essence of the synchronizer
+     * @param requestedType the (specific) content type that a synchronizer
+     * requests data in
+     * @param traceparent the traceparent
+     * @return the PreparedData, DataRequest, EssenceRequest or null
+     * @throws io.hivemind.exception.InvalidEssenceException when invalid
+     * essence has been reconciled
+     * @see EssenceSketch
+     */
+    public PreparedData processSketch(final byte[] sketch, final int cells, final String fingerprint, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        return protocol.processSketch(sketch, cells, fingerprint, requestedType, traceparent);
+    }
+
+    /**
+     * Await a change of the state of the synchronizer: latest changing, data
+     * being requested from it, data being prepared for it or a priority
+     * request for it. Requests of the same synchronizer awaiting concurrently
+     * share the change
+     *
+     * @param traceparent the synchronizer
+     * @return completed once the state has changed, never completed when the
+     * state does not change
+     * @see #stopAwaitingChange(java.lang.String,
+     * java.util.concurrent.CompletableFuture)
+     */
+    public CompletableFuture<Void> awaitChange(final String traceparent) {
+        return awaitedChanges.compute(traceparent, (synchronizer, awaited)
+                -> (awaited != null && !awaited.isDone() ? awaited : new CompletableFuture<>()));
+    }
+
+    /**
+     * Stop awaiting the change, when no longer awaited
+     *
+     * @param traceparent the synchronizer
+     * @param change the change returned when starting to await it
+     */
+    public void stopAwaitingChange(final String traceparent, final CompletableFuture<Void> change) {
+        awaitedChanges.remove(traceparent, change);
+    }
+
+    /**
+     * The change is no longer awaited by new requests, it is only completed
+     * once released
+     */
+    private void changed(final String traceparent) {
+        CompletableFuture<Void> change = awaitedChanges.remove(traceparent);
+        if (change != null) {
+            CHANGES.get().add(change);
+        }
+    }
+
+    private void changedAll() {
+        for (String traceparent : awaitedChanges.keySet()) {
+            changed(traceparent);
+        }
+    }
+
+    /**
+     * Called once the request no longer holds a stripe, an inbox or the lock
+     * of the log. Its transitions are made durable before completing the
+     * changes, so what awaits a change sees the state as it survives a
+     * restart, and so are its recorded changes
+     */
+    private void released() {
+        stateLog.awaitDurable();
+        ChangeLog log = changeLog;
+        if (log != null) {
+            log.awaitDurable();
+        }
+
+        List<CompletableFuture<Void>> pending = CHANGES.get();
+        if (!pending.isEmpty()) {
+            // Completing may process another request on this thread, making changes of its own
+            List<CompletableFuture<Void>> changes = List.copyOf(pending);
+            pending.clear();
+            for (CompletableFuture<Void> change : changes) {
+                change.complete(null);
+            }
+        }
+    }
+
     /**
      * Remove data of previous received state while remaining references. This
-     * will free up memory without impacting desired functionality
+     * will free up memory without impacting desired functionality. Every
+     * history is compacted to the observed data last received, being the only
+     * one compared with. The essences removed are released, an essence is only
+     * closed when no other synchronizer stores it
      */
     public void cleanOlderState() {
-        for (Map.Entry<String, List<ObservedData>> synchronizer : storedData.entrySet()) {
-            List<ObservedData> observedData = synchronizer.getValue();
-            int sizeToClean = observedData.size() - 2;
-            for (int i = 0; i < sizeToClean; i++) {
-                if (i != sizeToClean - 1) {
-                    observedData.get(i).close();
-                } else {
-                    // Retaining last two observed data objects 
-                }
+        for (String synchronizer : state.synchronizers()) {
+            synchronized (stripeFor(synchronizer)) {
+                state.compact(synchronizer);
             }
         }
     }
@@ -141,49 +564,108 @@ public class DataProcessor {
      * start fresh
      */
     public void clearAllState() {
-        latestObserved = null;
-        dataRequest.clear();
-        storedData.clear();
-        preparedData.clear();
-        priorityRequest.clear();
-    }
-
-    private void processHiveEssence(final byte[] data, final String requestedType, final String traceparent) throws InvalidEssenceException {
-        new EssenceValidator().validateEssence(data);
-
-        if (latestObserved != null) {
-            ObservedData observedData = new ObservedData(data);
-            ObservedData latestObservedData = latestObserved.getValue();
-            EssenceComparator comparator = new EssenceComparator();
-            ComparisonResult result = comparator.compare(latestObservedData, observedData);
-
-            Outcome outcome = result.getOutcome();
-            if (Outcome.BEHIND == outcome) {
-                latestObserved = new SimpleEntry<>(traceparent, observedData);
-            } else if (Outcome.AHEAD == outcome) {
-                processEssenceAhead(result, comparator, latestObservedData, observedData, requestedType, traceparent);
+        try {
+            exclusively(0, () -> stateLog.appendInOrder(() -> {
+                clearState();
+                return true;
+            }, () -> LogRecord.of(LogRecord.Type.CLEARED, null)));
+        } finally {
+            released();
+        }
+    }
+
+    private void clearState() {
+        state.clear();
+        comparisonCache.invalidate();
+    }
+
+    /**
+     * The essence is validated and parsed in a single pass, or decoded when in
+     * binary, the parsed tuples are used for comparing with latest. The essence
+     * is stored as text, its digest is determined once for comparing and
+     * storing
+     */
+    private void processHiveEssence(final byte[] data, final ContentType contentType, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        EssenceTuples tuples = tuples();
+        byte[] essence = data;
+        if (ContentType.HIVE_ESSENCE_BINARY == contentType) {
+            essence = tuples.decode(data);
+        } else {
+            tuples.parse(data);
+        }
+
+        String digest = EssenceDigest.of(essence);
+        compareEssence(essence, digest, tuples, requestedType, traceparent);
+        storeData(essence, digest, tuples, traceparent);
+    }
+
+    /**
+     * Compares the parsed essence with latest, retried when latest changed
+     * while comparing
+     */
+    void compareEssence(final byte[] essence, final String digest, final EssenceTuples tuples, final String requestedType, final String traceparent) {
+        ObservedData observedData = new ObservedData(essence);
+        EssenceComparator comparator = comparators.get();
+        boolean processed = false;
+        while (!processed) {
+            Map.Entry<String, ObservedData> snapshot = state.latest();
+            processed = (snapshot == null || compareWithLatest(snapshot, observedData, digest, tuples, comparator, requestedType, traceparent));
+            if (!processed) {
+                LOGGER.log(DEBUG, "Latest changed while comparing essence of {0}, retrying", traceparent);
             }
         }
     }
 
+    /**
+     * Compares against the snapshot of latest, outside of any lock. The result
+     * is taken from the cache when the same essence has been compared with
+     * latest before
+     *
+     * @return false when the essence should become latest but latest has been
+     * changed since the snapshot was taken, the comparison must be retried
+     */
+    private boolean compareWithLatest(
+            final Map.Entry<String, ObservedData> snapshot,
+            final ObservedData observedData,
+            final String digest,
+            final EssenceTuples tuples,
+            final EssenceComparator comparator,
+            final String requestedType,
+            final String traceparent) {
+        ObservedData latestObservedData = snapshot.getValue();
+        ComparisonResult result = comparisonCache.compare(latestObservedData.getDigest(), digest,
+                () -> comparator.compare(latestObservedData, observedData, tuples));
+
+        Outcome outcome = result.getOutcome();
+        if (Outcome.BEHIND == outcome) {
+            return changeLatest(snapshot, HiveState.asLatest(traceparent, observedData.getData()));
+        } else if (Outcome.AHEAD == outcome) {
+            return processEssenceAhead(result, comparator, snapshot, observedData, requestedType, traceparent);
+        }
+
+        return true;
+    }
+
+    /**
+     * Only the essence last received from the synchronizer is compared with,
+     * older essences in its history do not determine the essence being an
+     * update
+     */
     private boolean isUpdate(final EssenceComparator comparator, final ObservedData latestObservedData, final String traceparent) {
-        if (storedData.containsKey(traceparent)) {
-            List<ObservedData> previouslyObserved = storedData.get(traceparent);
-            if (!previouslyObserved.isEmpty()) {
-                ObservedData lastObserved = previouslyObserved.get(previouslyObserved.size() - 1);
-                ComparisonResult lastObservedResult = comparator.compare(latestObservedData, lastObserved);
-                if (Outcome.EQUAL == lastObservedResult.getOutcome()) {
-                    LOGGER.log(DEBUG, """
-                                Hive essence received is behind latest, but this 
-                                synchronizer has previously been in sync so this 
-                                indicates that data has been deleted""");
-
-                    return true;
-                } else {
-                    LOGGER.log(DEBUG, """
-                                Hive essence received is behind latest, since this 
-                                synchronizer has not previously been in sync""");
-                }
+        ObservedData lastObserved = state.lastStored(traceparent);
+        if (lastObserved != null) {
+            ComparisonResult lastObservedResult = comparator.compare(latestObservedData, lastObserved);
+            if (Outcome.EQUAL == lastObservedResult.getOutcome()) {
+                LOGGER.log(DEBUG, """
+                            Hive essence received is behind latest, but this 
+                            synchronizer has previously been in sync so this 
+                            indicates that data has been deleted""");
+
+                return true;
+            } else {
+                LOGGER.log(DEBUG, """
+                            Hive essence received is behind latest, since this 
+                            synchronizer has not previously been in sync""");
             }
         } else {
             LOGGER.log(DEBUG, """
@@ -194,24 +676,43 @@ public class DataProcessor {
         return false;
     }
 
-    private void processEssenceAhead(
+    private boolean processEssenceAhead(
             final ComparisonResult result,
             final EssenceComparator comparator,
-            final ObservedData latestObservedData,
+            final Map.Entry<String, ObservedData> snapshot,
             final ObservedData observedData,
             final String requestedType,
             final String traceparent) {
-        boolean changeIsUpdate = isUpdate(comparator, latestObservedData, traceparent);
-        boolean hasDataToReceive = preparedData.containsKey(traceparent);
+        boolean changeIsUpdate = isUpdate(comparator, snapshot.getValue(), traceparent);
+        boolean hasDataToReceive = state.hasPrepared(traceparent);
         if (changeIsUpdate) {
-            latestObserved = new SimpleEntry<>(traceparent, observedData);
-            for (String synchronizer : storedData.keySet()) {
-                if (!traceparent.equals(synchronizer)) {
-                    priorityRequest.put(synchronizer, observedData);
-                }
+            if (!changeLatest(snapshot, HiveState.asLatest(traceparent, observedData.getData()))) {
+                return false;
             }
+
+            // Logged before any synchronizer has the priority request, taking it is logged after
+            stateLog.append(() -> true, () -> LogRecord.of(LogRecord.Type.PRIORITY, traceparent, observedData.getData()));
+            prioritize(observedData, traceparent);
+            recordChange(ChangeRecord.Type.DELETION, traceparent, observedData.getData(), null);
         } else if (!hasDataToReceive) {
-            storeDataRequest(new ObservedData(result.getDifference(), requestedType), traceparent);
+            storeDataRequest(new ObservedData(result.getDifference(), requestedType), snapshot.getKey(), traceparent);
+        }
+
+        return true;
+    }
+
+    /**
+     * The priority request is put in the inbox of every other synchronizer,
+     * one inbox at a time
+     */
+    private void prioritize(final ObservedData observedData, final String traceparent) {
+        for (String synchronizer : state.synchronizers()) {
+            if (!traceparent.equals(synchronizer)) {
+                synchronized (inboxFor(synchronizer)) {
+                    state.prioritize(synchronizer, observedData);
+                }
+                changed(synchronizer);
+            }
         }
     }
 
@@ -220,17 +721,13 @@ public class DataProcessor {
      * consistency but when using a consistency model more consistent then this
      * is should be that you get the newest update first instead of oldest
      */
-    private void storeDataRequest(final ObservedData dataToRequest, final String traceparent) {
+    private void storeDataRequest(final ObservedData dataToRequest, final String synchronizerHavingLatest, final String traceparent) {
         if (dataToRequest != null && dataToRequest.hasData()) {
-            String synchronizerHavingLatest = latestObserved.getKey();
-            Map<String, ObservedData> receiverRequest;
-            if (dataRequest.containsKey(synchronizerHavingLatest)) {
-                receiverRequest = dataRequest.get(synchronizerHavingLatest);
-            } else {
-                receiverRequest = new HashMap<>();
+            synchronized (inboxFor(synchronizerHavingLatest)) {
+                stateLog.append(() -> state.requestData(dataToRequest, synchronizerHavingLatest, traceparent),
+                        () -> LogRecord.of(LogRecord.Type.DATA_REQUEST, synchronizerHavingLatest, traceparent, dataToRequest.getData(), dataToRequest.getRequestedType()));
             }
-            receiverRequest.put(traceparent, dataToRequest);
-            dataRequest.put(synchronizerHavingLatest, receiverRequest);
+            changed(synchronizerHavingLatest);
         } else {
             LOGGER.log(DEBUG, """
                          The data request to store is requesting no data, this happens when 
@@ -238,21 +735,16 @@ public class DataProcessor {
         }
     }
 
+    /**
+     * The requests are taken from the inbox of the synchronizer and logged
+     * before the data is prepared for any receiver
+     */
     private void processDataReceived(final byte[] data, final String requestedType, final String traceparent) {
-        if (dataRequest.containsKey(traceparent)) {
-            Map<String, ObservedData> receiverRequests = dataRequest.get(traceparent);
-            if (!receiverRequests.isEmpty()) {
-                PreparedData dataForReceiver = new PreparedData(data, requestedType);
-                for (Map.Entry<String, ObservedData> receiverRequest : receiverRequests.entrySet()) {
-                    preparedData.put(receiverRequest.getKey(), dataForReceiver);
-                }
-            } else {
-                LOGGER.log(WARNING, """
-                    Data request received from {0} but the receiver request map 
-                    is empty.""", traceparent);
-            }
-
-            dataRequest.remove(traceparent);
+        Map<String, ObservedData> receiverRequests = take(() -> state.takeRequests(traceparent), traceparent,
+                () -> LogRecord.of(LogRecord.Type.DATA_RECEIVED, traceparent, data, requestedType));
+        if (receiverRequests != null) {
+            prepareData(receiverRequests, data, requestedType, traceparent);
+            recordChange(ChangeRecord.Type.PAYLOAD, traceparent, data, requestedType);
         } else {
             LOGGER.log(WARNING, """
                 Data received from {0} but no data seems to have been requested. 
@@ -261,44 +753,226 @@ public class DataProcessor {
         }
     }
 
-    private void storeData(final byte[] data, final String traceparent) {
-        List<ObservedData> observedData;
-        if (storedData.containsKey(traceparent)) {
-            observedData = storedData.get(traceparent);
+    /**
+     * Changes are recorded once applied, failing to record a change does not
+     * fail processing it
+     */
+    private void recordChange(final ChangeRecord.Type type, final String traceparent, final byte[] data, final String requestedType) {
+        ChangeLog log = changeLog;
+        if (log != null) {
+            try {
+                log.append(type, traceparent, data, requestedType);
+            } catch (IOException ex) {
+                LOGGER.log(ERROR, "Failed to record change of " + traceparent + ", it can not be read from the change log", ex);
+            }
+        }
+    }
+
+    /**
+     * The data is put in the inbox of every receiver, one inbox at a time
+     */
+    private void prepareData(final Map<String, ObservedData> receiverRequests, final byte[] data, final String requestedType, final String traceparent) {
+        if (!receiverRequests.isEmpty()) {
+            PreparedData dataForReceiver = new PreparedData(data, requestedType);
+            for (String receiver : receiverRequests.keySet()) {
+                synchronized (inboxFor(receiver)) {
+                    state.prepare(receiver, dataForReceiver);
+                }
+                changed(receiver);
+            }
         } else {
-            observedData = new ArrayList<>();
+            LOGGER.log(WARNING, """
+                Data request received from {0} but the receiver request map 
+                is empty.""", traceparent);
+        }
+    }
+
+    /**
+     * The history is only modified while holding the stripe of the
+     * traceparent, as such a plain ring suffices. Essences are stored as
+     * bitmap, taking a fraction of the memory of the essence as text, and
+     * interned so the bitmap is only created for an essence not stored yet
+     *
+     * @param digest the digest of the data
+     * @param tuples the tuples parsed from the data, or null when the data is
+     * not an essence
+     */
+    void storeData(final byte[] data, final String digest, final EssenceTuples tuples, final String traceparent) {
+        ObservedData stored = state.intern(digest, () -> {
+            EssenceBitmap bitmap = null;
+            if (tuples != null) {
+                bitmap = (tuples.hasRanges() ? EssenceBitmap.of(data) : EssenceBitmap.of(tuples));
+            }
+            return ObservedData.stored(data, bitmap, digest);
+        });
+        addToHistory(stored, data, tuples != null, traceparent);
+
+        if (state.latest() == null) {
+            changeLatest(null, HiveState.asLatest(traceparent, data));
         }
+    }
 
-        ObservedData newest = new ObservedData(data);
-        observedData.add(new ObservedData(data));
-        storedData.put(traceparent, observedData);
+    /**
+     * Latest is stored as received from the synchronizer, all synchronizers
+     * storing latest share its interned observed data
+     */
+    void storeLatest(final ObservedData latest, final String traceparent) {
+        String digest = latest.getDigest();
+        byte[] essence = latest.getData();
+        ObservedData stored = state.intern(digest, () -> ObservedData.stored(essence, latest.getBitmap(), digest));
+        addToHistory(stored, essence, true, traceparent);
+    }
+
+    /**
+     * Only data other then the data last stored for the synchronizer is
+     * logged, synchronizers polling in the same state do not grow the log
+     */
+    private void addToHistory(final ObservedData stored, final byte[] data, final boolean isEssence, final String traceparent) {
+        ObservedData last = state.lastStored(traceparent);
+        if (last != null && Objects.equals(last.getDigest(), stored.getDigest())) {
+            state.store(stored, traceparent);
+        } else {
+            stateLog.append(() -> state.store(stored, traceparent),
+                    () -> LogRecord.of((isEssence ? LogRecord.Type.STORED_ESSENCE : LogRecord.Type.STORED_DATA), traceparent, data));
+        }
+    }
 
-        if (latestObserved == null) {
-            latestObserved = new SimpleEntry<>(traceparent, newest);
+    /**
+     * Latest changes only when it is still the snapshot, the results of
+     * comparing with the previous latest are no longer of use
+     *
+     * @return false when latest has been changed since the snapshot was taken
+     */
+    private boolean changeLatest(final Map.Entry<String, ObservedData> snapshot, final Map.Entry<String, ObservedData> latest) {
+        boolean changed = stateLog.appendInOrder(() -> state.changeLatest(snapshot, latest),
+                () -> LogRecord.of(LogRecord.Type.LATEST, latest.getKey(), latest.getValue().getData()));
+        if (changed) {
+            comparisonCache.invalidate();
+            changedAll();
         }
+
+        return changed;
     }
 
-    private PreparedData determineDataResult(final boolean hasPriorityRequest, final String traceparent) {
+    /**
+     * Determined while holding the inbox of the synchronizer, no other
+     * synchronizer changes its state between reading and taking it
+     */
+    private PreparedData determineDataResult(final String traceparent) {
         PreparedData dataResult = null;
-        if (hasPriorityRequest) {
-            ObservedData priorityDiff = priorityRequest.get(traceparent);
-            priorityRequest.remove(traceparent);
-            return new PriorityRequest(priorityDiff.getData());
-        } else {
-            boolean hasRequestForData = dataRequest.containsKey(traceparent);
-            boolean hasDataToReceive = preparedData.containsKey(traceparent);
+        synchronized (inboxFor(traceparent)) {
+            if (state.hasPriority(traceparent)) {
+                ObservedData priorityDiff = take(() -> state.takePriority(traceparent), traceparent, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, traceparent));
+                return new PriorityRequest(priorityDiff.getData());
+            }
+
+            Map<String, ObservedData> receiverRequest = state.requestsFor(traceparent);
+            boolean hasRequestForData = receiverRequest != null;
+            boolean hasDataToReceive = state.hasPrepared(traceparent);
             if (hasRequestForData && hasDataToReceive) {
-                dataRequest.remove(traceparent);
+                take(() -> state.takeRequests(traceparent), traceparent, () -> LogRecord.of(LogRecord.Type.DATA_REQUESTS_TAKEN, traceparent));
             } else if (hasRequestForData) {
-                Map<String, ObservedData> receiverRequest = dataRequest.get(traceparent);
-                ObservedData receiverData = receiverRequest.values().iterator().next();
-                dataResult = new DataRequest(receiverData.getData(), receiverData.getRequestedType());
+                Iterator<ObservedData> receiverData = receiverRequest.values().iterator();
+                if (receiverData.hasNext()) {
+                    ObservedData requested = receiverData.next();
+                    dataResult = new DataRequest(requested.getData(), requested.getRequestedType());
+                }
             } else if (hasDataToReceive) {
-                dataResult = preparedData.get(traceparent);
-                preparedData.remove(traceparent);
+                dataResult = take(() -> state.takePrepared(traceparent), traceparent, () -> LogRecord.of(LogRecord.Type.PREPARED_TAKEN, traceparent));
             }
         }
 
         return dataResult;
     }
+
+    /**
+     * Remove the state of the synchronizer from its inbox, logged when there
+     * was state
+     *
+     * @return the state removed or null
+     */
+    private <T> T take(final Supplier<T> taking, final String traceparent, final Supplier<LogRecord> record) {
+        AtomicReference<T> taken = new AtomicReference<>();
+        synchronized (inboxFor(traceparent)) {
+            stateLog.append(() -> {
+                taken.set(taking.get());
+                return taken.get() != null;
+            }, record);
+        }
+
+        return taken.get();
+    }
+
+    /**
+     * Process a request of the synchronizer while holding its stripe. A
+     * synchronizer having a priority request is not processed, it gets the
+     * priority request instead
+     *
+     * @param processing the processing, returning false when the essence of
+     * the synchronizer has to be requested
+     * @return the EssenceRequest, or the result for the synchronizer
+     */
+    <E extends Exception> PreparedData process(final String traceparent, final Processing<E> processing) throws E {
+        try {
+            synchronized (stripeFor(traceparent)) {
+                if (!state.hasPriority(traceparent) && !processing.process()) {
+                    return new EssenceRequest();
+                }
+                return determineDataResult(traceparent);
+            }
+        } finally {
+            released();
+        }
+    }
+
+    /**
+     * @return the tuples of the thread, reused for every essence parsed
+     */
+    static EssenceTuples tuples() {
+        return TUPLES.get();
+    }
+
+    /**
+     * Every stripe is held while doing the work, taken in ascending order
+     */
+    private <T, E extends Exception> T exclusively(final int stripe, final Exclusive<T, E> work) throws E {
+        if (stripe == stripes.length) {
+            return work.run();
+        }
+
+        synchronized (stripes[stripe]) {
+            return exclusively(stripe + 1, work);
+        }
+    }
+
+    private Object stripeFor(final String traceparent) {
+        return stripes[indexOf(traceparent)];
+    }
+
+    private Object inboxFor(final String traceparent) {
+        return inboxes[indexOf(traceparent)];
+    }
+
+    private int indexOf(final String traceparent) {
+        int hash = traceparent.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Processing of a request while holding the stripe of its synchronizer
+     */
+    @FunctionalInterface
+    interface Processing<E extends Exception> {
+
+        boolean process() throws E;
+    }
+
+    /**
+     * Work done while no transition is applied
+     */
+    @FunctionalInterface
+    private interface Exclusive<T, E extends Exception> {
+
+        T run() throws E;
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History of the observed data received from a synchronizer, keeping a fixed
+ * amount of the observed data last received. Adding to a full history evicts
+ * the oldest, as such the history does not grow with the amount of polls.
+ * <p>
+ * The history is only modified while holding the stripe of the synchronizer,
+ * as such it is not thread safe.</p>
+ *
+ * @author Patrick-4488
+ */
+final class EssenceHistory {
+
+    private final ObservedData[] ring;
+    private int last;
+    private int size;
+
+    /**
+     * @param depth the amount of observed data kept, at least 1
+     */
+    EssenceHistory(final int depth) {
+        ring = new ObservedData[Math.max(1, depth)];
+        last = -1;
+    }
+
+    /**
+     * Add the observed data last received
+     *
+     * @param observedData the observed data
+     * @return the observed data evicted, being the oldest, or null when the
+     * history was not full
+     */
+    ObservedData add(final ObservedData observedData) {
+        last = (last + 1) % ring.length;
+        ObservedData evicted = ring[last];
+        ring[last] = observedData;
+        if (size < ring.length) {
+            size++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @return the observed data last received or null when empty
+     */
+    ObservedData last() {
+        return (size > 0 ? ring[last] : null);
+    }
+
+    /**
+     * Remove all but the observed data last received
+     *
+     * @return the observed data removed, oldest first
+     */
+    List<ObservedData> compact() {
+        List<ObservedData> removed = new ArrayList<>(Math.max(0, size - 1));
+        for (int i = size - 1; i > 0; i--) {
+            int position = Math.floorMod(last - i, ring.length);
+            removed.add(ring[position]);
+            ring[position] = null;
+        }
+        size = Math.min(size, 1);
+
+        return removed;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.data.comparison.EssenceDigest;
+import io.hivemind.data.comparison.EssenceFingerprint;
+import io.hivemind.data.comparison.EssenceSketch;
+import io.hivemind.data.comparison.EssenceSummary;
+import io.hivemind.data.comparison.EssenceTuples;
+import io.hivemind.exception.InvalidEssenceException;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Protocol of synchronizers avoiding to send their essence. A synchronizer
+ * sends the fingerprint of its essence first, followed by the sketch or the
+ * summary of its essence when the fingerprint does not match. Its essence is
+ * determined from latest and processed the same as when it would have been
+ * received, only when it can not be determined the essence is requested.
+ *
+ * @author Patrick-4488
+ * @see DataProcessor
+ */
+final class EssenceProtocol {
+
+    private final DataProcessor dataProcessor;
+    private final HiveState state;
+
+    private static final System.Logger LOGGER = System.getLogger(EssenceProtocol.class.getName());
+
+    EssenceProtocol(final DataProcessor dataProcessor, final HiveState state) {
+        this.dataProcessor = dataProcessor;
+        this.state = state;
+    }
+
+    /**
+     * @see DataProcessor#processFingerprint(java.lang.String,
+     * java.lang.String, java.lang.String)
+     */
+    PreparedData processFingerprint(final String fingerprint, final String requestedType, final String traceparent) {
+        LOGGER.log(INFO, "Processing fingerprint {0} received from {1}", fingerprint, traceparent);
+
+        if (traceparent == null) {
+            LOGGER.log(WARNING, "Received fingerprint without traceparent, unable to determine the synchronizer");
+            return new EssenceRequest();
+        }
+
+        return dataProcessor.process(traceparent, () -> {
+            boolean isKnown = processKnownEssence(fingerprint, requestedType, traceparent);
+            if (!isKnown) {
+                LOGGER.log(DEBUG, "Fingerprint received from {0} does not match, requesting its essence", traceparent);
+            }
+            return isKnown;
+        });
+    }
+
+    /**
+     * Latest is not changed, descending does not require a lock
+     *
+     * @see DataProcessor#processSummary(int, byte[], java.lang.String)
+     */
+    PreparedData processSummary(final int level, final byte[] nodes, final String traceparent) {
+        LOGGER.log(INFO, "Processing level {0} of the summary received from {1}", level, traceparent);
+
+        Map.Entry<String, ObservedData> snapshot = state.latest();
+        EssenceSummary summary = (snapshot != null ? snapshot.getValue().getSummary() : null);
+        byte[] differing = (summary != null ? summary.differingNodes(level, nodes) : null);
+        if (differing == null) {
+            LOGGER.log(DEBUG, "Summary received from {0} can not be compared with latest, requesting its essence", traceparent);
+            return new EssenceRequest();
+        }
+
+        return new EssenceRequest(differing);
+    }
+
+    /**
+     * @see DataProcessor#processSummaryEssence(byte[], java.lang.String,
+     * java.lang.String, java.lang.String, java.lang.String)
+     */
+    PreparedData processSummaryEssence(final byte[] data, final String leaves, final String fingerprint, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        LOGGER.log(INFO, "Processing the leaves {0} of the summary received from {1}", leaves, traceparent);
+
+        return processCompletedEssence(latest -> EssenceSummary.complete(latest.getData(), leaves, data), fingerprint, requestedType, traceparent);
+    }
+
+    /**
+     * @see DataProcessor#processSketch(byte[], int, java.lang.String,
+     * java.lang.String, java.lang.String)
+     */
+    PreparedData processSketch(final byte[] sketch, final int cells, final String fingerprint, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        LOGGER.log(INFO, "Processing sketch having {0} cells received from {1}", cells, traceparent);
+
+        if (!EssenceSketch.isValid(cells)) {
+            return new EssenceRequest();
+        }
+
+        return processCompletedEssence(latest -> EssenceSketch.reconcile(latest.getData(), latest.getSketch(cells), sketch), fingerprint, requestedType, traceparent);
+    }
+
+    /**
+     * Process the essence of a synchronizer completed from latest, requesting
+     * the essence when it can not be completed or when the essence completed
+     * does not match the fingerprint, latest having changed in the meantime
+     */
+    private PreparedData processCompletedEssence(final Function<ObservedData, byte[]> completion, final String fingerprint, final String requestedType, final String traceparent) throws InvalidEssenceException {
+        if (traceparent == null) {
+            LOGGER.log(WARNING, "Received essence to complete without traceparent, unable to determine the synchronizer");
+            return new EssenceRequest();
+        }
+
+        return dataProcessor.process(traceparent, () -> {
+            EssenceTuples tuples = DataProcessor.tuples();
+            Map.Entry<String, ObservedData> snapshot = state.latest();
+            byte[] essence = (snapshot != null ? completion.apply(snapshot.getValue()) : null);
+            if (essence != null) {
+                tuples.parse(essence);
+            }
+            if (essence == null || !EssenceFingerprint.matches(fingerprint, EssenceFingerprint.of(tuples.setHash()))) {
+                LOGGER.log(DEBUG, "Essence of {0} can not be completed from latest, requesting its essence", traceparent);
+                return false;
+            }
+
+            String digest = EssenceDigest.of(essence);
+            dataProcessor.compareEssence(essence, digest, tuples, requestedType, traceparent);
+            dataProcessor.storeData(essence, digest, tuples, traceparent);
+            return true;
+        });
+    }
+
+    /**
+     * The essence is known when it is latest or the essence last received from
+     * the synchronizer. Latest is stored as received from the synchronizer
+     * when not received before, the essence last received is compared with
+     * latest again when latest changed since
+     *
+     * @return false when the essence is not known
+     */
+    private boolean processKnownEssence(final String fingerprint, final String requestedType, final String traceparent) {
+        ObservedData lastObserved = state.lastStored(traceparent);
+        boolean isLastObserved = (lastObserved != null && EssenceFingerprint.matches(fingerprint, lastObserved.getFingerprint()));
+
+        Map.Entry<String, ObservedData> snapshot = state.latest();
+        if (snapshot != null && EssenceFingerprint.matches(fingerprint, snapshot.getValue().getFingerprint())) {
+            if (!isLastObserved) {
+                dataProcessor.storeLatest(snapshot.getValue(), traceparent);
+            }
+            return true;
+        } else if (isLastObserved) {
+            byte[] essence = lastObserved.getData();
+            try {
+                EssenceTuples tuples = DataProcessor.tuples();
+                tuples.parse(essence);
+                // Written from the bitmap, the essence might be in another order then when stored
+                dataProcessor.compareEssence(essence, EssenceDigest.of(essence), tuples, requestedType, traceparent);
+                dataProcessor.storeData(essence, lastObserved.getDigest(), tuples, traceparent);
+                return true;
+            } catch (InvalidEssenceException ex) {
+                // Essences stored have been validated, requesting the essence has it validated again
+                LOGGER.log(WARNING, "Essence stored for {0} is not valid", traceparent);
+            }
+        }
+
+        return false;
+    }
+}
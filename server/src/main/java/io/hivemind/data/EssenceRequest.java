@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+/**
+ * When the fingerprint received from a synchronizer does not match any essence
+ * known for the synchronizer, its essence is requested. While descending the
+ * summary of its essence, the nodes that differ are requested instead
+ *
+ * @author Patrick-4488
+ */
+public class EssenceRequest extends PreparedData {
+
+    public EssenceRequest() {
+        super(new byte[0]);
+    }
+
+    /**
+     * @param nodes the nodes of the summary that differ, every node being
+     * `node;`
+     * @see io.hivemind.data.comparison.EssenceSummary
+     */
+    public EssenceRequest(final byte[] nodes) {
+        super(nodes);
+    }
+}
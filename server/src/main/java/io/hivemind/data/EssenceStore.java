@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Store keeping every distinct essence stored for synchronizers once.
+ * Synchronizers in the same state send the same essence every poll, all of them
+ * share the observed data of that essence instead of each storing its own.
+ * Memory in use grows with the amount of distinct states, not with the amount
+ * of synchronizers and polls.
+ * <p>
+ * Essences are keyed by their digest and counted by reference. Every essence
+ * interned has to be released once it is no longer stored, the observed data
+ * is closed when the last reference is released. The observed data shared is
+ * the data of the first synchronizer storing it, including its timestamp.</p>
+ *
+ * @author Patrick-4488
+ * @see io.hivemind.data.comparison.EssenceDigest
+ */
+final class EssenceStore {
+
+    private final Map<String, Interned> essences;
+
+    EssenceStore() {
+        essences = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the observed data of the essence, storing it when not stored before
+     *
+     * @param digest the digest of the essence
+     * @param observation the observed data of the essence, only used when not
+     * stored before
+     * @return the observed data shared by all storing the essence
+     */
+    ObservedData intern(final String digest, final Supplier<ObservedData> observation) {
+        return essences.compute(digest, (key, interned) -> {
+            Interned stored = (interned != null ? interned : new Interned(observation.get()));
+            stored.references++;
+            return stored;
+        }).observedData;
+    }
+
+    /**
+     * Release a reference to the essence, the essence is removed and its
+     * observed data closed when not referenced anymore
+     *
+     * @param digest the digest of the essence
+     */
+    void release(final String digest) {
+        essences.computeIfPresent(digest, (key, interned) -> {
+            if (--interned.references > 0) {
+                return interned;
+            }
+
+            interned.observedData.close();
+            return null;
+        });
+    }
+
+    /**
+     * @return the amount of distinct essences stored
+     */
+    int size() {
+        return essences.size();
+    }
+
+    /**
+     * @return estimation of the memory used by the essences stored, in bytes
+     */
+    long sizeInBytes() {
+        long bytes = 0;
+        for (Interned interned : essences.values()) {
+            bytes += interned.observedData.sizeInBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Remove all essences, without closing the observed data still referenced
+     */
+    void clear() {
+        essences.clear();
+    }
+
+    /**
+     * Only modified while computing its key, as such a plain counter suffices
+     */
+    private static final class Interned {
+
+        private final ObservedData observedData;
+        private int references;
+
+        private Interned(final ObservedData observedData) {
+            this.observedData = observedData;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.data.comparison.EssenceBitmap;
+import io.hivemind.data.comparison.EssenceDigest;
+import io.hivemind.data.comparison.EssenceIndex;
+import io.hivemind.data.log.LogRecord;
+import io.hivemind.data.snapshot.StateSnapshot;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * State of the hive: latest, the essences stored for every synchronizer and
+ * the requests, prepared data and priority requests in the inbox of every
+ * synchronizer.
+ * <p>
+ * The state does not lock, the data processor holds the stripe or the inbox
+ * of a synchronizer while changing its state. Recovering, from a snapshot or
+ * by applying the transitions replayed from the log, happens before any
+ * request is processed. Capturing the state for a snapshot happens while
+ * holding every stripe.</p>
+ *
+ * @author Patrick-4488
+ * @see DataProcessor
+ */
+final class HiveState {
+
+    private final AtomicReference<Map.Entry<String, ObservedData>> latestObserved;
+    private final Map<String, Map<String, ObservedData>> dataRequest;
+    private final Map<String, ObservedData> priorityRequest;
+    private final Map<String, EssenceHistory> storedData;
+    private final Map<String, PreparedData> preparedData;
+    private final EssenceStore essenceStore;
+    private volatile int historyDepth;
+
+    private static final int DEFAULT_HISTORY_DEPTH = 3;
+    private static final System.Logger LOGGER = System.getLogger(HiveState.class.getName());
+
+    HiveState() {
+        latestObserved = new AtomicReference<>();
+        dataRequest = new ConcurrentHashMap<>();
+        priorityRequest = new ConcurrentHashMap<>();
+        storedData = new ConcurrentHashMap<>();
+        preparedData = new ConcurrentHashMap<>();
+        essenceStore = new EssenceStore();
+        historyDepth = DEFAULT_HISTORY_DEPTH;
+    }
+
+    /**
+     * @return latest and the synchronizer it was received from, or null
+     */
+    Map.Entry<String, ObservedData> latest() {
+        return latestObserved.get();
+    }
+
+    /**
+     * Change latest, only when it is still the expected
+     *
+     * @param expected the latest expected
+     * @param latest the new latest
+     * @return false when latest has been changed since
+     */
+    boolean changeLatest(final Map.Entry<String, ObservedData> expected, final Map.Entry<String, ObservedData> latest) {
+        return latestObserved.compareAndSet(expected, latest);
+    }
+
+    /**
+     * @return the synchronizers having stored data
+     */
+    Set<String> synchronizers() {
+        return storedData.keySet();
+    }
+
+    /**
+     * @return the observed data last stored for the synchronizer or null
+     */
+    ObservedData lastStored(final String traceparent) {
+        EssenceHistory history = storedData.get(traceparent);
+
+        return (history != null ? history.last() : null);
+    }
+
+    /**
+     * @see EssenceStore#intern(java.lang.String, java.util.function.Supplier)
+     */
+    ObservedData intern(final String digest, final Supplier<ObservedData> observation) {
+        return essenceStore.intern(digest, observation);
+    }
+
+    /**
+     * Add the interned observed data to the history of the synchronizer, the
+     * essence evicted from a full history is released
+     */
+    void store(final ObservedData stored, final String traceparent) {
+        EssenceHistory history = storedData.computeIfAbsent(traceparent, synchronizer -> new EssenceHistory(historyDepth));
+        ObservedData evicted = history.add(stored);
+        if (evicted != null) {
+            essenceStore.release(evicted.getDigest());
+        }
+    }
+
+    /**
+     * Compact the history of the synchronizer to the observed data last
+     * stored, releasing the essences removed
+     */
+    void compact(final String traceparent) {
+        EssenceHistory history = storedData.get(traceparent);
+        if (history != null) {
+            for (ObservedData older : history.compact()) {
+                essenceStore.release(older.getDigest());
+            }
+        }
+    }
+
+    /**
+     * @param depth the depth of the histories created from now on, at least 1
+     */
+    void retainHistory(final int depth) {
+        historyDepth = Math.max(1, depth);
+    }
+
+    /**
+     * @return the amount of synchronizers having stored data
+     */
+    int size() {
+        return storedData.size();
+    }
+
+    /**
+     * @see EssenceStore#sizeInBytes()
+     */
+    long sizeInBytes() {
+        return essenceStore.sizeInBytes();
+    }
+
+    /**
+     * Put the request in the inbox of the synchronizer having latest
+     */
+    void requestData(final ObservedData dataToRequest, final String synchronizerHavingLatest, final String traceparent) {
+        dataRequest.computeIfAbsent(synchronizerHavingLatest, synchronizer -> new ConcurrentHashMap<>()).put(traceparent, dataToRequest);
+    }
+
+    /**
+     * @return the requests for data of the synchronizer by the requesting
+     * synchronizer, or null
+     */
+    Map<String, ObservedData> requestsFor(final String traceparent) {
+        return dataRequest.get(traceparent);
+    }
+
+    Map<String, ObservedData> takeRequests(final String traceparent) {
+        return dataRequest.remove(traceparent);
+    }
+
+    boolean hasPrepared(final String traceparent) {
+        return preparedData.containsKey(traceparent);
+    }
+
+    void prepare(final String traceparent, final PreparedData prepared) {
+        preparedData.put(traceparent, prepared);
+    }
+
+    PreparedData takePrepared(final String traceparent) {
+        return preparedData.remove(traceparent);
+    }
+
+    boolean hasPriority(final String traceparent) {
+        return priorityRequest.containsKey(traceparent);
+    }
+
+    void prioritize(final String traceparent, final ObservedData priority) {
+        priorityRequest.put(traceparent, priority);
+    }
+
+    ObservedData takePriority(final String traceparent) {
+        return priorityRequest.remove(traceparent);
+    }
+
+    void clear() {
+        latestObserved.set(null);
+        dataRequest.clear();
+        storedData.clear();
+        essenceStore.clear();
+        preparedData.clear();
+        priorityRequest.clear();
+    }
+
+    /**
+     * Restore the state of the snapshot, synchronizers sharing data in the
+     * snapshot share the data restored
+     */
+    void restore(final StateSnapshot snapshot) {
+        StateSnapshot.Entry latest = snapshot.getLatest();
+        if (latest != null) {
+            latestObserved.set(asLatest(latest.getKey(), latest.getData()));
+        }
+
+        Map<byte[], String> digests = new IdentityHashMap<>();
+        for (StateSnapshot.Entry entry : snapshot.getStored()) {
+            byte[] data = entry.getData();
+            String digest = digests.computeIfAbsent(data, EssenceDigest::of);
+            store(essenceStore.intern(digest, () -> ObservedData.stored(data, (entry.isEssence() ? EssenceBitmap.of(data) : null), digest)), entry.getKey());
+        }
+        for (StateSnapshot.Entry entry : snapshot.getDataRequests()) {
+            requestData(new ObservedData(entry.getData(), entry.getRequestedType()), entry.getKey(), entry.getOther());
+        }
+        Map<byte[], PreparedData> prepared = new IdentityHashMap<>();
+        for (StateSnapshot.Entry entry : snapshot.getPrepared()) {
+            preparedData.put(entry.getKey(), prepared.computeIfAbsent(entry.getData(), data -> new PreparedData(data, entry.getRequestedType())));
+        }
+        Map<byte[], ObservedData> priorities = new IdentityHashMap<>();
+        for (StateSnapshot.Entry entry : snapshot.getPriorities()) {
+            priorityRequest.put(entry.getKey(), priorities.computeIfAbsent(entry.getData(), ObservedData::new));
+        }
+    }
+
+    /**
+     * Apply a transition replayed from the log, as applied when logged
+     */
+    void apply(final LogRecord logRecord) {
+        String key = logRecord.getKey();
+        byte[] data = logRecord.getData();
+        switch (logRecord.getType()) {
+            case LATEST ->
+                latestObserved.set(asLatest(key, data));
+            case STORED_ESSENCE, STORED_DATA -> {
+                String digest = EssenceDigest.of(data);
+                EssenceBitmap bitmap = (LogRecord.Type.STORED_ESSENCE == logRecord.getType() ? EssenceBitmap.of(data) : null);
+                store(essenceStore.intern(digest, () -> ObservedData.stored(data, bitmap, digest)), key);
+            }
+            case DATA_REQUEST ->
+                requestData(new ObservedData(data, logRecord.getRequestedType()), key, logRecord.getOther());
+            case DATA_RECEIVED -> {
+                Map<String, ObservedData> receiverRequests = dataRequest.remove(key);
+                if (receiverRequests != null && !receiverRequests.isEmpty()) {
+                    PreparedData dataForReceiver = new PreparedData(data, logRecord.getRequestedType());
+                    for (String receiver : receiverRequests.keySet()) {
+                        preparedData.put(receiver, dataForReceiver);
+                    }
+                }
+            }
+            case DATA_REQUESTS_TAKEN ->
+                dataRequest.remove(key);
+            case PREPARED_TAKEN ->
+                preparedData.remove(key);
+            case PRIORITY -> {
+                ObservedData priority = new ObservedData(data);
+                for (String synchronizer : storedData.keySet()) {
+                    if (!key.equals(synchronizer)) {
+                        priorityRequest.put(synchronizer, priority);
+                    }
+                }
+            }
+            case PRIORITY_TAKEN ->
+                priorityRequest.remove(key);
+            case CLEARED ->
+                clear();
+            default ->
+                LOGGER.log(WARNING, "Unknown transition {0} in log, ignoring it", logRecord.getType());
+        }
+    }
+
+    /**
+     * Capture references to the state, the data is written to a snapshot
+     * after. The state last stored for every synchronizer is kept until
+     * written
+     *
+     * @return the state captured
+     * @see #snapshot(io.hivemind.data.HiveState.Captured, long)
+     */
+    Captured capture() {
+        Captured captured = new Captured();
+        captured.latest = latestObserved.get();
+        for (Map.Entry<String, EssenceHistory> synchronizer : storedData.entrySet()) {
+            ObservedData last = synchronizer.getValue().last();
+            if (last != null) {
+                captured.stored.add(Map.entry(synchronizer.getKey(), essenceStore.intern(last.getDigest(), () -> last)));
+            }
+        }
+        for (Map.Entry<String, Map<String, ObservedData>> holder : dataRequest.entrySet()) {
+            captured.requests.add(Map.entry(holder.getKey(), Map.copyOf(holder.getValue())));
+        }
+        captured.prepared.putAll(preparedData);
+        captured.priorities.putAll(priorityRequest);
+
+        return captured;
+    }
+
+    /**
+     * Write the state captured at the checkpoint, data shared by
+     * synchronizers is written once. The state last stored is released once
+     * written
+     *
+     * @return the snapshot
+     */
+    StateSnapshot snapshot(final Captured captured, final long checkpoint) {
+        StateSnapshot snapshot = new StateSnapshot(checkpoint);
+        Map<Object, byte[]> written = new IdentityHashMap<>();
+        try {
+            if (captured.latest != null) {
+                snapshot.setLatest(captured.latest.getKey(), captured.latest.getValue().getData());
+            }
+            for (Map.Entry<String, ObservedData> entry : captured.stored) {
+                ObservedData data = entry.getValue();
+                snapshot.addStored(entry.getKey(), written.computeIfAbsent(data, d -> data.getData()), data.getBitmap() != null);
+            }
+            for (Map.Entry<String, Map<String, ObservedData>> holder : captured.requests) {
+                for (Map.Entry<String, ObservedData> request : holder.getValue().entrySet()) {
+                    snapshot.addDataRequest(holder.getKey(), request.getKey(), request.getValue().getData(), request.getValue().getRequestedType());
+                }
+            }
+            for (Map.Entry<String, PreparedData> entry : captured.prepared.entrySet()) {
+                PreparedData data = entry.getValue();
+                snapshot.addPrepared(entry.getKey(), written.computeIfAbsent(data, d -> data.getData()), data.getRequestedType());
+            }
+            for (Map.Entry<String, ObservedData> entry : captured.priorities.entrySet()) {
+                ObservedData data = entry.getValue();
+                snapshot.addPriority(entry.getKey(), written.computeIfAbsent(data, d -> data.getData()));
+            }
+        } finally {
+            for (Map.Entry<String, ObservedData> entry : captured.stored) {
+                essenceStore.release(entry.getValue().getDigest());
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * The essence becoming latest is compiled once, so all essences received
+     * after are compared against the index instead of the text. An essence
+     * having ranges is read into a bitmap instead
+     */
+    static Map.Entry<String, ObservedData> asLatest(final String traceparent, final byte[] essence) {
+        EssenceIndex index = EssenceIndex.compile(essence);
+        EssenceBitmap bitmap = (index == null ? EssenceBitmap.of(essence) : null);
+
+        return Map.entry(traceparent, (bitmap != null && bitmap.isRanged() ? ObservedData.of(essence, bitmap) : new ObservedData(essence, null, index)));
+    }
+
+    /**
+     * References to the state at a checkpoint
+     */
+    static final class Captured {
+
+        private final List<Map.Entry<String, ObservedData>> stored = new ArrayList<>();
+        private final List<Map.Entry<String, Map<String, ObservedData>>> requests = new ArrayList<>();
+        private final Map<String, PreparedData> prepared = new HashMap<>();
+        private final Map<String, ObservedData> priorities = new HashMap<>();
+        private Map.Entry<String, ObservedData> latest;
+    }
+}
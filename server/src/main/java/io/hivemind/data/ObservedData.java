@@ -15,12 +15,21 @@
  */
 package io.hivemind.data;
 
+import io.hivemind.data.comparison.EssenceBitmap;
+import io.hivemind.data.comparison.EssenceDigest;
+import io.hivemind.data.comparison.EssenceFingerprint;
+import io.hivemind.data.comparison.EssenceIndex;
+import io.hivemind.data.comparison.EssenceSketch;
+import io.hivemind.data.comparison.EssenceSummary;
 import java.lang.ref.Cleaner;
 import java.time.Instant;
 
 /**
  * Data that has been observed, meaning it has been received, understood and is
  * ready to be used in comparisons
+ * <p>
+ * Essences stored for synchronizers are kept as bitmap instead of as text,
+ * the essence as text is only written when the data is required.</p>
  *
  * @author Patrick-4488
  */
@@ -30,6 +39,7 @@ public class ObservedData implements Data {
     private final Cleaner.Cleanable cleanable;
 
     private static final Cleaner cleaner = Cleaner.create();
+    private static final String NO_FINGERPRINT = "";
 
     /**
      * Static nested class avoids accidentally retaining the reference
@@ -39,10 +49,21 @@ public class ObservedData implements Data {
         private byte[] data;
         private final Instant timestamp;
         private String requestedType;
+        private EssenceIndex index;
+        private volatile String fingerprint;
+        private volatile String digest;
+        private volatile EssenceSummary summary;
+        private volatile boolean summarized;
+        private volatile EssenceSketch sketch;
+        private volatile EssenceBitmap bitmap;
+        private volatile boolean bitmapped;
 
-        State(final byte[] data, final String requestedType) {
+        State(final byte[] data, final String requestedType, final EssenceIndex index, final EssenceBitmap bitmap) {
             this.data = data;
             this.requestedType = requestedType;
+            this.index = index;
+            this.bitmap = bitmap;
+            this.bitmapped = (bitmap != null);
             this.timestamp = Instant.now();
         }
 
@@ -50,6 +71,12 @@ public class ObservedData implements Data {
         public void run() {
             this.data = new byte[0];
             requestedType = null;
+            index = null;
+            fingerprint = null;
+            digest = null;
+            summary = null;
+            sketch = null;
+            bitmap = null;
         }
     }
 
@@ -58,18 +85,88 @@ public class ObservedData implements Data {
     }
 
     public ObservedData(final byte[] data, final String requestedType) {
-        this.state = new State(data, requestedType);
+        this(data, requestedType, null);
+    }
+
+    /**
+     * Observed data for an essence that has already been compiled
+     *
+     * @param data the essence
+     * @param requestedType the type of data (as requested)
+     * @param index the compiled essence
+     */
+    public ObservedData(final byte[] data, final String requestedType, final EssenceIndex index) {
+        this(new State(data, requestedType, index, null));
+    }
+
+    /**
+     * The cleaner only keeps a phantom reference to the observed data, which
+     * is not used before the observed data is fully constructed
+     */
+    @SuppressWarnings("this-escape")
+    private ObservedData(final State state) {
+        this.state = state;
         this.cleanable = cleaner.register(this, state);
     }
 
+    /**
+     * Observed data for an essence kept as bitmap
+     *
+     * @param bitmap the essence as bitmap
+     * @return the observed data
+     */
+    public static ObservedData of(final EssenceBitmap bitmap) {
+        return new ObservedData(new State(null, null, null, bitmap));
+    }
+
+    /**
+     * Observed data for an essence that has already been read into a bitmap,
+     * essences having ranges are compared as bitmap instead of compiled
+     *
+     * @param data the essence
+     * @param bitmap the essence as bitmap
+     * @return the observed data
+     */
+    public static ObservedData of(final byte[] data, final EssenceBitmap bitmap) {
+        return new ObservedData(new State(data, null, null, bitmap));
+    }
+
+    /**
+     * Observed data for an essence stored for synchronizers, kept as bitmap
+     * when available. The digest is that of the essence as received, the
+     * essence written from the bitmap might have another order
+     *
+     * @param data the essence, only kept when there is no bitmap
+     * @param bitmap the essence as bitmap or null
+     * @param digest the digest of the essence as received
+     * @return the observed data
+     * @see EssenceStore
+     */
+    static ObservedData stored(final byte[] data, final EssenceBitmap bitmap, final String digest) {
+        ObservedData observedData = new ObservedData(new State((bitmap != null ? null : data), null, null, bitmap));
+        observedData.state.digest = digest;
+
+        return observedData;
+    }
+
     @Override
     public boolean hasData() {
-        return this.state.data != null && this.state.data.length > 0;
+        byte[] data = this.state.data;
+        return (data != null ? data.length > 0 : this.state.bitmap != null);
     }
 
+    /**
+     * When kept as bitmap, the essence is written every time it is required
+     * without keeping it
+     *
+     * @return the data
+     */
     @Override
     public byte[] getData() {
-        return this.state.data;
+        byte[] data = this.state.data;
+        EssenceBitmap bitmap = this.state.bitmap;
+
+        return (data == null && bitmap != null ? bitmap.toEssence() : data);
     }
 
     @Override
@@ -82,6 +179,125 @@ public class ObservedData implements Data {
         return this.state.requestedType;
     }
 
+    /**
+     * @return the compiled essence or null when not compiled
+     */
+    public EssenceIndex getIndex() {
+        return this.state.index;
+    }
+
+    /**
+     * The fingerprint is determined once, when first required. Determining it
+     * concurrently results in the same fingerprint. When compiled, the
+     * fingerprint is taken from the index without reading the data
+     *
+     * @return the fingerprint of the data or null when the data is not a
+     * canonical essence
+     * @see EssenceFingerprint
+     */
+    public String getFingerprint() {
+        String fingerprint = this.state.fingerprint;
+        if (fingerprint == null) {
+            EssenceIndex index = this.state.index;
+            EssenceBitmap bitmap = this.state.bitmap;
+            if (index != null) {
+                fingerprint = EssenceFingerprint.of(index.setHash());
+            } else if (bitmap != null) {
+                fingerprint = EssenceFingerprint.of(bitmap.setHash());
+            } else {
+                fingerprint = EssenceFingerprint.of(this.state.data);
+            }
+            this.state.fingerprint = (fingerprint != null ? fingerprint : NO_FINGERPRINT);
+        }
+
+        return (NO_FINGERPRINT.equals(fingerprint) ? null : fingerprint);
+    }
+
+    /**
+     * The digest is determined once, when first required, or given when
+     * stored. It keys the results of comparing with latest and the essences
+     * stored
+     *
+     * @return the digest of the data
+     * @see EssenceDigest
+     */
+    public String getDigest() {
+        String digest = this.state.digest;
+        if (digest == null) {
+            digest = EssenceDigest.of(getData());
+            this.state.digest = digest;
+        }
+
+        return digest;
+    }
+
+    /**
+     * The summary is determined once, when first required, only the summary
+     * of latest is used by synchronizers descending their summary
+     *
+     * @return the summary of the data or null when the data is not a
+     * canonical essence
+     * @see EssenceSummary
+     */
+    public EssenceSummary getSummary() {
+        if (!this.state.summarized) {
+            this.state.summary = EssenceSummary.of(this.state.data);
+            this.state.summarized = true;
+        }
+
+        return this.state.summary;
+    }
+
+    /**
+     * The sketch is determined when first required and kept for the amount of
+     * cells last required, synchronizers mostly send sketches having the same
+     * amount of cells
+     *
+     * @param cells the amount of cells
+     * @return the sketch of the data or null when the data is not a canonical
+     * essence
+     * @see EssenceSketch
+     */
+    public EssenceSketch getSketch(final int cells) {
+        EssenceSketch sketch = this.state.sketch;
+        if (sketch == null || sketch.cells() != cells) {
+            sketch = EssenceSketch.of(this.state.data, cells);
+            this.state.sketch = sketch;
+        }
+
+        return sketch;
+    }
+
+    /**
+     * The bitmap of a compiled essence (latest) is determined once, when first
+     * required, for comparing with the essences stored as bitmap
+     *
+     * @return the essence as bitmap, or null when not kept as bitmap and not
+     * compiled
+     * @see EssenceBitmap
+     */
+    public EssenceBitmap getBitmap() {
+        if (!this.state.bitmapped && this.state.index != null) {
+            this.state.bitmap = EssenceBitmap.of(this.state.data);
+            this.state.bitmapped = true;
+        }
+
+        return this.state.bitmap;
+    }
+
+    /**
+     * Estimation of the memory used by the data, only counting the bitmap when
+     * kept as bitmap
+     *
+     * @return the amount of bytes
+     */
+    public long sizeInBytes() {
+        byte[] data = this.state.data;
+        EssenceBitmap bitmap = this.state.bitmap;
+
+        return (data != null ? data.length : 0) + (bitmap != null ? bitmap.sizeInBytes() : 0);
+    }
+
     public void close() {
         cleanable.clean();
     }
@@ -0,0 +1,589 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.change;
+
+import io.hivemind.constant.Durability;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Durable, append only log of the changes accepted by the hive, the data
+ * provided by synchronizers and the deletions detected. Other then the data
+ * prepared for synchronizers, which is discarded once received, every change
+ * can be read again from its offset by synchronizers and tools catching up.
+ * <p>
+ * Every change has an offset, one higher then the change before it. Changes
+ * are written to segment files named after the offset of their first change, a
+ * segment is completed once the next change does not fit. Completed segments
+ * are removed, oldest first, while the log exceeds the retention size or while
+ * their last change is older then the retention time.</p>
+ * <p>
+ * Changes are read as slices of a segment, transferred as written from the
+ * file to the channel of the consumer (zero-copy when the channel is a socket
+ * or file). The position of a change in its segment is found by a sparse index
+ * of positions, scanning at most the index interval from the position
+ * indexed.</p>
+ * <p>
+ * Only writing a change holds the lock of the log, forcing to disk happens
+ * outside of it. A single flusher forces all changes written in the meantime
+ * at once (group commit), when durability is ALWAYS the caller awaits its last
+ * change being forced once it no longer holds any lock.</p>
+ *
+ * @author Patrick-4488
+ * @see ChangeRecord
+ */
+public final class ChangeLog implements AutoCloseable {
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long retentionSize;
+    private final long retentionMillis;
+    private final Durability durability;
+    private final NavigableMap<Long, Segment> segments;
+    private final ReentrantLock lock;
+    private final Condition written;
+    private final Condition forced;
+    private final Thread flusher;
+    // Offset after the change last appended by the thread, awaited to be forced
+    private final ThreadLocal<long[]> lastAppended;
+    private long nextOffset;
+    private long flushed;
+    private boolean closed;
+
+    private static final String EXTENSION = ".changes";
+    private static final String SEGMENT_NAME = "%020d" + EXTENSION;
+    private static final long INDEX_INTERVAL = 4096;
+    // FUTURE_WORK: move to configuration?
+    private static final long FORCE_INTERVAL_MILLIS = 1000;
+    private static final System.Logger LOGGER = System.getLogger(ChangeLog.class.getName());
+
+    /**
+     * Open the log in the directory, continuing after the last change
+     *
+     * @param directory the directory of the segments, created when not
+     * existing
+     * @param segmentSize the size of a segment in bytes, a single change
+     * larger then the size is written to a segment of its own
+     * @param retentionSize the size in bytes of all segments together before
+     * removing the oldest, 0 or less to not remove by size
+     * @param retentionMillis the time in milliseconds changes are kept at
+     * least, 0 or less to not remove by time
+     * @param durability when changes are forced to disk, every change
+     * (ALWAYS), every second (INTERVAL) or only when a segment is completed
+     * and when closing (NEVER)
+     * @throws IOException when the log can not be opened
+     */
+    public ChangeLog(final Path directory, final long segmentSize, final long retentionSize, final long retentionMillis, final Durability durability) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.retentionSize = retentionSize;
+        this.retentionMillis = retentionMillis;
+        this.durability = durability;
+        segments = new TreeMap<>();
+        lock = new ReentrantLock();
+        written = lock.newCondition();
+        forced = lock.newCondition();
+        lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+        List<Path> paths = segmentPaths();
+        for (Path path : paths) {
+            Segment segment = Segment.open(path, offsetOf(path));
+            segments.put(segment.baseOffset, segment);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.create(directory.resolve(SEGMENT_NAME.formatted(0)), 0));
+        }
+        nextOffset = segments.lastEntry().getValue().nextOffset;
+        flushed = nextOffset;
+        retain();
+
+        LOGGER.log(INFO, "Opened change log {0} having changes {1} until {2}", directory, firstOffset(), nextOffset);
+
+        if (Durability.NEVER != durability) {
+            flusher = new Thread(this::flush, "hive-changes-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Append the change, without forcing it to disk. When durability is
+     * ALWAYS, the change is durable once awaited
+     *
+     * @param type the type of change
+     * @param key the synchronizer the change is from
+     * @param data the data of the change
+     * @param requestedType the type of the data, or null
+     * @return the offset of the change
+     * @throws IOException when the change can not be written
+     * @see #awaitDurable()
+     */
+    public long append(final ChangeRecord.Type type, final String key, final byte[] data, final String requestedType) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+
+            long offset = nextOffset;
+            long timestamp = System.currentTimeMillis();
+            byte[] frame = new ChangeRecord(offset, timestamp, type, key, requestedType, data).frame();
+            Segment active = segments.lastEntry().getValue();
+            if (active.size > 0 && active.size + frame.length > segmentSize) {
+                active = roll(active);
+            }
+            active.append(offset, timestamp, frame);
+            nextOffset++;
+
+            if (Durability.ALWAYS == durability) {
+                written.signal();
+                lastAppended.get()[0] = nextOffset;
+            }
+
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Await the changes appended by the calling thread being forced to disk,
+     * when durability is ALWAYS. Called once the caller no longer holds any
+     * lock, so other callers are not blocked while forcing
+     */
+    public void awaitDurable() {
+        long[] last = lastAppended.get();
+        long offset = last[0];
+        if (offset > 0) {
+            last[0] = 0;
+            awaitForced(offset);
+        }
+    }
+
+    /**
+     * @return the offset of the oldest change retained
+     */
+    public long firstOffset() {
+        lock.lock();
+        try {
+            return segments.firstKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the offset the next change will have
+     */
+    public long nextOffset() {
+        lock.lock();
+        try {
+            return nextOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the changes from the offset, as a slice of complete changes of a
+     * single segment. Reading from an offset no longer retained reads from the
+     * oldest change retained. At least one change is read, even when larger
+     * then the maximum
+     *
+     * @param offset the offset of the first change to read
+     * @param maxBytes the maximum amount of bytes to read
+     * @return the slice, to be closed once transferred, or null when there
+     * are no changes from the offset
+     * @throws IOException when the segment can not be read
+     */
+    public Slice read(final long offset, final long maxBytes) throws IOException {
+        lock.lock();
+        try {
+            long from = Math.max(offset, segments.firstKey());
+            if (from >= nextOffset) {
+                return null;
+            }
+
+            Segment segment = segments.floorEntry(from).getValue();
+            while (from >= segment.nextOffset) {
+                // Changes removed from a damaged segment leave a gap until the next segment
+                segment = segments.higherEntry(segment.baseOffset).getValue();
+                from = segment.baseOffset;
+            }
+            long position = segment.positionOf(from);
+            long end = position + ChangeRecord.FRAME_HEADER + segment.lengthAt(position);
+            long next = from + 1;
+            while (next < segment.nextOffset) {
+                long length = ChangeRecord.FRAME_HEADER + segment.lengthAt(end);
+                if (end + length - position > maxBytes) {
+                    break;
+                }
+                end += length;
+                next++;
+            }
+
+            return new Slice(FileChannel.open(segment.path, StandardOpenOption.READ), position, end - position, from, next);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The flusher is stopped before the segments are forced and closed
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            written.signalAll();
+            forced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.force(false);
+                    segment.channel.close();
+                } catch (IOException ex) {
+                    LOGGER.log(ERROR, "Failed to close change log segment " + segment.path, ex);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The segment completed is forced, when forced at all, before starting the
+     * next. Retention is applied once completed
+     */
+    private Segment roll(final Segment completed) throws IOException {
+        if (Durability.NEVER != durability) {
+            completed.channel.force(false);
+        }
+
+        Segment next = Segment.create(directory.resolve(SEGMENT_NAME.formatted(nextOffset)), nextOffset);
+        segments.put(next.baseOffset, next);
+        retain();
+
+        return next;
+    }
+
+    /**
+     * The segment changes are appended to is never removed. Slices being
+     * transferred keep their own channel, a segment removed is still
+     * transferred
+     */
+    private void retain() throws IOException {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+
+        long expiry = System.currentTimeMillis() - retentionMillis;
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            boolean isOverSize = (retentionSize > 0 && total > retentionSize);
+            boolean isExpired = (retentionMillis > 0 && oldest.lastTimestamp < expiry);
+            if (!isOverSize && !isExpired) {
+                break;
+            }
+
+            segments.pollFirstEntry();
+            total -= oldest.size;
+            oldest.channel.close();
+            Files.delete(oldest.path);
+            LOGGER.log(INFO, "Removed change log {0} having changes {1} until {2}", oldest.path, oldest.baseOffset, oldest.nextOffset);
+        }
+    }
+
+    /**
+     * Forces the changes appended, when appended (ALWAYS) or every interval
+     * (INTERVAL), until closed. Only the segment changes are appended to is
+     * forced, a completed segment is forced when completed
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (Durability.ALWAYS == durability && nextOffset == flushed) {
+                    written.await();
+                } else if (Durability.INTERVAL == durability) {
+                    written.await(FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (nextOffset != flushed && !closed) {
+                    long target = nextOffset;
+                    Segment active = segments.lastEntry().getValue();
+                    lock.unlock();
+                    try {
+                        active.channel.force(false);
+                    } catch (ClosedChannelException ex) {
+                        // Completed and removed in the meantime, it was forced when completed
+                    } catch (IOException ex) {
+                        LOGGER.log(ERROR, "Failed to force the change log, changes until " + target + " might not survive a crash", ex);
+                    } finally {
+                        lock.lock();
+                    }
+                    flushed = Math.max(flushed, target);
+                    forced.signalAll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitForced(final long offset) {
+        lock.lock();
+        try {
+            while (flushed < offset && !closed) {
+                forced.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> segmentPaths() throws IOException {
+        try ( Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long offsetOf(final Path path) {
+        String name = path.getFileName().toString();
+
+        return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Changes read from the log, transferred from the segment file to the
+     * channel of the consumer
+     */
+    public static final class Slice implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long position;
+        private final long count;
+        private final long offset;
+        private final long nextOffset;
+
+        private Slice(final FileChannel channel, final long position, final long count, final long offset, final long nextOffset) {
+            this.channel = channel;
+            this.position = position;
+            this.count = count;
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+        }
+
+        /**
+         * @return the channel of the segment, for transferring without
+         * copying, owned by the slice
+         */
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * @return the position of the first change in the segment
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the amount of bytes of the changes
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the offset of the first change
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the offset to continue reading from
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        /**
+         * Transfer the changes to the target
+         *
+         * @param target the target
+         * @return the amount of bytes transferred
+         * @throws IOException when failing to transfer
+         */
+        public long transferTo(final WritableByteChannel target) throws IOException {
+            long transferred = 0;
+            while (transferred < count) {
+                long amount = channel.transferTo(position + transferred, count - transferred, target);
+                if (amount <= 0) {
+                    break;
+                }
+                transferred += amount;
+            }
+
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Segment file of the log, only the last segment is written to
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final long baseOffset;
+        private final FileChannel channel;
+        private final NavigableMap<Long, Long> index;
+        private long size;
+        private long nextOffset;
+        private long lastTimestamp;
+        private long indexedAt;
+
+        private Segment(final Path path, final long baseOffset, final FileChannel channel) {
+            this.path = path;
+            this.baseOffset = baseOffset;
+            this.channel = channel;
+            this.index = new TreeMap<>();
+            this.nextOffset = baseOffset;
+        }
+
+        private static Segment create(final Path path, final long baseOffset) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            return new Segment(path, baseOffset, channel);
+        }
+
+        /**
+         * The changes of the segment are verified and indexed, a change
+         * written partially is removed so appending continues after the last
+         * complete change
+         */
+        private static Segment open(final Path path, final long baseOffset) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(path, baseOffset, channel);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                ChangeRecord change;
+                while ((change = ChangeRecord.read(buffer)) != null) {
+                    segment.indexed(change.getOffset(), change.getTimestamp(), segment.size);
+                    segment.size = buffer.position();
+                }
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(WARNING, "Change log {0} has a damaged change at {1}", path, segment.size);
+            }
+            if (segment.size < channel.size()) {
+                LOGGER.log(WARNING, "Removing partially written change from {0} at {1}", path, segment.size);
+                channel.truncate(segment.size);
+            }
+
+            return segment;
+        }
+
+        private void append(final long offset, final long timestamp, final byte[] frame) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            indexed(offset, timestamp, size);
+            size = position;
+        }
+
+        private void indexed(final long offset, final long timestamp, final long position) {
+            if (index.isEmpty() || position - indexedAt >= INDEX_INTERVAL) {
+                index.put(offset, position);
+                indexedAt = position;
+            }
+            nextOffset = offset + 1;
+            lastTimestamp = timestamp;
+        }
+
+        private long positionOf(final long offset) throws IOException {
+            Map.Entry<Long, Long> indexed = index.floorEntry(offset);
+            long position = indexed.getValue();
+            for (long current = indexed.getKey(); current < offset; current++) {
+                position += ChangeRecord.FRAME_HEADER + lengthAt(position);
+            }
+
+            return position;
+        }
+
+        private int lengthAt(final long position) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            if (channel.read(length, position) < Integer.BYTES) {
+                throw new IOException("Change log " + path + " ends within the change at " + position);
+            }
+
+            return length.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.change;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A change accepted by the hive, as written to the change log and as read by
+ * consumers from any offset.
+ * <p>
+ * Framed as the length of the record, the CRC32 of the record and the record.
+ * The record is the offset, the time of the change in milliseconds, the
+ * ordinal of the type, the synchronizer, the requested type and the data, each
+ * prefixed by its length or -1 when null. Consumers read the frames as written
+ * to the log, a response of the hive holds one or more frames.</p>
+ *
+ * @author Patrick-4488
+ * @see ChangeLog
+ */
+public final class ChangeRecord {
+
+    private final long offset;
+    private final long timestamp;
+    private final Type type;
+    private final String key;
+    private final String requestedType;
+    private final byte[] data;
+
+    static final int FRAME_HEADER = 2 * Integer.BYTES;
+    private static final int ABSENT = -1;
+    private static final Type[] TYPES = Type.values();
+
+    /**
+     * The types of changes
+     */
+    public enum Type {
+
+        /**
+         * The synchronizer (key) provided data (data) in the requested type,
+         * prepared for all synchronizers having requested it
+         */
+        PAYLOAD,
+        /**
+         * Data has been deleted at the synchronizer (key), its essence (data)
+         * became latest and is prioritized for all other synchronizers
+         */
+        DELETION
+    }
+
+    ChangeRecord(final long offset, final long timestamp, final Type type, final String key, final String requestedType, final byte[] data) {
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.key = key;
+        this.requestedType = requestedType;
+        this.data = data;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the time of the change in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getRequestedType() {
+        return requestedType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the record framed by its length and CRC
+     */
+    byte[] frame() {
+        byte[] keyBytes = bytesOf(key);
+        byte[] requestedTypeBytes = bytesOf(requestedType);
+        int length = 2 * Long.BYTES + 1 + lengthOf(keyBytes) + lengthOf(requestedTypeBytes) + lengthOf(data);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.putLong(offset);
+        buffer.putLong(timestamp);
+        buffer.put((byte) type.ordinal());
+        put(buffer, keyBytes);
+        put(buffer, requestedTypeBytes);
+        put(buffer, data);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), FRAME_HEADER, length);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+
+        return buffer.array();
+    }
+
+    /**
+     * Read the framed record at the position of the buffer, advancing the
+     * buffer past it
+     *
+     * @param buffer the buffer positioned at a frame
+     * @return the record or null when there is no complete record at the
+     * position
+     * @throws IllegalArgumentException when the record does not match its CRC
+     */
+    public static ChangeRecord read(final ByteBuffer buffer) {
+        if (buffer.remaining() < FRAME_HEADER) {
+            return null;
+        }
+
+        int position = buffer.position();
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.remaining() - FRAME_HEADER) {
+            return null;
+        }
+
+        ByteBuffer record = buffer.slice(position + FRAME_HEADER, length);
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if (buffer.getInt(position + Integer.BYTES) != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Change record does not match its CRC at " + position);
+        }
+        buffer.position(position + FRAME_HEADER + length);
+
+        long offset = record.getLong();
+        long timestamp = record.getLong();
+        int ordinal = record.get();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown type of change record: " + ordinal);
+        }
+        String key = stringOf(bytes(record));
+        String requestedType = stringOf(bytes(record));
+
+        return new ChangeRecord(offset, timestamp, TYPES[ordinal], key, requestedType, bytes(record));
+    }
+
+    private static byte[] bytesOf(final String value) {
+        return (value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static String stringOf(final byte[] value) {
+        return (value != null ? new String(value, StandardCharsets.UTF_8) : null);
+    }
+
+    private static int lengthOf(final byte[] value) {
+        return Integer.BYTES + (value != null ? value.length : 0);
+    }
+
+    private static void put(final ByteBuffer buffer, final byte[] value) {
+        if (value != null) {
+            buffer.putInt(value.length).put(value);
+        } else {
+            buffer.putInt(ABSENT);
+        }
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == ABSENT) {
+            return null;
+        } else if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length in change record: " + length);
+        }
+
+        byte[] value = new byte[length];
+        buffer.get(value);
+
+        return value;
+    }
+}
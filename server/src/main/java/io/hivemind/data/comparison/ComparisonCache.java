@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the results of comparing essences with latest. Synchronizers in the
+ * same state send the same essence, the result of comparing it with latest is
+ * determined once and shared.
+ * <p>
+ * Results are keyed by the digest of latest and the digest of the essence
+ * compared. Comparisons of the same essences running concurrently are
+ * collapsed, only the first compares while the others wait for its result.
+ * The cache is invalidated when latest changes, keying by the digest of latest
+ * keeps a result stored while invalidating from being used for another
+ * latest.</p>
+ * <p>
+ * The cache is bounded, when full it is cleared before storing the next
+ * result. Comparisons in progress while clearing still complete for those
+ * waiting on them.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceDigest
+ */
+public class ComparisonCache {
+
+    private final Map<Key, CompletableFuture<ComparisonResult>> results;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * @param maxSize the maximum amount of results kept, 0 or less to not
+     * cache results
+     */
+    public ComparisonCache(final int maxSize) {
+        this.maxSize = maxSize;
+        results = new ConcurrentHashMap<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * Get the result of comparing the essence with latest, comparing when not
+     * cached
+     *
+     * @param latestDigest the digest of latest
+     * @param essenceDigest the digest of the essence compared with latest
+     * @param comparison the comparison determining the result when not cached
+     * @return the result of the comparison
+     */
+    public ComparisonResult compare(final String latestDigest, final String essenceDigest, final Supplier<ComparisonResult> comparison) {
+        if (maxSize <= 0) {
+            misses.increment();
+            return comparison.get();
+        }
+
+        Key key = new Key(latestDigest, essenceDigest);
+        CompletableFuture<ComparisonResult> cached = results.get(key);
+        if (cached == null) {
+            if (results.size() >= maxSize) {
+                results.clear();
+            }
+            CompletableFuture<ComparisonResult> comparing = new CompletableFuture<>();
+            cached = results.putIfAbsent(key, comparing);
+            if (cached == null) {
+                misses.increment();
+                return compare(key, comparing, comparison);
+            }
+        }
+
+        hits.increment();
+        return cached.join();
+    }
+
+    /**
+     * Remove all results, required when latest changes
+     */
+    public void invalidate() {
+        results.clear();
+    }
+
+    /**
+     * @return the amount of comparisons of which the result was cached or
+     * being determined by another comparison
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the amount of comparisons of which the result had to be
+     * determined
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the amount of results cached
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * A comparison failing is not cached, those waiting on it fail the same
+     */
+    private ComparisonResult compare(final Key key, final CompletableFuture<ComparisonResult> comparing, final Supplier<ComparisonResult> comparison) {
+        try {
+            ComparisonResult result = comparison.get();
+            comparing.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            results.remove(key, comparing);
+            comparing.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private record Key(String latestDigest, String essenceDigest) {
+
+    }
+}
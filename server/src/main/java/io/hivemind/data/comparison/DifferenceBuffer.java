@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer the difference is written to, reused for every comparison
+ * of the comparator owning it
+ *
+ * @author Patrick-4488
+ */
+final class DifferenceBuffer {
+
+    private byte[] buffer;
+    private int length;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    DifferenceBuffer() {
+        buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    /**
+     * Write a tuple followed by the separator
+     */
+    void writeTuple(final byte[] source, final int start, final int end, final byte separator) {
+        int tupleLength = end - start;
+        ensureCapacity(length + tupleLength + 1);
+        System.arraycopy(source, start, buffer, length, tupleLength);
+        length += tupleLength;
+        buffer[length++] = separator;
+    }
+
+    /**
+     * Write the bytes written to the other buffer
+     */
+    void write(final DifferenceBuffer other) {
+        ensureCapacity(length + other.length);
+        System.arraycopy(other.buffer, 0, buffer, length, other.length);
+        length += other.length;
+    }
+
+    /**
+     * @return the backing array, only valid up to the length
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return copy of the written bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.util.Arrays;
+
+/**
+ * Compressed representation of an essence, the ids of the tuples (id,version)
+ * grouped by version into compressed bitmaps. Most resources share a handful
+ * of versions and have ids in dense ranges, for which the bitmaps take a
+ * fraction of the memory of the essence as text.
+ * <p>
+ * Essences are stored as bitmap for every synchronizer, the difference of two
+ * essences is determined by subtracting the bitmaps of every version. The
+ * essence as text is written from the bitmaps when required, sorted by id.
+ * Having the same tuples, the essence written has the same length and
+ * fingerprint as the essence received.</p>
+ * <p>
+ * Ranges of ids having the same version (`firstId-lastId,version`) are
+ * read into the bitmaps without reading every id, and written as range again.
+ * The memory and the text written are proportional to the amount of ranges
+ * instead of the amount of ids.</p>
+ * <p>
+ * Only canonical essences having every id once are represented as bitmap.
+ * Once created a bitmap is not modified, which allows sharing it.</p>
+ *
+ * @author Patrick-4488
+ * @see IdBitmap
+ */
+public final class EssenceBitmap {
+
+    private final long[] versions;
+    private final IdBitmap[] ids;
+    private final long size;
+    private final long length;
+    private final long setHash;
+    private final boolean ranged;
+
+    private static final byte SPLITTER = ',';
+    private static final byte SEPARATOR = ';';
+    private static final byte RANGE_SEPARATOR = '-';
+
+    private EssenceBitmap(final long[] versions, final IdBitmap[] ids, final long size, final long length, final long setHash, final boolean ranged) {
+        this.versions = versions;
+        this.ids = ids;
+        this.size = size;
+        this.length = length;
+        this.setHash = setHash;
+        this.ranged = ranged;
+    }
+
+    /**
+     * @param essence the essence as text
+     * @return the bitmap of the essence or null when the essence is empty, not
+     * canonical or has an id more then once
+     */
+    public static EssenceBitmap of(final byte[] essence) {
+        EssenceTuples tuples = new EssenceTuples();
+        if (tuples.read(essence)) {
+            return of(tuples);
+        }
+
+        return (tuples.hasRanges() ? ofRanges(essence) : null);
+    }
+
+    /**
+     * @param tuples the tuples parsed from the essence
+     * @return the bitmap of the essence or null when the essence is empty, not
+     * canonical or has an id more then once
+     */
+    public static EssenceBitmap of(final EssenceTuples tuples) {
+        int tupleCount = tuples.size();
+        if (!tuples.isCanonical() || tupleCount == 0 || (!tuples.isSorted() && !hasUniqueIds(tuples))) {
+            return null;
+        }
+
+        long[] distinct = new long[tupleCount];
+        for (int i = 0; i < tupleCount; i++) {
+            distinct[i] = tuples.version(i);
+        }
+        Arrays.sort(distinct);
+        int versionCount = 1;
+        for (int i = 1; i < tupleCount; i++) {
+            if (distinct[i] != distinct[versionCount - 1]) {
+                distinct[versionCount++] = distinct[i];
+            }
+        }
+
+        int[] counts = new int[versionCount];
+        int[] positions = new int[tupleCount];
+        int length = 0;
+        for (int i = 0; i < tupleCount; i++) {
+            positions[i] = Arrays.binarySearch(distinct, 0, versionCount, tuples.version(i));
+            counts[positions[i]]++;
+            length += tuples.end(i) - tuples.start(i) + 1;
+        }
+        long[][] grouped = new long[versionCount][];
+        for (int v = 0; v < versionCount; v++) {
+            grouped[v] = new long[counts[v]];
+            counts[v] = 0;
+        }
+        for (int i = 0; i < tupleCount; i++) {
+            grouped[positions[i]][counts[positions[i]]++] = tuples.id(i);
+        }
+
+        IdBitmap[] bitmaps = new IdBitmap[versionCount];
+        for (int v = 0; v < versionCount; v++) {
+            if (!tuples.isSorted()) {
+                Arrays.sort(grouped[v]);
+            }
+            bitmaps[v] = IdBitmap.of(grouped[v], counts[v]);
+        }
+
+        return new EssenceBitmap(Arrays.copyOf(distinct, versionCount), bitmaps, tupleCount, length, tuples.setHash(), false);
+    }
+
+    /**
+     * Read the tuples and ranges of the essence. The ranges are sorted by
+     * their first id, using a table of the first id of every range to its
+     * last id and version
+     *
+     * @return the bitmap or null when not canonical or ranges overlap
+     */
+    private static EssenceBitmap ofRanges(final byte[] essence) {
+        TupleCursor cursor = new TupleCursor().reset(essence);
+        TupleTable lastIds = new TupleTable().reset(essence.length);
+        TupleTable versionsOfRange = new TupleTable().reset(essence.length);
+        long[] firsts = new long[64];
+        int rangeCount = 0;
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE || state == TupleCursor.RANGE) {
+            if (!lastIds.put(cursor.id(), cursor.lastId())) {
+                return null;
+            }
+            versionsOfRange.put(cursor.id(), cursor.version());
+            if (rangeCount == firsts.length) {
+                firsts = Arrays.copyOf(firsts, rangeCount * 2);
+            }
+            firsts[rangeCount++] = cursor.id();
+        }
+        if (state != TupleCursor.END) {
+            return null;
+        }
+        Arrays.sort(firsts, 0, rangeCount);
+
+        long[] distinct = new long[rangeCount];
+        for (int r = 0; r < rangeCount; r++) {
+            if (r > 0 && lastIds.versionOf(firsts[r - 1]) >= firsts[r]) {
+                return null;
+            }
+            distinct[r] = versionsOfRange.versionOf(firsts[r]);
+        }
+        Arrays.sort(distinct);
+        int versionCount = 1;
+        for (int r = 1; r < rangeCount; r++) {
+            if (distinct[r] != distinct[versionCount - 1]) {
+                distinct[versionCount++] = distinct[r];
+            }
+        }
+
+        long[][] runs = new long[versionCount][];
+        int[] runCounts = new int[versionCount];
+        long size = 0;
+        long length = 0;
+        long setHash = EssenceSetHash.EMPTY;
+        for (int r = 0; r < rangeCount; r++) {
+            long first = firsts[r];
+            long last = lastIds.versionOf(first);
+            long version = versionsOfRange.versionOf(first);
+            int v = Arrays.binarySearch(distinct, 0, versionCount, version);
+            if (runs[v] == null) {
+                runs[v] = new long[8];
+            } else if (runCounts[v] * 2 == runs[v].length) {
+                runs[v] = Arrays.copyOf(runs[v], runs[v].length * 2);
+            }
+            runs[v][runCounts[v] * 2] = first;
+            runs[v][runCounts[v] * 2 + 1] = last;
+            runCounts[v]++;
+
+            size += last - first + 1;
+            length += expandedLength(first, last, version);
+            for (long id = first; id <= last; id++) {
+                setHash = EssenceSetHash.add(setHash, id, version);
+            }
+        }
+
+        IdBitmap[] bitmaps = new IdBitmap[versionCount];
+        for (int v = 0; v < versionCount; v++) {
+            bitmaps[v] = IdBitmap.ofRuns(runs[v], runCounts[v]);
+        }
+
+        return new EssenceBitmap(Arrays.copyOf(distinct, versionCount), bitmaps, size, length, setHash, true);
+    }
+
+    /**
+     * @return the amount of tuples, every id of a range being a tuple
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the length of the essence as text, having every id as tuple
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return true if read from an essence having ranges, the essence is then
+     * written having ranges
+     */
+    public boolean isRanged() {
+        return ranged;
+    }
+
+    /**
+     * @return the hash of the set of tuples of the essence
+     * @see EssenceSetHash
+     */
+    public long setHash() {
+        return setHash;
+    }
+
+    /**
+     * Estimation of the memory used by the bitmaps, to compare with the length
+     * of the essence as text
+     *
+     * @return the amount of bytes
+     */
+    public long sizeInBytes() {
+        long bytes = (long) versions.length * Long.BYTES;
+        for (IdBitmap bitmap : ids) {
+            bytes += bitmap.sizeInBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * The tuples of this essence not in the other essence, being the tuples
+     * of which the id is not in the other essence or has another version.
+     * Subtracts the bitmaps of every version
+     *
+     * @param other the other essence
+     * @return the tuples not in the other essence, an empty bitmap when every
+     * tuple is in the other essence. Having ranges when either essence has
+     */
+    public EssenceBitmap andNot(final EssenceBitmap other) {
+        long[] differingVersions = new long[versions.length];
+        IdBitmap[] differingIds = new IdBitmap[versions.length];
+        int versionCount = 0;
+        long differingSize = 0;
+        long differingLength = 0;
+        long differingSetHash = EssenceSetHash.EMPTY;
+        for (int v = 0; v < versions.length; v++) {
+            int o = Arrays.binarySearch(other.versions, versions[v]);
+            IdBitmap difference = (o >= 0 ? ids[v].andNot(other.ids[o]) : ids[v]);
+            if (difference.cardinality() != 0) {
+                long[] runs = difference.toRuns();
+                for (int r = 0; r < runs.length; r += 2) {
+                    differingLength += expandedLength(runs[r], runs[r + 1], versions[v]);
+                    for (long id = runs[r]; id <= runs[r + 1]; id++) {
+                        differingSetHash = EssenceSetHash.add(differingSetHash, id, versions[v]);
+                    }
+                }
+                differingVersions[versionCount] = versions[v];
+                differingIds[versionCount++] = difference;
+                differingSize += difference.cardinality();
+            }
+        }
+
+        return new EssenceBitmap(Arrays.copyOf(differingVersions, versionCount), Arrays.copyOf(differingIds, versionCount),
+                differingSize, differingLength, differingSetHash, ranged || other.ranged);
+    }
+
+    /**
+     * Write the essence as text, the tuples sorted by id. The ranges of ids of
+     * all versions are merged using a heap of the versions, ordered by their
+     * next range. When this essence has been read from an essence having
+     * ranges, ranges are written as `firstId-lastId,version`, otherwise every
+     * id is written
+     *
+     * @return the essence
+     */
+    public byte[] toEssence() {
+        long[][] versionRuns = new long[versions.length][];
+        int[] next = new int[versions.length];
+        int[] heap = new int[versions.length];
+        long essenceLength = (ranged ? 0 : length);
+        for (int v = 0; v < versions.length; v++) {
+            versionRuns[v] = ids[v].toRuns();
+            heap[v] = v;
+            for (int r = 0; ranged && r < versionRuns[v].length; r += 2) {
+                essenceLength += rangeLength(versionRuns[v][r], versionRuns[v][r + 1], versions[v]);
+            }
+        }
+        int heapSize = versions.length;
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, versionRuns, next);
+        }
+
+        byte[] essence = new byte[Math.toIntExact(essenceLength)];
+        int offset = 0;
+        while (heapSize > 0) {
+            int v = heap[0];
+            long first = versionRuns[v][next[v]];
+            long last = versionRuns[v][next[v] + 1];
+            next[v] += 2;
+            if (ranged) {
+                offset = writeTuple(first, last, versions[v], essence, offset);
+            } else {
+                for (long id = first; id <= last; id++) {
+                    offset = writeTuple(id, id, versions[v], essence, offset);
+                }
+            }
+
+            if (next[v] == versionRuns[v].length) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0, versionRuns, next);
+        }
+
+        return essence;
+    }
+
+    /**
+     * @return the index after the tuple written
+     */
+    private static int writeTuple(final long first, final long last, final long version, final byte[] essence, final int offset) {
+        int i = offset + EssenceTuples.digits(first);
+        EssenceTuples.writeDigits(first, essence, i);
+        if (last != first) {
+            essence[i] = RANGE_SEPARATOR;
+            i += 1 + EssenceTuples.digits(last);
+            EssenceTuples.writeDigits(last, essence, i);
+        }
+        essence[i] = SPLITTER;
+        i += 1 + EssenceTuples.digits(version);
+        EssenceTuples.writeDigits(version, essence, i);
+        essence[i] = SEPARATOR;
+
+        return i + 1;
+    }
+
+    /**
+     * @return the length of the range written as range, or as single tuple
+     */
+    private static int rangeLength(final long first, final long last, final long version) {
+        int idLength = EssenceTuples.digits(first) + (last != first ? 1 + EssenceTuples.digits(last) : 0);
+
+        return idLength + EssenceTuples.digits(version) + 2;
+    }
+
+    /**
+     * @return the length of every id of the range written as tuple, the digits
+     * are counted per amount of digits instead of per id
+     */
+    private static long expandedLength(final long first, final long last, final long version) {
+        long digits = 0;
+        long from = first;
+        long power = 10;
+        while (from <= last) {
+            while (power <= from) {
+                power *= 10;
+            }
+            long to = Math.min(last, power - 1);
+            digits += EssenceTuples.digits(from) * (to - from + 1);
+            from = to + 1;
+        }
+
+        return digits + (last - first + 1) * (EssenceTuples.digits(version) + 2);
+    }
+
+    private static void siftDown(final int[] heap, final int heapSize, final int from, final long[][] versionRuns, final int[] next) {
+        int i = from;
+        while (true) {
+            int smallest = i;
+            int left = i * 2 + 1;
+            int right = left + 1;
+            if (left < heapSize && headOf(heap[left], versionRuns, next) < headOf(heap[smallest], versionRuns, next)) {
+                smallest = left;
+            }
+            if (right < heapSize && headOf(heap[right], versionRuns, next) < headOf(heap[smallest], versionRuns, next)) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    private static long headOf(final int version, final long[][] versionRuns, final int[] next) {
+        return versionRuns[version][next[version]];
+    }
+
+    /**
+     * @return true if no id of the tuples, which are not sorted, occurs more
+     * then once
+     */
+    private static boolean hasUniqueIds(final EssenceTuples tuples) {
+        long[] sorted = new long[tuples.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = tuples.id(i);
+        }
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
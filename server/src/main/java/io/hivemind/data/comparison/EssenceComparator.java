@@ -17,14 +17,19 @@ package io.hivemind.data.comparison;
 
 import io.hivemind.constant.Outcome;
 import io.hivemind.data.Data;
+import io.hivemind.data.ObservedData;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static java.lang.System.Logger.Level.ERROR;
-import java.util.List;
 
 /**
  * Comparator used to determine whether A or B is behind, equal or before
@@ -33,11 +38,51 @@ import java.util.List;
  */
 public class EssenceComparator {
 
+    private final TupleCursor cursor;
+    private final TupleTable scratchA;
+    private final TupleTable scratchB;
+    private final EssenceTuples scratchTuples;
+    private final EssenceTuples scratchTuplesA;
+    private final DifferenceBuffer differenceBuffer;
+    private final DifferenceBuffer mirrorBuffer;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private DifferenceBuffer[] partitionBuffers;
+
     // FUTURE_WORK: move to configuration?
     private static final String SEPARATOR = ";";
+    private static final byte SEPARATOR_BYTE = ';';
+    // More partitions then threads, keeping every thread busy when the differences are not spread evenly
+    private static final int PARTITIONS_PER_THREAD = 4;
 
     private static final System.Logger LOGGER = System.getLogger(EssenceComparator.class.getName());
 
+    public EssenceComparator() {
+        this(null, 0);
+    }
+
+    /**
+     * Comparator merging large sorted essences in parallel. Both essences are
+     * split by id range into partitions, which are merged on the pool and of
+     * which the differences are concatenated in order. The outcome and
+     * difference are the same as when merging sequentially
+     *
+     * @param pool the pool to merge on, null to compare sequentially
+     * @param parallelThreshold the amount of tuples of both essences together
+     * from which they are merged in parallel
+     */
+    public EssenceComparator(final ForkJoinPool pool, final int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        cursor = new TupleCursor();
+        scratchA = new TupleTable();
+        scratchB = new TupleTable();
+        scratchTuples = new EssenceTuples();
+        scratchTuplesA = new EssenceTuples();
+        differenceBuffer = new DifferenceBuffer();
+        mirrorBuffer = new DifferenceBuffer();
+    }
+
     /**
      * Compare data A with data B to determine whether or not not data is ahead,
      * equal or behind and which data
@@ -45,16 +90,31 @@ public class EssenceComparator {
      * Notice: this method will compare any given data but is mend for essences
      * </p>
      * IMPORTANT: Do not make static, comparisons will be often and concurrent.
-     * Having a separate comparator per request will prevent tons of headaches
+     * Having a separate comparator per request will prevent tons of headaches.
+     * A comparator can be reused for following comparisons on the same thread,
+     * which reuses its buffers
      *
      * @param a data A
      * @param b data B
      * @return the comparison result
      */
     public ComparisonResult compare(final Data a, final Data b) {
+        return compare(a, b, null);
+    }
+
+    /**
+     * Compare data A with data B, of which the tuples have been parsed before
+     *
+     * @see #compare(io.hivemind.data.Data, io.hivemind.data.Data)
+     * @param a data A
+     * @param b data B
+     * @param tuplesB the tuples parsed from data B, or null when not parsed
+     * @return the comparison result
+     */
+    public ComparisonResult compare(final Data a, final Data b, final EssenceTuples tuplesB) {
         ComparisonResult result = compareObjects(a, b);
         if (result == null && a != null && b != null) {
-            result = compareData(a, b);
+            result = compareData(a, b, tuplesB);
         }
 
         return result;
@@ -72,18 +132,48 @@ public class EssenceComparator {
         }
     }
 
-    private ComparisonResult compareData(final Data a, final Data b) {
+    private ComparisonResult compareData(final Data a, final Data b, final EssenceTuples parsedB) {
+        EssenceBitmap bitmapA = (a instanceof ObservedData observedData ? observedData.getBitmap() : null);
+        EssenceBitmap bitmapB = (b instanceof ObservedData observedData ? observedData.getBitmap() : null);
+        if (bitmapA != null && bitmapB != null) {
+            return compareBitmaps(bitmapA, bitmapB);
+        }
+
         byte[] dataA = a.getData();
         byte[] dataB = b.getData();
 
         if (dataA == dataB || Arrays.equals(dataA, dataB)) {
             return new ComparisonResult(Outcome.EQUAL, null);
         } else {
+            EssenceIndex indexA = (a instanceof ObservedData observedData ? observedData.getIndex() : null);
+            EssenceTuples tuplesB = parsedB;
+            if (tuplesB == null) {
+                tuplesB = scratchTuples;
+                tuplesB.read(dataB);
+            }
+            if (isSameSet(indexA, tuplesB)) {
+                return new ComparisonResult(Outcome.EQUAL, null);
+            } else if (tuplesB.hasRanges() || (bitmapA != null ? bitmapA.isRanged() : indexA == null && hasRanges(dataA))) {
+                EssenceBitmap rangedA = (bitmapA != null ? bitmapA : EssenceBitmap.of(dataA));
+                EssenceBitmap rangedB = (bitmapB != null ? bitmapB : EssenceBitmap.of(dataB));
+                if (rangedA != null && rangedB != null) {
+                    return compareBitmaps(rangedA, rangedB);
+                }
+            }
+            ComparisonResult result = compareTuples(dataA, dataB, indexA, tuplesB);
+            if (result != null) {
+                return result;
+            }
+
             try ( ByteArrayOutputStream os = new ByteArrayOutputStream()) {
                 try ( ByteArrayOutputStream mirror = new ByteArrayOutputStream()) {
                     Outcome outcome = findDifferences(dataA, dataB, os, mirror);
                     if (dataA.length == dataB.length) {
-                        outcome = determineLatest(outcome, os, mirror);
+                        byte[] difference = os.toByteArray();
+                        byte[] mirrored = mirror.toByteArray();
+                        outcome = determineLatest(outcome, difference, difference.length, mirrored, mirrored.length);
+
+                        return new ComparisonResult(outcome, (Outcome.AHEAD == outcome ? mirrored : difference));
                     }
 
                     return new ComparisonResult(outcome, os.toByteArray());
@@ -96,6 +186,264 @@ public class EssenceComparator {
         return null;
     }
 
+    /**
+     * Compares the tuples as primitives, parsed directly from the bytes. The
+     * tables and buffers of this comparator are reused so no intermediate
+     * objects are created, only the resulting difference is copied out of the
+     * buffer. The outcome and difference are the same as finding the
+     * differences on the tuples as text, except for essences having the same
+     * tuples in another order which are equal.
+     * <p>
+     * When the ids of both A and B are sorted, the tuples are merged without
+     * using any table. Otherwise, when A has been compiled before (being
+     * latest) its index is used, or A is read into a table first. Tuples of A
+     * are only read again when the difference of A is required (A being ahead
+     * or both essences having the same length)</p>
+     *
+     * @return the result or null when A or B is not canonical
+     */
+    private ComparisonResult compareTuples(final byte[] dataA, final byte[] dataB, final EssenceIndex indexA, final EssenceTuples tuplesB) {
+        if (!tuplesB.isCanonical()) {
+            return null;
+        } else if (tuplesB.isSorted()) {
+            EssenceTuples tuplesA = sortedTuplesOf(dataA, indexA);
+            if (tuplesA != null) {
+                return mergeTuples(dataA, dataB, tuplesA, tuplesB);
+            }
+        }
+
+        TupleTable tableA;
+        int sizeA;
+        if (indexA != null) {
+            tableA = indexA.table();
+            sizeA = indexA.size();
+        } else {
+            tableA = scratchA.reset(dataA.length);
+            sizeA = EssenceIndex.fill(tableA, cursor.reset(dataA));
+            if (sizeA < 0) {
+                return null;
+            }
+        }
+
+        TupleTable tableB = scratchB.reset(dataB.length);
+        differenceBuffer.reset();
+        int sizeB = tuplesB.size();
+        int matched = 0;
+        for (int i = 0; i < sizeB; i++) {
+            long id = tuplesB.id(i);
+            long version = tuplesB.version(i);
+            if (!tableB.put(id, version)) {
+                return null;
+            }
+
+            if ((tableA != null ? tableA.versionOf(id) : indexA.versionOf(id)) == version) {
+                matched++;
+            } else {
+                differenceBuffer.writeTuple(dataB, tuplesB.start(i), tuplesB.end(i), SEPARATOR_BYTE);
+            }
+        }
+
+        int countA = sizeA - matched;
+        int countB = sizeB - matched;
+        if (countA == 0 && countB == 0) {
+            return new ComparisonResult(Outcome.EQUAL, null);
+        } else if (countA > countB) {
+            differenceBuffer.reset();
+            writeOnlyIn(dataA, tableB, differenceBuffer);
+
+            return new ComparisonResult(Outcome.AHEAD, differenceBuffer.toByteArray());
+        } else if (dataA.length == dataB.length) {
+            mirrorBuffer.reset();
+            writeOnlyIn(dataA, tableB, mirrorBuffer);
+            Outcome outcome = determineLatest(Outcome.BEHIND, differenceBuffer.array(), differenceBuffer.length(), mirrorBuffer.array(), mirrorBuffer.length());
+
+            return new ComparisonResult(outcome, (Outcome.AHEAD == outcome ? mirrorBuffer : differenceBuffer).toByteArray());
+        }
+
+        return new ComparisonResult(Outcome.BEHIND, differenceBuffer.toByteArray());
+    }
+
+    /**
+     * Compares essences kept as bitmap, without writing the essences as text.
+     * The tuples only in B and only in A are determined by subtracting the
+     * bitmaps of every version, only the differences are written as text. The
+     * outcome and difference are the same as when merging the tuples of the
+     * essences sorted by id. When either essence has ranges, the difference is
+     * written having ranges
+     *
+     * @see EssenceBitmap
+     */
+    private ComparisonResult compareBitmaps(final EssenceBitmap bitmapA, final EssenceBitmap bitmapB) {
+        if (bitmapA == bitmapB || (bitmapA.size() == bitmapB.size() && bitmapA.setHash() == bitmapB.setHash())) {
+            return new ComparisonResult(Outcome.EQUAL, null);
+        }
+
+        EssenceBitmap onlyInA = bitmapA.andNot(bitmapB);
+        EssenceBitmap onlyInB = bitmapB.andNot(bitmapA);
+        long countA = onlyInA.size();
+        long countB = onlyInB.size();
+        if (countA == 0 && countB == 0) {
+            return new ComparisonResult(Outcome.EQUAL, null);
+        } else if (countA > countB) {
+            return new ComparisonResult(Outcome.AHEAD, onlyInA.toEssence());
+        }
+
+        byte[] difference = onlyInB.toEssence();
+        if (bitmapA.length() == bitmapB.length()) {
+            byte[] mirror = onlyInA.toEssence();
+            Outcome outcome = determineLatest(Outcome.BEHIND, difference, difference.length, mirror, mirror.length);
+
+            return new ComparisonResult(outcome, (Outcome.AHEAD == outcome ? mirror : difference));
+        }
+
+        return new ComparisonResult(Outcome.BEHIND, difference);
+    }
+
+    /**
+     * Essences having the same tuples in another order are equal. When A has
+     * been compiled, the hashes of the sets of tuples are compared without
+     * reading any tuple
+     *
+     * @see EssenceSetHash
+     */
+    private boolean isSameSet(final EssenceIndex indexA, final EssenceTuples tuplesB) {
+        return indexA != null && tuplesB.isCanonical()
+                && indexA.size() == tuplesB.size() && indexA.setHash() == tuplesB.setHash();
+    }
+
+    /**
+     * Essences having ranges of ids are compared as bitmap, the ranges are not
+     * expanded
+     */
+    private boolean hasRanges(final byte[] dataA) {
+        return !scratchTuplesA.read(dataA) && scratchTuplesA.hasRanges();
+    }
+
+    /**
+     * @return the tuples of A when canonical and sorted, otherwise null
+     */
+    private EssenceTuples sortedTuplesOf(final byte[] dataA, final EssenceIndex indexA) {
+        if (indexA != null) {
+            return indexA.tuples();
+        } else if (scratchTuplesA.read(dataA) && scratchTuplesA.isSorted()) {
+            return scratchTuplesA;
+        }
+
+        return null;
+    }
+
+    /**
+     * Merges the sorted tuples of A and B in a single pass, like merging two
+     * sorted lists. Tuples only in B are written to the difference and tuples
+     * only in A to the mirror, both in the order of the essence. A tuple of
+     * which the version changed is in both. The outcome is determined as when
+     * comparing using tables
+     * <p>
+     * Essences having at least the parallel threshold of tuples are split by id
+     * range into partitions, merged in parallel. Every partition has its own
+     * buffers, which are concatenated in the order of the ids</p>
+     * <p>
+     * FUTURE_WORK: essences that are not sorted are compared sequentially,
+     * splitting those by id range requires a table per partition</p>
+     */
+    private ComparisonResult mergeTuples(final byte[] dataA, final byte[] dataB, final EssenceTuples tuplesA, final EssenceTuples tuplesB) {
+        int partitions = partitionsOf(tuplesA.size() + tuplesB.size());
+        differenceBuffer.reset();
+        mirrorBuffer.reset();
+        int countA = 0;
+        int countB = 0;
+        if (partitions > 1) {
+            Partition[] merges = split(dataA, dataB, tuplesA, tuplesB, partitions);
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(merges)));
+            for (Partition merge : merges) {
+                differenceBuffer.write(merge.difference);
+                mirrorBuffer.write(merge.mirror);
+                countA += merge.countA;
+                countB += merge.countB;
+            }
+        } else {
+            Partition merge = new Partition(dataA, dataB, tuplesA, tuplesB, differenceBuffer, mirrorBuffer);
+            merge.merge(0, tuplesA.size(), 0, tuplesB.size());
+            countA = merge.countA;
+            countB = merge.countB;
+        }
+
+        if (countA == 0 && countB == 0) {
+            return new ComparisonResult(Outcome.EQUAL, null);
+        } else if (countA > countB) {
+            return new ComparisonResult(Outcome.AHEAD, mirrorBuffer.toByteArray());
+        } else if (dataA.length == dataB.length) {
+            Outcome outcome = determineLatest(Outcome.BEHIND, differenceBuffer.array(), differenceBuffer.length(), mirrorBuffer.array(), mirrorBuffer.length());
+
+            return new ComparisonResult(outcome, (Outcome.AHEAD == outcome ? mirrorBuffer : differenceBuffer).toByteArray());
+        }
+
+        return new ComparisonResult(Outcome.BEHIND, differenceBuffer.toByteArray());
+    }
+
+    /**
+     * @return the amount of partitions to merge the tuples in, 1 to merge
+     * sequentially
+     */
+    private int partitionsOf(final int tuples) {
+        if (pool == null || pool.getParallelism() < 2 || tuples < parallelThreshold) {
+            return 1;
+        }
+
+        return Math.min(pool.getParallelism() * PARTITIONS_PER_THREAD, tuples);
+    }
+
+    /**
+     * Split the tuples of A and B by id range, at the ids of the essence having
+     * the most tuples. Partitions do not share an id, the buffers of the
+     * partitions are reused for every comparison
+     */
+    private Partition[] split(final byte[] dataA, final byte[] dataB, final EssenceTuples tuplesA, final EssenceTuples tuplesB, final int partitions) {
+        if (partitionBuffers == null || partitionBuffers.length < partitions * 2) {
+            partitionBuffers = new DifferenceBuffer[partitions * 2];
+            for (int i = 0; i < partitionBuffers.length; i++) {
+                partitionBuffers[i] = new DifferenceBuffer();
+            }
+        }
+
+        EssenceTuples largest = (tuplesA.size() >= tuplesB.size() ? tuplesA : tuplesB);
+        Partition[] merges = new Partition[partitions];
+        int fromA = 0;
+        int fromB = 0;
+        for (int p = 0; p < partitions; p++) {
+            int toA = tuplesA.size();
+            int toB = tuplesB.size();
+            if (p < partitions - 1) {
+                long splitId = largest.id((int) ((long) largest.size() * (p + 1) / partitions));
+                toA = Math.max(fromA, tuplesA.positionOf(splitId));
+                toB = Math.max(fromB, tuplesB.positionOf(splitId));
+            }
+
+            DifferenceBuffer difference = partitionBuffers[p * 2];
+            DifferenceBuffer mirror = partitionBuffers[p * 2 + 1];
+            difference.reset();
+            mirror.reset();
+            merges[p] = new Partition(dataA, dataB, tuplesA, tuplesB, difference, mirror).range(fromA, toA, fromB, toB);
+            fromA = toA;
+            fromB = toB;
+        }
+
+        return merges;
+    }
+
+    /**
+     * Write the tuples of the essence which are not in the other table, in the
+     * order of the essence
+     */
+    private void writeOnlyIn(final byte[] essence, final TupleTable other, final DifferenceBuffer target) {
+        cursor.reset(essence);
+        while (cursor.next() == TupleCursor.TUPLE) {
+            if (other.versionOf(cursor.id()) != cursor.version()) {
+                target.writeTuple(essence, cursor.tupleStart(), cursor.tupleEnd(), SEPARATOR_BYTE);
+            }
+        }
+    }
+
     /**
      * This will find all the difference reading forward from index 0 to index
      * of longest data (a,b). When a first difference has been found, will write
@@ -172,24 +520,21 @@ public class EssenceComparator {
      * Given A -> 11;23;33;41; and B -> 11;21;31;41; -> the difference will be
      * -> 21;31 (B) and mirror 23;33 (A) since when equal in length it is at
      * first assumed that A is behind. After calculation is found that actually
-     * A is ahead and the outcome is changed accordingly</p>
+     * A is ahead and the outcome is changed accordingly, the mirror being the
+     * resulting difference</p>
      */
-    private Outcome determineLatest(final Outcome temporaryOutcome, final ByteArrayOutputStream os, final ByteArrayOutputStream mirror) throws IOException {
+    private Outcome determineLatest(final Outcome temporaryOutcome, final byte[] diffResult, final int diffLength, final byte[] mirrorResult, final int mirrorLength) {
         Outcome outcome = temporaryOutcome;
-        byte[] diffResult = os.toByteArray();
-        byte[] mirrorResult = mirror.toByteArray();
         int totalD = 0;
         int totalM = 0;
-        for (int i = 0; i < diffResult.length; i++) {
+        for (int i = 0; i < diffLength; i++) {
             totalD += diffResult[i];
-            totalM += mirrorResult[i];
+            totalM += mirrorResult[Objects.checkIndex(i, mirrorLength)];
 
             if (totalD > totalM) {
                 outcome = Outcome.BEHIND;
             } else if (totalD < totalM) {
                 outcome = Outcome.AHEAD;
-                os.reset();
-                os.write(mirror.toByteArray());
             }
 
             if (totalD != totalM) {
@@ -199,4 +544,83 @@ public class EssenceComparator {
 
         return outcome;
     }
+
+    /**
+     * Merge of the tuples of A and B in a range of positions, writing to its
+     * own buffers
+     */
+    private static final class Partition extends RecursiveAction {
+
+        private final transient byte[] dataA;
+        private final transient byte[] dataB;
+        private final transient EssenceTuples tuplesA;
+        private final transient EssenceTuples tuplesB;
+        private final transient DifferenceBuffer difference;
+        private final transient DifferenceBuffer mirror;
+        private int fromA;
+        private int toA;
+        private int fromB;
+        private int toB;
+        private int countA;
+        private int countB;
+
+        private static final long serialVersionUID = 1L;
+
+        private Partition(final byte[] dataA, final byte[] dataB, final EssenceTuples tuplesA, final EssenceTuples tuplesB,
+                final DifferenceBuffer difference, final DifferenceBuffer mirror) {
+            this.dataA = dataA;
+            this.dataB = dataB;
+            this.tuplesA = tuplesA;
+            this.tuplesB = tuplesB;
+            this.difference = difference;
+            this.mirror = mirror;
+        }
+
+        private Partition range(final int fromA, final int toA, final int fromB, final int toB) {
+            this.fromA = fromA;
+            this.toA = toA;
+            this.fromB = fromB;
+            this.toB = toB;
+
+            return this;
+        }
+
+        @Override
+        protected void compute() {
+            merge(fromA, toA, fromB, toB);
+        }
+
+        private void merge(final int startA, final int endA, final int startB, final int endB) {
+            int a = startA;
+            int b = startB;
+            while (a < endA && b < endB) {
+                long idA = tuplesA.id(a);
+                long idB = tuplesB.id(b);
+                if (idA < idB) {
+                    mirror.writeTuple(dataA, tuplesA.start(a), tuplesA.end(a), SEPARATOR_BYTE);
+                    countA++;
+                    a++;
+                } else if (idA > idB) {
+                    difference.writeTuple(dataB, tuplesB.start(b), tuplesB.end(b), SEPARATOR_BYTE);
+                    countB++;
+                    b++;
+                } else {
+                    if (tuplesA.version(a) != tuplesB.version(b)) {
+                        mirror.writeTuple(dataA, tuplesA.start(a), tuplesA.end(a), SEPARATOR_BYTE);
+                        difference.writeTuple(dataB, tuplesB.start(b), tuplesB.end(b), SEPARATOR_BYTE);
+                        countA++;
+                        countB++;
+                    }
+                    a++;
+                    b++;
+                }
+            }
+            for (; a < endA; a++, countA++) {
+                mirror.writeTuple(dataA, tuplesA.start(a), tuplesA.end(a), SEPARATOR_BYTE);
+            }
+            for (; b < endB; b++, countB++) {
+                difference.writeTuple(dataB, tuplesB.start(b), tuplesB.end(b), SEPARATOR_BYTE);
+            }
+        }
+    }
 }
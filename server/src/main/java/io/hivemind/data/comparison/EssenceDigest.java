@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Digest of the content of an essence, the same only for the same bytes.
+ * Unlike the fingerprint, which is the same for every order of the tuples, the
+ * digest identifies the essence as received, allowing results determined from
+ * its bytes to be shared between essences having the same digest.
+ * <p>
+ * The digest is the SHA-256 of the essence, written as 64 hexadecimal
+ * characters.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceFingerprint
+ */
+public final class EssenceDigest {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String EMPTY = "";
+    // Message digests are not thread safe, one per thread avoids looking it up for every essence
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(EssenceDigest::create);
+
+    private EssenceDigest() {
+    }
+
+    /**
+     * @param essence the essence
+     * @return the digest of the essence, empty when there is no essence
+     */
+    public static String of(final byte[] essence) {
+        if (essence == null || essence.length == 0) {
+            return EMPTY;
+        }
+
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+
+        return HexFormat.of().formatHex(digest.digest(essence));
+    }
+
+    private static MessageDigest create() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
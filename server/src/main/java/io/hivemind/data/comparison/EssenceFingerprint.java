@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+/**
+ * Fingerprint of an essence, allowing a synchronizer to send the fingerprint
+ * of its essence instead of the essence. When the fingerprint matches the
+ * essence known to the hive, comparing is not required.
+ * <p>
+ * The fingerprint is the hash of the set of tuples of the essence, written as
+ * 16 hexadecimal characters. Essences having the same tuples in another order
+ * or in binary have the same fingerprint. Only canonical essences have a
+ * fingerprint.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceFingerprint {
+
+    private static final String PADDING = "0000000000000000";
+
+    private EssenceFingerprint() {
+    }
+
+    /**
+     * @param essence the essence as text
+     * @return the fingerprint of the essence or null when the essence is not
+     * canonical
+     */
+    public static String of(final byte[] essence) {
+        EssenceTuples tuples = new EssenceTuples();
+
+        return (tuples.read(essence) ? of(tuples.setHash()) : null);
+    }
+
+    /**
+     * @param setHash the hash of the set of tuples of the essence
+     * @return the fingerprint
+     */
+    public static String of(final long setHash) {
+        String hex = Long.toHexString(setHash);
+        return PADDING.substring(hex.length()) + hex;
+    }
+
+    /**
+     * @param received the fingerprint received from a synchronizer
+     * @param known the fingerprint of an essence known to the hive
+     * @return true if both fingerprints are the same, ignoring case
+     */
+    public static boolean matches(final String received, final String known) {
+        return received != null && known != null && received.trim().equalsIgnoreCase(known);
+    }
+}
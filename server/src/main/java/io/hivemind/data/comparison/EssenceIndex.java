@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+/**
+ * Compact index of an essence, an open addressing table mapping the id of
+ * every tuple (id,version) to the version.
+ * <p>
+ * The index is compiled once, when the essence becomes latest. The same index
+ * is used for comparing all essences received after, instead of rebuilding
+ * the latest essence for every comparison. Once compiled an index is not
+ * modified, which allows concurrent comparisons against it.</p>
+ * <p>
+ * Only canonical essences are indexed, meaning every tuple is `id,version`
+ * with both being plain numbers without leading zeros, separated by `;` and
+ * every id occurring once. For any other essence the comparator falls back to
+ * comparing the tuples as text.</p>
+ * <p>
+ * When the ids of the essence are sorted no table is compiled, the index keeps
+ * the tuples in the order of the essence. The comparator merges sorted
+ * essences tuple by tuple, and looking up an id is a binary search. Keeping
+ * the tuples takes a fraction of the memory of a table sized for the
+ * essence.</p>
+ *
+ * @author Patrick-4488
+ */
+public final class EssenceIndex {
+
+    private final TupleTable table;
+    private final EssenceTuples tuples;
+    private final int size;
+    private final long setHash;
+
+    private EssenceIndex(final TupleTable table, final EssenceTuples tuples, final int size, final long setHash) {
+        this.table = table;
+        this.tuples = tuples;
+        this.size = size;
+        this.setHash = setHash;
+    }
+
+    /**
+     * Compile an essence into an index
+     *
+     * @param essence the essence
+     * @return the index or null when the essence is empty or not canonical
+     */
+    public static EssenceIndex compile(final byte[] essence) {
+        if (essence == null || essence.length == 0) {
+            return null;
+        }
+
+        EssenceTuples tuples = new EssenceTuples();
+        if (!tuples.read(essence)) {
+            return null;
+        } else if (tuples.isSorted()) {
+            tuples.trim();
+
+            return new EssenceIndex(null, tuples, tuples.size(), tuples.setHash());
+        }
+
+        TupleTable table = new TupleTable().reset(essence.length);
+        for (int i = 0; i < tuples.size(); i++) {
+            if (!table.put(tuples.id(i), tuples.version(i))) {
+                return null;
+            }
+        }
+
+        return new EssenceIndex(table, null, tuples.size(), tuples.setHash());
+    }
+
+    /**
+     * @return the amount of tuples in the essence
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id the id
+     * @return the version of the id, or -1 when the essence does not contain
+     * the id
+     */
+    public long versionOf(final long id) {
+        return (table != null ? table.versionOf(id) : tuples.versionOf(id));
+    }
+
+    /**
+     * @return the hash of the set of tuples of the essence
+     * @see EssenceSetHash
+     */
+    public long setHash() {
+        return setHash;
+    }
+
+    /**
+     * @return true if the ids of the essence are sorted
+     */
+    public boolean isSorted() {
+        return table == null;
+    }
+
+    /**
+     * @return the table, or null when sorted
+     */
+    TupleTable table() {
+        return table;
+    }
+
+    /**
+     * @return the tuples of the essence, or null when not sorted
+     */
+    EssenceTuples tuples() {
+        return tuples;
+    }
+
+    /**
+     * Put all tuples read by the cursor in the table
+     *
+     * @return the amount of tuples or -1 when not canonical or an id occurs
+     * more then once
+     */
+    static int fill(final TupleTable table, final TupleCursor cursor) {
+        int size = 0;
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            if (!table.put(cursor.id(), cursor.version())) {
+                return -1;
+            }
+            size++;
+        }
+
+        return (state == TupleCursor.END ? size : -1);
+    }
+}
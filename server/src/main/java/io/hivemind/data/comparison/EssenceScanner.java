@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scans essences eight bytes at a time, reading the bytes as a long and
+ * classifying all eight bytes with a few arithmetic operations (SWAR, SIMD
+ * within a register). The last bytes of an essence, not filling a long, are
+ * scanned byte by byte.
+ * <p>
+ * FUTURE_WORK: finding the separators of tuples per long, into a bitmask, has
+ * been measured to be slower than the cursor reading digit by digit. Numbers
+ * in essences are short, the cost per tuple outweighs the cost per byte. When
+ * the Vector API is no longer incubating this is worth measuring again.</p>
+ * <p>
+ * Scanning per long can be disabled by starting with
+ * `-Dhivemind.essence.scanner=scalar`, all scans will then be byte by byte.
+ * </p>
+ *
+ * @author Patrick-4488
+ */
+final class EssenceScanner {
+
+    static final boolean SWAR = !"scalar".equalsIgnoreCase(System.getProperty("hivemind.essence.scanner"));
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long COMMAS = ',' * ONES;
+    private static final long SEMICOLONS = ';' * ONES;
+    private static final long DASHES = '-' * ONES;
+
+    private EssenceScanner() {
+    }
+
+    /**
+     * @param essence the essence
+     * @param from the index to start from (inclusive)
+     * @param to the index to end at (exclusive)
+     * @return the index of the first byte not being a digit, `,`, `;` or `-`,
+     * or -1 when all bytes are
+     */
+    static int firstInvalid(final byte[] essence, final int from, final int to) {
+        int i = from;
+        if (SWAR) {
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                long word = (long) LONGS.get(essence, i);
+                long valid = digits(word) | equalBytes(word ^ COMMAS) | equalBytes(word ^ SEMICOLONS) | equalBytes(word ^ DASHES);
+                if (valid != HIGH_BITS) {
+                    return i + firstHighBit(~valid & HIGH_BITS);
+                }
+            }
+        }
+        for (; i < to; i++) {
+            byte value = essence[i];
+            if (!isDigit(value) && value != ',' && value != ';' && value != '-') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    static boolean isDigit(final byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+    /**
+     * @return high bit set for every byte being a digit
+     */
+    private static long digits(final long word) {
+        long low = word & LOW_BITS;
+        // High bit set when above `9`, respectively below `0`, without carrying over to the next byte
+        long aboveNine = low + 0x4646464646464646L;
+        long belowZero = 0xAFAFAFAFAFAFAFAFL - low;
+
+        return ~(aboveNine | belowZero | word) & HIGH_BITS;
+    }
+
+    /**
+     * @return high bit set for every byte being zero
+     */
+    private static long equalBytes(final long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
+    private static int firstHighBit(final long bits) {
+        return Long.numberOfTrailingZeros(bits) >>> 3;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+/**
+ * Hash of the set of tuples (id,version) of an essence, the same for every
+ * order of the tuples. The hash of the set is the sum of the hashes of its
+ * tuples, as such it is updated when a tuple is added or removed without
+ * reading the other tuples.
+ * <p>
+ * Synchronizers determine the same hash, every part of the Hivemind has to
+ * hash tuples the same way.</p>
+ *
+ * @author Patrick-4488
+ */
+public final class EssenceSetHash {
+
+    /**
+     * The hash of the empty set
+     */
+    public static final long EMPTY = 0;
+
+    private EssenceSetHash() {
+    }
+
+    /**
+     * @param hash the hash of the set
+     * @param id the id of the tuple to add
+     * @param version the version of the tuple to add
+     * @return the hash of the set including the tuple
+     */
+    public static long add(final long hash, final long id, final long version) {
+        return hash + tuple(id, version);
+    }
+
+    /**
+     * @param hash the hash of the set
+     * @param id the id of the tuple to remove
+     * @param version the version of the tuple to remove
+     * @return the hash of the set without the tuple
+     */
+    public static long remove(final long hash, final long id, final long version) {
+        return hash - tuple(id, version);
+    }
+
+    /**
+     * @return the hash of a single tuple
+     */
+    static long tuple(final long id, final long version) {
+        return mix(mix(id) + version);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading every bit of the value over the hash
+     */
+    static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sketch of the set of tuples of an essence, being an invertible Bloom lookup
+ * table of a fixed amount of cells. Every tuple is added to one cell in each of
+ * the three parts of the sketch, a cell has the amount of tuples added and the
+ * xor of their ids, versions and hashes.
+ * <p>
+ * A synchronizer sends the sketch of its essence instead of the essence. The
+ * sketch is subtracted from the sketch of latest, leaving only the tuples that
+ * differ. Those are decoded by taking tuples from cells having a single tuple
+ * left, until all cells are empty. Decoding fails when more tuples differ then
+ * the sketch can hold, the essence is requested instead. What is sent is fixed
+ * in size, it decodes differences up to about two thirds of the amount of
+ * cells.</p>
+ * <p>
+ * Synchronizers create the same sketch, every part of the Hivemind has to hash
+ * and divide the tuples the same way.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceSketch {
+
+    private final int[] counts;
+    private final long[] ids;
+    private final long[] versions;
+    private final long[] hashes;
+
+    /**
+     * The length in bytes of a cell, the count as int followed by the ids,
+     * versions and hashes as long
+     */
+    public static final int CELL_LENGTH = Integer.BYTES + 3 * Long.BYTES;
+    /**
+     * The most cells a sketch can have
+     */
+    public static final int MAX_CELLS = 196_608;
+    private static final int PARTS = 3;
+    // The smallest tuple is `0,0;`
+    private static final int MIN_TUPLE_LENGTH = 4;
+    // Rotating the hash of the tuple by a different amount per part selects independent cells
+    private static final int PART_ROTATION = 21;
+    private static final String SPLITTER = ",";
+    private static final String SEPARATOR = ";";
+
+    private EssenceSketch(final int cells) {
+        counts = new int[cells];
+        ids = new long[cells];
+        versions = new long[cells];
+        hashes = new long[cells];
+    }
+
+    /**
+     * @param essence the essence as text
+     * @param cells the amount of cells, a multiple of three
+     * @return the sketch or null when the essence is not canonical or the
+     * amount of cells is not valid
+     */
+    public static EssenceSketch of(final byte[] essence, final int cells) {
+        if (!isValid(cells)) {
+            return null;
+        }
+
+        EssenceSketch sketch = new EssenceSketch(cells);
+        TupleCursor cursor = new TupleCursor().reset(essence);
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            sketch.toggle(cursor.id(), cursor.version(), 1);
+        }
+
+        return (state == TupleCursor.END ? sketch : null);
+    }
+
+    /**
+     * @return the amount of cells
+     */
+    public int cells() {
+        return counts.length;
+    }
+
+    /**
+     * Reconcile the essence with the sketch of the essence of a synchronizer,
+     * determining the essence of the synchronizer from the tuples that differ
+     *
+     * @param essence the essence the sketch is of, latest
+     * @param sketch the sketch of the essence
+     * @param received the sketch received from the synchronizer, having the
+     * same amount of cells
+     * @return the essence of the synchronizer as text, or null when the sketch
+     * received is not valid or can not be decoded
+     */
+    public static byte[] reconcile(final byte[] essence, final EssenceSketch sketch, final byte[] received) {
+        if (essence == null || sketch == null || received == null || received.length != sketch.cells() * CELL_LENGTH) {
+            return null;
+        }
+
+        EssenceSketch difference = sketch.copy();
+        ByteBuffer buffer = ByteBuffer.wrap(received);
+        for (int cell = 0; cell < difference.cells(); cell++) {
+            difference.counts[cell] -= buffer.getInt();
+            difference.ids[cell] ^= buffer.getLong();
+            difference.versions[cell] ^= buffer.getLong();
+            difference.hashes[cell] ^= buffer.getLong();
+        }
+
+        // Positive counts are tuples only in the essence, negative counts only in the essence of the synchronizer
+        // A sketch decodes less tuples then it has cells, the table is sized for at most that many
+        TupleTable removed = new TupleTable().reset(difference.cells() * MIN_TUPLE_LENGTH);
+        StringBuilder added = new StringBuilder();
+        int removedCount = 0;
+        int decodedCount = 0;
+        boolean decoded;
+        do {
+            decoded = false;
+            for (int cell = 0; cell < difference.cells(); cell++) {
+                if (difference.isPure(cell)) {
+                    long id = difference.ids[cell];
+                    long version = difference.versions[cell];
+                    int count = difference.counts[cell];
+                    if (id < 0 || version < 0 || ++decodedCount > difference.cells()) {
+                        return null;
+                    } else if (count > 0) {
+                        if (!removed.put(id, version)) {
+                            return null;
+                        }
+                        removedCount++;
+                    } else {
+                        added.append(id).append(SPLITTER).append(version).append(SEPARATOR);
+                    }
+                    difference.toggle(id, version, -count);
+                    decoded = true;
+                }
+            }
+        } while (decoded);
+
+        return (difference.isEmpty() ? complete(essence, removed, removedCount, added.toString()) : null);
+    }
+
+    /**
+     * @return the sketch as sent by synchronizers
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(cells() * CELL_LENGTH);
+        for (int cell = 0; cell < cells(); cell++) {
+            buffer.putInt(counts[cell]).putLong(ids[cell]).putLong(versions[cell]).putLong(hashes[cell]);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * @param cells the amount of cells
+     * @return true if a sketch can have the amount of cells
+     */
+    public static boolean isValid(final int cells) {
+        return cells > 0 && cells <= MAX_CELLS && cells % PARTS == 0;
+    }
+
+    private static byte[] complete(final byte[] essence, final TupleTable removed, final int removedCount, final String added) {
+        byte[] addedTuples = added.getBytes(StandardCharsets.US_ASCII);
+        byte[] completed = new byte[essence.length + 1 + addedTuples.length];
+        int length = 0;
+        int found = 0;
+        TupleCursor cursor = new TupleCursor().reset(essence);
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            if (removed.versionOf(cursor.id()) == cursor.version()) {
+                found++;
+            } else {
+                length = cursor.copyTo(completed, length);
+            }
+        }
+        if (state != TupleCursor.END || found != removedCount) {
+            return null;
+        }
+
+        System.arraycopy(addedTuples, 0, completed, length, addedTuples.length);
+
+        return Arrays.copyOf(completed, length + addedTuples.length);
+    }
+
+    private EssenceSketch copy() {
+        EssenceSketch copy = new EssenceSketch(cells());
+        System.arraycopy(counts, 0, copy.counts, 0, cells());
+        System.arraycopy(ids, 0, copy.ids, 0, cells());
+        System.arraycopy(versions, 0, copy.versions, 0, cells());
+        System.arraycopy(hashes, 0, copy.hashes, 0, cells());
+
+        return copy;
+    }
+
+    private void toggle(final long id, final long version, final int count) {
+        long hash = EssenceSetHash.tuple(id, version);
+        int partCells = cells() / PARTS;
+        for (int part = 0; part < PARTS; part++) {
+            int cell = part * partCells + (int) Long.remainderUnsigned(Long.rotateLeft(hash, part * PART_ROTATION), partCells);
+            counts[cell] += count;
+            ids[cell] ^= id;
+            versions[cell] ^= version;
+            hashes[cell] ^= hash;
+        }
+    }
+
+    /**
+     * A cell having a single tuple left, of which the hash matches
+     */
+    private boolean isPure(final int cell) {
+        return (counts[cell] == 1 || counts[cell] == -1) && hashes[cell] == EssenceSetHash.tuple(ids[cell], versions[cell]);
+    }
+
+    private boolean isEmpty() {
+        for (int cell = 0; cell < cells(); cell++) {
+            if (counts[cell] != 0 || ids[cell] != 0 || versions[cell] != 0 || hashes[cell] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Summary of an essence as a tree of hashes, allowing a synchronizer to find
+ * the part of its essence that differs from latest without sending the
+ * essence. The tuples are divided over the leaves of the tree by the hash of
+ * their id, every node has the set hash of the tuples below it.
+ * <p>
+ * A synchronizer sends the hashes of the nodes of a level, the hive responds
+ * with the nodes that differ from latest. The synchronizer descends into the
+ * children of those nodes only and, having reached the leaves, sends the
+ * tuples of the leaves that differ. The hive completes the essence with the
+ * tuples of latest in the other leaves. What is sent scales with the size of
+ * the change instead of the size of the essence.</p>
+ * <p>
+ * Synchronizers divide the tuples the same way, every part of the Hivemind has
+ * to use the same depth and the same amount of children per node.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceSummary {
+
+    private final long[][] levels;
+
+    /**
+     * The amount of levels below the root, the last level being the leaves
+     */
+    public static final int DEPTH = 4;
+    // Every node has 16 children, selected by the next 4 bits of the hash of the id
+    private static final int CHILD_BITS = 4;
+    private static final String NODE_SEPARATOR = ";";
+    private static final String HASH_SEPARATOR = ",";
+    private static final String LEAF_SEPARATOR = ",";
+    private static final int HEX_RADIX = 16;
+
+    private EssenceSummary(final long[][] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * @param essence the essence as text
+     * @return the summary or null when the essence is not canonical
+     */
+    public static EssenceSummary of(final byte[] essence) {
+        long[][] levels = new long[DEPTH][];
+        for (int level = 1; level <= DEPTH; level++) {
+            levels[level - 1] = new long[nodesOf(level)];
+        }
+
+        long[] leaves = levels[DEPTH - 1];
+        TupleCursor cursor = new TupleCursor().reset(essence);
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            int leaf = nodeOf(cursor.id(), DEPTH);
+            leaves[leaf] = EssenceSetHash.add(leaves[leaf], cursor.id(), cursor.version());
+        }
+        if (state != TupleCursor.END) {
+            return null;
+        }
+
+        for (int level = DEPTH - 1; level > 0; level--) {
+            long[] children = levels[level];
+            long[] nodes = levels[level - 1];
+            for (int child = 0; child < children.length; child++) {
+                nodes[child >>> CHILD_BITS] += children[child];
+            }
+        }
+
+        return new EssenceSummary(levels);
+    }
+
+    /**
+     * Compare the nodes of a level of the summary of a synchronizer with the
+     * same nodes of this summary
+     *
+     * @param level the level of the nodes, 1 being below the root and DEPTH
+     * being the leaves
+     * @param nodes the nodes of the synchronizer, every node being
+     * `node,hash;` with the hash in hexadecimal
+     * @return the nodes that differ, every node being `node;`, or null when the
+     * level or the nodes are not valid
+     */
+    public byte[] differingNodes(final int level, final byte[] nodes) {
+        if (level < 1 || level > DEPTH || nodes == null) {
+            return null;
+        }
+
+        long[] hashes = levels[level - 1];
+        StringBuilder differing = new StringBuilder();
+        try {
+            for (String node : new String(nodes, StandardCharsets.US_ASCII).split(NODE_SEPARATOR)) {
+                int splitter = node.indexOf(HASH_SEPARATOR);
+                if (splitter < 0) {
+                    return null;
+                }
+
+                int index = Integer.parseInt(node, 0, splitter, 10);
+                long hash = Long.parseUnsignedLong(node, splitter + 1, node.length(), HEX_RADIX);
+                if (index < 0 || index >= hashes.length) {
+                    return null;
+                } else if (hashes[index] != hash) {
+                    differing.append(index).append(NODE_SEPARATOR);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+
+        return differing.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Complete the tuples a synchronizer sent for the leaves that differ with
+     * the tuples of the essence in the other leaves
+     *
+     * @param essence the essence the synchronizer compared its summary with
+     * @param leaves the leaves that differ, as `leaf,leaf`
+     * @param received the tuples of the synchronizer in those leaves, as text
+     * @return the essence of the synchronizer as text, or null when the leaves
+     * are not valid, when one of the essences is not canonical or when a tuple
+     * received is not in one of the leaves
+     */
+    public static byte[] complete(final byte[] essence, final String leaves, final byte[] received) {
+        BitSet differing = leavesOf(leaves);
+        if (differing == null || essence == null || received == null) {
+            return null;
+        }
+
+        byte[] completed = new byte[essence.length + received.length + 1];
+        int length = 0;
+        TupleCursor cursor = new TupleCursor().reset(received);
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            if (!differing.get(nodeOf(cursor.id(), DEPTH))) {
+                return null;
+            }
+            length = cursor.copyTo(completed, length);
+        }
+        if (state != TupleCursor.END) {
+            return null;
+        }
+
+        cursor.reset(essence);
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            if (!differing.get(nodeOf(cursor.id(), DEPTH))) {
+                length = cursor.copyTo(completed, length);
+            }
+        }
+
+        return (state == TupleCursor.END ? Arrays.copyOf(completed, length) : null);
+    }
+
+    /**
+     * @param id the id of the tuple
+     * @param level the level, 1 being below the root and DEPTH being the
+     * leaves
+     * @return the node of the level having the tuple below it
+     */
+    static int nodeOf(final long id, final int level) {
+        return (int) (EssenceSetHash.mix(id) >>> (Long.SIZE - level * CHILD_BITS));
+    }
+
+    private static int nodesOf(final int level) {
+        return 1 << (level * CHILD_BITS);
+    }
+
+    private static BitSet leavesOf(final String leaves) {
+        if (leaves == null || leaves.isBlank()) {
+            return null;
+        }
+
+        BitSet differing = new BitSet(nodesOf(DEPTH));
+        try {
+            for (String leaf : leaves.split(LEAF_SEPARATOR)) {
+                int index = Integer.parseInt(leaf.trim());
+                if (index < 0 || index >= nodesOf(DEPTH)) {
+                    return null;
+                }
+                differing.set(index);
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+
+        return differing;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import io.hivemind.data.conversion.VarLongConverter;
+import io.hivemind.exception.HiveCeption;
+import io.hivemind.exception.InvalidEssenceException;
+import java.util.Arrays;
+
+/**
+ * The tuples (id,version) of an essence as primitives, parsed while validating
+ * the essence in a single pass. The tuples are kept next to their position in
+ * the essence, allowing the comparator to copy them without reading the
+ * essence again.
+ * <p>
+ * Essences in binary (application/hive-essence+binary) are decoded into the
+ * same tuples, next to their position in the essence as text. The binary
+ * essence has the tuples sorted by id, every tuple being the difference with
+ * the id before it followed by the version, both written as variable length
+ * long.</p>
+ * <p>
+ * Essences having ranges of ids (`firstId-lastId,version`) are not canonical
+ * for the tuples, reading stops at the first range. Such essences are
+ * compared as bitmap, see {@link EssenceBitmap}.</p>
+ * <p>
+ * Instances are reusable, every parse overwrites the tuples of the essence
+ * parsed before. Do not share an instance between threads.</p>
+ *
+ * @author Patrick-4488
+ */
+public final class EssenceTuples {
+
+    private final TupleCursor cursor;
+    private long[] ids;
+    private long[] versions;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+    private int length;
+    private boolean canonical;
+    private boolean sorted;
+    private boolean ranged;
+    private long setHash;
+
+    private static final int INITIAL_CAPACITY = 64;
+    // The longest number the cursor reads has 18 digits
+    private static final long MAX_NUMBER = 999_999_999_999_999_999L;
+    private static final int MAX_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+        10_000_000L, 100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+        10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L, 10_000_000_000_000_000L,
+        100_000_000_000_000_000L};
+    private static final byte SPLITTER = ',';
+    private static final byte SEPARATOR = ';';
+
+    public EssenceTuples() {
+        cursor = new TupleCursor();
+        ids = new long[INITIAL_CAPACITY];
+        versions = new long[INITIAL_CAPACITY];
+        starts = new int[INITIAL_CAPACITY];
+        ends = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Validate and parse the essence. When the essence is valid but not
+     * canonical, for example having leading zeros or tuples without version,
+     * the essence is only validated
+     *
+     * @param essence the essence
+     * @throws InvalidEssenceException when the essence is not valid, having the
+     * offset of the first invalid byte
+     * @see EssenceValidator
+     */
+    public void parse(final byte[] essence) throws InvalidEssenceException {
+        if (!read(essence)) {
+            int offset = EssenceValidator.firstInvalidByte(essence, cursor.tupleStart());
+            if (offset >= 0) {
+                throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE, offset);
+            }
+        }
+    }
+
+    /**
+     * Decode the binary essence into its tuples. The essence as text is
+     * canonical, all tuples are available for comparing
+     *
+     * @param binary the essence in binary
+     * @return the essence as text
+     * @throws InvalidEssenceException when the binary essence is not valid,
+     * having the offset of the first invalid byte
+     * @see VarLongConverter
+     */
+    public byte[] decode(final byte[] binary) throws InvalidEssenceException {
+        size = 0;
+        length = 0;
+        canonical = true;
+        sorted = true;
+        ranged = false;
+        setHash = EssenceSetHash.EMPTY;
+        if (binary == null) {
+            return new byte[0];
+        }
+
+        long id = 0;
+        int offset = 0;
+        while (offset < binary.length) {
+            long difference = VarLongConverter.read(binary, offset, binary.length);
+            if (difference == VarLongConverter.INVALID || (difference == 0 && size != 0) || difference > MAX_NUMBER - id) {
+                throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE, offset);
+            }
+            offset += VarLongConverter.length(difference);
+
+            long version = VarLongConverter.read(binary, offset, binary.length);
+            if (version == VarLongConverter.INVALID || version > MAX_NUMBER) {
+                throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE, offset);
+            }
+            offset += VarLongConverter.length(version);
+
+            id += difference;
+            int start = length;
+            length += digits(id) + 1 + digits(version);
+            add(id, version, start, length);
+            length++;
+        }
+
+        byte[] essence = new byte[length];
+        for (int i = 0; i < size; i++) {
+            int splitter = starts[i] + digits(ids[i]);
+            writeDigits(ids[i], essence, splitter);
+            essence[splitter] = SPLITTER;
+            writeDigits(versions[i], essence, ends[i]);
+            essence[ends[i]] = SEPARATOR;
+        }
+
+        return essence;
+    }
+
+    /**
+     * Encode the tuples parsed in binary, sorted by id
+     *
+     * @return the essence in binary, or null when the essence parsed is not
+     * canonical or has an id more then once
+     * @see #decode(byte[])
+     */
+    public byte[] toBinary() {
+        if (!canonical) {
+            return null;
+        }
+
+        TupleTable table = new TupleTable().reset(length);
+        for (int i = 0; i < size; i++) {
+            if (!table.put(ids[i], versions[i])) {
+                return null;
+            }
+        }
+        long[] sorted = Arrays.copyOf(ids, size);
+        Arrays.sort(sorted);
+
+        int binaryLength = 0;
+        long previous = 0;
+        for (long id : sorted) {
+            binaryLength += VarLongConverter.length(id - previous) + VarLongConverter.length(table.versionOf(id));
+            previous = id;
+        }
+
+        byte[] binary = new byte[binaryLength];
+        int offset = 0;
+        previous = 0;
+        for (long id : sorted) {
+            offset = VarLongConverter.write(id - previous, binary, offset);
+            offset = VarLongConverter.write(table.versionOf(id), binary, offset);
+            previous = id;
+        }
+
+        return binary;
+    }
+
+    /**
+     * @return true if all tuples of the essence have been parsed
+     */
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Whether the ids of the tuples parsed are strictly ascending, which is
+     * always the case for essences decoded from binary. Sorted essences are
+     * compared by merging the tuples, without tables
+     *
+     * @return true if every id is bigger then the id before it
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * @return true if the essence parsed has a range of ids, reading stopped at
+     * the first range
+     */
+    public boolean hasRanges() {
+        return ranged;
+    }
+
+    /**
+     * @return the hash of the set of tuples parsed, only complete when the
+     * essence is canonical
+     * @see EssenceSetHash
+     */
+    public long setHash() {
+        return setHash;
+    }
+
+    /**
+     * @return the amount of tuples parsed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Read the tuples without validating
+     *
+     * @return true if the essence is canonical, having read all tuples
+     */
+    boolean read(final byte[] essence) {
+        size = 0;
+        length = (essence != null ? essence.length : 0);
+        sorted = true;
+        setHash = EssenceSetHash.EMPTY;
+        cursor.reset(essence);
+        int state;
+        while ((state = cursor.next()) == TupleCursor.TUPLE) {
+            add(cursor.id(), cursor.version(), cursor.tupleStart(), cursor.tupleEnd());
+        }
+        canonical = (state == TupleCursor.END);
+        ranged = (state == TupleCursor.RANGE);
+
+        return canonical;
+    }
+
+    /**
+     * Release the capacity not used by the tuples parsed, for tuples that are
+     * kept
+     */
+    void trim() {
+        ids = Arrays.copyOf(ids, size);
+        versions = Arrays.copyOf(versions, size);
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+    }
+
+    /**
+     * Find the version of the id by searching the tuples, only when sorted
+     *
+     * @return the version of the id, or -1 when there is no tuple having the id
+     */
+    long versionOf(final long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+
+        return (position >= 0 ? versions[position] : TupleTable.NOT_PRESENT);
+    }
+
+    /**
+     * Find the position of the first tuple having the id or a bigger id, only
+     * when sorted
+     *
+     * @return the position, being the size when every id is smaller
+     */
+    int positionOf(final long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+
+        return (position >= 0 ? position : -position - 1);
+    }
+
+    long id(final int position) {
+        return ids[position];
+    }
+
+    long version(final int position) {
+        return versions[position];
+    }
+
+    /**
+     * @return the index of the first byte of the tuple in the essence
+     */
+    int start(final int position) {
+        return starts[position];
+    }
+
+    /**
+     * @return the index after the last byte of the tuple in the essence,
+     * excluding the separator
+     */
+    int end(final int position) {
+        return ends[position];
+    }
+
+    static int digits(final long value) {
+        int digits = 1;
+        while (digits < MAX_DIGITS && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+
+        return digits;
+    }
+
+    /**
+     * Write the digits of the value, ending before the index. Most numbers fit
+     * an int, of which the division is cheaper
+     */
+    static void writeDigits(final long value, final byte[] target, final int end) {
+        int i = end;
+        long remaining = value;
+        while (remaining > Integer.MAX_VALUE) {
+            target[--i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        int small = (int) remaining;
+        do {
+            target[--i] = (byte) ('0' + small % 10);
+            small /= 10;
+        } while (small != 0);
+    }
+
+    private void add(final long id, final long version, final int start, final int end) {
+        if (size == ids.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        if (size != 0 && id <= ids[size - 1]) {
+            sorted = false;
+        }
+        setHash = EssenceSetHash.add(setHash, id, version);
+        ids[size] = id;
+        versions[size] = version;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+}
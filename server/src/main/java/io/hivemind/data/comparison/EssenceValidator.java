@@ -17,7 +17,6 @@ package io.hivemind.data.comparison;
 
 import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.InvalidEssenceException;
-import java.util.regex.Pattern;
 
 /**
  * Validator to determine if input is a valid essence
@@ -26,29 +25,28 @@ import java.util.regex.Pattern;
  */
 public class EssenceValidator {
 
-    private static final Pattern PATTERN = Pattern.compile("([^\\d,;]+)");
+    private static final byte SPACE = ' ';
 
     /**
      * Validate if an essence is valid<br>
-     * Will accept null and empty as valid
+     * Will accept null and empty as valid<br>
+     * The bytes are validated directly, whitespace around the essence is
+     * ignored and any other byte then a digit, `,`, `;` or `-` (ranges of ids)
+     * is invalid
      *
      * FUTURE_WORK: in future maybe we should support identifiers that contain
      * letters next to just plain id's. If that is the case we should change
-     * this validation. For now its super simple.<br>
-     * FUTURE_WORK: Currently this uses a simple Regex, which performs decently
-     * fine. If at some point optimizations are required this is a candidate to
-     * change to bitwise comparison which will avoid heap memory allocations by
-     * reading the object in an array without doing any intermediate allocations
+     * this validation. For now its super simple.
      *
      * @param essence the essence to validate
      * @throws io.hivemind.exception.InvalidEssenceException when the essence is
-     * not valid
+     * not valid, having the offset of the first invalid byte
      */
     public void validateEssence(final byte[] essence) throws InvalidEssenceException {
         if (essence != null && essence.length > 0) {
-            String essenceString = new String(essence).trim();
-            if (PATTERN.matcher(essenceString).find()) {
-                throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE);
+            int offset = firstInvalidByte(essence, 0);
+            if (offset >= 0) {
+                throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE, offset);
             }
         } else {
             /**
@@ -57,4 +55,31 @@ public class EssenceValidator {
              */
         }
     }
+
+    /**
+     * @param essence the essence
+     * @param from the offset to start validating from
+     * @return the offset of the first invalid byte or -1 when valid
+     */
+    static int firstInvalidByte(final byte[] essence, final int from) {
+        int end = essence.length;
+        while (end > 0 && isWhitespace(essence[end - 1])) {
+            end--;
+        }
+        int i = from;
+        if (from == 0) {
+            while (i < end && isWhitespace(essence[i])) {
+                i++;
+            }
+        }
+
+        return EssenceScanner.firstInvalid(essence, i, end);
+    }
+
+    /**
+     * Same as trimming, negative values are part of multi byte characters
+     */
+    private static boolean isWhitespace(final byte value) {
+        return value >= 0 && value <= SPACE;
+    }
 }
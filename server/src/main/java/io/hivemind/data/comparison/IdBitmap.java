@@ -0,0 +1,466 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of ids, in the style of Roaring bitmaps. The ids are split
+ * by their high bits (the key) into containers each holding the low 16 bits
+ * of up to 65536 ids. Every container is stored in the smallest of three
+ * forms:
+ * <ul>
+ * <li>array; the sorted low bits, 2 bytes per id</li>
+ * <li>bitmap; 1024 words, one bit for every possible id</li>
+ * <li>run; pairs of the first low bits and the length minus one of every
+ * range of consecutive ids, 4 bytes per range</li>
+ * </ul>
+ * <p>
+ * Once built a bitmap is not modified, bitmaps created from it share the
+ * containers that did not change. This allows using bitmaps concurrently.</p>
+ *
+ * @author Patrick-4488
+ */
+final class IdBitmap {
+
+    private final long[] keys;
+    private final byte[] types;
+    private final char[][] values;
+    private final long[][] words;
+    private final int[] counts;
+    private final long cardinality;
+
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    private static final byte RUN = 2;
+    private static final int LOW_BITS = 16;
+    private static final int LOW_MASK = 0xFFFF;
+    private static final int WORDS = 1024;
+    // An array container above this amount of ids is bigger then a bitmap
+    private static final int MAX_ARRAY = 4096;
+
+    private IdBitmap(final long[] keys, final byte[] types, final char[][] values, final long[][] words, final int[] counts, final long cardinality) {
+        this.keys = keys;
+        this.types = types;
+        this.values = values;
+        this.words = words;
+        this.counts = counts;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param ids the ids, strictly ascending
+     * @param size the amount of ids
+     * @return the bitmap of the ids
+     */
+    static IdBitmap of(final long[] ids, final int size) {
+        Builder builder = new Builder();
+        char[] lows = new char[Math.min(size, LOW_MASK + 1)];
+        int i = 0;
+        while (i < size) {
+            long key = ids[i] >>> LOW_BITS;
+            int count = 0;
+            while (i < size && ids[i] >>> LOW_BITS == key) {
+                lows[count++] = (char) (ids[i++] & LOW_MASK);
+            }
+            builder.add(key, lows, count);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * @param runs the first and last id of every range, ascending and not
+     * overlapping
+     * @param runCount the amount of ranges
+     * @return the bitmap of the ids in the ranges, without reading every id
+     */
+    static IdBitmap ofRuns(final long[] runs, final int runCount) {
+        Builder builder = new Builder();
+        char[] pairs = new char[4];
+        int pairCount = 0;
+        int count = 0;
+        long key = -1;
+        for (int r = 0; r < runCount; r++) {
+            long first = runs[r * 2];
+            long last = runs[r * 2 + 1];
+            while (first <= last) {
+                long firstKey = first >>> LOW_BITS;
+                if (firstKey != key) {
+                    builder.addRuns(key, pairs, pairCount, count);
+                    key = firstKey;
+                    pairCount = 0;
+                    count = 0;
+                }
+                long end = Math.min(last, firstKey << LOW_BITS | LOW_MASK);
+                if (pairCount == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                }
+                pairs[pairCount++] = (char) (first & LOW_MASK);
+                pairs[pairCount++] = (char) (end & LOW_MASK);
+                count += (int) (end - first + 1);
+                first = end + 1;
+            }
+        }
+        builder.addRuns(key, pairs, pairCount, count);
+
+        return builder.build();
+    }
+
+    /**
+     * @return the amount of ids
+     */
+    long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * The ranges of consecutive ids, ranges continuing in the next container
+     * are joined
+     *
+     * @return the first and last id of every range, ascending
+     */
+    long[] toRuns() {
+        long[] runs = new long[16];
+        int size = 0;
+        char[] lows = null;
+        for (int c = 0; c < keys.length; c++) {
+            long high = keys[c] << LOW_BITS;
+            char[] containerRuns = values[c];
+            int count = counts[c];
+            if (types[c] != RUN) {
+                if (lows == null) {
+                    lows = new char[LOW_MASK + 1];
+                }
+                lowsOf(c, lows);
+                containerRuns = lows;
+            }
+
+            int r = 0;
+            while (r < (types[c] == RUN ? containerRuns.length : count)) {
+                long first;
+                long last;
+                if (types[c] == RUN) {
+                    first = high | containerRuns[r];
+                    last = first + containerRuns[r + 1];
+                    r += 2;
+                } else {
+                    first = high | containerRuns[r];
+                    last = first;
+                    while (++r < count && containerRuns[r] == containerRuns[r - 1] + 1) {
+                        last++;
+                    }
+                }
+
+                if (size > 0 && runs[size - 1] + 1 == first) {
+                    runs[size - 1] = last;
+                } else {
+                    if (size == runs.length) {
+                        runs = Arrays.copyOf(runs, size * 2);
+                    }
+                    runs[size++] = first;
+                    runs[size++] = last;
+                }
+            }
+        }
+
+        return Arrays.copyOf(runs, size);
+    }
+
+    /**
+     * The difference of the sets, when both containers of a key are the same
+     * the container is skipped without reading its ids. Bitmap containers are
+     * subtracted word by word
+     *
+     * @param other the other bitmap
+     * @return bitmap of the ids not in the other bitmap
+     */
+    IdBitmap andNot(final IdBitmap other) {
+        Builder builder = new Builder();
+        char[] lows = null;
+        int o = 0;
+        for (int c = 0; c < keys.length; c++) {
+            long key = keys[c];
+            while (o < other.keys.length && other.keys[o] < key) {
+                o++;
+            }
+            if (o == other.keys.length || other.keys[o] != key) {
+                builder.share(this, c);
+            } else if (types[c] == BITMAP && other.types[o] == BITMAP) {
+                builder.addWords(key, andNot(words[c], other.words[o]));
+            } else if (types[c] != other.types[o] || !Arrays.equals(values[c], other.values[o])) {
+                if (lows == null) {
+                    lows = new char[LOW_MASK + 1];
+                }
+                builder.add(key, lows, lowsNotIn(c, other, o, lows));
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Estimation of the memory used by the containers, excluding the headers
+     * of the arrays
+     *
+     * @return the amount of bytes
+     */
+    long sizeInBytes() {
+        long size = keys.length * (Long.BYTES + 1L);
+        for (int c = 0; c < keys.length; c++) {
+            size += (types[c] == BITMAP ? WORDS * Long.BYTES : values[c].length * Character.BYTES);
+        }
+
+        return size;
+    }
+
+    private boolean contains(final int container, final char low) {
+        if (types[container] == ARRAY) {
+            return Arrays.binarySearch(values[container], low) >= 0;
+        } else if (types[container] == BITMAP) {
+            return (words[container][low >>> 6] & (1L << low)) != 0;
+        }
+
+        char[] runs = values[container];
+        int first = 0;
+        int last = runs.length / 2 - 1;
+        while (first <= last) {
+            int middle = (first + last) >>> 1;
+            int start = runs[middle * 2];
+            if (low < start) {
+                last = middle - 1;
+            } else if (low > start + runs[middle * 2 + 1]) {
+                first = middle + 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Write the low bits of the container, ascending
+     *
+     * @return the amount of low bits written
+     */
+    private int lowsOf(final int container, final char[] lows) {
+        if (types[container] == ARRAY) {
+            System.arraycopy(values[container], 0, lows, 0, counts[container]);
+        } else if (types[container] == BITMAP) {
+            int i = 0;
+            long[] containerWords = words[container];
+            for (int w = 0; w < WORDS; w++) {
+                long word = containerWords[w];
+                while (word != 0) {
+                    lows[i++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            char[] runs = values[container];
+            for (int r = 0; r < runs.length; r += 2) {
+                int end = runs[r] + runs[r + 1];
+                for (int low = runs[r]; low <= end; low++) {
+                    lows[i++] = (char) low;
+                }
+            }
+        }
+
+        return counts[container];
+    }
+
+    /**
+     * Write the low bits of the container which are not in the container of
+     * the other bitmap
+     *
+     * @return the amount of low bits written
+     */
+    private int lowsNotIn(final int container, final IdBitmap other, final int otherContainer, final char[] lows) {
+        int size = lowsOf(container, lows);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!other.contains(otherContainer, lows[i])) {
+                lows[count++] = lows[i];
+            }
+        }
+
+        return count;
+    }
+
+    private static long[] andNot(final long[] words, final long[] otherWords) {
+        long[] result = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            result[w] = words[w] & ~otherWords[w];
+        }
+
+        return result;
+    }
+
+    /**
+     * Collects the containers of a bitmap in the order of their keys, choosing
+     * the smallest form for every container
+     */
+    private static final class Builder {
+
+        private long[] keys = new long[4];
+        private byte[] types = new byte[4];
+        private char[][] values = new char[4][];
+        private long[][] words = new long[4][];
+        private int[] counts = new int[4];
+        private int size;
+        private long cardinality;
+
+        /**
+         * @param lows the low bits, strictly ascending
+         * @param count the amount of low bits
+         */
+        void add(final long key, final char[] lows, final int count) {
+            if (count == 0) {
+                return;
+            }
+
+            int runs = 1;
+            for (int i = 1; i < count; i++) {
+                if (lows[i] != lows[i - 1] + 1) {
+                    runs++;
+                }
+            }
+
+            if (runs * 2 <= Math.min(count, MAX_ARRAY * 2)) {
+                char[] pairs = new char[runs * 2];
+                int r = 0;
+                pairs[0] = lows[0];
+                for (int i = 1; i < count; i++) {
+                    if (lows[i] != lows[i - 1] + 1) {
+                        pairs[r + 1] = (char) (lows[i - 1] - pairs[r]);
+                        r += 2;
+                        pairs[r] = lows[i];
+                    }
+                }
+                pairs[r + 1] = (char) (lows[count - 1] - pairs[r]);
+                append(key, RUN, pairs, null, count);
+            } else if (count <= MAX_ARRAY) {
+                append(key, ARRAY, Arrays.copyOf(lows, count), null, count);
+            } else {
+                long[] containerWords = new long[WORDS];
+                for (int i = 0; i < count; i++) {
+                    containerWords[lows[i] >>> 6] |= 1L << lows[i];
+                }
+                append(key, BITMAP, null, containerWords, count);
+            }
+        }
+
+        /**
+         * Add the ranges of low bits as run container, when the ranges are not
+         * the smallest form the low bits are added instead
+         *
+         * @param pairs the first and last low bits of every range, ascending
+         * @param pairCount the amount of low bits in pairs
+         * @param count the amount of ids in the ranges
+         */
+        void addRuns(final long key, final char[] pairs, final int pairCount, final int count) {
+            if (count == 0) {
+                return;
+            }
+
+            int runs = 0;
+            for (int p = 0; p < pairCount; p += 2) {
+                if (runs > 0 && pairs[p] == pairs[runs * 2 - 1] + 1) {
+                    pairs[runs * 2 - 1] = pairs[p + 1];
+                } else {
+                    pairs[runs * 2] = pairs[p];
+                    pairs[runs * 2 + 1] = pairs[p + 1];
+                    runs++;
+                }
+            }
+
+            if (runs * 2 <= Math.min(count, MAX_ARRAY * 2)) {
+                char[] containerRuns = new char[runs * 2];
+                for (int r = 0; r < runs; r++) {
+                    containerRuns[r * 2] = pairs[r * 2];
+                    containerRuns[r * 2 + 1] = (char) (pairs[r * 2 + 1] - pairs[r * 2]);
+                }
+                append(key, RUN, containerRuns, null, count);
+            } else {
+                char[] lows = new char[count];
+                int i = 0;
+                for (int r = 0; r < runs; r++) {
+                    for (int low = pairs[r * 2]; low <= pairs[r * 2 + 1]; low++) {
+                        lows[i++] = (char) low;
+                    }
+                }
+                add(key, lows, count);
+            }
+        }
+
+        /**
+         * Add a bitmap container, converted to an array container when it
+         * holds few ids
+         */
+        void addWords(final long key, final long[] containerWords) {
+            int count = 0;
+            for (long word : containerWords) {
+                count += Long.bitCount(word);
+            }
+            if (count > MAX_ARRAY) {
+                append(key, BITMAP, null, containerWords, count);
+            } else if (count != 0) {
+                char[] lows = new char[count];
+                int i = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = containerWords[w];
+                    while (word != 0) {
+                        lows[i++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                add(key, lows, count);
+            }
+        }
+
+        /**
+         * Add the container of the bitmap without copying it
+         */
+        void share(final IdBitmap bitmap, final int container) {
+            append(bitmap.keys[container], bitmap.types[container], bitmap.values[container],
+                    bitmap.words[container], bitmap.counts[container]);
+        }
+
+        IdBitmap build() {
+            return new IdBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(types, size), Arrays.copyOf(values, size),
+                    Arrays.copyOf(words, size), Arrays.copyOf(counts, size), cardinality);
+        }
+
+        private void append(final long key, final byte type, final char[] containerValues, final long[] containerWords, final int count) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                words = Arrays.copyOf(words, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            keys[size] = key;
+            types[size] = type;
+            values[size] = containerValues;
+            words[size] = containerWords;
+            counts[size] = count;
+            size++;
+            cardinality += count;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+/**
+ * Cursor reading the tuples of an essence directly from the bytes, without
+ * intermediate objects. The cursor is reusable, reset it for every essence.
+ * Only canonical tuples are read, `id,version` with both being plain numbers
+ * without leading zeros. Ranges of ids having the same version,
+ * `firstId-lastId,version` with the last id bigger then the first, are read
+ * as a range
+ *
+ * @author Patrick-4488
+ */
+final class TupleCursor {
+
+    private byte[] essence;
+    private int length;
+    private int position;
+    private long id;
+    private long lastId;
+    private long version;
+    private int tupleStart;
+    private int tupleEnd;
+
+    static final int END = 0;
+    static final int TUPLE = 1;
+    static final int RANGE = 2;
+    static final int NOT_CANONICAL = -1;
+
+    private static final byte SEPARATOR = ';';
+    private static final byte TUPLE_SEPARATOR = ',';
+    private static final byte RANGE_SEPARATOR = '-';
+    // Keeps the values within a long while parsing without checking overflow
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * @param essence the essence to read next
+     * @return the cursor
+     */
+    TupleCursor reset(final byte[] essence) {
+        this.essence = essence;
+        this.length = (essence != null ? essence.length : 0);
+        this.position = 0;
+
+        return this;
+    }
+
+    /**
+     * Read the next tuple, the separator after the last tuple is optional
+     *
+     * @return TUPLE when a tuple has been read, RANGE when a range has been
+     * read, END when there are no more tuples or NOT_CANONICAL when the next
+     * tuple is not canonical
+     */
+    int next() {
+        if (position >= length) {
+            return END;
+        }
+
+        int i = position;
+        tupleStart = i;
+        long readId = 0;
+        while (i < length && isDigit(essence[i])) {
+            readId = readId * 10 + (essence[i++] - '0');
+        }
+        if (!isCanonicalNumber(tupleStart, i) || i == length) {
+            return NOT_CANONICAL;
+        }
+
+        long readLastId = readId;
+        if (essence[i] == RANGE_SEPARATOR) {
+            int start = ++i;
+            readLastId = 0;
+            while (i < length && isDigit(essence[i])) {
+                readLastId = readLastId * 10 + (essence[i++] - '0');
+            }
+            if (!isCanonicalNumber(start, i) || readLastId <= readId || i == length) {
+                return NOT_CANONICAL;
+            }
+        }
+        if (essence[i] != TUPLE_SEPARATOR) {
+            return NOT_CANONICAL;
+        }
+
+        int start = ++i;
+        long readVersion = 0;
+        while (i < length && isDigit(essence[i])) {
+            readVersion = readVersion * 10 + (essence[i++] - '0');
+        }
+        if (!isCanonicalNumber(start, i) || (i < length && essence[i] != SEPARATOR)) {
+            return NOT_CANONICAL;
+        }
+
+        tupleEnd = i;
+        position = i + 1;
+        id = readId;
+        lastId = readLastId;
+        version = readVersion;
+
+        return (readLastId != readId ? RANGE : TUPLE);
+    }
+
+    /**
+     * @return the id of the tuple read
+     */
+    long id() {
+        return id;
+    }
+
+    /**
+     * @return the last id of the range read, the same as the id when a tuple
+     * has been read
+     */
+    long lastId() {
+        return lastId;
+    }
+
+    /**
+     * @return the version of the tuple read
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return the index of the first byte of the tuple read
+     */
+    int tupleStart() {
+        return tupleStart;
+    }
+
+    /**
+     * @return the index after the last byte of the tuple read, excluding the
+     * separator
+     */
+    int tupleEnd() {
+        return tupleEnd;
+    }
+
+    /**
+     * Copy the tuple read, followed by the separator
+     *
+     * @param target the essence to copy to
+     * @param offset the index in the target to copy to
+     * @return the index in the target after the separator
+     */
+    int copyTo(final byte[] target, final int offset) {
+        int tupleLength = tupleEnd - tupleStart;
+        System.arraycopy(essence, tupleStart, target, offset, tupleLength);
+        target[offset + tupleLength] = SEPARATOR;
+
+        return offset + tupleLength + 1;
+    }
+
+    private static boolean isDigit(final byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+    private boolean isCanonicalNumber(final int start, final int end) {
+        int digits = end - start;
+
+        return digits > 0 && digits <= MAX_DIGITS && (digits == 1 || essence[start] != '0');
+    }
+}
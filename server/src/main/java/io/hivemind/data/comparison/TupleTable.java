@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparison;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table mapping the id of a tuple to its version. The table is
+ * reusable, when reset the arrays are only reallocated when too small
+ *
+ * @author Patrick-4488
+ */
+final class TupleTable {
+
+    private long[] keys;
+    private long[] versions;
+    private int mask;
+
+    static final long NOT_PRESENT = -1;
+
+    // The smallest tuple is `0,0;`
+    private static final int MIN_TUPLE_LENGTH = 4;
+
+    TupleTable() {
+        keys = new long[0];
+        versions = new long[0];
+    }
+
+    /**
+     * Clear the table, sized for the essence
+     *
+     * @param essenceLength the length in bytes of the essence that will be put
+     * @return the table
+     */
+    TupleTable reset(final int essenceLength) {
+        int maxTuples = essenceLength / MIN_TUPLE_LENGTH + 1;
+        // Load factor of at most a half
+        int capacity = Integer.highestOneBit(maxTuples * 2 - 1) << 1;
+        if (keys.length < capacity) {
+            keys = new long[capacity];
+            versions = new long[capacity];
+        } else {
+            Arrays.fill(keys, 0, capacity, 0);
+        }
+        mask = capacity - 1;
+
+        return this;
+    }
+
+    /**
+     * Ids are stored plus one, allowing zero to mark an empty slot
+     *
+     * @param id the id
+     * @param version the version
+     * @return false if the id is already in the table
+     */
+    boolean put(final long id, final long version) {
+        long key = id + 1;
+        int slot = slotFor(id);
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        versions[slot] = version;
+
+        return true;
+    }
+
+    /**
+     * @param id the id
+     * @return the version of the id, or NOT_PRESENT
+     */
+    long versionOf(final long id) {
+        long key = id + 1;
+        int slot = slotFor(id);
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return versions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return NOT_PRESENT;
+    }
+
+    private int slotFor(final long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -19,7 +19,7 @@ import static java.lang.System.Logger.Level.DEBUG;
 
 /**
  * Converter for converting to and from bytes.<br>
- * Current implementations include: Long
+ * Current implementations include: Long, Long of variable length
  * <br>
  * FUTURE_WORK: Add more converters when required
  *
@@ -59,6 +59,28 @@ public abstract class Converter<T> {
         return null;
     }
 
+    /**
+     * Generate a new converter of variable length for a given type. Values are
+     * written in as few bytes as the value requires, which is smaller for the
+     * values common in essences
+     * <br>
+     * If the type is not supported it will currently return null
+     *
+     * @param c the type
+     * @return the converter
+     */
+    public static Converter<Long> forVariableLengthType(final Class<?> c) {
+        if (c != null) {
+            LOGGER.log(DEBUG, "Requesting variable length converter for type: {0}", c.getSimpleName());
+
+            if (c.equals(Long.class)) {
+                return VarLongConverter.instance();
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Convert {implementation type} to byte[] in an efficient manner (bitwise
      * operations). Using this method will avoid heap memory allocations by
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.conversion;
+
+/**
+ * Converter for long using a variable length, 7 bits per byte with the high
+ * bit set on every byte but the last (unsigned LEB128). Small values take few
+ * bytes, a version below 128 takes a single byte. Only values of zero and up
+ * are supported
+ *
+ * @author Patrick-4488
+ */
+public class VarLongConverter extends Converter<Long> {
+
+    /**
+     * Returned when reading bytes that are not a (minimal) variable length
+     * long
+     */
+    public static final long INVALID = -1;
+
+    private static final int MAX_BYTES = 9;
+    private static final int PAYLOAD_BITS = 7;
+    private static final int PAYLOAD = 0x7F;
+    private static final int CONTINUATION = 0x80;
+
+    private VarLongConverter() {
+    }
+
+    /**
+     * Create a new instance of this converter.<br>
+     * This prevents public access to converter implementations and enforces
+     * usage of Converter.forVariableLengthType()
+     *
+     * @return new VarLongConverter
+     */
+    protected static Converter<Long> instance() {
+        return new VarLongConverter();
+    }
+
+    @Override
+    public byte[] convert(final Long object) {
+        if (object == null || object < 0) {
+            return new byte[0];
+        }
+
+        byte[] result = new byte[length(object)];
+        write(object, result, 0);
+
+        return result;
+    }
+
+    @Override
+    public Long fromBytes(final byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        long result = read(bytes, 0, bytes.length);
+        return (result != INVALID ? result : null);
+    }
+
+    /**
+     * @param value the value, zero or up
+     * @return the amount of bytes the value takes
+     */
+    public static int length(final long value) {
+        int significantBits = Long.SIZE - Long.numberOfLeadingZeros(value | 1);
+        return (significantBits + PAYLOAD_BITS - 1) / PAYLOAD_BITS;
+    }
+
+    /**
+     * Write the value into the target, the target must have room for
+     * {@link #length(long)} bytes from the offset
+     *
+     * @param value the value, zero or up
+     * @param target the target
+     * @param offset the index to write from
+     * @return the index after the last byte written
+     */
+    public static int write(final long value, final byte[] target, final int offset) {
+        int i = offset;
+        long remaining = value;
+        while ((remaining & ~PAYLOAD) != 0) {
+            target[i++] = (byte) ((remaining & PAYLOAD) | CONTINUATION);
+            remaining >>>= PAYLOAD_BITS;
+        }
+        target[i++] = (byte) remaining;
+
+        return i;
+    }
+
+    /**
+     * Read the value starting at the offset. The amount of bytes read equals
+     * {@link #length(long)} of the value, a value is only valid when written
+     * in as few bytes as possible
+     *
+     * @param source the source
+     * @param offset the index to read from
+     * @param end the index to stop reading at (exclusive)
+     * @return the value or INVALID when the bytes end before the value does,
+     * the value is too long or not written in as few bytes as possible
+     */
+    public static long read(final byte[] source, final int offset, final int end) {
+        long result = 0;
+        int limit = Math.min(end, offset + MAX_BYTES);
+        for (int i = offset, shift = 0; i < limit; i++, shift += PAYLOAD_BITS) {
+            int current = source[i] & 0xFF;
+            result |= (long) (current & PAYLOAD) << shift;
+            if ((current & CONTINUATION) == 0) {
+                return (current == 0 && i != offset ? INVALID : result);
+            }
+        }
+
+        return INVALID;
+    }
+}
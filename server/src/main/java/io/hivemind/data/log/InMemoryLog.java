@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.log;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Log keeping nothing, transitions are only applied. State does not survive a
+ * restart of the hive, other then through a snapshot. Transitions are applied
+ * concurrently, ordered only by the locks of the caller
+ *
+ * @author Patrick-4488
+ */
+public final class InMemoryLog implements StateLog {
+
+    @Override
+    public boolean append(final BooleanSupplier transition, final Supplier<LogRecord> record) {
+        return transition.getAsBoolean();
+    }
+
+    /**
+     * The state shared by all synchronizers is transitioned atomically by the
+     * transition itself, nothing is logged to order it with
+     */
+    @Override
+    public boolean appendInOrder(final BooleanSupplier transition, final Supplier<LogRecord> record) {
+        return transition.getAsBoolean();
+    }
+
+    @Override
+    public long checkpoint(final Runnable capture) {
+        capture.run();
+        return 0;
+    }
+
+    @Override
+    public void truncate(final long checkpoint) {
+        // Nothing has been logged
+    }
+
+    @Override
+    public void replay(final long checkpoint, final Consumer<LogRecord> consumer) {
+        // Nothing has been logged
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A state transition of the data processor, as written to the log. Replaying
+ * the records in the order logged results in the same state.
+ * <p>
+ * Encoded as the ordinal of the type followed by the key, the other key, the
+ * requested type and the data, each prefixed by its length or -1 when
+ * null.</p>
+ *
+ * @author Patrick-4488
+ */
+public final class LogRecord {
+
+    private final Type type;
+    private final String key;
+    private final String other;
+    private final String requestedType;
+    private final byte[] data;
+
+    private static final int ABSENT = -1;
+    private static final Type[] TYPES = Type.values();
+
+    /**
+     * The types of state transitions
+     */
+    public enum Type {
+
+        /**
+         * The essence of the synchronizer (key) became latest
+         */
+        LATEST,
+        /**
+         * The essence of the synchronizer (key) has been stored
+         */
+        STORED_ESSENCE,
+        /**
+         * Data that is not an essence has been stored for the synchronizer
+         * (key)
+         */
+        STORED_DATA,
+        /**
+         * The synchronizer having latest (key) is requested to provide the
+         * difference (data) for the synchronizer (other)
+         */
+        DATA_REQUEST,
+        /**
+         * The synchronizer (key) provided data, prepared for all synchronizers
+         * having requested it
+         */
+        DATA_RECEIVED,
+        /**
+         * The requests for the synchronizer (key) have been taken
+         */
+        DATA_REQUESTS_TAKEN,
+        /**
+         * The data prepared for the synchronizer (key) has been taken
+         */
+        PREPARED_TAKEN,
+        /**
+         * The essence (data) of the synchronizer (key) is prioritized for all
+         * other synchronizers
+         */
+        PRIORITY,
+        /**
+         * The priority request for the synchronizer (key) has been taken
+         */
+        PRIORITY_TAKEN,
+        /**
+         * All state has been cleared
+         */
+        CLEARED
+    }
+
+    private LogRecord(final Type type, final String key, final String other, final String requestedType, final byte[] data) {
+        this.type = type;
+        this.key = key;
+        this.other = other;
+        this.requestedType = requestedType;
+        this.data = data;
+    }
+
+    public static LogRecord of(final Type type, final String key) {
+        return new LogRecord(type, key, null, null, null);
+    }
+
+    public static LogRecord of(final Type type, final String key, final byte[] data) {
+        return new LogRecord(type, key, null, null, data);
+    }
+
+    public static LogRecord of(final Type type, final String key, final byte[] data, final String requestedType) {
+        return new LogRecord(type, key, null, requestedType, data);
+    }
+
+    public static LogRecord of(final Type type, final String key, final String other, final byte[] data, final String requestedType) {
+        return new LogRecord(type, key, other, requestedType, data);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getOther() {
+        return other;
+    }
+
+    public String getRequestedType() {
+        return requestedType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the record as bytes
+     */
+    public byte[] encode() {
+        byte[] keyBytes = bytesOf(key);
+        byte[] otherBytes = bytesOf(other);
+        byte[] requestedTypeBytes = bytesOf(requestedType);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + lengthOf(keyBytes) + lengthOf(otherBytes) + lengthOf(requestedTypeBytes) + lengthOf(data));
+        buffer.put((byte) type.ordinal());
+        put(buffer, keyBytes);
+        put(buffer, otherBytes);
+        put(buffer, requestedTypeBytes);
+        put(buffer, data);
+
+        return buffer.array();
+    }
+
+    /**
+     * @param buffer the buffer positioned at the record, limited to its end
+     * @return the record
+     * @throws IllegalArgumentException when the buffer does not contain a
+     * record
+     */
+    public static LogRecord decode(final ByteBuffer buffer) {
+        int ordinal = buffer.get();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown type of log record: " + ordinal);
+        }
+
+        String key = stringOf(bytes(buffer));
+        String other = stringOf(bytes(buffer));
+        String requestedType = stringOf(bytes(buffer));
+
+        return new LogRecord(TYPES[ordinal], key, other, requestedType, bytes(buffer));
+    }
+
+    private static byte[] bytesOf(final String value) {
+        return (value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static String stringOf(final byte[] value) {
+        return (value != null ? new String(value, StandardCharsets.UTF_8) : null);
+    }
+
+    private static int lengthOf(final byte[] value) {
+        return Integer.BYTES + (value != null ? value.length : 0);
+    }
+
+    private static void put(final ByteBuffer buffer, final byte[] value) {
+        if (value != null) {
+            buffer.putInt(value.length).put(value);
+        } else {
+            buffer.putInt(ABSENT);
+        }
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == ABSENT) {
+            return null;
+        } else if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length in log record: " + length);
+        }
+
+        byte[] value = new byte[length];
+        buffer.get(value);
+
+        return value;
+    }
+}
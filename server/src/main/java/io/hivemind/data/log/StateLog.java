@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.log;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Log of the state transitions of the data processor. A transition of the
+ * state of a synchronizer is applied by the caller while holding the lock
+ * guarding that state and logged before releasing it, so transitions of the
+ * same state are logged in the order in which they have been applied.
+ * Transitions of state shared by all synchronizers are applied in the order of
+ * the log itself.
+ * <p>
+ * Records are made durable once the caller no longer holds any lock, callers
+ * do not wait for each other forcing to disk.</p>
+ * <p>
+ * A checkpoint captures the state while the caller excludes all transitions, a
+ * snapshot of the state at the checkpoint and the transitions logged after the
+ * checkpoint together rebuild the state.</p>
+ *
+ * @author Patrick-4488
+ * @see InMemoryLog
+ * @see WriteAheadLog
+ */
+public interface StateLog extends AutoCloseable {
+
+    /**
+     * Apply the transition and log its record when applied. The caller holds
+     * the lock guarding the state transitioned, only logging the record is
+     * ordered with the records of other callers
+     *
+     * @param transition the transition, returning false when not applied
+     * @param record the record of the transition, only created when applied
+     * @return false when the transition has not been applied
+     */
+    public boolean append(BooleanSupplier transition, Supplier<LogRecord> record);
+
+    /**
+     * Apply the transition and log its record when applied, ordered with the
+     * transitions of all other callers. For state shared by all
+     * synchronizers, not guarded by a lock of the caller
+     *
+     * @param transition the transition, returning false when not applied
+     * @param record the record of the transition, only created when applied
+     * @return false when the transition has not been applied
+     */
+    public boolean appendInOrder(BooleanSupplier transition, Supplier<LogRecord> record);
+
+    /**
+     * Apply the transition and log its record
+     *
+     * @param transition the transition
+     * @param record the record of the transition
+     */
+    public default void append(final Runnable transition, final Supplier<LogRecord> record) {
+        append(() -> {
+            transition.run();
+            return true;
+        }, record);
+    }
+
+    /**
+     * Await the records appended by the calling thread being forced to disk,
+     * when the durability requires it. Called once the caller no longer holds
+     * any lock, so other callers are not blocked while forcing
+     */
+    public default void awaitDurable() {
+        // Nothing to force
+    }
+
+    /**
+     * Capture the state, the caller excludes all transitions while capturing.
+     * Transitions applied after the capture are logged after the checkpoint
+     * returned
+     *
+     * @param capture the capture of the state
+     * @return the checkpoint the state has been captured at
+     * @throws IOException when the checkpoint can not be logged
+     */
+    public long checkpoint(Runnable capture) throws IOException;
+
+    /**
+     * Discard the records logged before the checkpoint, being covered by a
+     * snapshot
+     *
+     * @param checkpoint the checkpoint
+     * @throws IOException when the records can not be discarded
+     */
+    public void truncate(long checkpoint) throws IOException;
+
+    /**
+     * Provide every record logged, in the order logged
+     *
+     * @param consumer the consumer of the records
+     * @throws IOException when the log can not be read
+     */
+    public default void replay(final Consumer<LogRecord> consumer) throws IOException {
+        replay(0, consumer);
+    }
+
+    /**
+     * Provide every record logged from the checkpoint, in the order logged
+     *
+     * @param checkpoint the checkpoint to replay from, 0 to replay all
+     * @param consumer the consumer of the records
+     * @throws IOException when the log can not be read
+     */
+    public void replay(long checkpoint, Consumer<LogRecord> consumer) throws IOException;
+
+    /**
+     * Close the log, forcing all records logged to disk
+     */
+    @Override
+    public void close();
+}
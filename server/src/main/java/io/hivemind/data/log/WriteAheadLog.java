@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.log;
+
+import io.hivemind.constant.Durability;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Append only log of the state transitions of the data processor, written to
+ * memory mapped segment files. Replaying the log on boot rebuilds the state of
+ * the hive as it was before a restart.
+ * <p>
+ * Every record is written as its length, the CRC32 of the record and the
+ * record. A length of 0 marks the end of a segment, a record of which the CRC
+ * does not match marks the end of the log, being written partially before a
+ * crash. A segment is named after its sequence number, a record that does not
+ * fit the segment is written to the next segment.</p>
+ * <p>
+ * Transitions are applied by the caller while holding the lock guarding the
+ * state transitioned, only writing the record holds the lock of the log.
+ * Transitions of state shared by all synchronizers are applied while holding
+ * the lock of the log as well. Forcing to disk happens outside of it, when
+ * durability is ALWAYS the caller awaits its last record being forced once it
+ * no longer holds any lock. A single flusher forces all transitions written in
+ * the meantime at once (group commit).</p>
+ * <p>
+ * A checkpoint starts the next segment, the checkpoint being its sequence
+ * number. Segments before the checkpoint are removed once covered by a
+ * snapshot.</p>
+ *
+ * @author Patrick-4488
+ * @see Durability
+ * @see LogRecord
+ */
+public final class WriteAheadLog implements StateLog {
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Durability durability;
+    private final long fsyncIntervalMillis;
+    private final ReentrantLock lock;
+    private final Condition written;
+    private final Condition forced;
+    private final CRC32 crc;
+    private final Thread flusher;
+    // Position after the record last appended by the thread, awaited to be forced
+    private final ThreadLocal<long[]> lastAppended;
+    private Segment segment;
+    private long appended;
+    private long flushed;
+    private boolean closed;
+
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final String EXTENSION = ".wal";
+    private static final String SEGMENT_NAME = "%020d" + EXTENSION;
+    private static final System.Logger LOGGER = System.getLogger(WriteAheadLog.class.getName());
+
+    /**
+     * Open the log in the directory, continuing the last segment
+     *
+     * @param directory the directory of the segments, created when not
+     * existing
+     * @param segmentSize the size of a segment in bytes
+     * @param durability when transitions are forced to disk
+     * @param fsyncIntervalMillis the interval of forcing to disk when
+     * durability is INTERVAL
+     * @throws IOException when the log can not be opened
+     */
+    public WriteAheadLog(final Path directory, final long segmentSize, final Durability durability, final long fsyncIntervalMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+        this.fsyncIntervalMillis = Math.max(1, fsyncIntervalMillis);
+        lock = new ReentrantLock();
+        written = lock.newCondition();
+        forced = lock.newCondition();
+        crc = new CRC32();
+        lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            segment = Segment.create(directory.resolve(SEGMENT_NAME.formatted(0)), 0, segmentSize);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            segment = Segment.open(last, sequenceOf(last));
+        }
+        LOGGER.log(INFO, "Opened write-ahead log {0} at segment {1}, position {2}", directory, segment.sequence, segment.position);
+
+        if (Durability.NEVER != durability) {
+            flusher = new Thread(this::flush, "hive-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * The record is encoded outside of the lock of the log as well
+     */
+    @Override
+    public boolean append(final BooleanSupplier transition, final Supplier<LogRecord> record) {
+        if (!transition.getAsBoolean()) {
+            return false;
+        }
+
+        byte[] encoded = record.get().encode();
+        lock.lock();
+        try {
+            appended(write(encoded));
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean appendInOrder(final BooleanSupplier transition, final Supplier<LogRecord> record) {
+        lock.lock();
+        try {
+            if (!transition.getAsBoolean()) {
+                return false;
+            }
+
+            appended(write(record.get().encode()));
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void awaitDurable() {
+        long[] last = lastAppended.get();
+        long position = last[0];
+        if (position > 0) {
+            last[0] = 0;
+            awaitForced(position);
+        }
+    }
+
+    /**
+     * The log is closed at the checkpoint when closed, so a record appended
+     * after reopening is logged after the checkpoint
+     */
+    @Override
+    public long checkpoint(final Runnable capture) throws IOException {
+        lock.lock();
+        try {
+            capture.run();
+            if (segment.position > 0) {
+                roll(0);
+                if (closed) {
+                    segment.close();
+                }
+            }
+
+            return segment.sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void truncate(final long checkpoint) throws IOException {
+        for (Path path : segments()) {
+            if (sequenceOf(path) < checkpoint) {
+                Files.delete(path);
+                LOGGER.log(INFO, "Removed write-ahead log {0}, covered by a snapshot", path);
+            }
+        }
+    }
+
+    @Override
+    public void replay(final long checkpoint, final Consumer<LogRecord> consumer) throws IOException {
+        for (Path path : segments()) {
+            if (sequenceOf(path) < checkpoint) {
+                continue;
+            }
+            try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int position = 0;
+                int length;
+                while ((length = lengthAt(buffer, position)) > 0) {
+                    consumer.accept(LogRecord.decode(buffer.slice(position + HEADER, length)));
+                    position += HEADER + length;
+                }
+                if (length < 0) {
+                    LOGGER.log(WARNING, "Write-ahead log {0} ends in a partially written record at {1}", path, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the amount of segments of the log
+     * @throws IOException when the directory can not be read
+     */
+    public int segmentCount() throws IOException {
+        return segments().size();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            written.signalAll();
+            forced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            segment.force();
+            segment.close();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Failed to close the write-ahead log", ex);
+        }
+    }
+
+    /**
+     * Writes the record, starting the next segment when it does not fit
+     *
+     * @return the position after the record in the log, or 0 when the record
+     * could not be written
+     */
+    private long write(final byte[] record) {
+        if (closed) {
+            LOGGER.log(WARNING, "Write-ahead log is closed, the transition is not logged");
+            return 0;
+        }
+
+        try {
+            int needed = HEADER + record.length;
+            if (segment.remaining() < needed) {
+                roll(needed);
+            }
+
+            crc.reset();
+            crc.update(record);
+            segment.write(record, (int) crc.getValue());
+            appended += needed;
+
+            return appended;
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Failed to write to the write-ahead log, the transition will not survive a restart", ex);
+            return 0;
+        }
+    }
+
+    /**
+     * The flusher is signalled for every record written when durability is
+     * ALWAYS, the calling thread awaits the record once no longer holding any
+     * lock
+     */
+    private void appended(final long position) {
+        if (Durability.ALWAYS == durability && position > 0) {
+            written.signal();
+            lastAppended.get()[0] = position;
+        }
+    }
+
+    /**
+     * The segment is forced before starting the next, when forced at all
+     */
+    private void roll(final int needed) throws IOException {
+        if (Durability.NEVER != durability) {
+            segment.force();
+        }
+        segment.close();
+
+        long sequence = segment.sequence + 1;
+        segment = Segment.create(directory.resolve(SEGMENT_NAME.formatted(sequence)), sequence, Math.max(segmentSize, needed));
+    }
+
+    /**
+     * Forces what has been written, when written (ALWAYS) or every interval
+     * (INTERVAL), until closed
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (Durability.ALWAYS == durability && appended == flushed) {
+                    written.await();
+                } else if (Durability.INTERVAL == durability) {
+                    written.await(fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+
+                if (appended != flushed && !closed) {
+                    long target = appended;
+                    Segment current = segment;
+                    lock.unlock();
+                    try {
+                        current.force();
+                    } finally {
+                        lock.lock();
+                    }
+                    flushed = Math.max(flushed, target);
+                    forced.signalAll();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitForced(final long position) {
+        lock.lock();
+        try {
+            while (flushed < position && !closed) {
+                forced.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try ( Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(final Path path) {
+        String name = path.getFileName().toString();
+
+        return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+    }
+
+    /**
+     * @return the length of the record at the position, 0 when there is no
+     * record or -1 when the record is written partially
+     */
+    static int lengthAt(final ByteBuffer buffer, final int position) {
+        if (position + HEADER > buffer.limit()) {
+            return 0;
+        }
+
+        int length = buffer.getInt(position);
+        if (length == 0) {
+            return 0;
+        } else if (length < 0 || position + HEADER + length > buffer.limit()) {
+            return -1;
+        }
+
+        CRC32 check = new CRC32();
+        check.update(buffer.slice(position + HEADER, length));
+
+        return (buffer.getInt(position + Integer.BYTES) == (int) check.getValue() ? length : -1);
+    }
+
+    /**
+     * Memory mapped segment file, forcing and closing are exclusive so a
+     * segment closed while being forced is not forced anymore
+     */
+    private static final class Segment {
+
+        private final long sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private boolean open;
+
+        private Segment(final long sequence, final FileChannel channel, final MappedByteBuffer buffer, final int position) {
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.position = position;
+            this.open = true;
+        }
+
+        private static Segment create(final Path path, final long sequence, final long size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            return new Segment(sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), 0);
+        }
+
+        /**
+         * The position is after the last record, a record written partially
+         * is cleared so it is not mistaken for a record after appending
+         */
+        private static Segment open(final Path path, final long sequence) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int position = 0;
+            int length;
+            while ((length = lengthAt(buffer, position)) > 0) {
+                position += HEADER + length;
+            }
+            if (length < 0) {
+                LOGGER.log(WARNING, "Clearing partially written record in {0} at {1}", path, position);
+                for (int i = position; i < buffer.limit(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+
+            return new Segment(sequence, channel, buffer, position);
+        }
+
+        private int remaining() {
+            return buffer.limit() - position;
+        }
+
+        /**
+         * The length is written last, a record is only found once complete
+         */
+        private void write(final byte[] record, final int crc) {
+            buffer.putInt(position + Integer.BYTES, crc);
+            buffer.put(position + HEADER, record);
+            buffer.putInt(position, record.length);
+            position += HEADER + record.length;
+        }
+
+        private synchronized void force() {
+            if (open) {
+                buffer.force();
+            }
+        }
+
+        private synchronized void close() throws IOException {
+            open = false;
+            channel.close();
+        }
+    }
+}
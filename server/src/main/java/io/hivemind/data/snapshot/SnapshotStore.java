@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Directory of snapshots of the state of the data processor, keeping the
+ * snapshots last written.
+ * <p>
+ * A snapshot is written to a temporary file, forced to disk and moved in place
+ * at once, a snapshot is either complete or not there. Every snapshot ends in
+ * the CRC32 of its content, a snapshot not matching it is skipped when reading
+ * and the snapshot before it is read instead. Snapshots are read memory
+ * mapped.</p>
+ *
+ * @author Patrick-4488
+ * @see StateSnapshot
+ */
+public final class SnapshotStore {
+
+    private final Path directory;
+    private final int retained;
+    private long lastWritten;
+
+    private static final String EXTENSION = ".snapshot";
+    private static final String TEMPORARY = ".tmp";
+    private static final String SNAPSHOT_NAME = "%020d" + EXTENSION;
+    private static final int HEADER = 2 * Integer.BYTES + Long.BYTES;
+    private static final System.Logger LOGGER = System.getLogger(SnapshotStore.class.getName());
+
+    /**
+     * Open the directory, removing snapshots written partially
+     *
+     * @param directory the directory of the snapshots, created when not
+     * existing
+     * @param retained the amount of snapshots kept, at least 1
+     * @throws IOException when the directory can not be opened
+     */
+    public SnapshotStore(final Path directory, final int retained) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.retained = Math.max(1, retained);
+
+        for (Path path : list(TEMPORARY)) {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Write the snapshot, removing the oldest snapshots exceeding the amount
+     * retained
+     *
+     * @param snapshot the snapshot
+     * @throws IOException when the snapshot can not be written
+     */
+    public synchronized void write(final StateSnapshot snapshot) throws IOException {
+        lastWritten = Math.max(System.currentTimeMillis(), lastWritten + 1);
+        Path path = directory.resolve(SNAPSHOT_NAME.formatted(lastWritten));
+        Path temporary = directory.resolve(path.getFileName() + TEMPORARY);
+
+        CRC32 crc = new CRC32();
+        try ( FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel));
+            DataOutputStream output = new DataOutputStream(new CheckedOutputStream(file, crc));
+            snapshot.writeTo(output);
+            output.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.log(INFO, "Wrote snapshot {0} at checkpoint {1}", path, snapshot.getCheckpoint());
+
+        List<Path> snapshots = list(EXTENSION);
+        for (int i = 0; i < snapshots.size() - retained; i++) {
+            Files.delete(snapshots.get(i));
+        }
+    }
+
+    /**
+     * @return the newest snapshot that is not damaged, or null when there is
+     * none
+     * @throws IOException when the directory can not be read
+     */
+    public StateSnapshot readNewest() throws IOException {
+        List<Path> snapshots = list(EXTENSION);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try {
+                StateSnapshot snapshot = read(path);
+                LOGGER.log(INFO, "Read snapshot {0} at checkpoint {1}", path, snapshot.getCheckpoint());
+                return snapshot;
+            } catch (IllegalArgumentException | BufferUnderflowException | IOException ex) {
+                LOGGER.log(WARNING, "Snapshot {0} is damaged, reading the snapshot before it", path);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The log is required from the checkpoint of the oldest snapshot on, in
+     * case the newer snapshots are damaged
+     *
+     * @return the checkpoint of the oldest snapshot kept, or 0 when there is
+     * none
+     * @throws IOException when the directory can not be read
+     */
+    public long oldestCheckpoint() throws IOException {
+        List<Path> snapshots = list(EXTENSION);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+
+        try ( FileChannel channel = FileChannel.open(snapshots.get(0), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+
+            return (channel.read(header, 0) == HEADER ? header.getLong(2 * Integer.BYTES) : 0);
+        }
+    }
+
+    private static StateSnapshot read(final Path path) throws IOException {
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int end = buffer.limit() - Integer.BYTES;
+            if (end < HEADER) {
+                throw new IllegalArgumentException("Snapshot is too small: " + buffer.limit());
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, end));
+            if (buffer.getInt(end) != (int) crc.getValue()) {
+                throw new IllegalArgumentException("Snapshot does not match its CRC");
+            }
+
+            return StateSnapshot.readFrom(buffer.slice(0, end));
+        }
+    }
+
+    private List<Path> list(final String extension) throws IOException {
+        try ( Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(extension))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
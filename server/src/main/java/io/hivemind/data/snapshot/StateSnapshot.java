@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.snapshot;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of the data processor at a checkpoint of its log: latest, the
+ * state last stored for every synchronizer, the pending data requests, the
+ * prepared data and the priority requests.
+ * <p>
+ * Encoded compact, every data is written once in a table of blobs and referred
+ * to by its position. Synchronizers in the same state, or receiving the same
+ * prepared data, share the data as long as they share the same array. Strings
+ * and blobs are prefixed by their length or -1 when null.</p>
+ *
+ * @author Patrick-4488
+ * @see SnapshotStore
+ */
+public final class StateSnapshot {
+
+    private final long checkpoint;
+    private Entry latest;
+    private final List<Entry> stored;
+    private final List<Entry> dataRequests;
+    private final List<Entry> prepared;
+    private final List<Entry> priorities;
+
+    private static final int MAGIC = 0x48495645;
+    private static final int VERSION = 1;
+    private static final int ABSENT = -1;
+
+    /**
+     * State of a synchronizer, the meaning of the fields depends on the part of
+     * the state it is in
+     */
+    public static final class Entry {
+
+        private final String key;
+        private final String other;
+        private final byte[] data;
+        private final String requestedType;
+        private final boolean essence;
+
+        private Entry(final String key, final String other, final byte[] data, final String requestedType, final boolean essence) {
+            this.key = key;
+            this.other = other;
+            this.data = data;
+            this.requestedType = requestedType;
+            this.essence = essence;
+        }
+
+        /**
+         * @return the synchronizer the state is of
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the synchronizer requesting data, only for data requests
+         */
+        public String getOther() {
+            return other;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getRequestedType() {
+            return requestedType;
+        }
+
+        /**
+         * @return true when the data stored is an essence
+         */
+        public boolean isEssence() {
+            return essence;
+        }
+    }
+
+    /**
+     * @param checkpoint the checkpoint of the log the state is captured at
+     */
+    public StateSnapshot(final long checkpoint) {
+        this.checkpoint = checkpoint;
+        stored = new ArrayList<>();
+        dataRequests = new ArrayList<>();
+        prepared = new ArrayList<>();
+        priorities = new ArrayList<>();
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return latest or null when there is no latest
+     */
+    public Entry getLatest() {
+        return latest;
+    }
+
+    public List<Entry> getStored() {
+        return Collections.unmodifiableList(stored);
+    }
+
+    public List<Entry> getDataRequests() {
+        return Collections.unmodifiableList(dataRequests);
+    }
+
+    public List<Entry> getPrepared() {
+        return Collections.unmodifiableList(prepared);
+    }
+
+    public List<Entry> getPriorities() {
+        return Collections.unmodifiableList(priorities);
+    }
+
+    /**
+     * @param traceparent the synchronizer having latest
+     * @param essence the essence
+     */
+    public void setLatest(final String traceparent, final byte[] essence) {
+        latest = new Entry(traceparent, null, essence, null, true);
+    }
+
+    /**
+     * @param traceparent the synchronizer
+     * @param data the data stored last for the synchronizer
+     * @param essence true when the data is an essence
+     */
+    public void addStored(final String traceparent, final byte[] data, final boolean essence) {
+        stored.add(new Entry(traceparent, null, data, null, essence));
+    }
+
+    /**
+     * @param traceparent the synchronizer requested to provide data
+     * @param requester the synchronizer requesting the data
+     * @param data the difference requested
+     * @param requestedType the type the data is requested in
+     */
+    public void addDataRequest(final String traceparent, final String requester, final byte[] data, final String requestedType) {
+        dataRequests.add(new Entry(traceparent, requester, data, requestedType, false));
+    }
+
+    /**
+     * @param traceparent the synchronizer to receive the data
+     * @param data the data prepared
+     * @param requestedType the type the data is in
+     */
+    public void addPrepared(final String traceparent, final byte[] data, final String requestedType) {
+        prepared.add(new Entry(traceparent, null, data, requestedType, false));
+    }
+
+    /**
+     * @param traceparent the synchronizer to receive the priority request
+     * @param data the essence prioritized
+     */
+    public void addPriority(final String traceparent, final byte[] data) {
+        priorities.add(new Entry(traceparent, null, data, null, true));
+    }
+
+    /**
+     * Write the snapshot, the data of entries sharing the same array is
+     * written once
+     *
+     * @param output the output to write to
+     * @throws IOException when failing to write
+     */
+    public void writeTo(final DataOutput output) throws IOException {
+        Map<byte[], Integer> blobs = new IdentityHashMap<>();
+        List<byte[]> table = new ArrayList<>();
+        for (List<Entry> entries : List.of(listOf(latest), stored, dataRequests, prepared, priorities)) {
+            for (Entry entry : entries) {
+                if (entry.data != null && !blobs.containsKey(entry.data)) {
+                    blobs.put(entry.data, table.size());
+                    table.add(entry.data);
+                }
+            }
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(checkpoint);
+        output.writeInt(table.size());
+        for (byte[] blob : table) {
+            output.writeInt(blob.length);
+            output.write(blob);
+        }
+        for (List<Entry> entries : List.of(listOf(latest), stored, dataRequests, prepared, priorities)) {
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeString(output, entry.key);
+                writeString(output, entry.other);
+                writeString(output, entry.requestedType);
+                output.writeInt(entry.data != null ? blobs.get(entry.data) : ABSENT);
+                output.writeBoolean(entry.essence);
+            }
+        }
+    }
+
+    /**
+     * Read the snapshot, entries sharing data share the same array
+     *
+     * @param buffer the buffer positioned at the snapshot
+     * @return the snapshot
+     * @throws IllegalArgumentException when the buffer does not contain a
+     * snapshot
+     */
+    public static StateSnapshot readFrom(final ByteBuffer buffer) {
+        if (buffer.remaining() < 2 * Integer.BYTES + Long.BYTES || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown version of snapshot: " + version);
+        }
+
+        StateSnapshot snapshot = new StateSnapshot(buffer.getLong());
+        byte[][] table = new byte[lengthOf(buffer)][];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = new byte[lengthOf(buffer)];
+            buffer.get(table[i]);
+        }
+        List<Entry> latest = new ArrayList<>();
+        for (List<Entry> entries : List.of(latest, snapshot.stored, snapshot.dataRequests, snapshot.prepared, snapshot.priorities)) {
+            int amount = lengthOf(buffer);
+            for (int i = 0; i < amount; i++) {
+                String key = readString(buffer);
+                String other = readString(buffer);
+                String requestedType = readString(buffer);
+                int blob = buffer.getInt();
+                if (blob < ABSENT || blob >= table.length) {
+                    throw new IllegalArgumentException("Invalid data in snapshot: " + blob);
+                }
+                entries.add(new Entry(key, other, (blob != ABSENT ? table[blob] : null), requestedType, buffer.get() != 0));
+            }
+        }
+        snapshot.latest = (latest.isEmpty() ? null : latest.get(0));
+
+        return snapshot;
+    }
+
+    private static List<Entry> listOf(final Entry entry) {
+        return (entry != null ? List.of(entry) : List.of());
+    }
+
+    private static void writeString(final DataOutput output, final String value) throws IOException {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            output.writeInt(ABSENT);
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == ABSENT) {
+            return null;
+        } else if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length in snapshot: " + length);
+        }
+
+        byte[] value = new byte[length];
+        buffer.get(value);
+
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static int lengthOf(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length in snapshot: " + length);
+        }
+
+        return length;
+    }
+}
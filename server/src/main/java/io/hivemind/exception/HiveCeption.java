@@ -29,6 +29,9 @@ public enum HiveCeption {
     ),
     NETTY_FAILED_TO_BOOT("The application was unable to boot Netty server, see exception for more details"),
     HTTP_SERVER_FAILED_TO_BOOT("The application was unable to boot httpserver, see exception for more details"),
+    WRITE_AHEAD_LOG_FAILED_TO_OPEN("The application was unable to open and replay the write-ahead log, see exception for more details"),
+    SNAPSHOT_FAILED_TO_READ("The application was unable to read the snapshots of the hive state, see exception for more details"),
+    CHANGE_LOG_FAILED_TO_OPEN("The application was unable to open the change log, see exception for more details"),
     UNABLE_TO_SETUP_SERVER("The application was not able to set up a server to boot the hive, see exception for more details"),
     INVALID_ESSENCE("""
         The received hive essence is not valid. Expected is a list of bytes containing: 
@@ -22,7 +22,26 @@ package io.hivemind.exception;
  */
 public class InvalidEssenceException extends HiveException {
 
+    private final int offset;
+
     public InvalidEssenceException(final HiveCeption exception) {
+        this(exception, -1);
+    }
+
+    /**
+     * @param exception the exception
+     * @param offset the offset of the first byte making the essence invalid
+     */
+    public InvalidEssenceException(final HiveCeption exception, final int offset) {
         super(exception);
+        this.offset = offset;
+    }
+
+    /**
+     * @return the offset of the first byte making the essence invalid, or -1
+     * when unknown
+     */
+    public int getOffset() {
+        return offset;
     }
 }
@@ -16,7 +16,10 @@
 package io.hivemind.helper;
 
 import io.hivemind.constant.ContentType;
+import io.hivemind.data.DataProcessor;
 import io.hivemind.data.PreparedData;
+import io.hivemind.data.comparison.EssenceTuples;
+import io.hivemind.exception.InvalidEssenceException;
 import io.hivemind.tracecontext.TraceparentGenerator;
 import java.util.List;
 
@@ -31,6 +34,13 @@ public abstract class RequestHelper<R> {
 
     public static final String KEY_TRACEPARENT = "traceparent";
     public static final String KEY_CONTENT_TYPE = "content-type";
+    public static final String KEY_FINGERPRINT = "hive-essence-fingerprint";
+    public static final String KEY_SUMMARY = "hive-essence-summary";
+    public static final String KEY_LEAVES = "hive-essence-leaves";
+    public static final String KEY_SKETCH = "hive-essence-sketch";
+    public static final String KEY_WAIT = "hive-essence-wait";
+    public static final String KEY_CHANGES_OFFSET = "hive-changes-offset";
+    public static final String KEY_CHANGES_NEXT_OFFSET = "hive-changes-next-offset";
     public static final String COMMA = ",";
     private static final String CONTENT_TYPE_SEPARATOR = ", ";
 
@@ -52,6 +62,75 @@ public abstract class RequestHelper<R> {
      */
     public abstract boolean isHiveEssenceRequest(final R request);
 
+    /**
+     * Determine the content type of the essence in the request, older
+     * synchronizers send their essence as text, newer can send it in binary
+     *
+     * @param request the 'request' to determine for
+     * @return HIVE_ESSENCE, HIVE_ESSENCE_BINARY or OTHER when this is not a
+     * hive essence request
+     */
+    public abstract ContentType determineEssenceType(final R request);
+
+    /**
+     * Determine the fingerprint of the essence, sent by a synchronizer instead
+     * of its essence
+     *
+     * @param request the 'request' to determine for
+     * @return the fingerprint or null when the request has no fingerprint
+     * @see io.hivemind.data.comparison.EssenceFingerprint
+     */
+    public abstract String determineFingerprint(final R request);
+
+    /**
+     * Determine the level of the summary of which the request has the nodes,
+     * sent by a synchronizer descending the summary of its essence
+     *
+     * @param request the 'request' to determine for
+     * @return the level or 0 when the request has no nodes of a summary
+     * @see io.hivemind.data.comparison.EssenceSummary
+     */
+    public abstract int determineSummaryLevel(final R request);
+
+    /**
+     * Determine the leaves of the summary of which the request has the tuples,
+     * sent by a synchronizer having descended the summary of its essence
+     *
+     * @param request the 'request' to determine for
+     * @return the leaves as `leaf,leaf` or null when the request has no leaves
+     * @see io.hivemind.data.comparison.EssenceSummary
+     */
+    public abstract String determineLeaves(final R request);
+
+    /**
+     * Determine the amount of cells of the sketch the request has, sent by a
+     * synchronizer instead of its essence
+     *
+     * @param request the 'request' to determine for
+     * @return the amount of cells or 0 when the request has no sketch
+     * @see io.hivemind.data.comparison.EssenceSketch
+     */
+    public abstract int determineSketchCells(final R request);
+
+    /**
+     * Determine the offset of the change log to read changes from
+     *
+     * @param request the 'request' to determine for
+     * @return the offset or 0 when the request has no offset
+     * @see io.hivemind.data.change.ChangeLog
+     */
+    public abstract long determineChangesOffset(final R request);
+
+    /**
+     * Determine the amount of seconds the synchronizer allows the request to
+     * be held when there is nothing to respond, waiting for its state to
+     * change
+     *
+     * @param request the 'request' to determine for
+     * @return the amount of seconds or 0 when the request is not to be held
+     */
+    public abstract int determineWait(final R request);
+
     /**
      * Determine if the synchronizer that send this request is requiring data to
      * be send in a specific format.
@@ -77,6 +156,25 @@ public abstract class RequestHelper<R> {
      */
     public abstract void setContentType(final String requestedType, final R response);
 
+    /**
+     * Set the offset of the first change and the offset to continue reading
+     * changes from for the response
+     *
+     * @param offset the offset of the first change responded with
+     * @param nextOffset the offset to continue from
+     * @param response the 'response' to set the offsets for
+     */
+    public abstract void setChangesOffsets(final long offset, final long nextOffset, final R response);
+
+    /**
+     * Set the amount of seconds the request is held at most for the response,
+     * informing the synchronizer it can send its next request right away
+     *
+     * @param wait the amount of seconds
+     * @param response the 'response' to set the wait for
+     */
+    public abstract void setWait(final int wait, final R response);
+
     /**
      * Determine the content type to set for a data request. This is either only
      * the content type: HIVE_ESSENCE or is: HIVE_ESSENCE, requestedType
@@ -85,8 +183,22 @@ public abstract class RequestHelper<R> {
      * @return the content type header for this request
      */
     public String determineDataRequestContentType(final PreparedData dataRequest) {
+        return determineDataRequestContentType(dataRequest, ContentType.HIVE_ESSENCE);
+    }
+
+    /**
+     * Determine the content type to set for a data request having the essence
+     * in the given content type
+     *
+     * @see #determineDataRequestContentType(io.hivemind.data.PreparedData)
+     * @param dataRequest the DataRequest to return
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the content type header for this request
+     */
+    public String determineDataRequestContentType(final PreparedData dataRequest, final ContentType essenceType) {
         StringBuilder sb = new StringBuilder();
-        sb.append(ContentType.HIVE_ESSENCE.getValue());
+        sb.append(essenceType.getValue());
 
         String requestedType = dataRequest.getRequestedType();
         if (requestedType != null) {
@@ -97,6 +209,63 @@ public abstract class RequestHelper<R> {
         return sb.toString();
     }
 
+    /**
+     * Process the data of the request, determining what the synchronizer sent
+     * from the headers of the request. Synchronizers send the fingerprint of
+     * their essence first, followed by the sketch or the summary of their
+     * essence or the essence when the fingerprint does not match
+     *
+     * @param dataProcessor the data processor
+     * @param data the data of the request
+     * @param essenceType the content type of the request
+     * @param request the request
+     * @param traceparent the traceparent
+     * @return the PreparedData, DataRequest, EssenceRequest or null
+     * @throws InvalidEssenceException when invalid essence has been received
+     */
+    public PreparedData process(final DataProcessor dataProcessor, final byte[] data, final ContentType essenceType, final R request, final String traceparent) throws InvalidEssenceException {
+        if (essenceType.isHiveEssence()) {
+            int summaryLevel = determineSummaryLevel(request);
+            int sketchCells = determineSketchCells(request);
+            String leaves = determineLeaves(request);
+            String fingerprint = determineFingerprint(request);
+            if (summaryLevel > 0) {
+                return dataProcessor.processSummary(summaryLevel, data, traceparent);
+            } else if (sketchCells > 0 && fingerprint != null) {
+                return dataProcessor.processSketch(data, sketchCells, fingerprint, determineRequestedType(request), traceparent);
+            } else if (leaves != null && fingerprint != null) {
+                return dataProcessor.processSummaryEssence(data, leaves, fingerprint, determineRequestedType(request), traceparent);
+            } else if (fingerprint != null && data.length == 0) {
+                return dataProcessor.processFingerprint(fingerprint, determineRequestedType(request), traceparent);
+            }
+        }
+
+        return dataProcessor.processData(data, essenceType, determineRequestedType(request), traceparent);
+    }
+
+    /**
+     * Encode an essence to respond with in binary, when the synchronizer sent
+     * its essence in binary. Essences that can not be encoded, which are not
+     * canonical, are responded as text which every synchronizer reads
+     *
+     * @param essence the essence to respond with
+     * @param essenceType the content type of the essence received
+     * @return the essence in binary or null when responding with text
+     */
+    public byte[] encodeEssence(final byte[] essence, final ContentType essenceType) {
+        if (ContentType.HIVE_ESSENCE_BINARY == essenceType && essence != null) {
+            EssenceTuples tuples = new EssenceTuples();
+            try {
+                tuples.parse(essence);
+                return tuples.toBinary();
+            } catch (InvalidEssenceException ex) {
+                // Essences responded with have been validated, respond as text
+            }
+        }
+
+        return null;
+    }
+
     protected String determineTraceparent(final List<String> values) {
         String traceparent;
         if (values == null || values.isEmpty()) {
@@ -110,6 +279,61 @@ public abstract class RequestHelper<R> {
         return traceparent;
     }
 
+    protected String determineFingerprint(final List<String> values) {
+        return lastValue(values);
+    }
+
+    protected String determineLeaves(final List<String> values) {
+        return lastValue(values);
+    }
+
+    protected int determineSummaryLevel(final List<String> values) {
+        return lastNumber(values);
+    }
+
+    protected int determineSketchCells(final List<String> values) {
+        return lastNumber(values);
+    }
+
+    protected int determineWait(final List<String> values) {
+        return Math.max(0, lastNumber(values));
+    }
+
+    protected long determineChangesOffset(final List<String> values) {
+        String offset = lastValue(values);
+        if (offset != null) {
+            try {
+                return Math.max(0, Long.parseLong(offset));
+            } catch (NumberFormatException ex) {
+                // Not a number, changes are read from the first change retained
+            }
+        }
+
+        return 0;
+    }
+
+    private static int lastNumber(final List<String> values) {
+        String number = lastValue(values);
+        if (number != null) {
+            try {
+                return Integer.parseInt(number);
+            } catch (NumberFormatException ex) {
+                // Not a number, the request is processed as not having the value
+            }
+        }
+
+        return 0;
+    }
+
+    private static String lastValue(final List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            String value = values.get(values.size() - 1);
+            return (value != null && !value.isBlank() ? value.trim() : null);
+        }
+
+        return null;
+    }
+
     private static String fromValue(final String traceparent) {
         return (traceparent != null && !traceparent.isEmpty() ? traceparent : TraceparentGenerator.generate());
     }
@@ -16,24 +16,118 @@
 package io.hivemind.manager;
 
 import io.hivemind.data.DataProcessor;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
 
 /**
  * Hive manager provides methods to observe hive health and keeps constant track
  * of hive health while performing tasks when required
+ * <p>
+ * Once started, the essences stored for synchronizers are compacted in the
+ * background whenever they use more memory then the budget, instead of
+ * waiting for a manual request to clear inert state. Snapshots of the state
+ * are written every interval, when snapshots are written.</p>
  *
  * @author Patrick-4488
  */
 public class HiveManager {
 
     private final DataProcessor dataProcessor;
+    private ScheduledExecutorService scheduler;
 
+    // FUTURE_WORK: move to configuration?
+    private static final long COMPACTION_INTERVAL_SECONDS = 60;
     private static final System.Logger LOGGER = System.getLogger(HiveManager.class.getName());
 
     public HiveManager() {
         this.dataProcessor = DataProcessor.getInstance();
     }
 
+    /**
+     * Start compacting the essences stored for synchronizers in the
+     * background, every minute the memory they use is compared with the budget
+     *
+     * @param memoryBudget the amount of bytes the essences stored may use
+     * before being compacted, 0 or less to not compact in the background
+     */
+    public void start(final long memoryBudget) {
+        start(memoryBudget, 0);
+    }
+
+    /**
+     * Start compacting and writing snapshots in the background
+     *
+     * @see #start(long)
+     * @param snapshotInterval the interval in seconds of writing snapshots, 0
+     * or less to not write snapshots in the background
+     */
+    public synchronized void start(final long memoryBudget, final long snapshotInterval) {
+        if (scheduler == null && (memoryBudget > 0 || snapshotInterval > 0)) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hive-manager");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (memoryBudget > 0) {
+                scheduler.scheduleWithFixedDelay(() -> compactWhenOverBudget(memoryBudget),
+                        COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+            if (snapshotInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::writeSnapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stop compacting and writing snapshots in the background
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Will write a snapshot of the state, when snapshots are written
+     *
+     * @return true when a snapshot has been written
+     */
+    public boolean writeSnapshot() {
+        try {
+            return dataProcessor.writeSnapshot();
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Failed to write snapshot, writing it again next interval", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Will remove inert state when the essences stored use more memory then
+     * the budget
+     *
+     * @param memoryBudget the amount of bytes the essences stored may use
+     * @return true when inert state has been removed
+     */
+    public boolean compactWhenOverBudget(final long memoryBudget) {
+        long inUse = dataProcessor.storedDataInBytes();
+        if (inUse <= memoryBudget) {
+            LOGGER.log(DEBUG, "Essences stored use {0} bytes, within budget", inUse);
+            return false;
+        }
+
+        LOGGER.log(INFO, "Essences stored use {0} bytes, exceeding the budget of {1}", inUse, memoryBudget);
+        clearInertState();
+
+        return true;
+    }
+
     /**
      * Will remove data that is no longer of any use or used for any activity.
      * e.g. observed data from more then X amount of requests ago. This will
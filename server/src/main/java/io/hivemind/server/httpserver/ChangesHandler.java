@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.server.httpserver;
+
+import com.sun.net.httpserver.HttpExchange;//NOSONAR, com.sun is fine
+import com.sun.net.httpserver.HttpHandler;//NOSONAR, com.sun is fine
+import io.hivemind.data.change.ChangeLog;
+import io.hivemind.service.ChangeService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Handles requests for the changes recorded by the hive, read from the offset
+ * requested. The changes are transferred from the change log as stored,
+ * httpserver only allows writing through the response stream
+ *
+ * @author Patrick-4488
+ */
+public class ChangesHandler implements HttpHandler {
+
+    private final HttpserverHelper httpserverHelper;
+
+    private static final String GET = "GET";
+    private static final System.Logger LOGGER = System.getLogger(ChangesHandler.class.getName());
+
+    public ChangesHandler() {
+        this.httpserverHelper = new HttpserverHelper();
+    }
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        LOGGER.log(INFO, "Changes request received, processing...");
+
+        if (exchange != null) {
+            ChangeService changeService = new ChangeService();
+            try {
+                exchange.getRequestBody().readAllBytes();
+                if (!GET.equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else if (!changeService.isRecording()) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    long offset = httpserverHelper.determineChangesOffset(exchange);
+                    try ( ChangeLog.Slice slice = changeService.readChanges(offset)) {
+                        if (slice != null) {
+                            httpserverHelper.setChangesOffsets(slice.getOffset(), slice.getNextOffset(), exchange);
+                            exchange.sendResponseHeaders(200, slice.getCount());
+                            try ( OutputStream os = exchange.getResponseBody()) {
+                                slice.transferTo(Channels.newChannel(os));
+                            }
+                        } else {
+                            long nextOffset = changeService.nextOffset();
+                            httpserverHelper.setChangesOffsets(nextOffset, nextOffset, exchange);
+                            exchange.sendResponseHeaders(204, -1);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                LOGGER.log(ERROR, "Error in request", ex);
+                throw ex;
+            } finally {
+                exchange.close();
+            }
+        } else {
+            LOGGER.log(WARNING, "Request received but no HttpExchange has been provided");
+        }
+    }
+}
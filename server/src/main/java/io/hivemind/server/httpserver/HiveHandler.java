@@ -21,6 +21,7 @@ import io.hivemind.configuration.HiveConfig;
 import io.hivemind.constant.ContentType;
 import io.hivemind.data.DataProcessor;
 import io.hivemind.data.DataRequest;
+import io.hivemind.data.EssenceRequest;
 import io.hivemind.data.PreparedData;
 import io.hivemind.data.PriorityRequest;
 import io.hivemind.exception.InvalidEssenceException;
@@ -28,6 +29,11 @@ import io.hivemind.helper.RequestHelper;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
@@ -35,6 +41,13 @@ import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Hive handler provides the endpoint for hive connections
+ * <p>
+ * Requests of synchronizers allowing to wait, having nothing to respond, are
+ * held without occupying a thread until the state of the synchronizer changes
+ * or the wait has passed. They are responded to on an executor that never
+ * runs them on the thread completing the change, being the thread of another
+ * request. When stopping, every held request is responded to with the current
+ * state of its synchronizer.</p>
  *
  * @author Patrick-4488
  */
@@ -43,12 +56,35 @@ public class HiveHandler implements HttpHandler {
     // FUTURE_WORK: Read the consistency model from config and implement it accordingly
     private final HiveConfig config;//NOSONAR
     private final DataProcessor dataProcessor;
+    private final Executor executor;
+    private final Set<CompletableFuture<Boolean>> held;
+    private volatile boolean releasing;
 
     private static final System.Logger LOGGER = System.getLogger(HiveHandler.class.getName());
 
-    public HiveHandler(final HiveConfig config) {
+    /**
+     * @param config the configuration
+     * @param executor the executor responding to held requests, never running
+     * a task on the thread submitting it
+     * @see HiveConfig#getHeldRequestExecutor()
+     */
+    public HiveHandler(final HiveConfig config, final Executor executor) {
         this.config = config;
         this.dataProcessor = DataProcessor.getInstance();
+        this.executor = executor;
+        this.held = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Stop holding requests, every request held is processed again and
+     * responded to on the executor. Requests received afterwards are no
+     * longer held
+     */
+    public void release() {
+        releasing = true;
+        for (CompletableFuture<Boolean> waiting : held) {
+            waiting.complete(true);
+        }
     }
 
     @Override
@@ -57,57 +93,149 @@ public class HiveHandler implements HttpHandler {
 
         if (exchange != null) {
             RequestHelper<HttpExchange> helper = new HttpserverHelper();
+            boolean isHeld = false;
             try ( InputStream is = exchange.getRequestBody()) {
                 final byte[] bytes = is.readAllBytes();
 
                 String traceparent = helper.determineTraceparent(exchange);
                 helper.setTraceparent(traceparent, exchange);
-                processData(bytes, exchange, helper, traceparent);
+                isHeld = processData(bytes, exchange, helper, traceparent);
             } catch (IOException ex) {
                 LOGGER.log(ERROR, "Error in request", ex);
                 throw ex;
             } finally {
-                exchange.close();
+                if (!isHeld) {
+                    exchange.close();
+                }
             }
         } else {
             LOGGER.log(WARNING, "Request received but no HttpExchange has been provided");
         }
     }
 
-    // FUTURE_WORK: Move this to a service and split it up in smaller bits that are reusable between httpServer and Netty
-    private void processData(final byte[] bytes, final HttpExchange exchange, final RequestHelper<HttpExchange> helper, final String traceparent) throws IOException {
+    /**
+     * The change is awaited before processing, a change while processing is
+     * not missed
+     *
+     * @return true when the request is held, it is closed once responded to
+     */
+    private boolean processData(final byte[] bytes, final HttpExchange exchange, final RequestHelper<HttpExchange> helper, final String traceparent) throws IOException {
+        ContentType essenceType = helper.determineEssenceType(exchange);
+        int wait = (essenceType.isHiveEssence() && !releasing ? Math.min(helper.determineWait(exchange), config.getLongPollTimeout()) : 0);
+        CompletableFuture<Void> change = null;
+        if (wait > 0) {
+            helper.setWait(wait, exchange);
+            change = dataProcessor.awaitChange(traceparent);
+        }
+
+        boolean isHeld = false;
         try {
-            PreparedData preparedData = dataProcessor.processData(bytes, helper.isHiveEssenceRequest(exchange), helper.determineRequestedType(exchange), traceparent);
-            if (preparedData != null) {
-                LOGGER.log(INFO, "Request succeeded with having data with type: {0}",
-                        preparedData.getClass().getSimpleName());
-
-                byte[] responseData = preparedData.getData();
-                // FUTURE_WORK: Java 19 - switch to pattern matching
-                if (preparedData instanceof DataRequest) {
-                    helper.setContentType(helper.determineDataRequestContentType(preparedData), exchange);
-                    exchange.sendResponseHeaders(200, responseData.length);
-                } else if (preparedData instanceof PriorityRequest) {
-                    helper.setContentType(ContentType.HIVE_ESSENCE.getValue(), exchange);
-                    exchange.sendResponseHeaders(409, responseData.length);
-                } else {
-                    helper.setContentType(preparedData.getRequestedType(), exchange);
-                    exchange.sendResponseHeaders(200, responseData.length);
-                }
+            PreparedData preparedData = helper.process(dataProcessor, bytes, essenceType, exchange, traceparent);
+            if (preparedData == null && change != null) {
+                LOGGER.log(INFO, "Request succeeded, no data required, holding it for {0} seconds", wait);
+                hold(change, wait, bytes, essenceType, exchange, helper, traceparent);
+                isHeld = true;
+            } else {
+                respond(preparedData, essenceType, exchange, helper);
+            }
+        } catch (InvalidEssenceException ex) {
+            respond(ex, exchange, traceparent);
+        } finally {
+            if (change != null && !isHeld) {
+                dataProcessor.stopAwaitingChange(traceparent, change);
+            }
+        }
+
+        return isHeld;
+    }
+
+    /**
+     * Once changed or released, the request is processed again. When the wait
+     * has passed there is still nothing to respond
+     */
+    private void hold(final CompletableFuture<Void> change, final int wait, final byte[] bytes, final ContentType essenceType,
+            final HttpExchange exchange, final RequestHelper<HttpExchange> helper, final String traceparent) {
+        CompletableFuture<Boolean> waiting = change.thenApply(changed -> true)
+                .completeOnTimeout(false, wait, TimeUnit.SECONDS);
+        held.add(waiting);
+        if (releasing) {
+            // Released while being held, the release did not see this request
+            waiting.complete(true);
+        }
+        waiting.thenAcceptAsync(changed -> {
+            held.remove(waiting);
+            dataProcessor.stopAwaitingChange(traceparent, change);
+            try {
+                respondOnChange(changed, bytes, essenceType, exchange, helper, traceparent);
+            } catch (IOException ex) {
+                LOGGER.log(ERROR, "Error responding to held request", ex);
+            } finally {
+                exchange.close();
+            }
+        }, executor);
+    }
+
+    private void respondOnChange(final boolean changed, final byte[] bytes, final ContentType essenceType,
+            final HttpExchange exchange, final RequestHelper<HttpExchange> helper, final String traceparent) throws IOException {
+        try {
+            respond((changed ? helper.process(dataProcessor, bytes, essenceType, exchange, traceparent) : null), essenceType, exchange, helper);
+        } catch (InvalidEssenceException ex) {
+            respond(ex, exchange, traceparent);
+        }
+    }
 
+    // FUTURE_WORK: Move this to a service and split it up in smaller bits that are reusable between httpServer and Netty
+    private void respond(final PreparedData preparedData, final ContentType essenceType, final HttpExchange exchange, final RequestHelper<HttpExchange> helper) throws IOException {
+        if (preparedData instanceof EssenceRequest) {
+            LOGGER.log(INFO, "Request succeeded, essence not known, returning 412");
+            byte[] nodes = preparedData.getData();
+            exchange.sendResponseHeaders(412, (nodes.length > 0 ? nodes.length : -1));
+            if (nodes.length > 0) {
                 try ( OutputStream os = exchange.getResponseBody()) {
-                    os.write(responseData);
+                    os.write(nodes);
+                }
+            }
+        } else if (preparedData != null) {
+            LOGGER.log(INFO, "Request succeeded with having data with type: {0}",
+                    preparedData.getClass().getSimpleName());
+
+            byte[] responseData = preparedData.getData();
+            ContentType responseType = ContentType.HIVE_ESSENCE;
+            if (preparedData instanceof DataRequest || preparedData instanceof PriorityRequest) {
+                byte[] binaryEssence = helper.encodeEssence(responseData, essenceType);
+                if (binaryEssence != null) {
+                    responseData = binaryEssence;
+                    responseType = ContentType.HIVE_ESSENCE_BINARY;
                 }
+            }
+
+            // FUTURE_WORK: Java 19 - switch to pattern matching
+            if (preparedData instanceof DataRequest) {
+                helper.setContentType(helper.determineDataRequestContentType(preparedData, responseType), exchange);
+                exchange.sendResponseHeaders(200, responseData.length);
+            } else if (preparedData instanceof PriorityRequest) {
+                helper.setContentType(responseType.getValue(), exchange);
+                exchange.sendResponseHeaders(409, responseData.length);
             } else {
-                LOGGER.log(INFO, "Request succeeded, no data required, returning 204");
-                exchange.sendResponseHeaders(204, -1);
+                helper.setContentType(preparedData.getRequestedType(), exchange);
+                exchange.sendResponseHeaders(200, responseData.length);
             }
-        } catch (InvalidEssenceException ex) {
-            byte[] exception = ex.getLocalizedMessage().getBytes();
-            exchange.sendResponseHeaders(400, exception.length);
+
             try ( OutputStream os = exchange.getResponseBody()) {
-                os.write(exception);
+                os.write(responseData);
             }
+        } else {
+            LOGGER.log(INFO, "Request succeeded, no data required, returning 204");
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    private void respond(final InvalidEssenceException ex, final HttpExchange exchange, final String traceparent) throws IOException {
+        LOGGER.log(WARNING, "Received invalid essence from {0}, invalid at byte {1}", traceparent, ex.getOffset());
+        byte[] exception = ex.getLocalizedMessage().getBytes();
+        exchange.sendResponseHeaders(400, exception.length);
+        try ( OutputStream os = exchange.getResponseBody()) {
+            os.write(exception);
         }
     }
 }
@@ -19,10 +19,14 @@ import io.hivemind.HiveServer;
 import io.hivemind.configuration.HiveConfig;
 import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.UnstartableException;
+import io.hivemind.service.HiveManagerService;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Httpserver implementation for hive server
@@ -33,6 +37,8 @@ public class HttpServer implements HiveServer {
 
     private final HiveConfig config;
     private com.sun.net.httpserver.HttpServer server;//NOSONAR, com.sun is fine
+    private ThreadPoolExecutor heldRequestExecutor;
+    private HiveHandler hiveHandler;
 
     private static final System.Logger LOGGER = System.getLogger(HttpServer.class.getName());
 
@@ -44,9 +50,12 @@ public class HttpServer implements HiveServer {
     public void start() throws UnstartableException {
         try {
             server = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress(config.getPort()), 0);//NOSONAR, com.sun is fine
+            heldRequestExecutor = config.getHeldRequestExecutor();
             server.setExecutor(config.getPoolExecutor());
-            server.createContext("/", new HiveHandler(config));
+            hiveHandler = new HiveHandler(config, heldRequestExecutor);
+            server.createContext("/", hiveHandler);
             server.createContext("/manager", new ManagerHandler());
+            server.createContext("/changes", new ChangesHandler());
             server.start();
         } catch (IOException ex) {
             LOGGER.log(ERROR, "Not able to start httpserver", ex);
@@ -54,8 +63,23 @@ public class HttpServer implements HiveServer {
         }
     }
 
+    /**
+     * Held requests are responded to before stopping, otherwise the server
+     * would wait for them. The snapshot is written once every request has been
+     * responded to
+     */
     @Override
     public void stop() {
+        hiveHandler.release();
         server.stop(60);
+        heldRequestExecutor.shutdown();
+        try {
+            if (!heldRequestExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                LOGGER.log(WARNING, "Held requests still being responded to, writing the snapshot anyway");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        new HiveManagerService().writeSnapshot();
     }
 }
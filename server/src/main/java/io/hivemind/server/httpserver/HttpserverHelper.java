@@ -32,26 +32,65 @@ public class HttpserverHelper extends RequestHelper<HttpExchange> {
         return determineTraceparent(exchange.getRequestHeaders().get(KEY_TRACEPARENT));
     }
 
-    // FUTURE_WORK: Add unit tests this is to similair to method below
+    @Override
+    public String determineFingerprint(final HttpExchange exchange) {
+        return determineFingerprint(exchange.getRequestHeaders().get(KEY_FINGERPRINT));
+    }
+
+    @Override
+    public int determineSummaryLevel(final HttpExchange exchange) {
+        return determineSummaryLevel(exchange.getRequestHeaders().get(KEY_SUMMARY));
+    }
+
+    @Override
+    public int determineSketchCells(final HttpExchange exchange) {
+        return determineSketchCells(exchange.getRequestHeaders().get(KEY_SKETCH));
+    }
+
+    @Override
+    public String determineLeaves(final HttpExchange exchange) {
+        return determineLeaves(exchange.getRequestHeaders().get(KEY_LEAVES));
+    }
+
+    @Override
+    public long determineChangesOffset(final HttpExchange exchange) {
+        return determineChangesOffset(exchange.getRequestHeaders().get(KEY_CHANGES_OFFSET));
+    }
+
+    @Override
+    public int determineWait(final HttpExchange exchange) {
+        return determineWait(exchange.getRequestHeaders().get(KEY_WAIT));
+    }
+
     @Override
     public boolean isHiveEssenceRequest(final HttpExchange exchange) {
+        return determineEssenceType(exchange).isHiveEssence();
+    }
+
+    // FUTURE_WORK: Add unit tests this is to similair to method below
+    @Override
+    public ContentType determineEssenceType(final HttpExchange exchange) {
         List<String> contentTypes = exchange.getRequestHeaders().get(KEY_CONTENT_TYPE);
         if (contentTypes != null && !contentTypes.isEmpty()) {
             for (String contentType : contentTypes) {
                 if (contentType.contains(COMMA)) {
                     String[] contentTypesWithin = contentType.split(COMMA);
                     for (String contentTypeWithin : contentTypesWithin) {
-                        if (ContentType.HIVE_ESSENCE == ContentType.enumFor(contentTypeWithin)) {
-                            return true;
+                        ContentType essenceType = ContentType.enumFor(contentTypeWithin.trim());
+                        if (essenceType.isHiveEssence()) {
+                            return essenceType;
                         }
                     }
-                } else if (ContentType.HIVE_ESSENCE == ContentType.enumFor(contentType)) {
-                    return true;
+                } else {
+                    ContentType essenceType = ContentType.enumFor(contentType.trim());
+                    if (essenceType.isHiveEssence()) {
+                        return essenceType;
+                    }
                 }
             }
         }
 
-        return false;
+        return ContentType.OTHER;
     }
 
     // FUTURE_WORK: Add unit tests this is to similair to method above
@@ -63,11 +102,11 @@ public class HttpserverHelper extends RequestHelper<HttpExchange> {
                 if (contentType.contains(COMMA)) {
                     String[] contentTypesWithin = contentType.split(COMMA);
                     for (String contentTypeWithin : contentTypesWithin) {
-                        if (ContentType.HIVE_ESSENCE != ContentType.enumFor(contentTypeWithin)) {
+                        if (!ContentType.enumFor(contentTypeWithin.trim()).isHiveEssence()) {
                             return contentTypeWithin.trim();
                         }
                     }
-                } else if (ContentType.HIVE_ESSENCE != ContentType.enumFor(contentType)) {
+                } else if (!ContentType.enumFor(contentType.trim()).isHiveEssence()) {
                     return contentType.trim();
                 }
             }
@@ -86,4 +125,15 @@ public class HttpserverHelper extends RequestHelper<HttpExchange> {
         response.getResponseHeaders().add(KEY_CONTENT_TYPE, requestedType);
     }
 
+    @Override
+    public void setChangesOffsets(final long offset, final long nextOffset, final HttpExchange response) {
+        response.getResponseHeaders().add(KEY_CHANGES_OFFSET, String.valueOf(offset));
+        response.getResponseHeaders().add(KEY_CHANGES_NEXT_OFFSET, String.valueOf(nextOffset));
+    }
+
+    @Override
+    public void setWait(final int wait, final HttpExchange response) {
+        response.getResponseHeaders().set(KEY_WAIT, String.valueOf(wait));
+    }
+
 }
@@ -34,6 +34,7 @@ import static java.lang.System.Logger.Level.WARNING;
  */
 public class ManagerHandler implements HttpHandler {
 
+    private static final String GET = "GET";
     private static final System.Logger LOGGER = System.getLogger(ManagerHandler.class.getName());
 
     @Override
@@ -44,7 +45,13 @@ public class ManagerHandler implements HttpHandler {
             HiveManagerService hiveManager = new HiveManagerService();
             try ( InputStream is = exchange.getRequestBody()) {
                 final byte[] bytes = is.readAllBytes();
-                if (bytes != null && bytes.length > 0) {
+                if (GET.equals(exchange.getRequestMethod())) {
+                    byte[] statistics = hiveManager.getStatistics();
+                    exchange.sendResponseHeaders(200, statistics.length);
+                    try ( OutputStream os = exchange.getResponseBody()) {
+                        os.write(statistics);
+                    }
+                } else if (bytes != null && bytes.length > 0) {
                     switch (Clear.enumFor(new String(bytes))) {
                         case INERT ->
                             hiveManager.clearInertState();
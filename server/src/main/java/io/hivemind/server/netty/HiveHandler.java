@@ -20,31 +20,74 @@ import io.hivemind.constant.Clear;
 import io.hivemind.constant.ContentType;
 import io.hivemind.data.DataProcessor;
 import io.hivemind.data.DataRequest;
+import io.hivemind.data.EssenceRequest;
 import io.hivemind.data.PreparedData;
 import io.hivemind.data.PriorityRequest;
+import io.hivemind.data.change.ChangeLog;
 import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.HiveRequestException;
 import io.hivemind.exception.InvalidEssenceException;
+import io.hivemind.helper.RequestHelper;
+import io.hivemind.service.ChangeService;
 import io.hivemind.service.HiveManagerService;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.*;
 import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Channel to process hive requests
+ * <p>
+ * The handler runs on an executor of its own, not on the event loop of the
+ * channel. Processing a request waits for the state to be durable, the event
+ * loop keeps reading and writing the other channels meanwhile. Responses are
+ * written to the channel by its event loop.</p>
+ * <p>
+ * Requests of synchronizers allowing to wait, having nothing to respond, are
+ * held without blocking the executor until the state of the synchronizer
+ * changes or the wait has passed.</p>
+ * <p>
+ * Synchronizers can upgrade their connection to the push transport, keeping
+ * one WebSocket channel over which the hive pushes responses as soon as there
+ * is something to respond.</p>
+ * <p>
+ * Over HTTP/2 every stream has its own handler, the push transport is only
+ * available over HTTP/1.1. A push request over HTTP/2 is a bad request.</p>
  *
  * @author Patrick-4488
  */
@@ -61,6 +104,10 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
 
     private static final String REQUEST_TYPE = "Request is type: {0}";
     private static final String MANAGER_REQUEST = "/manager";
+    private static final String CHANGES_REQUEST = "/changes";
+    private static final String PUSH_REQUEST = "/push";
+    // FUTURE_WORK: Read the maximum size of messages held in full from config
+    static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
     private static final System.Logger LOGGER = System.getLogger(HiveHandler.class.getName());
 
     public HiveHandler(final HiveConfig config) {
@@ -85,6 +132,10 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
 
         if (msg instanceof HttpContent httpContent && MANAGER_REQUEST.equals(request.uri())) {
             proccessManagementRequest(ctx, httpContent);
+        } else if (msg instanceof HttpContent httpContent && CHANGES_REQUEST.equals(request.uri())) {
+            processChangesRequest(ctx, httpContent);
+        } else if (msg instanceof HttpContent httpContent && PUSH_REQUEST.equals(request.uri())) {
+            processPushRequest(ctx, httpContent);
         } else if (msg instanceof HttpContent httpContent) {
             processHttpContent(ctx, httpContent);
         }
@@ -123,42 +174,27 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
         if (httpContent instanceof LastHttpContent) {
             LOGGER.log(INFO, REQUEST_TYPE, LastHttpContent.class.getSimpleName());
 
-            byte[] responseData = new byte[0];
-            FullHttpResponse response;
+            // The change is awaited before processing, a change while processing is not missed
+            ContentType essenceType = helper.determineEssenceType(request);
+            byte[] data = readData();
+            int wait = (essenceType.isHiveEssence() ? Math.min(helper.determineWait(request), config.getLongPollTimeout()) : 0);
+            CompletableFuture<Void> change = (wait > 0 ? dataProcessor.awaitChange(traceparent) : null);
+            boolean isHeld = false;
             try {
-                // FUTURE_WORK: Move this to a service and split it up in smaller bits that are reusable between httpServer and Netty
-                PreparedData preparedData = dataProcessor.processData(readData(), helper.isHiveEssenceRequest(request), helper.determineRequestedType(request), traceparent);
-
-                if (preparedData != null) {
-                    response = helper.createBaseResponse(preparedData.getData(), request);
-
-                    LOGGER.log(INFO, "Request succeeded with having data with type: {0}",
-                            preparedData.getClass().getSimpleName());
-
-                    helper.setTraceparent(traceparent, response);
-                    if (preparedData instanceof DataRequest) {
-                        helper.setContentType(helper.determineDataRequestContentType(preparedData), response);
-                    } else if (preparedData instanceof PriorityRequest) {
-                        helper.setContentType(ContentType.HIVE_ESSENCE.getValue(), response);
-                        response.setStatus(CONFLICT);
-                    } else {
-                        helper.setContentType(preparedData.getRequestedType(), response);
-                    }
+                PreparedData preparedData = helper.process(dataProcessor, data, essenceType, request, traceparent);
+                if (preparedData == null && change != null) {
+                    LOGGER.log(INFO, "Request succeeded, no data required, holding it for {0} seconds", wait);
+                    hold(ctx, change, wait, data, essenceType, request, traceparent);
+                    isHeld = true;
                 } else {
-                    LOGGER.log(INFO, "Request succeeded, no data required, returning 204");
-                    response = helper.createBaseResponse(responseData, request);
-                    response.setStatus(NO_CONTENT);
+                    write(ctx, respond(preparedData, essenceType, request, traceparent, wait), request);
                 }
             } catch (InvalidEssenceException ex) {
-                responseData = ex.getLocalizedMessage().getBytes();
-                response = helper.createBaseResponse(responseData, request);
-                response.setStatus(BAD_REQUEST);
-            }
-
-            ctx.write(response);
-
-            if (!HttpUtil.isKeepAlive(request)) {
-                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+                write(ctx, respond(ex, request, traceparent), request);
+            } finally {
+                if (change != null && !isHeld) {
+                    dataProcessor.stopAwaitingChange(traceparent, change);
+                }
             }
 
             bodyBuffer.clear();
@@ -166,6 +202,93 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    /**
+     * Once changed, the request is processed again on the executor of the
+     * handler, unless the channel has been closed in the meantime. When the
+     * wait has passed there is still nothing to respond
+     */
+    private void hold(final ChannelHandlerContext ctx, final CompletableFuture<Void> change, final int wait, final byte[] data,
+            final ContentType essenceType, final HttpRequest heldRequest, final String heldTraceparent) {
+        change.thenApply(changed -> true)
+                .completeOnTimeout(false, wait, TimeUnit.SECONDS)
+                .thenAcceptAsync(changed -> {
+                    dataProcessor.stopAwaitingChange(heldTraceparent, change);
+                    if (ctx.channel().isActive()) {
+                        write(ctx, respondOnChange(changed, data, essenceType, heldRequest, heldTraceparent, wait), heldRequest);
+                        ctx.flush();
+                    }
+                }, ctx.executor());
+    }
+
+    private FullHttpResponse respondOnChange(final boolean changed, final byte[] data, final ContentType essenceType,
+            final HttpRequest request, final String traceparent, final int wait) {
+        try {
+            return respond((changed ? helper.process(dataProcessor, data, essenceType, request, traceparent) : null), essenceType, request, traceparent, wait);
+        } catch (InvalidEssenceException ex) {
+            return respond(ex, request, traceparent);
+        }
+    }
+
+    private void write(final ChannelHandlerContext ctx, final FullHttpResponse response, final HttpRequest request) {
+        ctx.write(response);
+
+        if (!HttpUtil.isKeepAlive(request)) {
+            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    // FUTURE_WORK: Move this to a service and split it up in smaller bits that are reusable between httpServer and Netty
+    FullHttpResponse respond(final PreparedData preparedData, final ContentType essenceType, final HttpRequest request, final String traceparent, final int wait) {
+        FullHttpResponse response;
+        if (preparedData instanceof EssenceRequest) {
+            LOGGER.log(INFO, "Request succeeded, essence not known, returning 412");
+            response = helper.createBaseResponse(preparedData.getData(), request);
+            helper.setTraceparent(traceparent, response);
+            response.setStatus(PRECONDITION_FAILED);
+        } else if (preparedData != null) {
+            byte[] data = preparedData.getData();
+            ContentType responseType = ContentType.HIVE_ESSENCE;
+            if (preparedData instanceof DataRequest || preparedData instanceof PriorityRequest) {
+                byte[] binaryEssence = helper.encodeEssence(data, essenceType);
+                if (binaryEssence != null) {
+                    data = binaryEssence;
+                    responseType = ContentType.HIVE_ESSENCE_BINARY;
+                }
+            }
+            response = helper.createBaseResponse(data, request);
+
+            LOGGER.log(INFO, "Request succeeded with having data with type: {0}",
+                    preparedData.getClass().getSimpleName());
+
+            helper.setTraceparent(traceparent, response);
+            if (preparedData instanceof DataRequest) {
+                helper.setContentType(helper.determineDataRequestContentType(preparedData, responseType), response);
+            } else if (preparedData instanceof PriorityRequest) {
+                helper.setContentType(responseType.getValue(), response);
+                response.setStatus(CONFLICT);
+            } else {
+                helper.setContentType(preparedData.getRequestedType(), response);
+            }
+        } else {
+            LOGGER.log(INFO, "Request succeeded, no data required, returning 204");
+            response = helper.createBaseResponse(new byte[0], request);
+            response.setStatus(NO_CONTENT);
+        }
+        if (wait > 0) {
+            helper.setWait(wait, response);
+        }
+
+        return response;
+    }
+
+    FullHttpResponse respond(final InvalidEssenceException ex, final HttpRequest request, final String traceparent) {
+        LOGGER.log(WARNING, "Received invalid essence from {0}, invalid at byte {1}", traceparent, ex.getOffset());
+        FullHttpResponse response = helper.createBaseResponse(ex.getLocalizedMessage().getBytes(), request);
+        response.setStatus(BAD_REQUEST);
+
+        return response;
+    }
+
     private void proccessManagementRequest(final ChannelHandlerContext ctx, final HttpContent httpContent) {
         LOGGER.log(INFO, REQUEST_TYPE, HttpContent.class.getSimpleName());
 
@@ -181,7 +304,9 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
             try {
                 HiveManagerService hiveManager = new HiveManagerService();
                 final byte[] bytes = readData();
-                if (bytes.length > 0) {
+                if (HttpMethod.GET.equals(request.method())) {
+                    response = helper.createBaseResponse(hiveManager.getStatistics(), request);
+                } else if (bytes.length > 0) {
                     switch (Clear.enumFor(new String(bytes))) {
                         case INERT ->
                             hiveManager.clearInertState();
@@ -211,6 +336,152 @@ public class HiveHandler extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    /**
+     * The changes are written from the change log to the channel as a file
+     * region, without copying them through the heap
+     */
+    private void processChangesRequest(final ChannelHandlerContext ctx, final HttpContent httpContent) {
+        LOGGER.log(INFO, REQUEST_TYPE, HttpContent.class.getSimpleName());
+
+        if (httpContent instanceof LastHttpContent) {
+            LOGGER.log(INFO, REQUEST_TYPE, LastHttpContent.class.getSimpleName());
+
+            ChangeService changeService = new ChangeService();
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            if (!HttpMethod.GET.equals(request.method())) {
+                writeChangesResponse(ctx, METHOD_NOT_ALLOWED, keepAlive);
+            } else if (!changeService.isRecording()) {
+                writeChangesResponse(ctx, NOT_FOUND, keepAlive);
+            } else {
+                ChangeLog.Slice slice = null;
+                try {
+                    slice = changeService.readChanges(helper.determineChangesOffset(request));
+                    if (slice != null) {
+                        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+                        HttpUtil.setContentLength(response, slice.getCount());
+                        if (keepAlive) {
+                            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+                        }
+                        helper.setChangesOffsets(slice.getOffset(), slice.getNextOffset(), response);
+
+                        // Streams of HTTP/2 are written as frames, the changes are read into a buffer instead
+                        Object content = (ctx.channel() instanceof Http2StreamChannel
+                                ? new DefaultHttpContent(readChanges(ctx, slice))
+                                : new DefaultFileRegion(slice.getChannel(), slice.getPosition(), slice.getCount()));
+
+                        ctx.write(response);
+                        ctx.write(content);
+                        if (keepAlive) {
+                            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                        } else {
+                            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(ChannelFutureListener.CLOSE);
+                        }
+                    } else {
+                        writeChangesResponse(ctx, NO_CONTENT, keepAlive);
+                    }
+                } catch (IOException ex) {
+                    LOGGER.log(ERROR, "Not able to read changes", ex);
+                    closeQuietly(slice);
+                    writeChangesResponse(ctx, INTERNAL_SERVER_ERROR, keepAlive);
+                }
+            }
+
+            bodyBuffer.clear();
+            traceparent = null;
+        }
+    }
+
+    /**
+     * The channel is upgraded to a WebSocket channel, handled by a push handler
+     * from then on. A stream of HTTP/2 is not upgraded, the handshake would be
+     * written as frames of the stream
+     *
+     * @see PushHandler
+     */
+    private void processPushRequest(final ChannelHandlerContext ctx, final HttpContent httpContent) {
+        LOGGER.log(INFO, REQUEST_TYPE, HttpContent.class.getSimpleName());
+
+        if (httpContent instanceof LastHttpContent) {
+            LOGGER.log(INFO, REQUEST_TYPE, LastHttpContent.class.getSimpleName());
+
+            if (ctx.channel() instanceof Http2StreamChannel) {
+                LOGGER.log(WARNING, "Received push request from {0} over HTTP/2, push is only available over HTTP/1.1", traceparent);
+                FullHttpResponse response = helper.createBaseResponse(new byte[0], request);
+                response.setStatus(BAD_REQUEST);
+                write(ctx, response, request);
+            } else if (HttpMethod.GET.equals(request.method())
+                    && request.headers().containsValue(HttpHeaderNames.UPGRADE, HttpHeaderValues.WEBSOCKET, true)) {
+                upgradeToPush(ctx);
+            } else {
+                FullHttpResponse response = helper.createBaseResponse(new byte[0], request);
+                response.setStatus(UPGRADE_REQUIRED);
+                write(ctx, response, request);
+            }
+
+            bodyBuffer.clear();
+            traceparent = null;
+        }
+    }
+
+    private void upgradeToPush(final ChannelHandlerContext ctx) {
+        String location = "ws://" + request.headers().get(HttpHeaderNames.HOST) + PUSH_REQUEST;
+        WebSocketServerHandshaker handshaker = new WebSocketServerHandshakerFactory(location, null, false, MAX_MESSAGE_SIZE)
+                .newHandshaker(request);
+        if (handshaker == null) {
+            WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+            return;
+        }
+
+        LOGGER.log(INFO, "Upgrading {0} to push", traceparent);
+        HttpHeaders responseHeaders = new DefaultHttpHeaders();
+        if (traceparent != null) {
+            responseHeaders.set(RequestHelper.KEY_TRACEPARENT, traceparent);
+        }
+        FullHttpRequest upgradeRequest = new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(),
+                Unpooled.EMPTY_BUFFER, request.headers(), EmptyHttpHeaders.INSTANCE);
+        // Replaced before the handshake is answered, the first message of the synchronizer is read by the push handler
+        ctx.pipeline().addBefore(ctx.name(), null, new WebSocketFrameAggregator(MAX_MESSAGE_SIZE));
+        ctx.pipeline().replace(this, null, new PushHandler(this, traceparent, handshaker));
+        handshaker.handshake(ctx.channel(), upgradeRequest, responseHeaders, ctx.newPromise());
+    }
+
+    private void writeChangesResponse(final ChannelHandlerContext ctx, final HttpResponseStatus status, final boolean keepAlive) {
+        FullHttpResponse response = helper.createBaseResponse(new byte[0], request);
+        response.setStatus(status);
+        if (NO_CONTENT.equals(status)) {
+            long nextOffset = new ChangeService().nextOffset();
+            helper.setChangesOffsets(nextOffset, nextOffset, response);
+        }
+
+        ctx.write(response);
+
+        if (!keepAlive) {
+            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static ByteBuf readChanges(final ChannelHandlerContext ctx, final ChangeLog.Slice slice) throws IOException {
+        ByteBuf content = ctx.alloc().buffer((int) slice.getCount());
+        try (slice) {
+            slice.transferTo(Channels.newChannel(new ByteBufOutputStream(content)));
+        } catch (IOException ex) {
+            content.release();
+            throw ex;
+        }
+
+        return content;
+    }
+
+    private static void closeQuietly(final ChangeLog.Slice slice) {
+        if (slice != null) {
+            try {
+                slice.close();
+            } catch (IOException ex) {
+                LOGGER.log(WARNING, "Not able to close the changes read", ex);
+            }
+        }
+    }
+
     private byte[] readData() {
         byte[] bytes;
         int length = bodyBuffer.readableBytes();
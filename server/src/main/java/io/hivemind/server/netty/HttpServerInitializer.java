@@ -16,30 +16,105 @@
 package io.hivemind.server.netty;
 
 import io.hivemind.configuration.HiveConfig;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpRequestDecoder;
-import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.EventExecutorGroup;
+import java.util.List;
 
 /**
  * Server initializer for netty channel
+ * <p>
+ * Connections speak HTTP/1.1 or cleartext HTTP/2 (h2c), either with prior
+ * knowledge or upgraded from HTTP/1.1. Over HTTP/2 the requests of a
+ * synchronizer share one connection as multiplexed streams, every stream is
+ * converted to HTTP/1.1 messages and handled by its own hive handler.</p>
+ * <p>
+ * The request upgrading to HTTP/2 is held in full, up to the same size as a
+ * push message. A request having a larger body is not upgraded but handled
+ * over HTTP/1.1, the same as when not asking to upgrade.</p>
+ * <p>
+ * Hive handlers run on the executors of the handler group, processing a
+ * request does not block the event loop of the connection.</p>
  *
  * @author Patrick-4488
  */
-public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
+public class HttpServerInitializer extends ChannelInitializer<Channel> {
 
     private final HiveConfig config;
+    private final EventExecutorGroup handlerGroup;
+    private final ChannelInitializer<Channel> streamInitializer;
 
-    public HttpServerInitializer(final HiveConfig config) {
+    /**
+     * @param config the configuration of the hive
+     * @param handlerGroup the executors running the hive handlers, processing
+     * requests off the event loops
+     */
+    public HttpServerInitializer(final HiveConfig config, final EventExecutorGroup handlerGroup) {
         this.config = config;
+        this.handlerGroup = handlerGroup;
+        this.streamInitializer = new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(final Channel stream) {
+                stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                stream.pipeline().addLast(handlerGroup, new HiveHandler(config));
+            }
+        };
     }
 
     @Override
-    public void initChannel(final SocketChannel ch) {
+    public void initChannel(final Channel ch) {
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        HttpServerUpgradeHandler upgradeHandler = new LimitedUpgradeHandler(sourceCodec, protocol
+                -> (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                ? new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(),
+                        new Http2MultiplexHandler(streamInitializer, streamInitializer))
+                : null));
+
         ChannelPipeline p = ch.pipeline();
-        p.addLast(new HttpRequestDecoder());
-        p.addLast(new HttpResponseEncoder());
-        p.addLast(new HiveHandler(config));
+        p.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel channel) {
+                // The hive handler of HTTP/1.1 would take the frames, every stream has its own instead
+                channel.pipeline().remove(HiveHandler.class);
+                channel.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                channel.pipeline().addLast(new Http2MultiplexHandler(streamInitializer));
+            }
+        }));
+        p.addLast(handlerGroup, new HiveHandler(config));
+    }
+
+    /**
+     * Upgrades requests of which the body fits the maximum size of a message,
+     * the upgrade header of a larger request is removed. A chunked request
+     * having no content length is held up to the maximum size
+     */
+    private static final class LimitedUpgradeHandler extends HttpServerUpgradeHandler {
+
+        private LimitedUpgradeHandler(final SourceCodec sourceCodec, final UpgradeCodecFactory upgradeCodecFactory) {
+            super(sourceCodec, upgradeCodecFactory, HiveHandler.MAX_MESSAGE_SIZE);
+        }
+
+        @Override
+        protected void decode(final ChannelHandlerContext ctx, final HttpObject msg, final List<Object> out) throws Exception {
+            if (msg instanceof HttpRequest request && HttpUtil.getContentLength(request, 0L) > HiveHandler.MAX_MESSAGE_SIZE) {
+                request.headers().remove(HttpHeaderNames.UPGRADE);
+            }
+            super.decode(ctx, msg, out);
+        }
     }
 }
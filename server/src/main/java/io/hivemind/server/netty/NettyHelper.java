@@ -42,26 +42,65 @@ public class NettyHelper extends RequestHelper<HttpMessage> {
         return super.determineTraceparent(request.headers().getAll(KEY_TRACEPARENT));
     }
 
-    // FUTURE_WORK: Add unit tests and combine, its to similair to below
+    @Override
+    public String determineFingerprint(final HttpMessage request) {
+        return super.determineFingerprint(request.headers().getAll(KEY_FINGERPRINT));
+    }
+
+    @Override
+    public int determineSummaryLevel(final HttpMessage request) {
+        return super.determineSummaryLevel(request.headers().getAll(KEY_SUMMARY));
+    }
+
+    @Override
+    public int determineSketchCells(final HttpMessage request) {
+        return super.determineSketchCells(request.headers().getAll(KEY_SKETCH));
+    }
+
+    @Override
+    public String determineLeaves(final HttpMessage request) {
+        return super.determineLeaves(request.headers().getAll(KEY_LEAVES));
+    }
+
+    @Override
+    public long determineChangesOffset(final HttpMessage request) {
+        return determineChangesOffset(request.headers().getAll(KEY_CHANGES_OFFSET));
+    }
+
+    @Override
+    public int determineWait(final HttpMessage request) {
+        return determineWait(request.headers().getAll(KEY_WAIT));
+    }
+
     @Override
     public boolean isHiveEssenceRequest(final HttpMessage request) {
+        return determineEssenceType(request).isHiveEssence();
+    }
+
+    // FUTURE_WORK: Add unit tests and combine, its to similair to below
+    @Override
+    public ContentType determineEssenceType(final HttpMessage request) {
         List<String> contentTypes = request.headers().getAll(KEY_CONTENT_TYPE);
         if (contentTypes != null && !contentTypes.isEmpty()) {
             for (String contentType : contentTypes) {
                 if (contentType.contains(COMMA)) {
                     String[] contentTypesWithin = contentType.split(COMMA);
                     for (String contentTypeWithin : contentTypesWithin) {
-                        if (ContentType.HIVE_ESSENCE == ContentType.enumFor(contentTypeWithin)) {
-                            return true;
+                        ContentType essenceType = ContentType.enumFor(contentTypeWithin.trim());
+                        if (essenceType.isHiveEssence()) {
+                            return essenceType;
                         }
                     }
-                } else if (ContentType.HIVE_ESSENCE == ContentType.enumFor(contentType)) {
-                    return true;
+                } else {
+                    ContentType essenceType = ContentType.enumFor(contentType.trim());
+                    if (essenceType.isHiveEssence()) {
+                        return essenceType;
+                    }
                 }
             }
         }
 
-        return false;
+        return ContentType.OTHER;
     }
 
     // FUTURE_WORK: Add unit tests and combine, its to similair to above
@@ -73,11 +112,11 @@ public class NettyHelper extends RequestHelper<HttpMessage> {
                 if (contentType.contains(COMMA)) {
                     String[] contentTypesWithin = contentType.split(COMMA);
                     for (String contentTypeWithin : contentTypesWithin) {
-                        if (ContentType.HIVE_ESSENCE != ContentType.enumFor(contentTypeWithin)) {
+                        if (!ContentType.enumFor(contentTypeWithin.trim()).isHiveEssence()) {
                             return contentTypeWithin.trim();
                         }
                     }
-                } else if (ContentType.HIVE_ESSENCE != ContentType.enumFor(contentType)) {
+                } else if (!ContentType.enumFor(contentType.trim()).isHiveEssence()) {
                     return contentType.trim();
                 }
             }
@@ -96,6 +135,17 @@ public class NettyHelper extends RequestHelper<HttpMessage> {
         request.headers().add(KEY_CONTENT_TYPE, requestedType);
     }
 
+    @Override
+    public void setChangesOffsets(final long offset, final long nextOffset, final HttpMessage response) {
+        response.headers().add(KEY_CHANGES_OFFSET, String.valueOf(offset));
+        response.headers().add(KEY_CHANGES_NEXT_OFFSET, String.valueOf(nextOffset));
+    }
+
+    @Override
+    public void setWait(final int wait, final HttpMessage response) {
+        response.headers().set(KEY_WAIT, String.valueOf(wait));
+    }
+
     /**
      * Create base netty response with base headers
      *
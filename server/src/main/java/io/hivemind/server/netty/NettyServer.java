@@ -19,6 +19,7 @@ import io.hivemind.HiveServer;
 import io.hivemind.configuration.HiveConfig;
 import io.hivemind.exception.HiveCeption;
 import io.hivemind.exception.UnstartableException;
+import io.hivemind.service.HiveManagerService;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
@@ -26,11 +27,17 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
 
 import static java.lang.System.Logger.Level.ERROR;
 
 /**
  * Netty implementation for hive server
+ * <p>
+ * Requests are processed by a handler group of {config.maxthreads} executors,
+ * apart from the event loops. Processing waits for the state to be durable,
+ * on an event loop it would hold up every channel of the loop.</p>
  *
  * @author Patrick-4488
  */
@@ -38,6 +45,7 @@ public class NettyServer implements HiveServer {
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private EventExecutorGroup handlerGroup;
 
     private final HiveConfig config;
 
@@ -51,12 +59,13 @@ public class NettyServer implements HiveServer {
     public void start() throws UnstartableException {
         bossGroup = new NioEventLoopGroup(config.getMaxThreads(), config.getPoolExecutor());
         workerGroup = new NioEventLoopGroup();
+        handlerGroup = new DefaultEventExecutorGroup(config.getMaxThreads());
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
                     .channel(NioServerSocketChannel.class)
                     .handler(new LoggingHandler(LogLevel.INFO))
-                    .childHandler(new HttpServerInitializer(config));
+                    .childHandler(new HttpServerInitializer(config, handlerGroup));
 
             Channel ch = b.bind(config.getPort()).sync().channel();
             ch.closeFuture().sync();
@@ -71,7 +80,10 @@ public class NettyServer implements HiveServer {
 
     @Override
     public void stop() {
-        workerGroup.shutdownGracefully();
-        bossGroup.shutdownGracefully();
+        // Requests in process are responded to while the event loops still write
+        handlerGroup.shutdownGracefully().awaitUninterruptibly();
+        workerGroup.shutdownGracefully().awaitUninterruptibly();
+        bossGroup.shutdownGracefully().awaitUninterruptibly();
+        new HiveManagerService().writeSnapshot();
     }
 }
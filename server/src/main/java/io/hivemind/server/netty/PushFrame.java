@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Messages exchanged over the push channel, sent as binary WebSocket frames.
+ * A message has the same headers and body as a hive request or response,
+ * messages of the hive have the status of the response as well
+ * <p>
+ * Encoded as the status (0 for messages of synchronizers) and the amount of
+ * headers as unsigned shorts, followed by the name and the value of every
+ * header, each prefixed by its length as unsigned short, followed by the
+ * body.</p>
+ *
+ * @author Patrick-4488
+ */
+final class PushFrame {
+
+    private PushFrame() {
+    }
+
+    /**
+     * @param frame the message of a synchronizer
+     * @param uri the uri the message is received on
+     * @return the message as request
+     * @throws IndexOutOfBoundsException when the frame is not a message
+     */
+    static FullHttpRequest toRequest(final ByteBuf frame, final String uri) {
+        frame.readUnsignedShort();
+        int count = frame.readUnsignedShort();
+        HttpHeaders headers = new DefaultHttpHeaders();
+        for (int i = 0; i < count; i++) {
+            headers.add(readString(frame), readString(frame));
+        }
+
+        return new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.POST, uri,
+                Unpooled.wrappedBuffer(ByteBufUtil.getBytes(frame)), headers, EmptyHttpHeaders.INSTANCE);
+    }
+
+    /**
+     * @param response the response to send as message, released
+     * @return the message
+     */
+    static ByteBuf fromResponse(final FullHttpResponse response) {
+        try {
+            ByteBuf frame = Unpooled.buffer();
+            frame.writeShort(response.status().code());
+            frame.writeShort(response.headers().size());
+            for (Map.Entry<String, String> header : response.headers()) {
+                writeString(frame, header.getKey());
+                writeString(frame, header.getValue());
+            }
+            frame.writeBytes(response.content(), response.content().readerIndex(), response.content().readableBytes());
+
+            return frame;
+        } finally {
+            response.release();
+        }
+    }
+
+    private static String readString(final ByteBuf frame) {
+        int length = frame.readUnsignedShort();
+        String value = frame.toString(frame.readerIndex(), length, StandardCharsets.UTF_8);
+        frame.skipBytes(length);
+
+        return value;
+    }
+
+    private static void writeString(final ByteBuf frame, final String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        frame.writeShort(bytes.length);
+        frame.writeBytes(bytes);
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.server.netty;
+
+import io.hivemind.constant.ContentType;
+import io.hivemind.data.DataProcessor;
+import io.hivemind.data.PreparedData;
+import io.hivemind.exception.InvalidEssenceException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import java.util.concurrent.CompletableFuture;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Channel of a synchronizer connected to the push transport
+ * <p>
+ * Every message of the synchronizer is processed as a hive request and
+ * answered with a message having the response. When there is nothing to
+ * respond to its fingerprint or essence, the hive waits for the state of the
+ * synchronizer to change and pushes the response as soon as there is
+ * something to respond. Messages are processed on the executor of the
+ * hive handler upgraded, one at a time.</p>
+ *
+ * @author Patrick-4488
+ */
+public class PushHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+    private final HiveHandler hiveHandler;
+    private final String traceparent;
+    private final WebSocketServerHandshaker handshaker;
+    private final DataProcessor dataProcessor;
+    private final NettyHelper helper;
+    private CompletableFuture<Void> change;
+
+    private static final String PUSH_REQUEST = "/push";
+    private static final System.Logger LOGGER = System.getLogger(PushHandler.class.getName());
+
+    public PushHandler(final HiveHandler hiveHandler, final String traceparent, final WebSocketServerHandshaker handshaker) {
+        this.hiveHandler = hiveHandler;
+        this.traceparent = traceparent;
+        this.handshaker = handshaker;
+        dataProcessor = DataProcessor.getInstance();
+        helper = new NettyHelper();
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final WebSocketFrame frame) {
+        if (frame instanceof CloseWebSocketFrame) {
+            handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+        } else if (frame instanceof PingWebSocketFrame) {
+            ctx.write(new PongWebSocketFrame(frame.content().retain()));
+        } else if (frame instanceof BinaryWebSocketFrame) {
+            processMessage(ctx, frame.content());
+        } else {
+            LOGGER.log(WARNING, "Received message that is not binary from {0}, closing", traceparent);
+            handshaker.close(ctx.channel(), new CloseWebSocketFrame(WebSocketCloseStatus.INVALID_MESSAGE_TYPE));
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        stopAwaiting();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+        LOGGER.log(ERROR, "Error during push", cause);
+        ctx.close();
+    }
+
+    private void processMessage(final ChannelHandlerContext ctx, final ByteBuf content) {
+        LOGGER.log(INFO, "Message received from {0}, processing...", traceparent);
+
+        FullHttpRequest request;
+        try {
+            request = PushFrame.toRequest(content, PUSH_REQUEST);
+        } catch (IndexOutOfBoundsException ex) {
+            LOGGER.log(WARNING, "Received malformed message from {0}, closing", traceparent);
+            handshaker.close(ctx.channel(), new CloseWebSocketFrame(WebSocketCloseStatus.INVALID_PAYLOAD_DATA));
+            return;
+        }
+
+        // The change is awaited before processing, a change while processing is not missed
+        stopAwaiting();
+        ContentType essenceType = helper.determineEssenceType(request);
+        byte[] data = ByteBufUtil.getBytes(request.content());
+        if (isToAwaitChange(essenceType, request)) {
+            change = dataProcessor.awaitChange(traceparent);
+        }
+
+        if (respond(ctx, data, essenceType, request)) {
+            stopAwaiting();
+        } else {
+            LOGGER.log(INFO, "Message processed, no data required, awaiting change for {0}", traceparent);
+            await(ctx, change, data, essenceType, request);
+        }
+    }
+
+    /**
+     * Only fingerprints and essences are processed again on change, sketches
+     * and summaries are part of the exchange following them
+     */
+    private boolean isToAwaitChange(final ContentType essenceType, final FullHttpRequest request) {
+        return essenceType.isHiveEssence()
+                && helper.determineSummaryLevel(request) == 0
+                && helper.determineSketchCells(request) == 0
+                && helper.determineLeaves(request) == null;
+    }
+
+    /**
+     * Once changed, the message is processed again on the executor of the
+     * handler, unless another message has been received or the channel has
+     * been closed in the meantime. The response is pushed when there is
+     * something to respond, otherwise the next change is awaited
+     */
+    private void await(final ChannelHandlerContext ctx, final CompletableFuture<Void> awaited, final byte[] data,
+            final ContentType essenceType, final FullHttpRequest request) {
+        awaited.thenRunAsync(() -> {
+            if (awaited != change || !ctx.channel().isActive()) {
+                return;
+            }
+
+            dataProcessor.stopAwaitingChange(traceparent, awaited);
+            change = dataProcessor.awaitChange(traceparent);
+            if (respond(ctx, data, essenceType, request)) {
+                LOGGER.log(INFO, "Changed, pushed response to {0}", traceparent);
+                stopAwaiting();
+                ctx.flush();
+            } else {
+                await(ctx, change, data, essenceType, request);
+            }
+        }, ctx.executor());
+    }
+
+    /**
+     * @return true when responded, false when there is nothing to respond
+     * while awaiting change
+     */
+    private boolean respond(final ChannelHandlerContext ctx, final byte[] data, final ContentType essenceType, final FullHttpRequest request) {
+        FullHttpResponse response;
+        try {
+            PreparedData preparedData = helper.process(dataProcessor, data, essenceType, request, traceparent);
+            if (preparedData == null && change != null) {
+                return false;
+            }
+            response = hiveHandler.respond(preparedData, essenceType, request, traceparent, 0);
+        } catch (InvalidEssenceException ex) {
+            response = hiveHandler.respond(ex, request, traceparent);
+        }
+        ctx.write(new BinaryWebSocketFrame(PushFrame.fromResponse(response)));
+
+        return true;
+    }
+
+    private void stopAwaiting() {
+        if (change != null) {
+            dataProcessor.stopAwaitingChange(traceparent, change);
+            change = null;
+        }
+    }
+}
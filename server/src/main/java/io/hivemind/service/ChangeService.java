@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.service;
+
+import io.hivemind.data.DataProcessor;
+import io.hivemind.data.change.ChangeLog;
+import java.io.IOException;
+
+import static java.lang.System.Logger.Level.INFO;
+
+/**
+ * Change service provides the changes recorded by the hive to synchronizers
+ * and tools reading them from an offset
+ *
+ * @author Patrick-4488
+ * @see ChangeLog
+ */
+public class ChangeService {
+
+    private final DataProcessor dataProcessor;
+
+    // FUTURE_WORK: move to configuration?
+    private static final long MAX_CHANGES_BYTES = 1_048_576;
+    private static final System.Logger LOGGER = System.getLogger(ChangeService.class.getName());
+
+    public ChangeService() {
+        this.dataProcessor = DataProcessor.getInstance();
+    }
+
+    /**
+     * @return true when changes are recorded
+     */
+    public boolean isRecording() {
+        return dataProcessor.getChangeLog() != null;
+    }
+
+    /**
+     * Will read the changes from the offset, at most a megabyte at once
+     *
+     * @param offset the offset to read from
+     * @return the changes, to be closed once transferred, or null when there
+     * are no changes from the offset or changes are not recorded
+     * @throws IOException when the changes can not be read
+     */
+    public ChangeLog.Slice readChanges(final long offset) throws IOException {
+        LOGGER.log(INFO, "Reading changes from offset {0}", offset);
+
+        ChangeLog changeLog = dataProcessor.getChangeLog();
+
+        return (changeLog != null ? changeLog.read(offset, MAX_CHANGES_BYTES) : null);
+    }
+
+    /**
+     * @return the offset the next change will have, or 0 when changes are not
+     * recorded
+     */
+    public long nextOffset() {
+        ChangeLog changeLog = dataProcessor.getChangeLog();
+
+        return (changeLog != null ? changeLog.nextOffset() : 0);
+    }
+}
@@ -16,6 +16,10 @@
 package io.hivemind.service;
 
 import io.hivemind.data.DataProcessor;
+import io.hivemind.data.comparison.ComparisonCache;
+import java.io.IOException;
+
+import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
 
 /**
@@ -58,4 +62,44 @@ public class HiveManagerService {
 
         LOGGER.log(INFO, "Removed all state");
     }
+
+    /**
+     * Will write a snapshot of the state of the hive, when snapshots are
+     * written. A restarted hive serves from the snapshot instead of having
+     * every synchronizer resync.
+     *
+     * @return true when a snapshot has been written
+     */
+    public boolean writeSnapshot() {
+        LOGGER.log(INFO, "Writing snapshot");
+
+        try {
+            boolean written = dataProcessor.writeSnapshot();
+            LOGGER.log(INFO, (written ? "Wrote snapshot" : "Snapshots are not written"));
+            return written;
+        } catch (IOException ex) {
+            LOGGER.log(ERROR, "Failed to write snapshot", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Will provide statistics of the hive, every statistic on its own line as
+     * `name=value`. e.g. the hits and misses of the cache of comparisons with
+     * latest
+     *
+     * @return the statistics
+     */
+    public byte[] getStatistics() {
+        LOGGER.log(INFO, "Providing statistics");
+
+        ComparisonCache comparisonCache = dataProcessor.getComparisonCache();
+        String statistics = """
+                comparison.cache.hits=%d
+                comparison.cache.misses=%d
+                comparison.cache.size=%d
+                """.formatted(comparisonCache.getHits(), comparisonCache.getMisses(), comparisonCache.size());
+
+        return statistics.getBytes();
+    }
 }
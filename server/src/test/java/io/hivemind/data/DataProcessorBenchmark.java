@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.constant.Durability;
+import io.hivemind.data.log.InMemoryLog;
+import io.hivemind.data.log.WriteAheadLog;
+import io.hivemind.exception.InvalidEssenceException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Multi-threaded benchmark for the data processor, every thread acts as a
+ * separate synchronizer sending its hive essence. Not part of the unit tests,
+ * run the main method from the test classpath
+ * <p>
+ * Every amount of threads is run with a single lock for all synchronizers and
+ * with the lock stripes of the data processor, reporting the operations per
+ * second and the time the threads were blocked on a lock. Striping scales when
+ * the operations grow with the threads up to the amount of processors, while
+ * the single lock has the threads blocked instead.</p>
+ * <p>
+ * Arguments (optional): [max threads] [seconds per run] [resources]
+ * [durability], when durability is given the state transitions are written
+ * ahead to a temporary directory</p>
+ *
+ * @author Patrick-4488
+ */
+public class DataProcessorBenchmark {
+
+    private static final int[] STRIPES = {1, 64};
+    private static final int DEFAULT_SECONDS = 5;
+    private static final int DEFAULT_RESOURCES = 1000;
+    private static final int ESSENCES_PER_SYNCHRONIZER = 4;
+    private static final long WAL_SEGMENT_SIZE = 67_108_864;
+    private static final long WAL_FSYNC_INTERVAL = 100;
+
+    public static void main(final String[] args) throws InterruptedException, IOException {
+        int maxThreads = (args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors());
+        int seconds = (args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS);
+        int resources = (args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RESOURCES);
+        Durability durability = (args.length > 3 ? Durability.valueOf(args[3].toUpperCase()) : null);
+
+        // The data processor logs every request, that would measure logging
+        Logger.getLogger("").setLevel(Level.WARNING);
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean.isThreadContentionMonitoringSupported()) {
+            threadBean.setThreadContentionMonitoringEnabled(true);
+        }
+
+        System.out.printf("resources=%d, seconds per run=%d, durability=%s, processors=%d%n", resources, seconds,
+                (durability != null ? durability : "in memory"), Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int stripes : STRIPES) {
+                Path directory = (durability != null ? Files.createTempDirectory("hive-wal-benchmark") : null);
+                try ( WriteAheadLog log = (directory != null ? new WriteAheadLog(directory, WAL_SEGMENT_SIZE, durability, WAL_FSYNC_INTERVAL) : null)) {
+                    DataProcessor dataProcessor = new DataProcessor(stripes);
+                    dataProcessor.recover(log != null ? log : new InMemoryLog());
+                    AtomicLong blockedMillis = new AtomicLong();
+                    long operations = run(dataProcessor, threads, seconds, resources, blockedMillis);
+                    System.out.printf("threads=%3d stripes=%3d ops/s=%,12d blocked ms=%,10d%n", threads, stripes, operations / seconds, blockedMillis.get());
+                } finally {
+                    delete(directory);
+                }
+            }
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+
+        try ( Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * The time every thread was blocked on a lock is added once it is done,
+     * only measured when thread contention monitoring is supported
+     */
+    private static long run(final DataProcessor dataProcessor, final int threads, final int seconds, final int resources, final AtomicLong blockedMillis) throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String traceparent = "synchronizer-" + t;
+            byte[][] essences = createEssences(resources, t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        dataProcessor.processData(essences[(int) (count % essences.length)], true, null, traceparent);
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                    blockedMillis.addAndGet(Math.max(0, threadBean.getThreadInfo(Thread.currentThread().threadId()).getBlockedTime()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (InvalidEssenceException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        return operations.get();
+    }
+
+    /**
+     * Essences differ slightly per synchronizer and per round, so comparing
+     * results in ahead, behind and equal outcomes
+     */
+    private static byte[][] createEssences(final int resources, final int synchronizer) {
+        byte[][] essences = new byte[ESSENCES_PER_SYNCHRONIZER][];
+        for (int e = 0; e < ESSENCES_PER_SYNCHRONIZER; e++) {
+            StringBuilder essence = new StringBuilder(resources * 8);
+            for (int id = resources; id > 0; id--) {
+                long version = (id % (synchronizer + 2) == 0 ? e + 1 : 1);
+                essence.append(id).append(',').append(version).append(';');
+            }
+            essences[e] = essence.toString().getBytes();
+        }
+
+        return essences;
+    }
+}
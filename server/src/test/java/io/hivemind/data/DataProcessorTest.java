@@ -15,14 +15,33 @@
  */
 package io.hivemind.data;
 
+import io.hivemind.constant.ContentType;
+import io.hivemind.constant.Durability;
+import io.hivemind.data.comparison.EssenceFingerprint;
+import io.hivemind.data.log.InMemoryLog;
+import io.hivemind.data.log.WriteAheadLog;
+import io.hivemind.data.snapshot.StateSnapshot;
 import io.hivemind.exception.InvalidEssenceException;
 import io.hivemind.test.util.TestUtil;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -44,6 +63,8 @@ public class DataProcessorTest {
     private static final byte[] DATA_LONG = "73,1;72,1;71,1;70,1;69,1;68,1;67,1;66,1;65,1;64,1;63,1;61,1;60,1;59,1;58,1;57,1;56,1;54,1;53,1;52,1;51,1;49,1;46,1;45,1;34,1;33,1;32,1;29,1;30,1;27,1;26,1;25,1;24,1;23,1;22,1;21,1;20,1;19,1;18,1;17,1;16,1;15,1;14,1;13,1;12,1;11,1;10,1;6,1;5,1;4,1;2,1;1,1;".getBytes();
     private static final byte[] DATA_LONG_UPDATE = "73,1;72,1;71,1;70,1;69,1;68,1;67,1;66,1;65,1;64,1;63,1;61,1;60,1;59,1;58,1;57,1;56,1;54,1;53,1;52,1;51,1;49,2;46,1;45,1;34,1;33,1;32,1;29,1;30,1;27,1;26,1;25,1;24,1;23,1;22,1;21,1;20,1;19,1;18,1;17,1;16,1;15,1;14,1;13,1;12,1;11,1;10,1;6,1;5,1;4,1;2,1;1,1;".getBytes();
     private static final byte[] DATA_LONG_UPDATE_IN_FRONT = "74,1;73,1;72,1;71,1;70,1;69,1;68,1;67,1;66,1;65,1;64,1;63,1;61,1;60,1;59,1;58,1;57,1;56,1;54,1;53,1;52,1;51,1;49,1;46,1;45,1;34,1;33,1;32,1;29,1;30,1;27,1;26,1;25,1;24,1;23,1;22,1;21,1;20,1;19,1;18,1;17,1;16,1;15,1;14,1;13,1;12,1;11,1;10,1;6,1;5,1;4,1;2,1;1,1;".getBytes();
+    private static final byte[] BINARY_SHORT = {72, 1, 1, 1};
+    private static final byte[] BINARY_SHORT_WITH_UPDATE = {72, 1, 1, 2};
     private static final byte[] DATA_FROM_A = "mock".getBytes();
     private static final byte[] DATA_FROM_B = "mockb".getBytes();
     private static final byte[] DATA_FROM_A_LONG = "longdatamock".getBytes();
@@ -129,6 +150,86 @@ public class DataProcessorTest {
         assertTrue(Arrays.compare(dataA, secondResultB.getData()) == 0);
     }
 
+    @Test
+    public void processDataReceivingPreparedDataFromAWithBBeingBehindAfterRestart() throws InvalidEssenceException, IOException {
+        Path directory = Files.createTempDirectory("hive-wal-test");
+        byte[] essenceA = DATA_SHORT;
+        byte[] dataA = DATA_FROM_A;
+        String traceparentA = TRACEPARENT_A;
+        byte[] essenceB = null;
+        String traceparentB = TRACEPARENT_B;
+
+        try {
+            try ( WriteAheadLog log = new WriteAheadLog(directory, 4096, Durability.NEVER, 1)) {
+                classUnderTest.recover(log);
+                classUnderTest.processData(essenceA, true, null, traceparentA);
+                classUnderTest.processData(essenceB, true, null, traceparentB);
+                classUnderTest.processData(essenceA, true, null, traceparentA);
+                classUnderTest.processData(dataA, false, SERIALIZED, traceparentA);
+            }
+            classUnderTest.recover(new InMemoryLog());
+
+            PreparedData result;
+            try ( WriteAheadLog log = new WriteAheadLog(directory, 4096, Durability.NEVER, 1)) {
+                classUnderTest.recover(log);
+                result = classUnderTest.processData(essenceB, true, null, traceparentB);
+                classUnderTest.recover(new InMemoryLog());
+            }
+
+            TestUtil.assertAllNotNull(result);
+            assertEquals(PreparedData.class.getSimpleName(), result.getClass().getSimpleName());
+            assertTrue(Arrays.compare(dataA, result.getData()) == 0);
+        } finally {
+            try ( Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void processDataReceivingPreparedDataFromAWithBBeingBehindAfterRestartFromSnapshot() throws InvalidEssenceException, IOException {
+        Path directory = Files.createTempDirectory("hive-wal-test");
+        byte[] essenceA = DATA_SHORT;
+        byte[] dataA = DATA_FROM_A;
+        String traceparentA = TRACEPARENT_A;
+        byte[] essenceB = null;
+        String traceparentB = TRACEPARENT_B;
+
+        try {
+            StateSnapshot snapshot;
+            try ( WriteAheadLog log = new WriteAheadLog(directory, 4096, Durability.NEVER, 1)) {
+                classUnderTest.recover(log);
+                classUnderTest.processData(essenceA, true, null, traceparentA);
+                classUnderTest.processData(essenceB, true, null, traceparentB);
+                classUnderTest.processData(essenceA, true, null, traceparentA);
+                snapshot = classUnderTest.snapshot();
+                log.truncate(snapshot.getCheckpoint());
+                classUnderTest.processData(dataA, false, SERIALIZED, traceparentA);
+            }
+            classUnderTest.recover(new InMemoryLog());
+
+            PreparedData result;
+            try ( WriteAheadLog log = new WriteAheadLog(directory, 4096, Durability.NEVER, 1)) {
+                classUnderTest.recover(snapshot, log);
+                result = classUnderTest.processData(essenceB, true, null, traceparentB);
+                classUnderTest.recover(new InMemoryLog());
+            }
+
+            assertEquals(1, snapshot.getDataRequests().size());
+            TestUtil.assertAllNotNull(result);
+            assertEquals(PreparedData.class.getSimpleName(), result.getClass().getSimpleName());
+            assertTrue(Arrays.compare(dataA, result.getData()) == 0);
+        } finally {
+            try ( Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
     @Test
     public void processDataReceivingLongPreparedDataFromAWithBBeingBehindFromShort() throws InvalidEssenceException {
         byte[] essenceA = DATA_LONG;
@@ -462,4 +563,152 @@ public class DataProcessorTest {
         assertTrue(Arrays.compare(dataA, thirdResultB.getData()) == 0);
         assertEquals(expectedType, thirdResultB.getRequestedType());
     }
+
+    @Test
+    public void processDataReceivingBinaryEssenceBehindText() throws InvalidEssenceException {
+        String traceparentA = TRACEPARENT_A;
+        String traceparentB = TRACEPARENT_B;
+
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, traceparentA);
+        PreparedData firstResultB = classUnderTest.processData(BINARY_SHORT, ContentType.HIVE_ESSENCE_BINARY, null, traceparentB);
+        PreparedData secondResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, traceparentA);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+        TestUtil.assertAllNotNull(secondResultA);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultA.getClass().getSimpleName());
+        assertTrue(Arrays.compare(DIFF_SHORT_UPDATE_AFTER_PRIORITY, secondResultA.getData()) == 0);
+    }
+
+    @Test
+    public void processDataReceivingBinaryEssenceEqualToText() throws InvalidEssenceException {
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processData(BINARY_SHORT_WITH_UPDATE, ContentType.HIVE_ESSENCE_BINARY, null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB, secondResultA);
+    }
+
+    @Test
+    public void processDataReceivingEssenceHavingRanges() throws InvalidEssenceException {
+        byte[] essenceA = "1-1000,1;1001-2000,2;".getBytes();
+        byte[] essenceB = "1-1000,1;".getBytes();
+
+        PreparedData firstResultA = classUnderTest.processData(essenceA, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processData(essenceB, true, null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processData(essenceA, true, null, TRACEPARENT_A);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+        TestUtil.assertAllNotNull(secondResultA);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultA.getClass().getSimpleName());
+        assertTrue(Arrays.compare("1001-2000,2;".getBytes(), secondResultA.getData()) == 0);
+    }
+
+    @Test
+    public void awaitChangeCompletedWhenDataIsRequested() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        CompletableFuture<Void> changeA = classUnderTest.awaitChange(TRACEPARENT_A);
+
+        classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_B);
+
+        assertTrue(changeA.isDone());
+    }
+
+    @Test
+    public void awaitChangeCompletedWhenDataIsPrepared() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_B);
+        CompletableFuture<Void> changeB = classUnderTest.awaitChange(TRACEPARENT_B);
+
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        assertFalse(changeB.isDone());
+        classUnderTest.processData(DATA_FROM_A_LONG, false, SERIALIZED, TRACEPARENT_A);
+
+        assertTrue(changeB.isDone());
+    }
+
+    @Test
+    public void awaitChangeCompletedWhenLatestChanges() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_B);
+        CompletableFuture<Void> changeA = classUnderTest.awaitChange(TRACEPARENT_A);
+
+        classUnderTest.processData(DATA_LONG_UPDATE_IN_FRONT, true, null, TRACEPARENT_B);
+
+        assertTrue(changeA.isDone());
+    }
+
+    @Test
+    public void awaitChangeNotCompletedWithoutChange() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_B);
+        CompletableFuture<Void> changeA = classUnderTest.awaitChange(TRACEPARENT_A);
+
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+        classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_B);
+
+        assertFalse(changeA.isDone());
+        assertSame(changeA, classUnderTest.awaitChange(TRACEPARENT_A));
+        classUnderTest.stopAwaitingChange(TRACEPARENT_A, changeA);
+        assertNotSame(changeA, classUnderTest.awaitChange(TRACEPARENT_A));
+        classUnderTest.stopAwaitingChange(TRACEPARENT_A, classUnderTest.awaitChange(TRACEPARENT_A));
+    }
+
+    @Test
+    public void awaitChangeCompletedWithoutLocksOnSaturatedPool() throws InvalidEssenceException, InterruptedException {
+        int synchronizers = 16;
+        CountDownLatch busy = new CountDownLatch(1);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.CallerRunsPolicy());
+        // Its only thread busy and its queue full, what awaits a change runs on the thread completing it
+        pool.execute(() -> awaitQuietly(busy));
+        pool.execute(() -> awaitQuietly(busy));
+
+        try {
+            classUnderTest.processData(DATA_LONG, true, null, TRACEPARENT_A);
+            CountDownLatch responded = new CountDownLatch(synchronizers);
+            for (int s = 0; s < synchronizers; s++) {
+                String traceparent = "synchronizer-" + s;
+                String other = "synchronizer-" + ((s + 1) % synchronizers);
+                classUnderTest.processData(DATA_LONG, true, null, traceparent);
+                classUnderTest.awaitChange(traceparent).thenRunAsync(() -> {
+                    classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT), null, other);
+                    if (isProcessedByOtherThread(TRACEPARENT_A)) {
+                        responded.countDown();
+                    }
+                }, pool);
+            }
+
+            classUnderTest.processData(DATA_LONG_UPDATE_IN_FRONT, true, null, TRACEPARENT_A);
+
+            assertTrue(responded.await(10, TimeUnit.SECONDS));
+        } finally {
+            busy.countDown();
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return false when the request of the synchronizer is blocked, the
+     * calling thread holding a lock of the synchronizer
+     */
+    private static boolean isProcessedByOtherThread(final String traceparent) {
+        Thread other = new Thread(() -> classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT), null, traceparent));
+        other.start();
+        try {
+            other.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        return !other.isAlive();
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
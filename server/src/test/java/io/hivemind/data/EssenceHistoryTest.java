@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for essence history
+ *
+ * @author Patrick-4488
+ */
+public class EssenceHistoryTest {
+
+    private EssenceHistory classUnderTest;
+
+    private static final ObservedData FIRST = new ObservedData("1,1;".getBytes());
+    private static final ObservedData SECOND = new ObservedData("1,2;".getBytes());
+    private static final ObservedData THIRD = new ObservedData("1,3;".getBytes());
+    private static final ObservedData FOURTH = new ObservedData("1,4;".getBytes());
+
+    @BeforeEach
+    public void setup() {
+        classUnderTest = new EssenceHistory(3);
+    }
+
+    @Test
+    public void lastOfEmptyHistory() {
+        assertTrue(classUnderTest.isEmpty());
+        assertNull(classUnderTest.last());
+    }
+
+    @Test
+    public void addUntilFull() {
+        assertNull(classUnderTest.add(FIRST));
+        assertNull(classUnderTest.add(SECOND));
+        assertNull(classUnderTest.add(THIRD));
+
+        assertEquals(3, classUnderTest.size());
+        assertSame(THIRD, classUnderTest.last());
+    }
+
+    @Test
+    public void addToFullHistoryEvictsOldest() {
+        classUnderTest.add(FIRST);
+        classUnderTest.add(SECOND);
+        classUnderTest.add(THIRD);
+
+        ObservedData evicted = classUnderTest.add(FOURTH);
+
+        assertSame(FIRST, evicted);
+        assertEquals(3, classUnderTest.size());
+        assertSame(FOURTH, classUnderTest.last());
+    }
+
+    @Test
+    public void compactRetainsLast() {
+        classUnderTest.add(FIRST);
+        classUnderTest.add(SECOND);
+        classUnderTest.add(THIRD);
+        classUnderTest.add(FOURTH);
+
+        List<ObservedData> removed = classUnderTest.compact();
+
+        assertEquals(List.of(SECOND, THIRD), removed);
+        assertEquals(1, classUnderTest.size());
+        assertSame(FOURTH, classUnderTest.last());
+        assertNull(classUnderTest.add(FIRST));
+        assertSame(FIRST, classUnderTest.last());
+    }
+
+    @Test
+    public void compactEmptyHistory() {
+        assertTrue(classUnderTest.compact().isEmpty());
+        assertTrue(classUnderTest.isEmpty());
+    }
+}
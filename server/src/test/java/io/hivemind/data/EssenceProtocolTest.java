@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.data.comparison.EssenceFingerprint;
+import io.hivemind.data.comparison.EssenceSketch;
+import io.hivemind.exception.InvalidEssenceException;
+import io.hivemind.test.util.TestUtil;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the essence protocol, through the data processor
+ *
+ * @author Patrick-4488
+ */
+public class EssenceProtocolTest {
+
+    private static DataProcessor classUnderTest;
+
+    private static final byte[] DIFF_SHORT_UPDATE_AFTER_PRIORITY = "73,2;".getBytes();
+    private static final byte[] DATA_SHORT = "73,1;72,1;".getBytes();
+    private static final byte[] DATA_SHORT_WITH_UPDATE = "73,2;72,1;".getBytes();
+    private static final byte[] DATA_SHORT_OTHER_ORDER = "72,1;73,1;".getBytes();
+    private static final byte[] NODES_EMPTY = "0,0;1,0;2,0;3,0;4,0;5,0;6,0;7,0;8,0;9,0;10,0;11,0;12,0;13,0;14,0;15,0;".getBytes();
+    // Leaf of the tuples having id 73, the tuple having id 72 is in another leaf
+    private static final String LEAF_OF_73 = "42900";
+    private static final byte[] LEAF_SHORT = "73,1;".getBytes();
+    private static final String TRACEPARENT_A = "1a";
+    private static final String TRACEPARENT_B = "2b";
+
+    @BeforeAll
+    public static void setup() {
+        classUnderTest = DataProcessor.getInstance();
+    }
+
+    @AfterEach
+    public void after() {
+        classUnderTest.clearAllState();
+    }
+
+    @Test
+    public void processFingerprintNotKnown() {
+        PreparedData result = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_A);
+
+        TestUtil.assertAllNotNull(result);
+        assertEquals(EssenceRequest.class.getSimpleName(), result.getClass().getSimpleName());
+    }
+
+    @Test
+    public void processFingerprintOfEssenceReceivedBefore() throws InvalidEssenceException {
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_A);
+        PreparedData secondResultA = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT_OTHER_ORDER).toUpperCase(), null, TRACEPARENT_B);
+
+        TestUtil.assertAllNull(firstResultA, secondResultA, firstResultB);
+    }
+
+    @Test
+    public void processFingerprintReturnsDataRequest() throws InvalidEssenceException {
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT_WITH_UPDATE), null, TRACEPARENT_A);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+        TestUtil.assertAllNotNull(secondResultA);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultA.getClass().getSimpleName());
+        assertTrue(Arrays.compare(DIFF_SHORT_UPDATE_AFTER_PRIORITY, secondResultA.getData()) == 0);
+    }
+
+    @Test
+    public void processFingerprintOfEssenceBehindLatest() throws InvalidEssenceException {
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_A);
+        PreparedData secondResultB = classUnderTest.processFingerprint(EssenceFingerprint.of(DATA_SHORT_WITH_UPDATE), null, TRACEPARENT_B);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB, secondResultA);
+        TestUtil.assertAllNotNull(secondResultB);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultB.getClass().getSimpleName());
+        assertTrue(Arrays.compare(DIFF_SHORT_UPDATE_AFTER_PRIORITY, secondResultB.getData()) == 0);
+    }
+
+    @Test
+    public void processSummaryWithoutLatest() {
+        PreparedData result = classUnderTest.processSummary(1, NODES_EMPTY, TRACEPARENT_A);
+
+        assertEquals(EssenceRequest.class.getSimpleName(), result.getClass().getSimpleName());
+        assertEquals(0, result.getData().length);
+    }
+
+    @Test
+    public void processSummaryReturnsDifferingNodes() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_SHORT, true, null, TRACEPARENT_A);
+        PreparedData result = classUnderTest.processSummary(1, NODES_EMPTY, TRACEPARENT_B);
+
+        assertEquals(EssenceRequest.class.getSimpleName(), result.getClass().getSimpleName());
+        assertTrue(result.getData().length > 0);
+    }
+
+    @Test
+    public void processSummaryEssenceBehind() throws InvalidEssenceException {
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processSummaryEssence(LEAF_SHORT, LEAF_OF_73, EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+        TestUtil.assertAllNotNull(secondResultA);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultA.getClass().getSimpleName());
+        assertTrue(Arrays.compare(DIFF_SHORT_UPDATE_AFTER_PRIORITY, secondResultA.getData()) == 0);
+    }
+
+    @Test
+    public void processSummaryEssenceNotMatchingFingerprint() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData result = classUnderTest.processSummaryEssence(LEAF_SHORT, LEAF_OF_73, EssenceFingerprint.of(DATA_SHORT_WITH_UPDATE), null, TRACEPARENT_B);
+
+        assertEquals(EssenceRequest.class.getSimpleName(), result.getClass().getSimpleName());
+    }
+
+    @Test
+    public void processSketchBehind() throws InvalidEssenceException {
+        byte[] sketch = EssenceSketch.of(DATA_SHORT, 30).toBytes();
+        PreparedData firstResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processSketch(sketch, 30, EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_B);
+        PreparedData secondResultA = classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+        TestUtil.assertAllNotNull(secondResultA);
+
+        assertEquals(DataRequest.class.getSimpleName(), secondResultA.getClass().getSimpleName());
+        assertTrue(Arrays.compare(DIFF_SHORT_UPDATE_AFTER_PRIORITY, secondResultA.getData()) == 0);
+    }
+
+    @Test
+    public void processSketchNotValid() throws InvalidEssenceException {
+        classUnderTest.processData(DATA_SHORT_WITH_UPDATE, true, null, TRACEPARENT_A);
+        PreparedData result = classUnderTest.processSketch(new byte[28], 1, EssenceFingerprint.of(DATA_SHORT), null, TRACEPARENT_B);
+
+        assertEquals(EssenceRequest.class.getSimpleName(), result.getClass().getSimpleName());
+    }
+
+    @Test
+    public void processFingerprintOfEssenceHavingRanges() throws InvalidEssenceException {
+        StringBuilder expanded = new StringBuilder();
+        for (int id = 1; id <= 1000; id++) {
+            expanded.append(id).append(",1;");
+        }
+
+        PreparedData firstResultA = classUnderTest.processData("1-1000,1;".getBytes(), true, null, TRACEPARENT_A);
+        PreparedData firstResultB = classUnderTest.processFingerprint(EssenceFingerprint.of(expanded.toString().getBytes()), null, TRACEPARENT_B);
+
+        TestUtil.assertAllNull(firstResultA, firstResultB);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.data.comparison.EssenceDigest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for essence store
+ *
+ * @author Patrick-4488
+ */
+public class EssenceStoreTest {
+
+    private EssenceStore classUnderTest;
+
+    private static final byte[] ESSENCE = "73,1;72,1;".getBytes();
+    private static final byte[] OTHER_ESSENCE = "73,2;72,1;".getBytes();
+    private static final String DIGEST = EssenceDigest.of(ESSENCE);
+    private static final String OTHER_DIGEST = EssenceDigest.of(OTHER_ESSENCE);
+
+    @BeforeEach
+    public void setup() {
+        classUnderTest = new EssenceStore();
+    }
+
+    @Test
+    public void internSameEssenceTwice() {
+        ObservedData first = classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE, null, DIGEST));
+        ObservedData second = classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE.clone(), null, DIGEST));
+
+        assertSame(first, second);
+        assertEquals(1, classUnderTest.size());
+        assertEquals(DIGEST, first.getDigest());
+    }
+
+    @Test
+    public void internOtherEssence() {
+        ObservedData first = classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE, null, DIGEST));
+        ObservedData other = classUnderTest.intern(OTHER_DIGEST, () -> ObservedData.stored(OTHER_ESSENCE, null, OTHER_DIGEST));
+
+        assertNotSame(first, other);
+        assertEquals(2, classUnderTest.size());
+    }
+
+    @Test
+    public void releaseEssenceStillReferenced() {
+        ObservedData stored = classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE, null, DIGEST));
+        classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE, null, DIGEST));
+
+        classUnderTest.release(DIGEST);
+
+        assertEquals(1, classUnderTest.size());
+        assertArrayEquals(ESSENCE, stored.getData());
+    }
+
+    @Test
+    public void releaseLastReference() {
+        ObservedData stored = classUnderTest.intern(DIGEST, () -> ObservedData.stored(ESSENCE, null, DIGEST));
+
+        classUnderTest.release(DIGEST);
+        classUnderTest.release(DIGEST);
+
+        assertEquals(0, classUnderTest.size());
+        assertFalse(stored.hasData());
+    }
+}
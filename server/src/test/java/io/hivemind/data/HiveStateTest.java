@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data;
+
+import io.hivemind.data.comparison.EssenceDigest;
+import io.hivemind.data.log.LogRecord;
+import io.hivemind.data.snapshot.StateSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for hive state
+ *
+ * @author Patrick-4488
+ */
+public class HiveStateTest {
+
+    private static final byte[] DATA_SHORT = "73,1;72,1;".getBytes();
+    private static final byte[] DATA_SHORT_WITH_UPDATE = "73,2;72,1;".getBytes();
+    private static final byte[] DIFF_SHORT_UPDATE = "73,2;".getBytes();
+    private static final byte[] DATA_FROM_A = "mock".getBytes();
+    private static final String TRACEPARENT_A = "1a";
+    private static final String TRACEPARENT_B = "2b";
+    private static final String TRACEPARENT_C = "3c";
+    private static final String SERIALIZED = "application/ser";
+
+    @Test
+    public void applyDataReceivedPreparesDataForRequesters() {
+        HiveState classUnderTest = new HiveState();
+
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, DATA_SHORT_WITH_UPDATE));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, DATA_SHORT_WITH_UPDATE));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_B, DATA_SHORT));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.DATA_REQUEST, TRACEPARENT_A, TRACEPARENT_B, DIFF_SHORT_UPDATE, SERIALIZED));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.DATA_RECEIVED, TRACEPARENT_A, DATA_FROM_A, SERIALIZED));
+
+        assertEquals(TRACEPARENT_A, classUnderTest.latest().getKey());
+        assertEquals(EssenceDigest.of(DATA_SHORT), classUnderTest.lastStored(TRACEPARENT_B).getDigest());
+        assertNull(classUnderTest.requestsFor(TRACEPARENT_A));
+        assertFalse(classUnderTest.hasPrepared(TRACEPARENT_A));
+        PreparedData prepared = classUnderTest.takePrepared(TRACEPARENT_B);
+        assertArrayEquals(DATA_FROM_A, prepared.getData());
+        assertEquals(SERIALIZED, prepared.getRequestedType());
+    }
+
+    @Test
+    public void applyPriorityToOtherSynchronizers() {
+        HiveState classUnderTest = new HiveState();
+
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, DATA_SHORT));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_B, DATA_SHORT));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_C, DATA_SHORT));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.PRIORITY, TRACEPARENT_A, DIFF_SHORT_UPDATE));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_C));
+
+        assertFalse(classUnderTest.hasPriority(TRACEPARENT_A));
+        assertTrue(classUnderTest.hasPriority(TRACEPARENT_B));
+        assertFalse(classUnderTest.hasPriority(TRACEPARENT_C));
+        assertSame(classUnderTest.lastStored(TRACEPARENT_A), classUnderTest.lastStored(TRACEPARENT_B));
+    }
+
+    @Test
+    public void restoreSnapshotOfCapturedState() {
+        HiveState captured = new HiveState();
+        captured.apply(LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, DATA_SHORT_WITH_UPDATE));
+        captured.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, DATA_SHORT_WITH_UPDATE));
+        captured.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_B, DATA_SHORT));
+        captured.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_C, DATA_SHORT));
+        captured.apply(LogRecord.of(LogRecord.Type.DATA_REQUEST, TRACEPARENT_A, TRACEPARENT_B, DIFF_SHORT_UPDATE, SERIALIZED));
+        captured.prepare(TRACEPARENT_C, new PreparedData(DATA_FROM_A, SERIALIZED));
+
+        StateSnapshot snapshot = captured.snapshot(captured.capture(), 7);
+        HiveState classUnderTest = new HiveState();
+        classUnderTest.restore(snapshot);
+
+        assertEquals(7, snapshot.getCheckpoint());
+        assertEquals(TRACEPARENT_A, classUnderTest.latest().getKey());
+        assertArrayEquals(DATA_SHORT_WITH_UPDATE, classUnderTest.latest().getValue().getData());
+        assertEquals(3, classUnderTest.size());
+        assertSame(classUnderTest.lastStored(TRACEPARENT_B), classUnderTest.lastStored(TRACEPARENT_C));
+        assertArrayEquals(DIFF_SHORT_UPDATE, classUnderTest.requestsFor(TRACEPARENT_A).get(TRACEPARENT_B).getData());
+        assertArrayEquals(DATA_FROM_A, classUnderTest.takePrepared(TRACEPARENT_C).getData());
+        assertEquals(captured.sizeInBytes(), classUnderTest.sizeInBytes());
+    }
+
+    @Test
+    public void clearedWhenApplyingClear() {
+        HiveState classUnderTest = new HiveState();
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, DATA_SHORT));
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, DATA_SHORT));
+
+        classUnderTest.apply(LogRecord.of(LogRecord.Type.CLEARED, null));
+
+        assertNull(classUnderTest.latest());
+        assertNull(classUnderTest.lastStored(TRACEPARENT_A));
+        assertEquals(0, classUnderTest.sizeInBytes());
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.change;
+
+import io.hivemind.constant.Durability;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for change log
+ *
+ * @author Patrick-4488
+ */
+public class ChangeLogTest {
+
+    private Path directory;
+
+    private static final long SEGMENT_SIZE = 256;
+    private static final long MAX_BYTES = 1_048_576;
+    private static final String TRACEPARENT_A = "1a";
+    private static final String TRACEPARENT_B = "2b";
+    private static final byte[] DATA = "some data".getBytes();
+    private static final String SERIALIZED = "application/ser";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("hive-changes-test");
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        try ( Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void readAppendedChanges() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS)) {
+            assertEquals(0, classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A, DATA, SERIALIZED));
+            assertEquals(1, classUnderTest.append(ChangeRecord.Type.DELETION, TRACEPARENT_B, DATA, null));
+
+            List<ChangeRecord> changes = read(classUnderTest, 0);
+
+            assertEquals(2, changes.size());
+            assertEquals(0, changes.get(0).getOffset());
+            assertEquals(ChangeRecord.Type.PAYLOAD, changes.get(0).getType());
+            assertEquals(TRACEPARENT_A, changes.get(0).getKey());
+            assertEquals(SERIALIZED, changes.get(0).getRequestedType());
+            assertArrayEquals(DATA, changes.get(0).getData());
+            assertEquals(1, changes.get(1).getOffset());
+            assertEquals(ChangeRecord.Type.DELETION, changes.get(1).getType());
+            assertEquals(TRACEPARENT_B, changes.get(1).getKey());
+            assertNull(changes.get(1).getRequestedType());
+        }
+    }
+
+    @Test
+    public void awaitDurableOfConcurrentAppends() throws IOException, InterruptedException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS)) {
+            List<Thread> appending = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String key = TRACEPARENT_A + i;
+                appending.add(new Thread(() -> {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            classUnderTest.append(ChangeRecord.Type.PAYLOAD, key, DATA, null);
+                            classUnderTest.awaitDurable();
+                        }
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }));
+            }
+            for (Thread thread : appending) {
+                thread.start();
+            }
+            for (Thread thread : appending) {
+                thread.join();
+            }
+
+            List<ChangeRecord> changes = read(classUnderTest, 0);
+
+            assertEquals(40, changes.size());
+            for (int i = 0; i < 40; i++) {
+                assertEquals(i, changes.get(i).getOffset());
+            }
+        }
+    }
+
+    @Test
+    public void awaitDurableOfClosedLog() throws IOException {
+        ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS);
+        classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A, DATA, null);
+        classUnderTest.close();
+
+        classUnderTest.awaitDurable();
+
+        try ( ChangeLog reopened = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS)) {
+            assertEquals(1, reopened.nextOffset());
+        }
+    }
+
+    @Test
+    public void readFromOffset() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER)) {
+            for (int i = 0; i < 5; i++) {
+                classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A + i, DATA, null);
+            }
+
+            List<ChangeRecord> changes = read(classUnderTest, 3);
+
+            assertEquals(2, changes.size());
+            assertEquals(3, changes.get(0).getOffset());
+            assertEquals(TRACEPARENT_A + 3, changes.get(0).getKey());
+            assertNull(classUnderTest.read(5, MAX_BYTES));
+        }
+    }
+
+    @Test
+    public void readAcrossSegments() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER)) {
+            for (int i = 0; i < 40; i++) {
+                classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A + i, DATA, null);
+            }
+
+            assertTrue(segmentCount() > 1);
+            List<ChangeRecord> changes = read(classUnderTest, 0);
+
+            assertEquals(40, changes.size());
+            for (int i = 0; i < 40; i++) {
+                assertEquals(i, changes.get(i).getOffset());
+                assertEquals(TRACEPARENT_A + i, changes.get(i).getKey());
+            }
+        }
+    }
+
+    @Test
+    public void readLimitedByMaxBytes() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER)) {
+            for (int i = 0; i < 3; i++) {
+                classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A, DATA, null);
+            }
+
+            try ( ChangeLog.Slice slice = classUnderTest.read(0, 1)) {
+                assertEquals(0, slice.getOffset());
+                assertEquals(1, slice.getNextOffset());
+            }
+        }
+    }
+
+    @Test
+    public void removeOldestSegmentsWhenExceedingRetentionSize() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, SEGMENT_SIZE * 2, 0, Durability.NEVER)) {
+            for (int i = 0; i < 100; i++) {
+                classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A + i, DATA, null);
+            }
+
+            assertTrue(classUnderTest.firstOffset() > 0);
+            assertTrue(segmentCount() <= 3);
+            List<ChangeRecord> changes = read(classUnderTest, 0);
+            assertEquals(classUnderTest.firstOffset(), changes.get(0).getOffset());
+            assertEquals(99, changes.get(changes.size() - 1).getOffset());
+        }
+    }
+
+    @Test
+    public void continueAfterLastChangeWhenReopened() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER)) {
+            for (int i = 0; i < 20; i++) {
+                classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A + i, DATA, null);
+            }
+        }
+
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER)) {
+            assertEquals(20, classUnderTest.nextOffset());
+            assertEquals(20, classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_B, DATA, null));
+            assertEquals(21, read(classUnderTest, 0).size());
+        }
+    }
+
+    @Test
+    public void ignoreTornChangeWhenReopened() throws IOException {
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS)) {
+            classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_A, DATA, null);
+        }
+        Path segment;
+        try ( Stream<Path> files = Files.list(directory)) {
+            segment = files.max(Comparator.naturalOrder()).orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try ( ChangeLog classUnderTest = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.ALWAYS)) {
+            assertEquals(1, classUnderTest.nextOffset());
+            assertEquals(1, classUnderTest.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT_B, DATA, null));
+
+            List<ChangeRecord> changes = read(classUnderTest, 0);
+            assertEquals(2, changes.size());
+            assertEquals(TRACEPARENT_B, changes.get(1).getKey());
+        }
+    }
+
+    private static List<ChangeRecord> read(final ChangeLog changeLog, final long offset) throws IOException {
+        List<ChangeRecord> changes = new ArrayList<>();
+        long from = offset;
+        ChangeLog.Slice read;
+        while ((read = changeLog.read(from, MAX_BYTES)) != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try ( ChangeLog.Slice slice = read) {
+                assertEquals(slice.getCount(), slice.transferTo(Channels.newChannel(bytes)));
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            ChangeRecord change;
+            while ((change = ChangeRecord.read(buffer)) != null) {
+                changes.add(change);
+            }
+            from = read.getNextOffset();
+        }
+
+        return changes;
+    }
+
+    private long segmentCount() throws IOException {
+        try ( Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.constant.Outcome;
+import io.hivemind.data.comparison.ComparisonCache;
+import io.hivemind.data.comparison.ComparisonResult;
+import io.hivemind.data.comparison.EssenceDigest;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for comparison cache
+ *
+ * @author Patrick-4488
+ */
+public class ComparisonCacheTest {
+
+    private ComparisonCache classUnderTest;
+    private AtomicInteger comparisons;
+
+    private static final String LATEST = EssenceDigest.of("1,1;2,1;".getBytes());
+    private static final String OTHER_LATEST = EssenceDigest.of("1,1;2,2;".getBytes());
+    private static final String ESSENCE = EssenceDigest.of("1,1;".getBytes());
+    private static final String OTHER_ESSENCE = EssenceDigest.of("2,1;".getBytes());
+
+    @BeforeEach
+    public void setup() {
+        classUnderTest = new ComparisonCache(2);
+        comparisons = new AtomicInteger();
+    }
+
+    @Test
+    public void compareSameEssenceTwice() {
+        ComparisonResult first = classUnderTest.compare(LATEST, ESSENCE, this::compare);
+        ComparisonResult second = classUnderTest.compare(LATEST, ESSENCE, this::compare);
+
+        assertSame(first, second);
+        assertEquals(1, comparisons.get());
+        assertEquals(1, classUnderTest.getHits());
+        assertEquals(1, classUnderTest.getMisses());
+    }
+
+    @Test
+    public void compareSameEssenceWithOtherLatest() {
+        classUnderTest.compare(LATEST, ESSENCE, this::compare);
+        classUnderTest.compare(OTHER_LATEST, ESSENCE, this::compare);
+
+        assertEquals(2, comparisons.get());
+        assertEquals(0, classUnderTest.getHits());
+    }
+
+    @Test
+    public void compareAfterInvalidating() {
+        classUnderTest.compare(LATEST, ESSENCE, this::compare);
+        classUnderTest.invalidate();
+        classUnderTest.compare(LATEST, ESSENCE, this::compare);
+
+        assertEquals(2, comparisons.get());
+        assertEquals(2, classUnderTest.getMisses());
+    }
+
+    @Test
+    public void compareMoreEssencesThenCached() {
+        classUnderTest.compare(LATEST, ESSENCE, this::compare);
+        classUnderTest.compare(LATEST, OTHER_ESSENCE, this::compare);
+        classUnderTest.compare(OTHER_LATEST, OTHER_ESSENCE, this::compare);
+
+        assertEquals(1, classUnderTest.size());
+    }
+
+    @Test
+    public void compareWithoutCaching() {
+        ComparisonCache uncached = new ComparisonCache(0);
+
+        uncached.compare(LATEST, ESSENCE, this::compare);
+        uncached.compare(LATEST, ESSENCE, this::compare);
+
+        assertEquals(2, comparisons.get());
+        assertEquals(0, uncached.size());
+    }
+
+    @Test
+    public void compareSameEssenceConcurrently() throws Exception {
+        CountDownLatch comparing = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ComparisonResult> first = executor.submit(() -> classUnderTest.compare(LATEST, ESSENCE, () -> {
+                comparing.countDown();
+                await(waiting);
+                return compare();
+            }));
+            comparing.await(5, TimeUnit.SECONDS);
+            Future<ComparisonResult> second = executor.submit(() -> classUnderTest.compare(LATEST, ESSENCE, this::compare));
+            while (classUnderTest.getHits() == 0) {
+                Thread.onSpinWait();
+            }
+            waiting.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, comparisons.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void digestOfEssence() {
+        assertEquals(64, ESSENCE.length());
+        assertEquals(ESSENCE, EssenceDigest.of("1,1;".getBytes()));
+        assertNotEquals(ESSENCE, OTHER_ESSENCE);
+        assertEquals("", EssenceDigest.of(null));
+    }
+
+    private ComparisonResult compare() {
+        comparisons.incrementAndGet();
+        return new ComparisonResult(Outcome.AHEAD, "1,1;".getBytes());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
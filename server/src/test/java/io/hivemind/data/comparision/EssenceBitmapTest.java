@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceBitmap;
+import io.hivemind.data.comparison.EssenceTuples;
+import io.hivemind.exception.InvalidEssenceException;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for essence bitmap
+ *
+ * @author Patrick-4488
+ */
+public class EssenceBitmapTest {
+
+    private static final byte[] ESSENCE = "73,2;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_SORTED = "0,5;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_NOT_CANONICAL = "1,1;2,1;0".getBytes();
+    private static final byte[] ESSENCE_DUPLICATE_ID = "2,1;1,1;2,2;".getBytes();
+    private static final byte[] ESSENCE_A = "1,1;2,1;3,2;".getBytes();
+    private static final byte[] ESSENCE_B = "4,1;3,2;2,2;1,1;".getBytes();
+    private static final byte[] ESSENCE_HAVING_RANGES = "65000-140000,2;5,1;1000-1999,3;".getBytes();
+    private static final byte[] ESSENCE_HAVING_RANGES_SORTED = "5,1;1000-1999,3;65000-140000,2;".getBytes();
+    private static final byte[] ESSENCE_HAVING_OVERLAPPING_RANGES = "1-5,1;3,2;".getBytes();
+    private static final int RESOURCES = 200_000;
+
+    @Test
+    public void ofEssenceWritesEssenceSortedById() throws InvalidEssenceException {
+        EssenceTuples tuples = new EssenceTuples();
+        tuples.parse(ESSENCE);
+
+        EssenceBitmap result = EssenceBitmap.of(tuples);
+
+        assertEquals(3, result.size());
+        assertEquals(ESSENCE.length, result.length());
+        assertEquals(tuples.setHash(), result.setHash());
+        assertArrayEquals(ESSENCE_SORTED, result.toEssence());
+    }
+
+    @Test
+    public void ofEssenceNotRepresentable() {
+        assertNull(EssenceBitmap.of(ESSENCE_NOT_CANONICAL));
+        assertNull(EssenceBitmap.of(ESSENCE_DUPLICATE_ID));
+        assertNull(EssenceBitmap.of(new byte[0]));
+        assertNull(EssenceBitmap.of((byte[]) null));
+    }
+
+    @Test
+    public void ofEssenceHavingRanges() {
+        StringBuilder expanded = new StringBuilder("5,1;");
+        for (int id = 1000; id <= 1999; id++) {
+            expanded.append(id).append(",3;");
+        }
+        for (int id = 65000; id <= 140000; id++) {
+            expanded.append(id).append(",2;");
+        }
+        EssenceBitmap expandedBitmap = EssenceBitmap.of(expanded.toString().getBytes());
+
+        EssenceBitmap result = EssenceBitmap.of(ESSENCE_HAVING_RANGES);
+
+        assertTrue(result.isRanged());
+        assertEquals(expandedBitmap.size(), result.size());
+        assertEquals(expandedBitmap.length(), result.length());
+        assertEquals(expandedBitmap.setHash(), result.setHash());
+        assertArrayEquals(ESSENCE_HAVING_RANGES_SORTED, result.toEssence());
+        assertArrayEquals(expanded.toString().getBytes(), expandedBitmap.toEssence());
+        assertTrue(result.sizeInBytes() <= expandedBitmap.sizeInBytes());
+    }
+
+    @Test
+    public void ofEssenceHavingOverlappingRanges() {
+        assertNull(EssenceBitmap.of(ESSENCE_HAVING_OVERLAPPING_RANGES));
+        assertNull(EssenceBitmap.of("5-3,1;".getBytes()));
+    }
+
+    @Test
+    public void andNotOfRangesHasRanges() {
+        EssenceBitmap a = EssenceBitmap.of("1-100000,1;".getBytes());
+        EssenceBitmap b = EssenceBitmap.of("1-50000,1;50001-50002,2;50003-100000,1;".getBytes());
+
+        assertArrayEquals("50001-50002,2;".getBytes(), b.andNot(a).toEssence());
+        assertArrayEquals("50001-50002,1;".getBytes(), a.andNot(b).toEssence());
+    }
+
+    @Test
+    public void andNotHasTuplesNotInOther() {
+        EssenceBitmap a = EssenceBitmap.of(ESSENCE_A);
+        EssenceBitmap b = EssenceBitmap.of(ESSENCE_B);
+
+        assertArrayEquals("2,2;4,1;".getBytes(), b.andNot(a).toEssence());
+        assertArrayEquals("2,1;".getBytes(), a.andNot(b).toEssence());
+        assertEquals(0, a.andNot(a).size());
+    }
+
+    @Test
+    public void andNotOfLargeEssences() {
+        Random random = new Random(RESOURCES);
+        TreeMap<Long, Long> tuplesA = new TreeMap<>();
+        TreeMap<Long, Long> tuplesB = new TreeMap<>();
+        for (long id = 0; id < RESOURCES; id++) {
+            // Dense ranges, sparse ids and ids in another container
+            long shifted = (id < RESOURCES / 2 ? id : id * 7 + (1L << 40));
+            long version = 1 + random.nextInt(3);
+            tuplesA.put(shifted, version);
+            if (random.nextInt(50) != 0) {
+                tuplesB.put(shifted, (random.nextInt(100) == 0 ? version + 1 : version));
+            }
+        }
+        EssenceBitmap a = EssenceBitmap.of(essenceOf(tuplesA));
+        EssenceBitmap b = EssenceBitmap.of(essenceOf(tuplesB));
+
+        assertArrayEquals(essenceOf(tuplesA), a.toEssence());
+        assertArrayEquals(essenceOf(differenceOf(tuplesA, tuplesB)), a.andNot(b).toEssence());
+        assertArrayEquals(essenceOf(differenceOf(tuplesB, tuplesA)), b.andNot(a).toEssence());
+    }
+
+    @Test
+    public void bitmapOfDenseIdsIsSmall() {
+        StringBuilder essence = new StringBuilder();
+        for (int id = 1; id <= RESOURCES; id++) {
+            essence.append(id).append(',').append(id % 1000 == 0 ? 2 : 1).append(';');
+        }
+
+        EssenceBitmap result = EssenceBitmap.of(essence.toString().getBytes());
+
+        assertEquals(RESOURCES, result.size());
+        assertTrue(result.sizeInBytes() * 100 < result.length());
+    }
+
+    private static TreeMap<Long, Long> differenceOf(final TreeMap<Long, Long> tuples, final TreeMap<Long, Long> other) {
+        TreeMap<Long, Long> difference = new TreeMap<>(tuples);
+        difference.entrySet().removeIf(tuple -> tuple.getValue().equals(other.get(tuple.getKey())));
+
+        return difference;
+    }
+
+    private static byte[] essenceOf(final TreeMap<Long, Long> tuples) {
+        StringBuilder essence = new StringBuilder();
+        tuples.forEach((id, version) -> essence.append(id).append(',').append(version).append(';'));
+
+        return essence.toString().getBytes();
+    }
+}
@@ -18,11 +18,16 @@ package io.hivemind.data.comparision;
 import io.hivemind.data.Data;
 import io.hivemind.data.ObservedData;
 import io.hivemind.data.comparison.ComparisonResult;
+import io.hivemind.data.comparison.EssenceBitmap;
 import io.hivemind.data.comparison.EssenceComparator;
+import io.hivemind.data.comparison.EssenceIndex;
+import io.hivemind.data.comparison.EssenceTuples;
 import io.hivemind.constant.Outcome;
+import io.hivemind.exception.InvalidEssenceException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -59,6 +64,7 @@ public class EssenceComparatorTest {
     private static final byte[] DATA_SHORT_MORE_THEN_TWO_NUMBERS_PLUS_UPDATE = "11,2;12,1;".getBytes();
     private static final byte[] DATA_LONG_MORE_THEN_TWO_NUMBERS = "11,1;12,1;13,1;14,1;15,1;16,1;17,1;18,1;19,1;".getBytes();
     private static final byte[] DATA_LONG = "1,1;2,1;3,1;4,1;5,1;6,1;7,1;8,1;9,1;".getBytes();
+    private static final byte[] DATA_LONG_OTHER_ORDER = "9,1;8,1;7,1;6,1;5,1;4,1;3,1;2,1;1,1;".getBytes();
     private static final byte[] DATA_LONG_UPDATE_IN_FRONT = "74,1;1,1;2,1;3,1;4,1;5,1;6,1;7,1;8,1;9,1;".getBytes();
     private static final byte[] DATA_ONE_VERSION_CHANGE = "1,1;2,1;3,1;4,2;5,1;6,1;7,1;8,1;9,1;".getBytes();
     private static final byte[] DATA_TWO_VERSION_CHANGE = "1,1;2,1;3,1;4,2;5,2;6,1;7,1;8,1;9,1;".getBytes();
@@ -440,4 +446,224 @@ public class EssenceComparatorTest {
         assertNotEquals(expectedDifference, result.getDifference());
         assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
     }
+
+    @Test
+    public void compareIndexedAHavingLongAndBHavingOneVersionChange() {
+        Outcome expectedOutcome = Outcome.BEHIND;
+        byte[] expectedDifference = DIFF_ONE_VERSION_CHANGE;
+        Data a = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+        Data b = new ObservedData(DATA_ONE_VERSION_CHANGE);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedAHavingTwoSeparateUpdatesAndBHavingLong() {
+        Outcome expectedOutcome = Outcome.AHEAD;
+        byte[] expectedDifference = DIFF_TWO_VERSION_CHANGE_SEPARATE;
+        Data a = new ObservedData(DATA_TWO_VERSION_CHANGE_SEPARATE, null, EssenceIndex.compile(DATA_TWO_VERSION_CHANGE_SEPARATE));
+        Data b = new ObservedData(DATA_LONG);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedAHavingVeryLongAndBHavingOnlyFirstTwo() {
+        Outcome expectedOutcome = Outcome.AHEAD;
+        byte[] expectedDifference = DIFF_TWO_MORE_THEN_TWO_TO_VERY_LONG;
+        Data a = new ObservedData(DATA_VERY_LONG, null, EssenceIndex.compile(DATA_VERY_LONG));
+        Data b = new ObservedData(DATA_MORE_THEN_TWO_BEHIND);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedAHavingShortAndBHavingNotCanonical() {
+        Outcome expectedOutcome = Outcome.AHEAD;
+        byte[] expectedDifference = DATA_BYTE_ZERO;
+        Data a = new ObservedData(DATA_SHORT_PLUS_ONE_ZERO);
+        Data b = new ObservedData(DATA_SHORT, null, EssenceIndex.compile(DATA_SHORT));
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedASortedAndBNotSorted() {
+        Outcome expectedOutcome = Outcome.BEHIND;
+        byte[] expectedDifference = DIFF_UPDATE_IN_FRONT;
+        Data a = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+        Data b = new ObservedData(DATA_LONG_UPDATE_IN_FRONT);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedASortedAndBDecodedFromBinary() throws InvalidEssenceException {
+        Outcome expectedOutcome = Outcome.BEHIND;
+        byte[] expectedDifference = DIFF_TWO_VERSION_CHANGE_SEPARATE;
+        EssenceTuples tuples = new EssenceTuples();
+        tuples.parse(DATA_TWO_VERSION_CHANGE_SEPARATE);
+        byte[] essence = tuples.decode(tuples.toBinary());
+        Data a = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+        Data b = new ObservedData(essence);
+
+        ComparisonResult result = classUnderTest.compare(a, b, tuples);
+
+        assertNotNull(result);
+        assertEquals(expectedOutcome, result.getOutcome());
+        assertTrue(Arrays.equals(expectedDifference, result.getDifference()));
+    }
+
+    @Test
+    public void compareAHavingLongAndBHavingLongInOtherOrder() {
+        Data a = new ObservedData(DATA_LONG);
+        Data b = new ObservedData(DATA_LONG_OTHER_ORDER);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.EQUAL, result.getOutcome());
+    }
+
+    @Test
+    public void compareIndexedAHavingLongAndBHavingLongInOtherOrder() {
+        Data a = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+        Data b = new ObservedData(DATA_LONG_OTHER_ORDER);
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.EQUAL, result.getOutcome());
+    }
+
+    @Test
+    public void compareReusingComparatorKeepsEarlierResults() {
+        Data a = new ObservedData(DATA_LONG);
+        Data b = new ObservedData(DATA_TWO_VERSION_CHANGE);
+        Data c = new ObservedData(DATA_SHORT);
+
+        ComparisonResult first = classUnderTest.compare(a, b);
+        ComparisonResult second = classUnderTest.compare(a, c);
+
+        assertEquals(Outcome.BEHIND, first.getOutcome());
+        assertTrue(Arrays.equals(DIFF_TWO_VERSION_CHANGE, first.getDifference()));
+        assertEquals(Outcome.AHEAD, second.getOutcome());
+        assertTrue(Arrays.equals(DIFF_SHORT_TO_LONG, second.getDifference()));
+    }
+
+    @Test
+    public void compareBitmapAHavingLongAndBHavingOneVersionChange() {
+        Data a = ObservedData.of(EssenceBitmap.of(DATA_LONG));
+        Data b = ObservedData.of(EssenceBitmap.of(DATA_ONE_VERSION_CHANGE));
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.BEHIND, result.getOutcome());
+        assertTrue(Arrays.equals(DIFF_ONE_VERSION_CHANGE, result.getDifference()));
+    }
+
+    @Test
+    public void compareBitmapAHavingTwoSeparateUpdatesAndIndexedBHavingLong() {
+        Data a = ObservedData.of(EssenceBitmap.of(DATA_TWO_VERSION_CHANGE_SEPARATE));
+        Data b = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.AHEAD, result.getOutcome());
+        assertTrue(Arrays.equals(DIFF_TWO_VERSION_CHANGE_SEPARATE, result.getDifference()));
+    }
+
+    @Test
+    public void compareBitmapAHavingLongAndBHavingShort() {
+        Data a = ObservedData.of(EssenceBitmap.of(DATA_LONG));
+        Data b = ObservedData.of(EssenceBitmap.of(DATA_SHORT));
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.AHEAD, result.getOutcome());
+        assertTrue(Arrays.equals(DIFF_SHORT_TO_LONG, result.getDifference()));
+    }
+
+    @Test
+    public void compareBitmapAHavingLongAndBHavingLongInOtherOrder() {
+        Data a = ObservedData.of(EssenceBitmap.of(DATA_LONG));
+        Data b = ObservedData.of(EssenceBitmap.of(DATA_LONG_OTHER_ORDER));
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.EQUAL, result.getOutcome());
+    }
+
+    @Test
+    public void compareAHavingRangesAndBHavingRangeUpdated() {
+        Data a = new ObservedData("1-9,1;".getBytes());
+        Data b = new ObservedData("1-3,1;4-5,2;6-9,1;".getBytes());
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.BEHIND, result.getOutcome());
+        assertTrue(Arrays.equals("4-5,2;".getBytes(), result.getDifference()));
+    }
+
+    @Test
+    public void compareIndexedAHavingLongAndBHavingRanges() {
+        Data a = new ObservedData(DATA_LONG, null, EssenceIndex.compile(DATA_LONG));
+        Data b = new ObservedData("1-9,1;".getBytes());
+
+        ComparisonResult result = classUnderTest.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.EQUAL, result.getOutcome());
+    }
+
+    @Test
+    public void compareInParallelATwoSeparateUpdatesAndBLong() {
+        EssenceComparator parallel = new EssenceComparator(new ForkJoinPool(2), 1);
+        Data a = new ObservedData(DATA_TWO_VERSION_CHANGE_SEPARATE);
+        Data b = new ObservedData(DATA_LONG);
+
+        ComparisonResult result = parallel.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.AHEAD, result.getOutcome());
+        assertTrue(Arrays.equals(DIFF_TWO_VERSION_CHANGE_SEPARATE, result.getDifference()));
+    }
+
+    @Test
+    public void compareInParallelAShortPlusUpdateAndBLong() {
+        EssenceComparator parallel = new EssenceComparator(new ForkJoinPool(2), 1);
+        Data a = new ObservedData(DATA_SHORT_PLUS_UPDATE);
+        Data b = new ObservedData(DATA_LONG);
+
+        ComparisonResult result = parallel.compare(a, b);
+
+        assertNotNull(result);
+        assertEquals(Outcome.BEHIND, result.getOutcome());
+        assertTrue(Arrays.equals(DIFF_SHORT_PLUS_UPDATE, result.getDifference()));
+    }
 }
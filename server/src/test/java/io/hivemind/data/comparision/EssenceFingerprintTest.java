@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceFingerprint;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for essence fingerprint
+ *
+ * @author Patrick-4488
+ */
+public class EssenceFingerprintTest {
+
+    private static final byte[] ESSENCE = "73,2;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_OTHER_ORDER = "0,5;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_OTHER_VERSION = "73,3;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_NOT_CANONICAL = "1,1;2,1;0".getBytes();
+    private static final String FINGERPRINT_EMPTY = "0000000000000000";
+    private static final String FINGERPRINT_ESSENCE = "1b09046d66166742";
+
+    @Test
+    public void fingerprintOfEmptyEssence() {
+        assertEquals(FINGERPRINT_EMPTY, EssenceFingerprint.of((byte[]) null));
+        assertEquals(FINGERPRINT_EMPTY, EssenceFingerprint.of(new byte[0]));
+    }
+
+    @Test
+    public void fingerprintOfEssence() {
+        assertEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(ESSENCE));
+        assertEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(ESSENCE_OTHER_ORDER));
+        assertNotEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(ESSENCE_OTHER_VERSION));
+    }
+
+    @Test
+    public void fingerprintOfEssenceNotCanonical() {
+        assertNull(EssenceFingerprint.of(ESSENCE_NOT_CANONICAL));
+    }
+
+    @Test
+    public void matchesIgnoringCase() {
+        assertTrue(EssenceFingerprint.matches(FINGERPRINT_ESSENCE.toUpperCase(), FINGERPRINT_ESSENCE));
+        assertTrue(EssenceFingerprint.matches(" " + FINGERPRINT_ESSENCE, FINGERPRINT_ESSENCE));
+        assertFalse(EssenceFingerprint.matches(null, FINGERPRINT_ESSENCE));
+        assertFalse(EssenceFingerprint.matches(FINGERPRINT_ESSENCE, null));
+        assertFalse(EssenceFingerprint.matches(FINGERPRINT_EMPTY, FINGERPRINT_ESSENCE));
+    }
+}
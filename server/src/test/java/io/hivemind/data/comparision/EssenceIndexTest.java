@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for essence index
+ *
+ * @author Patrick-4488
+ */
+public class EssenceIndexTest {
+
+    private static final byte[] ESSENCE_EMPTY = "".getBytes();
+    private static final byte[] ESSENCE = "73,2;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_SORTED = "0,5;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_NOT_ENDING_WITH_SEPARATOR = "1,1;2,3".getBytes();
+    private static final byte[] ESSENCE_WITHOUT_VERSION = "1,1;2,1;0".getBytes();
+    private static final byte[] ESSENCE_LEADING_ZERO = "1,1;02,1;".getBytes();
+    private static final byte[] ESSENCE_DUPLICATE_ID = "1,1;2,1;1,2;".getBytes();
+    private static final byte[] ESSENCE_EMPTY_TUPLE = "1,1;;2,1;".getBytes();
+    private static final byte[] ESSENCE_WHITESPACE = " 1,1;2,1;".getBytes();
+
+    @Test
+    public void compileEssenceBeingNullOrEmpty() {
+        assertNull(EssenceIndex.compile(null));
+        assertNull(EssenceIndex.compile(ESSENCE_EMPTY));
+    }
+
+    @Test
+    public void compileEssence() {
+        EssenceIndex result = EssenceIndex.compile(ESSENCE);
+
+        assertNotNull(result);
+        assertEquals(3, result.size());
+        assertEquals(2, result.versionOf(73));
+        assertEquals(1, result.versionOf(1));
+        assertEquals(5, result.versionOf(0));
+        assertEquals(-1, result.versionOf(2));
+        assertFalse(result.isSorted());
+    }
+
+    @Test
+    public void compileEssenceSorted() {
+        EssenceIndex result = EssenceIndex.compile(ESSENCE_SORTED);
+
+        assertNotNull(result);
+        assertTrue(result.isSorted());
+        assertEquals(3, result.size());
+        assertEquals(2, result.versionOf(73));
+        assertEquals(5, result.versionOf(0));
+        assertEquals(-1, result.versionOf(2));
+    }
+
+    @Test
+    public void compileEssenceNotEndingWithSeparator() {
+        EssenceIndex result = EssenceIndex.compile(ESSENCE_NOT_ENDING_WITH_SEPARATOR);
+
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals(3, result.versionOf(2));
+    }
+
+    @Test
+    public void compileEssenceNotCanonical() {
+        assertNull(EssenceIndex.compile(ESSENCE_WITHOUT_VERSION));
+        assertNull(EssenceIndex.compile(ESSENCE_LEADING_ZERO));
+        assertNull(EssenceIndex.compile(ESSENCE_DUPLICATE_ID));
+        assertNull(EssenceIndex.compile(ESSENCE_EMPTY_TUPLE));
+        assertNull(EssenceIndex.compile(ESSENCE_WHITESPACE));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceTuples;
+import io.hivemind.data.comparison.EssenceValidator;
+import io.hivemind.exception.InvalidEssenceException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark for scanning essences, comparing the previous validation using a
+ * regex with the validation and the parsing on bytes. Not part of the unit
+ * tests, run the main method from the test classpath. Run a second time with
+ * `-Dhivemind.essence.scanner=scalar` to compare scanning per long with
+ * scanning byte by byte
+ * <p>
+ * Arguments (optional): [resources...], defaults to 10k, 1M and 10M</p>
+ *
+ * @author Patrick-4488
+ */
+public class EssenceScanningBenchmark {
+
+    private static final Pattern PATTERN = Pattern.compile("([^\\d,;]+)");
+    private static final long MIN_NANOS_PER_RUN = 2_000_000_000L;
+    private static final int WARMUP_RUNS = 2;
+    private static volatile long sink;
+
+    public static void main(final String[] args) throws InvalidEssenceException {
+        int[] sizes = {10_000, 1_000_000, 10_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("scanner=%s%n", System.getProperty("hivemind.essence.scanner", "swar"));
+        for (int resources : sizes) {
+            byte[] essence = createEssence(resources);
+            EssenceValidator validator = new EssenceValidator();
+            EssenceTuples tuples = new EssenceTuples();
+
+            report("regex", resources, essence, () -> {
+                sink += PATTERN.matcher(new String(essence).trim()).find() ? 1 : 0;
+            });
+            report("validate", resources, essence, () -> validator.validateEssence(essence));
+            report("parse", resources, essence, () -> {
+                tuples.parse(essence);
+                sink += tuples.size();
+            });
+        }
+    }
+
+    private static void report(final String name, final int resources, final byte[] essence, final Scan scan) throws InvalidEssenceException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            measure(scan);
+        }
+        double nanosPerScan = measure(scan);
+
+        System.out.printf("%-9s resources=%,11d bytes=%,12d %,12.1f us/op %,9.1f MB/s%n", name, resources, essence.length,
+                nanosPerScan / 1_000, essence.length / nanosPerScan * 1_000_000_000 / (1024 * 1024));
+    }
+
+    private static double measure(final Scan scan) throws InvalidEssenceException {
+        long start = System.nanoTime();
+        long scans = 0;
+        long elapsed;
+        do {
+            scan.run();
+            scans++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MIN_NANOS_PER_RUN);
+
+        return (double) elapsed / scans;
+    }
+
+    private static byte[] createEssence(final int resources) {
+        Random random = new Random(resources);
+        StringBuilder essence = new StringBuilder(resources * 12);
+        for (int id = resources; id > 0; id--) {
+            essence.append(id).append(',').append(1 + random.nextInt(999)).append(';');
+        }
+
+        return essence.toString().getBytes();
+    }
+
+    @FunctionalInterface
+    private interface Scan {
+
+        void run() throws InvalidEssenceException;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceSketch;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for essence sketch
+ *
+ * @author Patrick-4488
+ */
+public class EssenceSketchTest {
+
+    private static final byte[] ESSENCE = "73,1;72,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_UPDATED = "73,2;72,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_UPDATED_RECONCILED = "72,1;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_ADDED = "73,1;72,1;1,1;5,1;".getBytes();
+    private static final byte[] ESSENCE_DELETED = "73,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_SINGLE = "73,2;".getBytes();
+    private static final byte[] ESSENCE_NOT_CANONICAL = "1,1;2,1;0".getBytes();
+    private static final int CELLS = 30;
+    // The tuple 73,2 is in these cells of a sketch having 30 cells, synchronizers determine the same
+    private static final int[] CELLS_OF_SINGLE = {2, 19, 23};
+
+    @Test
+    public void sketchNotValid() {
+        assertNull(EssenceSketch.of(ESSENCE_NOT_CANONICAL, CELLS));
+        assertNull(EssenceSketch.of(ESSENCE, 0));
+        assertNull(EssenceSketch.of(ESSENCE, 31));
+        assertNull(EssenceSketch.of(ESSENCE, EssenceSketch.MAX_CELLS + 3));
+    }
+
+    @Test
+    public void sketchHasTupleInOneCellPerPart() {
+        ByteBuffer sketch = ByteBuffer.wrap(EssenceSketch.of(ESSENCE_SINGLE, CELLS).toBytes());
+
+        assertEquals(CELLS * EssenceSketch.CELL_LENGTH, sketch.capacity());
+        int tuples = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            tuples += sketch.getInt(cell * EssenceSketch.CELL_LENGTH);
+        }
+        assertEquals(3, tuples);
+        for (int cell : CELLS_OF_SINGLE) {
+            assertEquals(1, sketch.getInt(cell * EssenceSketch.CELL_LENGTH));
+        }
+    }
+
+    @Test
+    public void reconcileSameEssence() {
+        EssenceSketch sketch = EssenceSketch.of(ESSENCE, CELLS);
+
+        assertArrayEquals(ESSENCE, EssenceSketch.reconcile(ESSENCE, sketch, sketch.toBytes()));
+    }
+
+    @Test
+    public void reconcileUpdatedEssence() {
+        byte[] received = EssenceSketch.of(ESSENCE_UPDATED, CELLS).toBytes();
+
+        assertArrayEquals(ESSENCE_UPDATED_RECONCILED, EssenceSketch.reconcile(ESSENCE, EssenceSketch.of(ESSENCE, CELLS), received));
+    }
+
+    @Test
+    public void reconcileAddedAndDeleted() {
+        EssenceSketch sketch = EssenceSketch.of(ESSENCE, CELLS);
+
+        assertArrayEquals(ESSENCE_ADDED, EssenceSketch.reconcile(ESSENCE, sketch, EssenceSketch.of(ESSENCE_ADDED, CELLS).toBytes()));
+        assertArrayEquals(ESSENCE_DELETED, EssenceSketch.reconcile(ESSENCE, sketch, EssenceSketch.of(ESSENCE_DELETED, CELLS).toBytes()));
+    }
+
+    @Test
+    public void reconcileTooManyDifferences() {
+        StringBuilder other = new StringBuilder();
+        for (int id = 100; id < 200; id++) {
+            other.append(id).append(",1;");
+        }
+        byte[] received = EssenceSketch.of(other.toString().getBytes(), CELLS).toBytes();
+
+        assertNull(EssenceSketch.reconcile(ESSENCE, EssenceSketch.of(ESSENCE, CELLS), received));
+    }
+
+    @Test
+    public void reconcileOtherAmountOfCells() {
+        byte[] received = EssenceSketch.of(ESSENCE_UPDATED, CELLS + 3).toBytes();
+
+        assertNull(EssenceSketch.reconcile(ESSENCE, EssenceSketch.of(ESSENCE, CELLS), received));
+        assertNull(EssenceSketch.reconcile(ESSENCE, EssenceSketch.of(ESSENCE, CELLS), null));
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceSummary;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for essence summary
+ *
+ * @author Patrick-4488
+ */
+public class EssenceSummaryTest {
+
+    private static final byte[] ESSENCE = "73,1;72,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_UPDATED = "73,2;72,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_DELETED = "72,1;1,1;".getBytes();
+    private static final byte[] ESSENCE_SINGLE = "73,2;".getBytes();
+    private static final byte[] ESSENCE_NOT_CANONICAL = "1,1;2,1;0".getBytes();
+    // The tuple 73,2 is below node 10 of level 1 and leaf 42900, synchronizers determine the same
+    private static final byte[] NODES_OF_SINGLE = "0,0;1,0;2,0;3,0;4,0;5,0;6,0;7,0;8,0;9,0;10,8a8a8b5e93679810;11,0;12,0;13,0;14,0;15,0;".getBytes();
+    private static final byte[] NODES_EMPTY = "0,0;1,0;2,0;3,0;4,0;5,0;6,0;7,0;8,0;9,0;10,0;11,0;12,0;13,0;14,0;15,0;".getBytes();
+    private static final byte[] NODES_INVALID = "0,0;1,x;".getBytes();
+    private static final byte[] NODES_OUT_OF_RANGE = "16,0;".getBytes();
+    private static final byte[] DIFFERING_SINGLE = "10;".getBytes();
+    private static final String LEAF_OF_SINGLE = "42900";
+
+    @Test
+    public void summaryOfEssenceNotCanonical() {
+        assertNull(EssenceSummary.of(ESSENCE_NOT_CANONICAL));
+    }
+
+    @Test
+    public void differingNodesOfSameEssence() {
+        EssenceSummary summary = EssenceSummary.of(ESSENCE_SINGLE);
+
+        assertArrayEquals(new byte[0], summary.differingNodes(1, NODES_OF_SINGLE));
+    }
+
+    @Test
+    public void differingNodesOfOtherEssence() {
+        EssenceSummary summary = EssenceSummary.of(ESSENCE_SINGLE);
+
+        assertArrayEquals(DIFFERING_SINGLE, summary.differingNodes(1, NODES_EMPTY));
+        assertArrayEquals(DIFFERING_SINGLE, EssenceSummary.of(new byte[0]).differingNodes(1, NODES_OF_SINGLE));
+    }
+
+    @Test
+    public void differingNodesNotValid() {
+        EssenceSummary summary = EssenceSummary.of(ESSENCE_SINGLE);
+
+        assertNull(summary.differingNodes(0, NODES_EMPTY));
+        assertNull(summary.differingNodes(EssenceSummary.DEPTH + 1, NODES_EMPTY));
+        assertNull(summary.differingNodes(1, NODES_INVALID));
+        assertNull(summary.differingNodes(1, NODES_OUT_OF_RANGE));
+        assertNull(summary.differingNodes(1, null));
+    }
+
+    @Test
+    public void completeUpdatedLeaf() {
+        assertArrayEquals(ESSENCE_UPDATED, EssenceSummary.complete(ESSENCE, LEAF_OF_SINGLE, ESSENCE_SINGLE));
+    }
+
+    @Test
+    public void completeDeletedLeaf() {
+        assertArrayEquals(ESSENCE_DELETED, EssenceSummary.complete(ESSENCE, LEAF_OF_SINGLE, new byte[0]));
+    }
+
+    @Test
+    public void completeTupleNotInLeaves() {
+        assertNull(EssenceSummary.complete(ESSENCE, "0", ESSENCE_SINGLE));
+    }
+
+    @Test
+    public void completeLeavesNotValid() {
+        assertNull(EssenceSummary.complete(ESSENCE, "x", ESSENCE_SINGLE));
+        assertNull(EssenceSummary.complete(ESSENCE, "65536", ESSENCE_SINGLE));
+        assertNull(EssenceSummary.complete(ESSENCE, null, ESSENCE_SINGLE));
+        assertNull(EssenceSummary.complete(ESSENCE, LEAF_OF_SINGLE, ESSENCE_NOT_CANONICAL));
+    }
+}
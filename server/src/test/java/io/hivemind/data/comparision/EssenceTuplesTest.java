@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.comparision;
+
+import io.hivemind.data.comparison.EssenceTuples;
+import io.hivemind.exception.HiveCeption;
+import io.hivemind.exception.InvalidEssenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for essence tuples
+ *
+ * @author Patrick-4488
+ */
+public class EssenceTuplesTest {
+
+    private EssenceTuples classUnderTest;
+
+    private static final byte[] ESSENCE = "73,2;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_NOT_CANONICAL = "1,1;2,1;0".getBytes();
+    private static final byte[] ESSENCE_SURROUNDED_BY_WHITESPACE = " 1,1;2,1; ".getBytes();
+    private static final byte[] ESSENCE_INVALID_IN_CANONICAL_PART = "1,1;2,x;".getBytes();
+    private static final byte[] ESSENCE_INVALID_AFTER_NOT_CANONICAL = "1,1;01,1;2,1;mock".getBytes();
+    private static final byte[] ESSENCE_SORTED = "0,5;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_LARGE_NUMBERS = "300,1;999999999999999999,128;".getBytes();
+    private static final byte[] ESSENCE_DUPLICATE_ID = "1,1;1,2;".getBytes();
+    private static final byte[] ESSENCE_HAVING_RANGES = "1,1;1000-1999,3;".getBytes();
+    private static final byte[] BINARY = {0, 5, 1, 1, 72, 2};
+    private static final byte[] BINARY_TRUNCATED = {0, 5, 1, (byte) 0x81};
+    private static final byte[] BINARY_DUPLICATE_ID = {1, 1, 0, 2};
+    private static final byte[] BINARY_NOT_MINIMAL = {(byte) 0x81, 0, 1};
+
+    @BeforeEach
+    public void setup() {
+        classUnderTest = new EssenceTuples();
+    }
+
+    @Test
+    public void parseEssenceBeingNull() {
+        assertDoesNotThrow(() -> classUnderTest.parse(null));
+        assertEquals(0, classUnderTest.size());
+    }
+
+    @Test
+    public void parseEssence() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE);
+
+        assertTrue(classUnderTest.isCanonical());
+        assertEquals(3, classUnderTest.size());
+        assertFalse(classUnderTest.isSorted());
+    }
+
+    @Test
+    public void parseEssenceSorted() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_SORTED);
+
+        assertTrue(classUnderTest.isSorted());
+    }
+
+    @Test
+    public void parseEssenceSetHashIgnoresOrder() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE);
+        long setHash = classUnderTest.setHash();
+        classUnderTest.parse(ESSENCE_SORTED);
+
+        assertEquals(setHash, classUnderTest.setHash());
+
+        classUnderTest.decode(BINARY);
+
+        assertEquals(setHash, classUnderTest.setHash());
+
+        classUnderTest.parse(ESSENCE_DUPLICATE_ID);
+
+        assertNotEquals(setHash, classUnderTest.setHash());
+    }
+
+    @Test
+    public void parseEssenceNotCanonical() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_NOT_CANONICAL);
+
+        assertFalse(classUnderTest.isCanonical());
+    }
+
+    @Test
+    public void parseEssenceHavingRanges() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_HAVING_RANGES);
+
+        assertFalse(classUnderTest.isCanonical());
+        assertTrue(classUnderTest.hasRanges());
+        assertEquals(1, classUnderTest.size());
+    }
+
+    @Test
+    public void parseEssenceSurroundedByWhitespace() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_SURROUNDED_BY_WHITESPACE);
+
+        assertFalse(classUnderTest.isCanonical());
+    }
+
+    @Test
+    public void parseEssenceInvalidInCanonicalPart() {
+        InvalidEssenceException exception = assertThrows(InvalidEssenceException.class, () -> classUnderTest.parse(ESSENCE_INVALID_IN_CANONICAL_PART));
+
+        assertEquals(HiveCeption.INVALID_ESSENCE.getMessage(), exception.getLocalizedMessage());
+        assertEquals(6, exception.getOffset());
+    }
+
+    @Test
+    public void parseEssenceInvalidAfterNotCanonical() {
+        InvalidEssenceException exception = assertThrows(InvalidEssenceException.class, () -> classUnderTest.parse(ESSENCE_INVALID_AFTER_NOT_CANONICAL));
+
+        assertEquals(13, exception.getOffset());
+    }
+
+    @Test
+    public void parseReusedForNextEssence() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_NOT_CANONICAL);
+        classUnderTest.parse(ESSENCE);
+
+        assertTrue(classUnderTest.isCanonical());
+        assertEquals(3, classUnderTest.size());
+    }
+
+    @Test
+    public void toBinarySortsById() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE);
+
+        assertArrayEquals(BINARY, classUnderTest.toBinary());
+    }
+
+    @Test
+    public void toBinaryNotCanonical() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_NOT_CANONICAL);
+
+        assertNull(classUnderTest.toBinary());
+    }
+
+    @Test
+    public void toBinaryDuplicateId() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_DUPLICATE_ID);
+
+        assertNull(classUnderTest.toBinary());
+    }
+
+    @Test
+    public void decodeBinary() throws InvalidEssenceException {
+        byte[] result = classUnderTest.decode(BINARY);
+
+        assertArrayEquals(ESSENCE_SORTED, result);
+        assertTrue(classUnderTest.isCanonical());
+        assertTrue(classUnderTest.isSorted());
+        assertEquals(3, classUnderTest.size());
+    }
+
+    @Test
+    public void decodeBinaryBeingNull() throws InvalidEssenceException {
+        assertArrayEquals(new byte[0], classUnderTest.decode(null));
+        assertEquals(0, classUnderTest.size());
+    }
+
+    @Test
+    public void decodeEncodedLargeNumbers() throws InvalidEssenceException {
+        classUnderTest.parse(ESSENCE_LARGE_NUMBERS);
+        byte[] binary = classUnderTest.toBinary();
+
+        assertArrayEquals(ESSENCE_LARGE_NUMBERS, new EssenceTuples().decode(binary));
+        assertTrue(binary.length < ESSENCE_LARGE_NUMBERS.length);
+    }
+
+    @Test
+    public void decodeBinaryTruncated() {
+        InvalidEssenceException exception = assertThrows(InvalidEssenceException.class, () -> classUnderTest.decode(BINARY_TRUNCATED));
+
+        assertEquals(HiveCeption.INVALID_ESSENCE.getMessage(), exception.getLocalizedMessage());
+        assertEquals(3, exception.getOffset());
+    }
+
+    @Test
+    public void decodeBinaryDuplicateId() {
+        InvalidEssenceException exception = assertThrows(InvalidEssenceException.class, () -> classUnderTest.decode(BINARY_DUPLICATE_ID));
+
+        assertEquals(2, exception.getOffset());
+    }
+
+    @Test
+    public void decodeBinaryNotMinimal() {
+        InvalidEssenceException exception = assertThrows(InvalidEssenceException.class, () -> classUnderTest.decode(BINARY_NOT_MINIMAL));
+
+        assertEquals(0, exception.getOffset());
+    }
+}
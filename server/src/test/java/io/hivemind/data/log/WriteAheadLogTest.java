@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.log;
+
+import io.hivemind.constant.Durability;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for write-ahead log
+ *
+ * @author Patrick-4488
+ */
+public class WriteAheadLogTest {
+
+    private Path directory;
+
+    private static final long SEGMENT_SIZE = 256;
+    private static final String TRACEPARENT_A = "1a";
+    private static final String TRACEPARENT_B = "2b";
+    private static final byte[] ESSENCE = "73,1;72,1;".getBytes();
+    private static final String SERIALIZED = "application/ser";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("hive-wal-test");
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        try ( Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void replayAppendedRecords() throws IOException {
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.ALWAYS, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, ESSENCE));
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.DATA_REQUEST, TRACEPARENT_A, TRACEPARENT_B, ESSENCE, SERIALIZED));
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.CLEARED, null));
+        }
+
+        List<LogRecord> records = replay();
+
+        assertEquals(3, records.size());
+        assertEquals(LogRecord.Type.LATEST, records.get(0).getType());
+        assertEquals(TRACEPARENT_A, records.get(0).getKey());
+        assertArrayEquals(ESSENCE, records.get(0).getData());
+        assertEquals(LogRecord.Type.DATA_REQUEST, records.get(1).getType());
+        assertEquals(TRACEPARENT_B, records.get(1).getOther());
+        assertEquals(SERIALIZED, records.get(1).getRequestedType());
+        assertEquals(LogRecord.Type.CLEARED, records.get(2).getType());
+        assertNull(records.get(2).getKey());
+        assertNull(records.get(2).getData());
+    }
+
+    @Test
+    public void transitionNotAppliedIsNotAppended() throws IOException {
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            boolean appended = classUnderTest.append(() -> false, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, ESSENCE));
+
+            assertFalse(appended);
+        }
+
+        assertTrue(replay().isEmpty());
+    }
+
+    @Test
+    public void transitionAppliedOutsideOfTheLog() throws IOException, InterruptedException {
+        Thread[] other = new Thread[1];
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.ALWAYS, 1)) {
+            classUnderTest.append(() -> {
+                other[0] = new Thread(() -> {
+                    classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_B));
+                    classUnderTest.awaitDurable();
+                });
+                other[0].start();
+                try {
+                    other[0].join(5000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_A));
+            classUnderTest.awaitDurable();
+        }
+        other[0].join();
+
+        List<LogRecord> records = replay();
+
+        assertEquals(2, records.size());
+        assertEquals(TRACEPARENT_B, records.get(0).getKey());
+        assertEquals(TRACEPARENT_A, records.get(1).getKey());
+    }
+
+    @Test
+    public void replayRecordsAppendedInOrder() throws IOException {
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.ALWAYS, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, ESSENCE));
+            boolean notApplied = classUnderTest.appendInOrder(() -> false, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_B, ESSENCE));
+            boolean applied = classUnderTest.appendInOrder(() -> true, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, ESSENCE));
+            classUnderTest.awaitDurable();
+
+            assertFalse(notApplied);
+            assertTrue(applied);
+        }
+
+        List<LogRecord> records = replay();
+
+        assertEquals(2, records.size());
+        assertEquals(LogRecord.Type.STORED_ESSENCE, records.get(0).getType());
+        assertEquals(LogRecord.Type.LATEST, records.get(1).getType());
+        assertEquals(TRACEPARENT_A, records.get(1).getKey());
+    }
+
+    @Test
+    public void recordNotFittingSegmentIsWrittenToNextSegment() throws IOException {
+        byte[] larger = new byte[(int) SEGMENT_SIZE * 2];
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.INTERVAL, 1)) {
+            for (int i = 0; i < 10; i++) {
+                classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.STORED_ESSENCE, TRACEPARENT_A, ESSENCE));
+            }
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.STORED_DATA, TRACEPARENT_A, larger, SERIALIZED));
+
+            assertTrue(classUnderTest.segmentCount() > 1);
+        }
+
+        List<LogRecord> records = replay();
+
+        assertEquals(11, records.size());
+        assertArrayEquals(larger, records.get(10).getData());
+    }
+
+    @Test
+    public void appendAfterReopening() throws IOException {
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_A));
+        }
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_B));
+        }
+
+        List<LogRecord> records = replay();
+
+        assertEquals(2, records.size());
+        assertEquals(TRACEPARENT_A, records.get(0).getKey());
+        assertEquals(TRACEPARENT_B, records.get(1).getKey());
+    }
+
+    @Test
+    public void partiallyWrittenRecordIsDiscarded() throws IOException {
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, ESSENCE));
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_B, ESSENCE));
+        }
+        int second = 2 * Integer.BYTES + LogRecord.of(LogRecord.Type.LATEST, TRACEPARENT_A, ESSENCE).encode().length;
+        corruptByteAt(second + 2 * Integer.BYTES + 1);
+
+        assertEquals(1, replay().size());
+
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_B));
+        }
+        List<LogRecord> records = replay();
+
+        assertEquals(2, records.size());
+        assertEquals(LogRecord.Type.PRIORITY_TAKEN, records.get(1).getType());
+    }
+
+    @Test
+    public void replayFromCheckpoint() throws IOException {
+        long checkpoint;
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_A));
+            checkpoint = classUnderTest.checkpoint(() -> {});
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_B));
+
+            List<LogRecord> records = new ArrayList<>();
+            classUnderTest.replay(checkpoint, records::add);
+
+            assertEquals(1, records.size());
+            assertEquals(TRACEPARENT_B, records.get(0).getKey());
+
+            classUnderTest.truncate(checkpoint);
+
+            assertEquals(1, classUnderTest.segmentCount());
+        }
+
+        List<LogRecord> records = replay();
+
+        assertEquals(1, records.size());
+        assertEquals(TRACEPARENT_B, records.get(0).getKey());
+    }
+
+    @Test
+    public void appendAfterCheckpointOfClosedLog() throws IOException {
+        WriteAheadLog closedLog = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1);
+        closedLog.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_A));
+        closedLog.close();
+        long checkpoint = closedLog.checkpoint(() -> {});
+        try ( WriteAheadLog classUnderTest = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            classUnderTest.append(() -> {}, () -> LogRecord.of(LogRecord.Type.PRIORITY_TAKEN, TRACEPARENT_B));
+            List<LogRecord> records = new ArrayList<>();
+            classUnderTest.replay(checkpoint, records::add);
+
+            assertEquals(1, records.size());
+            assertEquals(TRACEPARENT_B, records.get(0).getKey());
+        }
+    }
+
+    private List<LogRecord> replay() throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        try ( WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE, Durability.NEVER, 1)) {
+            log.replay(records::add);
+        }
+
+        return records;
+    }
+
+    private void corruptByteAt(final int position) throws IOException {
+        try ( FileChannel channel = FileChannel.open(directory.resolve("%020d.wal".formatted(0)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            channel.write(buffer.rewind(), position);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.data.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for snapshot store
+ *
+ * @author Patrick-4488
+ */
+public class SnapshotStoreTest {
+
+    private Path directory;
+    private SnapshotStore classUnderTest;
+
+    private static final String TRACEPARENT_A = "1a";
+    private static final String TRACEPARENT_B = "2b";
+    private static final String TRACEPARENT_C = "3c";
+    private static final byte[] ESSENCE = "73,1;72,1;".getBytes();
+    private static final byte[] ESSENCE_UPDATE = "73,2;72,1;".getBytes();
+    private static final byte[] DIFF = "73,2;".getBytes();
+    private static final byte[] DATA = "mock".getBytes();
+    private static final String SERIALIZED = "application/ser";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("hive-snapshot-test");
+        classUnderTest = new SnapshotStore(directory, 2);
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        try ( Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void readNewestWithoutSnapshots() throws IOException {
+        assertNull(classUnderTest.readNewest());
+        assertEquals(0, classUnderTest.oldestCheckpoint());
+    }
+
+    @Test
+    public void readWrittenSnapshot() throws IOException {
+        StateSnapshot snapshot = new StateSnapshot(7);
+        snapshot.setLatest(TRACEPARENT_A, ESSENCE_UPDATE);
+        snapshot.addStored(TRACEPARENT_A, ESSENCE_UPDATE, true);
+        snapshot.addStored(TRACEPARENT_B, ESSENCE, true);
+        snapshot.addStored(TRACEPARENT_C, ESSENCE, true);
+        snapshot.addDataRequest(TRACEPARENT_A, TRACEPARENT_B, DIFF, SERIALIZED);
+        snapshot.addPrepared(TRACEPARENT_B, DATA, SERIALIZED);
+        snapshot.addPrepared(TRACEPARENT_C, DATA, SERIALIZED);
+        snapshot.addPriority(TRACEPARENT_C, ESSENCE_UPDATE);
+
+        classUnderTest.write(snapshot);
+        StateSnapshot result = classUnderTest.readNewest();
+
+        assertEquals(7, result.getCheckpoint());
+        assertEquals(TRACEPARENT_A, result.getLatest().getKey());
+        assertArrayEquals(ESSENCE_UPDATE, result.getLatest().getData());
+        assertEquals(3, result.getStored().size());
+        assertTrue(result.getStored().get(1).isEssence());
+        assertSame(result.getStored().get(1).getData(), result.getStored().get(2).getData());
+        assertSame(result.getLatest().getData(), result.getStored().get(0).getData());
+        StateSnapshot.Entry request = result.getDataRequests().get(0);
+        assertEquals(TRACEPARENT_A, request.getKey());
+        assertEquals(TRACEPARENT_B, request.getOther());
+        assertArrayEquals(DIFF, request.getData());
+        assertEquals(SERIALIZED, request.getRequestedType());
+        assertEquals(2, result.getPrepared().size());
+        assertSame(result.getPrepared().get(0).getData(), result.getPrepared().get(1).getData());
+        assertEquals(TRACEPARENT_C, result.getPriorities().get(0).getKey());
+        assertFalse(result.getPrepared().get(0).isEssence());
+    }
+
+    @Test
+    public void keepOnlySnapshotsRetained() throws IOException {
+        classUnderTest.write(new StateSnapshot(1));
+        classUnderTest.write(new StateSnapshot(2));
+        classUnderTest.write(new StateSnapshot(3));
+
+        assertEquals(2, snapshots().size());
+        assertEquals(2, classUnderTest.oldestCheckpoint());
+        assertEquals(3, classUnderTest.readNewest().getCheckpoint());
+    }
+
+    @Test
+    public void readSnapshotBeforeDamagedSnapshot() throws IOException {
+        StateSnapshot older = new StateSnapshot(1);
+        older.setLatest(TRACEPARENT_A, ESSENCE);
+        classUnderTest.write(older);
+        StateSnapshot newer = new StateSnapshot(2);
+        newer.setLatest(TRACEPARENT_A, ESSENCE_UPDATE);
+        classUnderTest.write(newer);
+
+        Path newest = snapshots().get(1);
+        try ( FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), channel.size() / 2);
+        }
+        StateSnapshot result = classUnderTest.readNewest();
+
+        assertEquals(1, result.getCheckpoint());
+        assertArrayEquals(ESSENCE, result.getLatest().getData());
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try ( Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
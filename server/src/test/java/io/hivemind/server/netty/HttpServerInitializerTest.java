@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.server.netty;
+
+import io.hivemind.configuration.HiveConfig;
+import io.hivemind.constant.ContentType;
+import io.hivemind.constant.Durability;
+import io.hivemind.data.DataProcessor;
+import io.hivemind.data.change.ChangeLog;
+import io.hivemind.data.change.ChangeRecord;
+import io.hivemind.exception.HiveException;
+import io.hivemind.helper.RequestHelper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.http2.DefaultHttp2FrameReader;
+import io.netty.handler.codec.http2.DefaultHttp2FrameWriter;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the server initializer, requests of synchronizers over cleartext
+ * HTTP/2
+ *
+ * @author Patrick-4488
+ */
+public class HttpServerInitializerTest {
+
+    private EmbeddedChannel server;
+    private EmbeddedChannel client;
+    private ChannelHandlerContext clientContext;
+    private DefaultHttp2FrameWriter frameWriter;
+    private Path directory;
+
+    private static final String TRACEPARENT = "1a";
+    private static final byte[] ESSENCE = "73,1;72,1;".getBytes();
+    private static final byte[] DATA = "mock".getBytes();
+    private static final String SERIALIZED = "application/ser";
+    private static final long SEGMENT_SIZE = 4096;
+    // The request upgrading is answered on the first stream, the client opens odd streams from 3 on
+    private static final int UPGRADE_STREAM = 1;
+    private static final int STREAM = 3;
+    // Settings of the client, base64url encoded
+    private static final String HTTP2_SETTINGS = "AAMAAABkAARAAAAAAAIAAAAA";
+    private static final String SWITCHING_PROTOCOLS = "HTTP/1.1 101 Switching Protocols";
+    private static final String END_OF_HEADERS = "\r\n\r\n";
+
+    @BeforeEach
+    public void setup() throws HiveException {
+        // An accepted connection has a server channel as parent, the upgraded stream is only answered by a server
+        // The hive handlers run on the thread of the test, the same as the embedded event loop
+        server = new EmbeddedChannel(new LocalServerChannel(), DefaultChannelId.newInstance(), true, false,
+                new HttpServerInitializer(HiveConfig.getInstance(), ImmediateEventExecutor.INSTANCE));
+        client = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        clientContext = client.pipeline().firstContext();
+        frameWriter = new DefaultHttp2FrameWriter();
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        server.finishAndReleaseAll();
+        client.finishAndReleaseAll();
+        DataProcessor.getInstance().clearAllState();
+
+        ChangeLog changeLog = DataProcessor.getInstance().getChangeLog();
+        DataProcessor.getInstance().recordChanges(null);
+        if (changeLog != null) {
+            changeLog.close();
+        }
+        if (directory != null) {
+            try ( Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void essenceOverPriorKnowledge() throws Http2Exception {
+        Http2Headers headers = requestHeaders("POST", "/")
+                .set(RequestHelper.KEY_TRACEPARENT, TRACEPARENT)
+                .set("content-type", ContentType.HIVE_ESSENCE.getValue());
+        server.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        frameWriter.writeSettings(clientContext, new Http2Settings(), clientContext.newPromise());
+        frameWriter.writeHeaders(clientContext, STREAM, headers, 0, false, clientContext.newPromise());
+        frameWriter.writeData(clientContext, STREAM, Unpooled.wrappedBuffer(ESSENCE), 0, true, clientContext.newPromise());
+        sendToServer();
+
+        Response response = readResponse(readFromServer(), STREAM);
+
+        assertEquals("204", response.headers.get(":status"));
+        assertEquals(0, response.body.size());
+    }
+
+    @Test
+    public void changesOverUpgrade() throws IOException, Http2Exception {
+        recordChange();
+
+        server.writeInbound(Unpooled.copiedBuffer("GET /changes HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Connection: Upgrade, HTTP2-Settings\r\n"
+                + "Upgrade: h2c\r\n"
+                + "HTTP2-Settings: " + HTTP2_SETTINGS + "\r\n"
+                + RequestHelper.KEY_CHANGES_OFFSET + ": 0\r\n"
+                + "Content-Length: 0\r\n\r\n", StandardCharsets.US_ASCII));
+        server.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        ByteBuf written = readFromServer();
+
+        String upgrade = written.toString(StandardCharsets.US_ASCII);
+        assertTrue(upgrade.startsWith(SWITCHING_PROTOCOLS));
+        written.skipBytes(upgrade.indexOf(END_OF_HEADERS) + END_OF_HEADERS.length());
+        Response response = readResponse(written, UPGRADE_STREAM);
+
+        assertEquals("200", response.headers.get(":status"));
+        assertEquals("0", response.headers.get(RequestHelper.KEY_CHANGES_OFFSET));
+        assertTrue(new String(response.body.toByteArray(), StandardCharsets.US_ASCII).contains(new String(DATA, StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void pushOverPriorKnowledge() throws Http2Exception {
+        // The upgrade header is specific to HTTP/1.1, a stream having it is reset
+        Http2Headers headers = requestHeaders("GET", "/push")
+                .set(RequestHelper.KEY_TRACEPARENT, TRACEPARENT);
+        server.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        frameWriter.writeSettings(clientContext, new Http2Settings(), clientContext.newPromise());
+        frameWriter.writeHeaders(clientContext, STREAM, headers, 0, true, clientContext.newPromise());
+        sendToServer();
+
+        Response response = readResponse(readFromServer(), STREAM);
+
+        assertEquals("400", response.headers.get(":status"));
+    }
+
+    private void recordChange() throws IOException {
+        directory = Files.createTempDirectory("hive-changes-test");
+        ChangeLog changeLog = new ChangeLog(directory, SEGMENT_SIZE, 0, 0, Durability.NEVER);
+        changeLog.append(ChangeRecord.Type.PAYLOAD, TRACEPARENT, DATA, SERIALIZED);
+        DataProcessor.getInstance().recordChanges(changeLog);
+    }
+
+    private static Http2Headers requestHeaders(final String method, final String path) {
+        return new DefaultHttp2Headers()
+                .method(method)
+                .path(path)
+                .scheme("http")
+                .authority("localhost");
+    }
+
+    /**
+     * The frames written by the client are received by the server
+     */
+    private void sendToServer() {
+        clientContext.flush();
+        ByteBuf frames;
+        while ((frames = client.readOutbound()) != null) {
+            server.writeInbound(frames);
+        }
+    }
+
+    private ByteBuf readFromServer() {
+        server.runPendingTasks();
+        server.flushOutbound();
+        ByteBuf written = Unpooled.buffer();
+        ByteBuf frames;
+        while ((frames = server.readOutbound()) != null) {
+            written.writeBytes(frames);
+            frames.release();
+        }
+
+        return written;
+    }
+
+    /**
+     * Reads the frames written by the server, keeping the headers and the
+     * data of the stream
+     */
+    private Response readResponse(final ByteBuf written, final int stream) throws Http2Exception {
+        Response response = new Response();
+        try ( DefaultHttp2FrameReader frameReader = new DefaultHttp2FrameReader()) {
+            frameReader.readFrame(clientContext, written, new Http2FrameAdapter() {
+                @Override
+                public void onHeadersRead(final ChannelHandlerContext ctx, final int streamId, final Http2Headers headers,
+                        final int padding, final boolean endOfStream) {
+                    if (streamId == stream) {
+                        headers.forEach(header -> response.headers.put(header.getKey().toString(), header.getValue().toString()));
+                    }
+                }
+
+                @Override
+                public int onDataRead(final ChannelHandlerContext ctx, final int streamId, final ByteBuf data,
+                        final int padding, final boolean endOfStream) {
+                    if (streamId == stream) {
+                        response.body.writeBytes(ByteBufUtil.getBytes(data));
+                    }
+
+                    return data.readableBytes() + padding;
+                }
+            });
+        } finally {
+            written.release();
+        }
+
+        return response;
+    }
+
+    private static final class Response {
+
+        private final Map<String, String> headers = new HashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    }
+}
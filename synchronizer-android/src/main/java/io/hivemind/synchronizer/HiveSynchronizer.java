@@ -55,7 +55,12 @@ public class HiveSynchronizer {
         if (executor == null || executor.getActiveCount() == 0 || executor.isShutdown()) {
             executor = new ScheduledThreadPoolExecutor(1, new ThreadPoolExecutor.DiscardPolicy());
             SynchronizeTask task = new SynchronizeTask(new HiveEssenceDataProvider(resourceProvider), config);
-            executor.scheduleAtFixedRate(task, 0, config.getPeriodBetweenRequests(), TimeUnit.SECONDS);
+            if (config.getLongPollTimeout() > 0) {
+                ScheduledThreadPoolExecutor longPolling = executor;
+                longPolling.execute(() -> synchronize(longPolling, task));
+            } else {
+                executor.scheduleAtFixedRate(task, 0, config.getPeriodBetweenRequests(), TimeUnit.SECONDS);
+            }
         } else {
             // Not allowing multiple synchronizing tasks in parralel
         }
@@ -63,6 +68,20 @@ public class HiveSynchronizer {
         LOGGER.info("Started synchronization with Hivemind");
     }
 
+    /**
+     * When long polling the task is run again right away when the Hivemind
+     * held the request or requested data, otherwise after the period between
+     * requests
+     */
+    private void synchronize(final ScheduledThreadPoolExecutor longPolling, final SynchronizeTask task) {
+        task.run();
+
+        if (!longPolling.isShutdown()) {
+            long delay = (task.isToRunAgain() ? 0 : config.getPeriodBetweenRequests());
+            longPolling.schedule(() -> synchronize(longPolling, task), delay, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Stop the synchronization<br>
      * Initiates an orderly shutdown
@@ -18,6 +18,9 @@ package io.hivemind.synchronizer;
 import io.hivemind.synchronizer.configuration.SynchronizerConfiguration;
 import io.hivemind.synchronizer.constant.ContentType;
 import io.hivemind.synchronizer.data.PreparedData;
+import io.hivemind.synchronizer.essence.EssenceFingerprint;
+import io.hivemind.synchronizer.essence.EssenceSketch;
+import io.hivemind.synchronizer.essence.EssenceSummary;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,6 +32,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Synchronization task that is used to communicate with the Hivemind
+ * <p>
+ * When long polling, the fingerprint and the essence are sent allowing the
+ * Hivemind to hold the request until the state of the synchronizer changes.
+ * The task can be run again right away when the Hivemind held the request, when
+ * data has been requested and after sending the data requested.</p>
  *
  * @author Patrick-4488
  */
@@ -38,12 +46,23 @@ public class SynchronizeTask implements Runnable {
     private PreparedData dataToSend;
     private ContentType contentTypeOfDataToSend;
     private boolean isDataRequest;
+    private boolean isToRunAgain;
 
     private final EssenceDataProvider essenceDataProvider;
     private final SynchronizerConfiguration config;
 
     private static final String KEY_TRACEPARENT = "traceparent";
     private static final String KEY_CONTENT_TYPE = "content-type";
+    private static final String KEY_FINGERPRINT = "hive-essence-fingerprint";
+    private static final String KEY_SUMMARY = "hive-essence-summary";
+    private static final String KEY_LEAVES = "hive-essence-leaves";
+    private static final String KEY_SKETCH = "hive-essence-sketch";
+    private static final String KEY_WAIT = "hive-essence-wait";
+    // Time allowed for the Hivemind to respond after having held a request
+    private static final int WAIT_MARGIN = 10;
+    private static final String LEAF_SEPARATOR = ",";
+    // Descending more nodes then this is not cheaper then sending the essence
+    private static final int MAX_DIFFERING_NODES = 256;
     private static final String POST = "POST";
     private static final String CONTENT_TYPE_SEPARATOR = ", ";
 
@@ -61,20 +80,14 @@ public class SynchronizeTask implements Runnable {
 
             // FUTURE_WORK: If consistency model is > eventual -> send data request immediatly
             HttpURLConnection connection;
+            isToRunAgain = false;
             if (dataToSend != null && dataToSend.hasData()) {
                 isDataRequest = true;
                 connection = buildDataRequest();
+                send(connection, dataToSend.getData());
             } else {
                 isDataRequest = false;
-                connection = buildEssenceRequest();
-            }
-            try ( OutputStream os = connection.getOutputStream()) {
-                if (isDataRequest) {
-                    os.write(dataToSend.getData());
-                } else {
-                    os.write(essenceDataProvider.determineEssence());
-                }
-                os.flush();
+                connection = sendEssence(essenceDataProvider.determineEssence(config.getEssenceType(), config.isEssenceRanges()));
             }
             processResponse(connection);
 
@@ -84,9 +97,168 @@ public class SynchronizeTask implements Runnable {
         }
     }
 
-    private HttpURLConnection buildEssenceRequest() throws IOException {
+    /**
+     * @return true when long polling and the task can be run again right away,
+     * false when the last request failed or the Hivemind does not hold
+     * requests
+     */
+    public boolean isToRunAgain() {
+        return isToRunAgain;
+    }
+
+    /**
+     * When enabled the fingerprint of the essence is sent first, the essence is
+     * only sent when the Hivemind responds not to know the essence (412) or
+     * when the essence has no fingerprint
+     */
+    private HttpURLConnection sendEssence(final byte[] essence) throws IOException {
+        String fingerprint = (config.isFingerprintFirst() ? EssenceFingerprint.of(essence, config.getEssenceType()) : null);
+        if (fingerprint != null) {
+            HttpURLConnection connection = buildFingerprintRequest(fingerprint);
+            send(connection, new byte[0]);
+            if (connection.getResponseCode() != 412) {
+                return connection;
+            }
+
+            LOGGER.info("Hivemind does not know the essence having the fingerprint, sending its summary or the essence");
+            if (traceparent == null || traceparent.isEmpty()) {
+                updateTraceparent(connection);
+            }
+            connection.disconnect();
+
+            connection = sendSketch(essence, fingerprint);
+            if (connection == null) {
+                connection = sendSummary(essence, fingerprint);
+            }
+            if (connection != null) {
+                return connection;
+            }
+        }
+
+        HttpURLConnection connection = buildEssenceRequest(config.getEssenceType());
+        allowWaiting(connection);
+        send(connection, essence);
+
+        return connection;
+    }
+
+    /**
+     * When configured the sketch of the essence is sent, the Hivemind
+     * determines the essence from the sketch unless too many resources differ
+     * (412)
+     *
+     * @return the connection or null when the summary or the essence has to
+     * be sent instead
+     */
+    private HttpURLConnection sendSketch(final byte[] essence, final String fingerprint) throws IOException {
+        int cells = config.getSketchCells();
+        byte[] sketch = (cells > 0 && essence != null ? EssenceSketch.of(essence, config.getEssenceType(), cells) : null);
+        if (sketch == null || sketch.length >= essence.length) {
+            return null;
+        }
+
+        HttpURLConnection connection = buildEssenceRequest(config.getEssenceType());
+        connection.addRequestProperty(KEY_SKETCH, String.valueOf(cells));
+        connection.addRequestProperty(KEY_FINGERPRINT, fingerprint);
+        send(connection, sketch);
+        if (connection.getResponseCode() != 412) {
+            return connection;
+        }
+        connection.disconnect();
+
+        return null;
+    }
+
+    /**
+     * Large essences are summarized, the summary is descended level by level
+     * into the nodes the Hivemind responds to differ (412). Having reached the
+     * leaves, only the resources in the leaves that differ are sent
+     *
+     * @return the connection or null when the essence has to be sent instead
+     */
+    private HttpURLConnection sendSummary(final byte[] essence, final String fingerprint) throws IOException {
+        int threshold = config.getSummaryThreshold();
+        EssenceSummary summary = (threshold > 0 ? EssenceSummary.of(essence, config.getEssenceType()) : null);
+        if (summary == null || summary.size() < threshold) {
+            return null;
+        }
+
+        int[] nodes = EssenceSummary.rootNodes();
+        for (int level = 1; level <= EssenceSummary.DEPTH; level++) {
+            HttpURLConnection connection = buildEssenceRequest(config.getEssenceType());
+            connection.addRequestProperty(KEY_SUMMARY, String.valueOf(level));
+            send(connection, summary.describe(level, nodes));
+            if (connection.getResponseCode() != 412) {
+                return connection;
+            }
+
+            int[] differing = EssenceSummary.readNodes(readErrorData(connection));
+            connection.disconnect();
+            if (differing == null || differing.length == 0 || differing.length > MAX_DIFFERING_NODES) {
+                return null;
+            }
+            nodes = (level < EssenceSummary.DEPTH ? EssenceSummary.childrenOf(differing) : differing);
+        }
+
+        HttpURLConnection connection = buildLeavesRequest(nodes, fingerprint);
+        send(connection, summary.essenceOf(nodes));
+        if (connection.getResponseCode() != 412) {
+            return connection;
+        }
+        connection.disconnect();
+
+        return null;
+    }
+
+    private void send(final HttpURLConnection connection, final byte[] data) throws IOException {
+        try ( OutputStream os = connection.getOutputStream()) {
+            os.write(data);
+            os.flush();
+        }
+    }
+
+    private HttpURLConnection buildFingerprintRequest(final String fingerprint) throws IOException {
+        HttpURLConnection urlConnection = buildEssenceRequest(config.getEssenceType());
+        urlConnection.addRequestProperty(KEY_FINGERPRINT, fingerprint);
+        allowWaiting(urlConnection);
+
+        return urlConnection;
+    }
+
+    /**
+     * The Hivemind may hold the request for the long poll timeout, the request
+     * times out when the Hivemind does not respond some time after
+     */
+    private void allowWaiting(final HttpURLConnection connection) {
+        int wait = config.getLongPollTimeout();
+        if (wait > 0) {
+            connection.addRequestProperty(KEY_WAIT, String.valueOf(wait));
+            connection.setReadTimeout((wait + WAIT_MARGIN) * 1000);
+        }
+    }
+
+    /**
+     * The resources in the leaves are sent as text, being few
+     */
+    private HttpURLConnection buildLeavesRequest(final int[] leaves, final String fingerprint) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int leaf : leaves) {
+            if (sb.length() > 0) {
+                sb.append(LEAF_SEPARATOR);
+            }
+            sb.append(leaf);
+        }
+
+        HttpURLConnection urlConnection = buildEssenceRequest(ContentType.HIVE_ESSENCE);
+        urlConnection.addRequestProperty(KEY_LEAVES, sb.toString());
+        urlConnection.addRequestProperty(KEY_FINGERPRINT, fingerprint);
+
+        return urlConnection;
+    }
+
+    private HttpURLConnection buildEssenceRequest(final ContentType essenceType) throws IOException {
         HttpURLConnection urlConnection = getBaseRequest();
-        urlConnection.addRequestProperty(KEY_CONTENT_TYPE, determineEssenceRequestContentType());
+        urlConnection.addRequestProperty(KEY_CONTENT_TYPE, determineEssenceRequestContentType(essenceType));
 
         return urlConnection;
     }
@@ -111,9 +283,9 @@ public class SynchronizeTask implements Runnable {
         return urlConnection;
     }
 
-    private String determineEssenceRequestContentType() {
+    private String determineEssenceRequestContentType(final ContentType essenceType) {
         StringBuilder sb = new StringBuilder();
-        sb.append(ContentType.HIVE_ESSENCE.getValue());
+        sb.append(essenceType.getValue());
         sb.append(CONTENT_TYPE_SEPARATOR);
         sb.append(config.getContentType().getValue());
 
@@ -128,6 +300,10 @@ public class SynchronizeTask implements Runnable {
 
         if (isSuccessful(response)) {
             readResponse(response);
+
+            boolean isHeldByHive = response.getHeaderField(KEY_WAIT) != null;
+            isToRunAgain = (config.getLongPollTimeout() > 0
+                    && (isHeldByHive || isDataRequest || (dataToSend != null && dataToSend.hasData())));
         } else {
             LOGGER.error("""
                 Unexpected response code received from Hivemind, this points to 
@@ -158,12 +334,12 @@ public class SynchronizeTask implements Runnable {
                 LOGGER.info("Synchronization task succeeded, application is up to date");
             case 200 -> {
                 ContentType contentType = getContentType(response);
-                if (ContentType.HIVE_ESSENCE == contentType) {
+                if (contentType != null && contentType.isHiveEssence()) {
                     LOGGER.info("Synchronization task succeeded, application received data request");
 
                     byte[] respondingEssence = readData(response);
                     if (respondingEssence != null && respondingEssence.length > 0) {
-                        dataToSend = new PreparedData(essenceDataProvider.getDataForEssence(respondingEssence));
+                        dataToSend = new PreparedData(essenceDataProvider.getDataForEssence(respondingEssence, contentType));
                     }
                 } else {
                     LOGGER.info("Synchronization task succeeded, application received data");
@@ -173,7 +349,7 @@ public class SynchronizeTask implements Runnable {
             }
             case 409 -> {
                 LOGGER.info("Synchronization task succeeded, application received priority request");
-                essenceDataProvider.processPriorityEssence(readData(response));
+                essenceDataProvider.processPriorityEssence(readData(response), getContentType(response));
             }
             default -> {
                 LOGGER.error("Unexpected response code received from Hivemind, this points to inproper code since the status code has been deemed succesfull");
@@ -186,8 +362,22 @@ public class SynchronizeTask implements Runnable {
     }
 
     private byte[] readData(final HttpURLConnection response) throws IOException {
+        return readData(response.getInputStream());
+    }
+
+    /**
+     * Responses having an error code, such as 412, are read from the error
+     * stream
+     */
+    private byte[] readErrorData(final HttpURLConnection response) throws IOException {
+        InputStream errorStream = response.getErrorStream();
+
+        return (errorStream != null ? readData(errorStream) : new byte[0]);
+    }
+
+    private byte[] readData(final InputStream inputStream) throws IOException {
         byte[] data;
-        try ( InputStream input = response.getInputStream();  ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+        try ( InputStream input = inputStream;  ByteArrayOutputStream output = new ByteArrayOutputStream()) {
             final byte[] buffer = new byte[8192];
             for (int count; (count = input.read(buffer)) > 0;) {
                 output.write(buffer, 0, count);
@@ -32,11 +32,25 @@ public final class SynchronizerConfiguration {
     private int periodBetweenRequests;
     private ConsistencyModel consistencyModel;
     private ContentType contentType;
+    private ContentType essenceType;
+    private boolean fingerprintFirst;
+    private boolean essenceRanges;
+    private int summaryThreshold;
+    private int sketchCells;
+    private int longPollTimeout;
 
     private final String uri;
 
+    private static final int DEFAULT_SUMMARY_THRESHOLD = 10_000;
+    private static final int MAX_SKETCH_CELLS = 196_608;
+    private static final int DEFAULT_LONG_POLL_TIMEOUT = 30;
+
     public SynchronizerConfiguration(final String uri, final ConsistencyModel consistencyModel) throws NotSupportedException {
         this.uri = uri;
+        this.essenceType = ContentType.HIVE_ESSENCE;
+        this.fingerprintFirst = true;
+        this.summaryThreshold = DEFAULT_SUMMARY_THRESHOLD;
+        this.longPollTimeout = DEFAULT_LONG_POLL_TIMEOUT;
         setConsistencyModel(consistencyModel);
     }
 
@@ -84,13 +98,158 @@ public final class SynchronizerConfiguration {
      * content type is set to hive essence
      */
     public void setContentType(final ContentType contentType) throws NotSupportedException {
-        if (ContentType.HIVE_ESSENCE == contentType) {
+        if (contentType != null && contentType.isHiveEssence()) {
             throw new NotSupportedException(HiveCeption.CANNOT_BE_HIVE_ESSENCE);
         }
 
         this.contentType = contentType;
     }
 
+    /**
+     * @return the content type the essence is communicated in, defaults to
+     * HIVE_ESSENCE
+     */
+    public ContentType getEssenceType() {
+        return essenceType;
+    }
+
+    /**
+     * Change the content type the essence is communicated in. The binary
+     * essence (HIVE_ESSENCE_BINARY) is smaller and faster to read, it requires
+     * a Hivemind supporting it. The default is the essence as text
+     * (HIVE_ESSENCE) which every Hivemind supports
+     *
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @throws io.hivemind.synchronizer.exception.NotSupportedException when
+     * the content type is not a hive essence
+     */
+    public void setEssenceType(final ContentType essenceType) throws NotSupportedException {
+        if (essenceType == null || !essenceType.isHiveEssence()) {
+            throw new NotSupportedException(HiveCeption.NOT_AN_ESSENCE_TYPE);
+        }
+
+        this.essenceType = essenceType;
+    }
+
+    /**
+     * @return true if the essence has ranges of ids, defaults to false
+     */
+    public boolean isEssenceRanges() {
+        return essenceRanges;
+    }
+
+    /**
+     * Change whether the essence has a range for every run of consecutive ids
+     * having the same version, `firstId-lastId,version;`. The essence and the
+     * data requested are proportional to the amount of runs instead of the
+     * amount of resources, which is much smaller when resources are created
+     * and updated in bulk. Only applies to the essence as text (HIVE_ESSENCE).
+     * Enable this only when the Hivemind and every other synchronizer support
+     * ranges, requested resources are received as HiveEssenceRange
+     *
+     * @param essenceRanges true to have ranges of ids in the essence
+     * @see io.hivemind.synchronizer.HiveEssenceRange
+     */
+    public void setEssenceRanges(final boolean essenceRanges) {
+        this.essenceRanges = essenceRanges;
+    }
+
+    /**
+     * @return true if the fingerprint of the essence is sent before the
+     * essence, defaults to true
+     */
+    public boolean isFingerprintFirst() {
+        return fingerprintFirst;
+    }
+
+    /**
+     * Change whether the fingerprint of the essence is sent before the essence.
+     * The essence is only sent when the Hivemind does not know the essence
+     * having the fingerprint, which is rarely the case when the data does not
+     * change often. Disable this when using a Hivemind not supporting
+     * fingerprints
+     *
+     * @param fingerprintFirst true to send the fingerprint first
+     */
+    public void setFingerprintFirst(final boolean fingerprintFirst) {
+        this.fingerprintFirst = fingerprintFirst;
+    }
+
+    /**
+     * @return the amount of resources from which the summary of the essence is
+     * sent instead of the essence, defaults to 10000
+     */
+    public int getSummaryThreshold() {
+        return summaryThreshold;
+    }
+
+    /**
+     * Change the amount of resources from which the summary of the essence is
+     * sent when the fingerprint does not match. The summary is descended in a
+     * few requests, sending only the resources that differ, which is cheaper
+     * then sending a large essence but not a small one. Only applies when the
+     * fingerprint is sent first, 0 or less disables the summary
+     *
+     * @param summaryThreshold the amount of resources
+     * @see io.hivemind.synchronizer.essence.EssenceSummary
+     */
+    public void setSummaryThreshold(final int summaryThreshold) {
+        this.summaryThreshold = summaryThreshold;
+    }
+
+    /**
+     * @return the amount of cells of the sketch of the essence, 0 when no
+     * sketch is sent which is the default
+     */
+    public int getSketchCells() {
+        return sketchCells;
+    }
+
+    /**
+     * Send the sketch of the essence having the amount of cells when the
+     * fingerprint does not match, before sending the summary or the essence.
+     * The Hivemind determines the essence from the sketch in a single request
+     * when less resources differ then about two thirds of the amount of cells,
+     * every cell being 28 bytes. The sketch is not sent when it is not smaller
+     * then the essence
+     *
+     * @param sketchCells the amount of cells, a multiple of three up to
+     * 196608, 0 to not send a sketch
+     * @throws io.hivemind.synchronizer.exception.NotSupportedException when
+     * the amount of cells is not supported by the Hivemind
+     * @see io.hivemind.synchronizer.essence.EssenceSketch
+     */
+    public void setSketchCells(final int sketchCells) throws NotSupportedException {
+        if (sketchCells < 0 || sketchCells > MAX_SKETCH_CELLS || sketchCells % 3 != 0) {
+            throw new NotSupportedException(HiveCeption.SKETCH_CELLS_NOT_SUPPORTED);
+        }
+
+        this.sketchCells = sketchCells;
+    }
+
+    /**
+     * @return the amount of seconds the Hivemind may hold a request having
+     * nothing to respond, 0 when not long polling, defaults to 30
+     */
+    public int getLongPollTimeout() {
+        return longPollTimeout;
+    }
+
+    /**
+     * Change the amount of seconds the Hivemind may hold a request having
+     * nothing to respond. The Hivemind responds as soon as the state of the
+     * synchronizer changes and the next request is sent right away, changes
+     * are received within milliseconds instead of within the period between
+     * requests. The period between requests still applies when the Hivemind
+     * does not hold requests or when a request fails
+     *
+     * @param longPollTimeout the amount of seconds, 0 or less to not long poll
+     */
+    public void setLongPollTimeout(final int longPollTimeout) {
+        this.longPollTimeout = Math.max(0, longPollTimeout);
+    }
+
     /**
      * @return the consistency model
      */
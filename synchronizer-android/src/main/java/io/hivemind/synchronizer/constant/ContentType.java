@@ -29,6 +29,7 @@ package io.hivemind.synchronizer.constant;
 public enum ContentType {
 
     HIVE_ESSENCE("application/hive-essence"),
+    HIVE_ESSENCE_BINARY("application/hive-essence+binary"),
     JSON("application/json");
 
     private final String value;
@@ -45,23 +46,38 @@ public enum ContentType {
         return value;
     }
 
+    /**
+     * @return true if this is a hive essence, either as text or binary
+     */
+    public boolean isHiveEssence() {
+        return HIVE_ESSENCE == this || HIVE_ESSENCE_BINARY == this;
+    }
+
     /**
      * Determine the content type based on the value. This is the preferred way
      * to create this enum.
      *
      * @param value the value to determine the content type for
-     * @return the content type (either HIVE_ESSENCE or OTHER)
+     * @return the content type (either HIVE_ESSENCE, HIVE_ESSENCE_BINARY or
+     * JSON)
      */
     public static ContentType enumFor(final String value) {
         if (value != null && !value.isEmpty()) {
             String lowerValue = value.toLowerCase();
-            String hiveEssence = HIVE_ESSENCE.getValue();
-            String secondPart = hiveEssence.split(SLASH)[1];
-            if (hiveEssence.equals(lowerValue) || secondPart.equals(lowerValue)) {
+            if (matches(HIVE_ESSENCE, lowerValue)) {
                 return HIVE_ESSENCE;
+            } else if (matches(HIVE_ESSENCE_BINARY, lowerValue)) {
+                return HIVE_ESSENCE_BINARY;
             }
         }
 
         return JSON;
     }
+
+    private static boolean matches(final ContentType type, final String lowerValue) {
+        String typeValue = type.getValue();
+        String secondPart = typeValue.split(SLASH)[1];
+
+        return typeValue.equals(lowerValue) || secondPart.equals(lowerValue);
+    }
 }
\ No newline at end of file
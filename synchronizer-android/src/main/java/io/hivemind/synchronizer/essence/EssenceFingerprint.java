@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+
+/**
+ * Fingerprint of an essence, sent to the Hivemind before the essence. When the
+ * Hivemind knows the essence having the fingerprint, the essence does not have
+ * to be sent.
+ * <p>
+ * The fingerprint is the hash of the set of resources of the essence, written
+ * as 16 hexadecimal characters. Essences having the same resources in another
+ * order, in binary or having ranges of ids have the same fingerprint.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceFingerprint {
+
+    private static final String PADDING = "0000000000000000";
+    private static final byte SEPARATOR = ';';
+    private static final byte SPLITTER = ',';
+    private static final byte RANGE_SEPARATOR = '-';
+    private static final int RADIX = 10;
+
+    private EssenceFingerprint() {
+    }
+
+    /**
+     * Determine the fingerprint of the essence in the given content type
+     *
+     * @param essence the essence
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the fingerprint or null when the essence is not made of whole
+     * numbers, of which the Hivemind can not determine the fingerprint
+     */
+    public static String of(final byte[] essence, final ContentType essenceType) {
+        EssenceSetHash setHash = new EssenceSetHash();
+        if (essence != null && !read(essence, essenceType, setHash::add)) {
+            return null;
+        }
+
+        return of(setHash.getHash());
+    }
+
+    /**
+     * @param setHash the hash of the set of resources
+     * @return the fingerprint
+     * @see EssenceTranslator#determineSetHash(java.util.List)
+     */
+    public static String of(final long setHash) {
+        String hex = Long.toHexString(setHash);
+        return PADDING.substring(hex.length()) + hex;
+    }
+
+    /**
+     * Read the resources of the essence in the given content type
+     *
+     * @return false when the essence is not made of whole numbers
+     */
+    static boolean read(final byte[] essence, final ContentType essenceType, final ResourceConsumer consumer) {
+        return (ContentType.HIVE_ESSENCE_BINARY == essenceType ? readBinary(essence, consumer) : readText(essence, consumer));
+    }
+
+    /**
+     * Reads `id,version;` and `id-lastId,version;`, every id of a range is
+     * read as a resource
+     */
+    private static boolean readText(final byte[] essence, final ResourceConsumer consumer) {
+        long id = 0;
+        long firstId = 0;
+        long number = 0;
+        int digits = 0;
+        boolean hasId = false;
+        boolean hasFirstId = false;
+        for (byte essenceByte : essence) {
+            if (essenceByte >= '0' && essenceByte <= '9' && number <= (Long.MAX_VALUE - 9) / RADIX) {
+                number = number * RADIX + (essenceByte - '0');
+                digits++;
+            } else if (essenceByte == RANGE_SEPARATOR && !hasId && !hasFirstId && digits > 0) {
+                firstId = number;
+                hasFirstId = true;
+                number = 0;
+                digits = 0;
+            } else if (essenceByte == SPLITTER && !hasId && digits > 0 && (!hasFirstId || number > firstId)) {
+                id = number;
+                hasId = true;
+                number = 0;
+                digits = 0;
+            } else if (essenceByte == SEPARATOR && hasId && digits > 0) {
+                for (long rangeId = (hasFirstId ? firstId : id); rangeId < id; rangeId++) {
+                    consumer.accept(rangeId, number);
+                }
+                consumer.accept(id, number);
+                hasId = false;
+                hasFirstId = false;
+                number = 0;
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+
+        return !hasId && !hasFirstId && digits == 0;
+    }
+
+    private static boolean readBinary(final byte[] essence, final ResourceConsumer consumer) {
+        long id = 0;
+        int offset = 0;
+        while (offset < essence.length) {
+            long difference = EssenceTranslator.readVariableLength(essence, offset);
+            if (difference < 0) {
+                return false;
+            }
+            offset += EssenceTranslator.variableLength(difference);
+
+            long version = EssenceTranslator.readVariableLength(essence, offset);
+            if (version < 0) {
+                return false;
+            }
+            offset += EssenceTranslator.variableLength(version);
+
+            id += difference;
+            consumer.accept(id, version);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+import java.nio.ByteBuffer;
+
+/**
+ * Sketch of the set of resources of an essence, being an invertible Bloom
+ * lookup table of a fixed amount of cells. Sent to the Hivemind instead of the
+ * essence when the fingerprint of the essence does not match. Every resource
+ * is added to one cell in each of the three parts of the sketch, a cell has the
+ * amount of resources added and the xor of their ids, versions and hashes.
+ * <p>
+ * The Hivemind subtracts the sketch from the sketch of its latest essence and
+ * decodes the resources that differ from what is left. This succeeds when less
+ * resources differ then about two thirds of the amount of cells, otherwise the
+ * Hivemind requests the essence. The sketch has the same size for every
+ * essence, the same as the difference it can decode.</p>
+ * <p>
+ * The Hivemind creates the same sketch, the resources have to be hashed and
+ * divided the same way.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceSketch {
+
+    /**
+     * The length in bytes of a cell, the count as int followed by the ids,
+     * versions and hashes as long
+     */
+    public static final int CELL_LENGTH = Integer.BYTES + 3 * Long.BYTES;
+    private static final int PARTS = 3;
+    // Rotating the hash of the resource by a different amount per part selects independent cells
+    private static final int PART_ROTATION = 21;
+
+    private EssenceSketch() {
+    }
+
+    /**
+     * Create the sketch of the essence in the given content type
+     *
+     * @param essence the essence
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @param cells the amount of cells, a multiple of three
+     * @return the sketch or null when the essence is not made of whole
+     * numbers, of which the Hivemind can not create the sketch
+     */
+    public static byte[] of(final byte[] essence, final ContentType essenceType, final int cells) {
+        int[] counts = new int[cells];
+        long[] ids = new long[cells];
+        long[] versions = new long[cells];
+        long[] hashes = new long[cells];
+        int partCells = cells / PARTS;
+        ResourceConsumer sketch = (id, version) -> {
+            long hash = EssenceSetHash.of(id, version);
+            for (int part = 0; part < PARTS; part++) {
+                int cell = part * partCells + (int) Long.remainderUnsigned(Long.rotateLeft(hash, part * PART_ROTATION), partCells);
+                counts[cell]++;
+                ids[cell] ^= id;
+                versions[cell] ^= version;
+                hashes[cell] ^= hash;
+            }
+        };
+        if (essence != null && !EssenceFingerprint.read(essence, essenceType, sketch)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(cells * CELL_LENGTH);
+        for (int cell = 0; cell < cells; cell++) {
+            buffer.putInt(counts[cell]).putLong(ids[cell]).putLong(versions[cell]).putLong(hashes[cell]);
+        }
+
+        return buffer.array();
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Summary of an essence as a tree of hashes, sent to the Hivemind when the
+ * fingerprint of the essence does not match. The resources are divided over
+ * the leaves of the tree by the hash of their id, every node has the set hash
+ * of the resources below it.
+ * <p>
+ * The hashes of the nodes of a level are sent, the Hivemind responds with the
+ * nodes that differ. Only the children of those nodes are sent next, until
+ * reaching the leaves, of which the resources are sent as essence. What is
+ * sent scales with the size of the change instead of the size of the
+ * essence.</p>
+ * <p>
+ * The Hivemind divides the resources the same way, the depth and the amount of
+ * children per node have to be the same.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceSetHash
+ */
+public final class EssenceSummary {
+
+    private final long[] ids;
+    private final long[] versions;
+    private final long[][] levels;
+    private final long setHash;
+
+    /**
+     * The amount of levels below the root, the last level being the leaves
+     */
+    public static final int DEPTH = 4;
+    // Every node has 16 children, selected by the next 4 bits of the hash of the id
+    private static final int CHILD_BITS = 4;
+    private static final int CHILDREN = 1 << CHILD_BITS;
+    private static final String SEPARATOR = ";";
+    private static final String SPLITTER = ",";
+    private static final int INITIAL_CAPACITY = 64;
+
+    private EssenceSummary(final long[] ids, final long[] versions, final long[][] levels, final long setHash) {
+        this.ids = ids;
+        this.versions = versions;
+        this.levels = levels;
+        this.setHash = setHash;
+    }
+
+    /**
+     * Determine the summary of the essence in the given content type
+     *
+     * @param essence the essence
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the summary or null when the essence is not made of whole
+     * numbers, of which the Hivemind can not determine the summary
+     */
+    public static EssenceSummary of(final byte[] essence, final ContentType essenceType) {
+        Resources resources = new Resources();
+        if (essence != null && !EssenceFingerprint.read(essence, essenceType, resources)) {
+            return null;
+        }
+
+        long[][] levels = new long[DEPTH][];
+        for (int level = 1; level <= DEPTH; level++) {
+            levels[level - 1] = new long[nodesOf(level)];
+        }
+
+        long[] leaves = levels[DEPTH - 1];
+        for (int i = 0; i < resources.size; i++) {
+            leaves[nodeOf(resources.ids[i], DEPTH)] += EssenceSetHash.of(resources.ids[i], resources.versions[i]);
+        }
+        for (int level = DEPTH - 1; level > 0; level--) {
+            long[] children = levels[level];
+            long[] nodes = levels[level - 1];
+            for (int child = 0; child < children.length; child++) {
+                nodes[child >>> CHILD_BITS] += children[child];
+            }
+        }
+
+        long setHash = 0;
+        for (long node : levels[0]) {
+            setHash += node;
+        }
+
+        return new EssenceSummary(Arrays.copyOf(resources.ids, resources.size),
+                Arrays.copyOf(resources.versions, resources.size), levels, setHash);
+    }
+
+    /**
+     * @return the nodes of the first level, to start descending from
+     */
+    public static int[] rootNodes() {
+        int[] nodes = new int[CHILDREN];
+        for (int i = 0; i < CHILDREN; i++) {
+            nodes[i] = i;
+        }
+
+        return nodes;
+    }
+
+    /**
+     * @param nodes the nodes of a level
+     * @return the children of the nodes, being nodes of the next level
+     */
+    public static int[] childrenOf(final int[] nodes) {
+        int[] children = new int[nodes.length * CHILDREN];
+        for (int i = 0; i < nodes.length; i++) {
+            for (int child = 0; child < CHILDREN; child++) {
+                children[i * CHILDREN + child] = (nodes[i] << CHILD_BITS) + child;
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * Read the nodes the Hivemind responded to differ
+     *
+     * @param nodes the nodes, every node being `node;`
+     * @return the nodes or null when the nodes are not valid
+     */
+    public static int[] readNodes(final byte[] nodes) {
+        if (nodes == null || nodes.length == 0) {
+            return new int[0];
+        }
+
+        String[] values = new String(nodes, StandardCharsets.US_ASCII).split(SEPARATOR);
+        int[] read = new int[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                read[i] = Integer.parseInt(values[i].trim());
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+
+        return read;
+    }
+
+    /**
+     * Describe the nodes of a level to send to the Hivemind
+     *
+     * @param level the level of the nodes, 1 being below the root and DEPTH
+     * being the leaves
+     * @param nodes the nodes of the level
+     * @return the nodes, every node being `node,hash;` with the hash in
+     * hexadecimal
+     */
+    public byte[] describe(final int level, final int[] nodes) {
+        long[] hashes = levels[level - 1];
+        StringBuilder sb = new StringBuilder(nodes.length * 24);
+        for (int node : nodes) {
+            sb.append(node).append(SPLITTER).append(Long.toHexString(hashes[node])).append(SEPARATOR);
+        }
+
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param leaves the leaves
+     * @return the essence as text of the resources in the leaves
+     */
+    public byte[] essenceOf(final int[] leaves) {
+        boolean[] selected = new boolean[nodesOf(DEPTH)];
+        for (int leaf : leaves) {
+            selected[leaf] = true;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (selected[nodeOf(ids[i], DEPTH)]) {
+                sb.append(ids[i]).append(SPLITTER).append(versions[i]).append(SEPARATOR);
+            }
+        }
+
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the amount of resources in the essence
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the fingerprint of the essence
+     * @see EssenceFingerprint
+     */
+    public String getFingerprint() {
+        return EssenceFingerprint.of(setHash);
+    }
+
+    /**
+     * @param id the id of the resource
+     * @param level the level, 1 being below the root and DEPTH being the
+     * leaves
+     * @return the node of the level having the resource below it
+     */
+    static int nodeOf(final long id, final int level) {
+        return (int) (EssenceSetHash.mix(id) >>> (Long.SIZE - level * CHILD_BITS));
+    }
+
+    private static int nodesOf(final int level) {
+        return 1 << (level * CHILD_BITS);
+    }
+
+    /**
+     * The resources read from the essence
+     */
+    private static class Resources implements ResourceConsumer {
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] versions = new long[INITIAL_CAPACITY];
+        private int size;
+
+        @Override
+        public void accept(final long id, final long version) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            ids[size] = id;
+            versions[size] = version;
+            size++;
+        }
+    }
+}
@@ -35,6 +35,13 @@ public enum HiveCeption {
        essence to be send but is the actual data. This can be JSON or Serialized or 
       other formats."""
     ),
+    NOT_AN_ESSENCE_TYPE("The essence can only be communicated as hive essence, either as text or binary"),
+    HIVE_RESOURCE_ID_NOT_UNIQUE("""
+        While attempting to generate the essence in binary, an id of the hive 
+        resources was found more then once. The binary essence requires every 
+        id to be unique"""
+    ),
+    SKETCH_CELLS_NOT_SUPPORTED("The amount of cells of the sketch has to be a multiple of three, from 0 up to 196608"),
     JSON_CONVERSION_ERROR_CANNOT_ACCESS_FIELD("""
         The field \'%s\' has no accessible getter, expecting \'%s\', or a method  having 
         \'@RepresentsGetterForField(field = \"%s\")\'""");
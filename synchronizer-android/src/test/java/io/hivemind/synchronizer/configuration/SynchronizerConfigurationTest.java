@@ -16,6 +16,7 @@
 package io.hivemind.synchronizer.configuration;
 
 import io.hivemind.synchronizer.constant.ConsistencyModel;
+import io.hivemind.synchronizer.constant.ContentType;
 import io.hivemind.synchronizer.exception.HiveCeption;
 import io.hivemind.synchronizer.exception.HiveException;
 import io.hivemind.synchronizer.exception.NotSupportedException;
@@ -23,6 +24,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -73,4 +75,102 @@ public class SynchronizerConfigurationTest {
             assertTrue(EXPECTED_PERIOD_BETWEEN_REQUEST == config.getPeriodBetweenRequests());
         });
     }
+
+    @Test
+    public void synchronizerConfigurationEssenceTypeDefaultsToText() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertEquals(ContentType.HIVE_ESSENCE, config.getEssenceType());
+    }
+
+    @Test
+    public void synchronizerConfigurationLongPollsByDefault() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertEquals(30, config.getLongPollTimeout());
+
+        config.setLongPollTimeout(-1);
+
+        assertEquals(0, config.getLongPollTimeout());
+    }
+
+    @Test
+    public void synchronizerConfigurationEssenceRangesDisabledByDefault() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertFalse(config.isEssenceRanges());
+
+        config.setEssenceRanges(true);
+
+        assertTrue(config.isEssenceRanges());
+    }
+
+    @Test
+    public void synchronizerConfigurationFingerprintFirstByDefault() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertTrue(config.isFingerprintFirst());
+
+        config.setFingerprintFirst(false);
+
+        assertFalse(config.isFingerprintFirst());
+    }
+
+    @Test
+    public void synchronizerConfigurationSummaryThresholdByDefault() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertEquals(10_000, config.getSummaryThreshold());
+
+        config.setSummaryThreshold(0);
+
+        assertEquals(0, config.getSummaryThreshold());
+    }
+
+    @Test
+    public void synchronizerConfigurationSketchCells() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        assertEquals(0, config.getSketchCells());
+
+        config.setSketchCells(300);
+
+        assertEquals(300, config.getSketchCells());
+    }
+
+    @Test
+    public void synchronizerConfigurationSketchCellsNotMultipleOfThree() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        HiveException exception = assertThrows(NotSupportedException.class, () -> config.setSketchCells(100));
+
+        assertEquals(HiveCeption.SKETCH_CELLS_NOT_SUPPORTED.getMessage(), exception.getLocalizedMessage());
+    }
+
+    @Test
+    public void synchronizerConfigurationEssenceTypeBinary() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        config.setEssenceType(ContentType.HIVE_ESSENCE_BINARY);
+
+        assertEquals(ContentType.HIVE_ESSENCE_BINARY, config.getEssenceType());
+    }
+
+    @Test
+    public void synchronizerConfigurationEssenceTypeNotBeingEssence() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        HiveException exception = assertThrows(NotSupportedException.class, () -> config.setEssenceType(ContentType.JSON));
+
+        assertEquals(HiveCeption.NOT_AN_ESSENCE_TYPE.getMessage(), exception.getLocalizedMessage());
+    }
+
+    @Test
+    public void synchronizerConfigurationContentTypeBeingBinaryEssence() throws NotSupportedException {
+        SynchronizerConfiguration config = new SynchronizerConfiguration(URI, ConsistencyModel.EVENTUAL_CONSISTENCY);
+
+        HiveException exception = assertThrows(NotSupportedException.class, () -> config.setContentType(ContentType.HIVE_ESSENCE_BINARY));
+
+        assertEquals(HiveCeption.CANNOT_BE_HIVE_ESSENCE.getMessage(), exception.getLocalizedMessage());
+    }
 }
@@ -18,6 +18,8 @@ package io.hivemind.synchronizer.constant;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for content type constant
@@ -33,6 +35,8 @@ public class ContentTypeTest {
     private static final String VALUE_APPLICATION_HIVE_ESSENCE = "application/hive-essence";
     private static final String VALUE_HIVE_ESSENCE = "hive-essence";
     private static final String VALUE_HIVE_ESSENCE_NO_HYPHEN = "hiveessence";
+    private static final String VALUE_APPLICATION_HIVE_ESSENCE_BINARY = "application/hive-essence+binary";
+    private static final String VALUE_HIVE_ESSENCE_BINARY = "hive-essence+binary";
 
     @Test
     public void contentTypeFromNull() {
@@ -113,4 +117,31 @@ public class ContentTypeTest {
 
         assertEquals(expected, result);
     }
+
+    @Test
+    public void contentTypeFromApplicationHiveEssenceBinary() {
+        String value = VALUE_APPLICATION_HIVE_ESSENCE_BINARY;
+        ContentType expected = ContentType.HIVE_ESSENCE_BINARY;
+
+        ContentType result = ContentType.enumFor(value);
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void contentTypeFromHiveEssenceBinary() {
+        String value = VALUE_HIVE_ESSENCE_BINARY;
+        ContentType expected = ContentType.HIVE_ESSENCE_BINARY;
+
+        ContentType result = ContentType.enumFor(value);
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void contentTypeIsHiveEssence() {
+        assertTrue(ContentType.HIVE_ESSENCE.isHiveEssence());
+        assertTrue(ContentType.HIVE_ESSENCE_BINARY.isHiveEssence());
+        assertFalse(ContentType.JSON.isHiveEssence());
+    }
 }
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for essence fingerprint
+ *
+ * @author Patrick-4488
+ */
+public class EssenceFingerprintTest {
+
+    private static final byte[] ESSENCE = "73,2;1,1;0,5;".getBytes();
+    private static final byte[] ESSENCE_SORTED = "0,5;1,1;73,2;".getBytes();
+    private static final byte[] ESSENCE_EXPANDED = "1,1;2,1;3,1;4,1;10,2;".getBytes();
+    private static final byte[] ESSENCE_HAVING_RANGES = "1-4,1;10,2;".getBytes();
+    private static final byte[] ESSENCE_HAVING_INVALID_RANGE = "4-1,1;".getBytes();
+    private static final byte[] ESSENCE_INVALID = "1,1;mock;".getBytes();
+    private static final byte[] ESSENCE_WITHOUT_VERSION = "1,1;2".getBytes();
+    private static final byte[] BINARY_ESSENCE = {0, 5, 1, 1, 72, 2};
+    private static final byte[] BINARY_ESSENCE_TRUNCATED = {0, 5, 1, (byte) 0x81};
+    private static final String FINGERPRINT_EMPTY = "0000000000000000";
+    // The same as determined by the Hivemind for the essence
+    private static final String FINGERPRINT_ESSENCE = "1b09046d66166742";
+
+    @Test
+    public void fingerprintOfEmptyEssence() {
+        assertEquals(FINGERPRINT_EMPTY, EssenceFingerprint.of(null, ContentType.HIVE_ESSENCE));
+        assertEquals(FINGERPRINT_EMPTY, EssenceFingerprint.of(new byte[0], ContentType.HIVE_ESSENCE_BINARY));
+    }
+
+    @Test
+    public void fingerprintOfEssence() {
+        assertEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(ESSENCE, ContentType.HIVE_ESSENCE));
+        assertEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(ESSENCE_SORTED, ContentType.HIVE_ESSENCE));
+    }
+
+    @Test
+    public void fingerprintOfEssenceHavingRanges() {
+        assertEquals(EssenceFingerprint.of(ESSENCE_EXPANDED, ContentType.HIVE_ESSENCE), EssenceFingerprint.of(ESSENCE_HAVING_RANGES, ContentType.HIVE_ESSENCE));
+        assertNull(EssenceFingerprint.of(ESSENCE_HAVING_INVALID_RANGE, ContentType.HIVE_ESSENCE));
+    }
+
+    @Test
+    public void fingerprintOfBinaryEssence() {
+        assertEquals(FINGERPRINT_ESSENCE, EssenceFingerprint.of(BINARY_ESSENCE, ContentType.HIVE_ESSENCE_BINARY));
+    }
+
+    @Test
+    public void fingerprintOfEssenceNotBeingNumbers() {
+        assertNull(EssenceFingerprint.of(ESSENCE_INVALID, ContentType.HIVE_ESSENCE));
+        assertNull(EssenceFingerprint.of(ESSENCE_WITHOUT_VERSION, ContentType.HIVE_ESSENCE));
+        assertNull(EssenceFingerprint.of(BINARY_ESSENCE_TRUNCATED, ContentType.HIVE_ESSENCE_BINARY));
+    }
+}
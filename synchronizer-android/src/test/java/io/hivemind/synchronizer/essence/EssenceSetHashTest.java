@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Tests for essence set hash
+ *
+ * @author Patrick-4488
+ */
+public class EssenceSetHashTest {
+
+    @Test
+    public void setHashIgnoresOrder() {
+        EssenceSetHash first = new EssenceSetHash();
+        first.add(1, 1);
+        first.add(2, 3);
+        EssenceSetHash second = new EssenceSetHash();
+        second.add(2, 3);
+        second.add(1, 1);
+
+        assertEquals(first.getHash(), second.getHash());
+    }
+
+    @Test
+    public void setHashUpdatedForSingleResource() {
+        EssenceSetHash classUnderTest = new EssenceSetHash();
+        classUnderTest.add(1, 1);
+        classUnderTest.add(2, 1);
+        long before = classUnderTest.getHash();
+
+        classUnderTest.update(2, 1, 2);
+
+        assertNotEquals(before, classUnderTest.getHash());
+
+        classUnderTest.update(2, 2, 1);
+
+        assertEquals(before, classUnderTest.getHash());
+
+        classUnderTest.remove(2, 1);
+        classUnderTest.remove(1, 1);
+
+        assertEquals(0, classUnderTest.getHash());
+    }
+}
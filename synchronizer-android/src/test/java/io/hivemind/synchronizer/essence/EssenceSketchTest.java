@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for essence sketch
+ *
+ * @author Patrick-4488
+ */
+public class EssenceSketchTest {
+
+    private static final byte[] ESSENCE = "73,2;72,1;".getBytes();
+    private static final byte[] ESSENCE_SINGLE = "73,2;".getBytes();
+    private static final byte[] ESSENCE_INVALID = "1,1;mock;".getBytes();
+    private static final byte[] BINARY_ESSENCE = {72, 1, 1, 2};
+    private static final int CELLS = 30;
+    // The same as determined by the Hivemind, the resource 73,2 is in these cells of a sketch having 30 cells
+    private static final int[] CELLS_OF_SINGLE = {2, 19, 23};
+
+    @Test
+    public void sketchOfEssenceNotBeingNumbers() {
+        assertNull(EssenceSketch.of(ESSENCE_INVALID, ContentType.HIVE_ESSENCE, CELLS));
+    }
+
+    @Test
+    public void sketchHasResourceInOneCellPerPart() {
+        ByteBuffer sketch = ByteBuffer.wrap(EssenceSketch.of(ESSENCE_SINGLE, ContentType.HIVE_ESSENCE, CELLS));
+
+        assertEquals(CELLS * EssenceSketch.CELL_LENGTH, sketch.capacity());
+        for (int cell : CELLS_OF_SINGLE) {
+            assertEquals(1, sketch.getInt(cell * EssenceSketch.CELL_LENGTH));
+        }
+    }
+
+    @Test
+    public void sketchOfBinaryEssence() {
+        assertArrayEquals(EssenceSketch.of(ESSENCE, ContentType.HIVE_ESSENCE, CELLS),
+                EssenceSketch.of(BINARY_ESSENCE, ContentType.HIVE_ESSENCE_BINARY, CELLS));
+    }
+}
@@ -52,6 +52,29 @@ interface EssenceDataProvider {
      */
     public byte[] determineEssence();
 
+    /**
+     * Determine the essence in the given content type
+     *
+     * @see #determineEssence()
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the hive essence
+     */
+    public byte[] determineEssence(final ContentType essenceType);
+
+    /**
+     * Determine the essence in the given content type, having ranges of ids
+     * when enabled
+     *
+     * @see #determineEssence(ContentType)
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @param ranges true to have a range for every run of consecutive ids
+     * having the same version, only applies to HIVE_ESSENCE
+     * @return the hive essence
+     */
+    public byte[] determineEssence(final ContentType essenceType, final boolean ranges);
+
     /**
      * Determine the data that corresponds to the given essence. This will be
      * called when the application is requested by Hivemind to provide data. The
@@ -70,6 +93,18 @@ interface EssenceDataProvider {
      */
     public byte[] getDataForEssence(final byte[] essence);
 
+    /**
+     * Determine the data that corresponds to the given essence in the given
+     * content type
+     *
+     * @see #getDataForEssence(byte[])
+     * @param essence the essence to provide data for
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the data or empty
+     */
+    public byte[] getDataForEssence(final byte[] essence, final ContentType essenceType);
+
     /**
      * Process priority essence. This is an essence that has to be processed
      * before synchronization can continue. This is mostly due to deletion of
@@ -79,6 +114,16 @@ interface EssenceDataProvider {
      */
     public void processPriorityEssence(final byte[] essence);
 
+    /**
+     * Process priority essence in the given content type
+     *
+     * @see #processPriorityEssence(byte[])
+     * @param essence the essence to process
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     */
+    public void processPriorityEssence(final byte[] essence, final ContentType essenceType);
+
     /**
      * Save incoming data
      *
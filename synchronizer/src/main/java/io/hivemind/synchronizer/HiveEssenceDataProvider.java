@@ -46,14 +46,33 @@ public class HiveEssenceDataProvider implements EssenceDataProvider {
 
     @Override
     public byte[] determineEssence() {
-        return translator.determineEssenceForResources(resourceProvider.provideAllResources());
+        return determineEssence(ContentType.HIVE_ESSENCE);
+    }
+
+    @Override
+    public byte[] determineEssence(final ContentType essenceType) {
+        return translator.determineEssenceForResources(resourceProvider.provideAllResources(), essenceType);
+    }
+
+    @Override
+    public byte[] determineEssence(final ContentType essenceType, final boolean ranges) {
+        if (!ranges || ContentType.HIVE_ESSENCE_BINARY == essenceType) {
+            return determineEssence(essenceType);
+        }
+
+        return translator.determineRangedEssenceForResources(resourceProvider.provideAllResources());
     }
 
     @Override
     public byte[] getDataForEssence(final byte[] essence) {
+        return getDataForEssence(essence, ContentType.HIVE_ESSENCE);
+    }
+
+    @Override
+    public byte[] getDataForEssence(final byte[] essence, final ContentType essenceType) {
         List<HiveResource> resources = new ArrayList<>();
         try {
-            resources = translator.interpolateResourcesFromEssence(essence);
+            resources = translator.interpolateResourcesFromEssence(essence, essenceType);
         } catch (InvalidEssenceException ex) {
             LOGGER.log(ERROR, "Failed to process invalid essence, being: {0}, exception: {1}",
                     (essence != null ? new String(essence) : "null"), ex);
@@ -80,9 +99,14 @@ public class HiveEssenceDataProvider implements EssenceDataProvider {
      */
     @Override
     public void processPriorityEssence(final byte[] essence) {
+        processPriorityEssence(essence, ContentType.HIVE_ESSENCE);
+    }
+
+    @Override
+    public void processPriorityEssence(final byte[] essence, final ContentType essenceType) {
         try {
             resourceProvider.deleteAllResourcesExcept(
-                    translator.interpolateResourcesFromEssence(essence));
+                    translator.interpolateResourcesFromEssence(essence, essenceType));
         } catch (InvalidEssenceException ex) {
             LOGGER.log(ERROR, "Failed to process invalid essence, being: {0}, exception: {1}",
                     (essence != null ? new String(essence) : "null"), ex);
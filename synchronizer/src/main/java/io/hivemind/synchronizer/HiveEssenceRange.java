@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer;
+
+/**
+ * The hive essence part representing a range of hive resources, being every
+ * resource from the id up to and including the last id having the same
+ * version. Only part of essences when ranges are enabled
+ *
+ * @see io.hivemind.synchronizer.configuration.SynchronizerConfiguration#setEssenceRanges(boolean)
+ * @author Patrick-4488
+ */
+public class HiveEssenceRange extends HiveEssencePart {
+
+    private byte[] lastId;
+
+    /**
+     * @param lastId The last id of the range, greater then the id
+     */
+    public void setLastId(final byte[] lastId) {
+        this.lastId = lastId;
+    }
+
+    /**
+     * @return the last id of the range
+     */
+    public byte[] getLastId() {
+        return lastId;
+    }
+
+}
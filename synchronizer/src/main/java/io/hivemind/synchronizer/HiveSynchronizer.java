@@ -31,6 +31,7 @@ import static java.lang.System.Logger.Level.INFO;
 public class HiveSynchronizer {
 
     private ScheduledThreadPoolExecutor executor;
+    private SynchronizeTask task;
 
     private final ResourceProvider resourceProvider;
     private final SynchronizerConfiguration config;
@@ -54,8 +55,14 @@ public class HiveSynchronizer {
 
         if (executor == null || executor.getActiveCount() == 0 || executor.isShutdown()) {
             executor = new ScheduledThreadPoolExecutor(1, new ThreadPoolExecutor.DiscardPolicy());
-            SynchronizeTask task = new SynchronizeTask(new HiveEssenceDataProvider(resourceProvider), config);
-            executor.scheduleAtFixedRate(task, 0, config.getPeriodBetweenRequests(), TimeUnit.SECONDS);
+            task = new SynchronizeTask(new HiveEssenceDataProvider(resourceProvider), config);
+            if (config.getLongPollTimeout() > 0 && !config.isPush()) {
+                SynchronizeTask longPollingTask = task;
+                ScheduledThreadPoolExecutor longPolling = executor;
+                longPolling.execute(() -> synchronize(longPolling, longPollingTask));
+            } else {
+                executor.scheduleAtFixedRate(task, 0, config.getPeriodBetweenRequests(), TimeUnit.SECONDS);
+            }
         } else {
             // Not allowing multiple synchronizing tasks in parralel
         }
@@ -63,14 +70,32 @@ public class HiveSynchronizer {
         LOGGER.log(INFO, "Started synchronization with Hivemind");
     }
 
+    /**
+     * When long polling the task is run again right away when the Hivemind
+     * held the request or requested data, otherwise after the period between
+     * requests
+     */
+    private void synchronize(final ScheduledThreadPoolExecutor longPolling, final SynchronizeTask task) {
+        task.run();
+
+        if (!longPolling.isShutdown()) {
+            long delay = (task.isToRunAgain() ? 0 : config.getPeriodBetweenRequests());
+            longPolling.schedule(() -> synchronize(longPolling, task), delay, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Stop the synchronization<br>
-     * Initiates an orderly shutdown
+     * Initiates an orderly shutdown, closing the connection to the push
+     * transport when pushing
      */
     public void stopSynchronization() {
         LOGGER.log(INFO, "Stopping synchronization with Hivemind");
 
         executor.shutdown();
+        if (task != null) {
+            task.disconnect();
+        }
 
         LOGGER.log(INFO, "Stopped synchronization with Hivemind");
     }
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Connection to the push transport of the Hivemind, a WebSocket over which
+ * messages having the headers and the body of hive requests and responses are
+ * exchanged as binary messages. Messages of the Hivemind have the status of
+ * the response as well
+ * <p>
+ * Encoded as the status (0 for messages of synchronizers) and the amount of
+ * headers as unsigned shorts, followed by the name and the value of every
+ * header, each prefixed by its length as unsigned short, followed by the
+ * body.</p>
+ *
+ * @author Patrick-4488
+ */
+class PushConnection implements WebSocket.Listener {
+
+    private CompletableFuture<WebSocket> sending;
+    private volatile boolean open;
+
+    private final Consumer<Message> receiver;
+    private final ByteArrayOutputStream received;
+
+    private static final String KEY_TRACEPARENT = "traceparent";
+    private static final String PUSH_PATH = "/push";
+    private static final int NO_STATUS = 0;
+
+    private static final System.Logger LOGGER = System.getLogger(PushConnection.class.getName());
+
+    /**
+     * A message received from the Hivemind
+     */
+    static final class Message {
+
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        Message(final int status, final Map<String, List<String>> headers, final byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        /**
+         * @param name the name of the header, case insensitive
+         * @return the values of the header, empty when absent
+         */
+        List<String> getHeader(final String name) {
+            return headers.getOrDefault(name, List.of());
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+
+    private PushConnection(final Consumer<Message> receiver) {
+        this.receiver = receiver;
+        this.received = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Connect to the push transport of the Hivemind
+     *
+     * @param client the client to connect with
+     * @param uri the uri of the Hivemind, the push transport is at path /push
+     * @param traceparent the traceparent of the synchronizer or null
+     * @param receiver receives the messages of the Hivemind, one at a time
+     * @return the connection
+     * @throws IOException when not able to connect
+     * @throws InterruptedException when interrupted while connecting
+     */
+    static PushConnection connect(final HttpClient client, final String uri, final String traceparent,
+            final Consumer<Message> receiver) throws IOException, InterruptedException {
+        PushConnection connection = new PushConnection(receiver);
+        WebSocket.Builder builder = client.newWebSocketBuilder();
+        if (traceparent != null && !traceparent.isEmpty()) {
+            builder.header(KEY_TRACEPARENT, traceparent);
+        }
+
+        try {
+            connection.sending = CompletableFuture.completedFuture(builder.buildAsync(pushUriOf(uri), connection).get());
+        } catch (ExecutionException ex) {
+            throw new IOException("Not able to connect to the push transport of the Hivemind", ex.getCause());
+        }
+
+        return connection;
+    }
+
+    /**
+     * @param uri the uri of the Hivemind
+     * @return the uri of the push transport, ws or wss following the scheme
+     */
+    static URI pushUriOf(final String uri) {
+        URI hive = URI.create(uri);
+        String scheme = ("https".equalsIgnoreCase(hive.getScheme()) ? "wss" : "ws");
+
+        return URI.create(scheme + "://" + hive.getRawAuthority() + PUSH_PATH);
+    }
+
+    /**
+     * @return true while connected
+     */
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Send a message, after the messages sent before
+     *
+     * @param headers the headers of the message
+     * @param body the body of the message
+     */
+    synchronized void send(final Map<String, String> headers, final byte[] body) {
+        ByteBuffer message = encode(headers, body);
+        sending = sending.thenCompose(ws -> ws.sendBinary(message, true));
+        sending.whenComplete((ws, ex) -> {
+            if (ex != null) {
+                LOGGER.log(ERROR, "Not able to send message to the Hivemind, exception: {0}", ex);
+                open = false;
+            }
+        });
+    }
+
+    /**
+     * Close the connection, after the messages sent before
+     */
+    synchronized void close() {
+        open = false;
+        sending.thenCompose(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+    }
+
+    @Override
+    public void onOpen(final WebSocket webSocket) {
+        LOGGER.log(INFO, "Connected to the push transport of the Hivemind");
+        open = true;
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(final WebSocket webSocket, final ByteBuffer data, final boolean last) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        received.write(bytes, 0, bytes.length);
+
+        if (last) {
+            ByteBuffer message = ByteBuffer.wrap(received.toByteArray());
+            received.reset();
+            try {
+                receiver.accept(decode(message));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(WARNING, "Received malformed message from the Hivemind, exception: {0}", ex);
+            }
+        }
+        webSocket.request(1);
+
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onText(final WebSocket webSocket, final CharSequence data, final boolean last) {
+        LOGGER.log(WARNING, "Received message that is not binary from the Hivemind, ignoring");
+        webSocket.request(1);
+
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(final WebSocket webSocket, final int statusCode, final String reason) {
+        LOGGER.log(INFO, "Push transport closed by the Hivemind, status: {0}", statusCode);
+        open = false;
+
+        return null;
+    }
+
+    @Override
+    public void onError(final WebSocket webSocket, final Throwable error) {
+        LOGGER.log(ERROR, "Push transport failed, exception: {0}", error);
+        open = false;
+    }
+
+    /**
+     * @param headers the headers, of which the names and values are at most
+     * 65535 bytes
+     * @param body the body
+     * @return the message of a synchronizer
+     */
+    static ByteBuffer encode(final Map<String, String> headers, final byte[] body) {
+        List<byte[]> values = new ArrayList<>();
+        int size = 2 * Short.BYTES + body.length;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            byte[] name = header.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = header.getValue().getBytes(StandardCharsets.UTF_8);
+            values.add(name);
+            values.add(value);
+            size += 2 * Short.BYTES + name.length + value.length;
+        }
+
+        ByteBuffer message = ByteBuffer.allocate(size);
+        message.putShort((short) NO_STATUS);
+        message.putShort((short) headers.size());
+        for (byte[] value : values) {
+            message.putShort((short) value.length);
+            message.put(value);
+        }
+        message.put(body);
+
+        return message.flip();
+    }
+
+    /**
+     * @param message the message of the Hivemind
+     * @return the message decoded
+     * @throws IllegalArgumentException when malformed
+     */
+    static Message decode(final ByteBuffer message) {
+        try {
+            int status = Short.toUnsignedInt(message.getShort());
+            int count = Short.toUnsignedInt(message.getShort());
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < count; i++) {
+                String name = readString(message);
+                headers.computeIfAbsent(name, key -> new ArrayList<>()).add(readString(message));
+            }
+
+            byte[] body = new byte[message.remaining()];
+            message.get(body);
+
+            return new Message(status, headers, body);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed message", ex);
+        }
+    }
+
+    private static String readString(final ByteBuffer message) {
+        int length = Short.toUnsignedInt(message.getShort());
+        if (length > message.remaining()) {
+            throw new IllegalArgumentException("Invalid length in message: " + length);
+        }
+
+        byte[] value = new byte[length];
+        message.get(value);
+
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -42,7 +42,9 @@ public interface ResourceProvider {
      * within the application as is to be shared with other synchronizers.
      *
      * @param requestedResources the resources requested, which contains object
-     * with only having the id and version, and are missing the other data
+     * with only having the id and version, and are missing the other data. A
+     * HiveEssenceRange requests every resource of the range when ranges are
+     * enabled
      * @return the list of objects with the other data
      */
     public List<HiveResource> provideResources(final List<HiveResource> requestedResources);
@@ -54,7 +56,8 @@ public interface ResourceProvider {
      * method
      *
      * @param resourcesToKeep the resources that have not been removed (update
-     * from other synchronizer(s))
+     * from other synchronizer(s)), a HiveEssenceRange keeping every resource of
+     * the range when ranges are enabled
      */
     public void deleteAllResourcesExcept(final List<HiveResource> resourcesToKeep);
 
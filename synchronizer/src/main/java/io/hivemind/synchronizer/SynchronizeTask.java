@@ -18,13 +18,19 @@ package io.hivemind.synchronizer;
 import io.hivemind.synchronizer.configuration.SynchronizerConfiguration;
 import io.hivemind.synchronizer.constant.ContentType;
 import io.hivemind.synchronizer.data.PreparedData;
+import io.hivemind.synchronizer.essence.EssenceFingerprint;
+import io.hivemind.synchronizer.essence.EssenceSketch;
+import io.hivemind.synchronizer.essence.EssenceSummary;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.INFO;
@@ -32,6 +38,19 @@ import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Synchronization task that is used to communicate with the Hivemind
+ * <p>
+ * When long polling, the fingerprint and the essence are sent allowing the
+ * Hivemind to hold the request until the state of the synchronizer changes.
+ * The task can be run again right away when the Hivemind held the request, when
+ * data has been requested and after sending the data requested.</p>
+ * <p>
+ * When pushing, the task keeps a WebSocket connection to the Hivemind. The
+ * fingerprint or the essence is sent as message and the responses of the
+ * Hivemind are received as messages, also when pushed by the Hivemind later
+ * on.</p>
+ * <p>
+ * HTTP/2 is preferred, the requests then share one multiplexed connection to
+ * the Hivemind, HTTP/1.1 is used when the Hivemind does not support it.</p>
  *
  * @author Patrick-4488
  */
@@ -41,6 +60,8 @@ public class SynchronizeTask implements Runnable {
     private PreparedData dataToSend;
     private ContentType contentTypeOfDataToSend;
     private boolean isDataRequest;
+    private boolean isToRunAgain;
+    private PushConnection push;
 
     private final HttpClient client;
     private final EssenceDataProvider essenceDataProvider;
@@ -48,12 +69,24 @@ public class SynchronizeTask implements Runnable {
 
     private static final String KEY_TRACEPARENT = "traceparent";
     private static final String KEY_CONTENT_TYPE = "content-type";
+    private static final String KEY_FINGERPRINT = "hive-essence-fingerprint";
+    private static final String KEY_SUMMARY = "hive-essence-summary";
+    private static final String KEY_LEAVES = "hive-essence-leaves";
+    private static final String KEY_SKETCH = "hive-essence-sketch";
+    private static final String KEY_WAIT = "hive-essence-wait";
+    // Time allowed for the Hivemind to respond after having held a request
+    private static final int WAIT_MARGIN = 10;
+    private static final String LEAF_SEPARATOR = ",";
+    // Descending more nodes then this is not cheaper then sending the essence
+    private static final int MAX_DIFFERING_NODES = 256;
     private static final String CONTENT_TYPE_SEPARATOR = ", ";
 
     private static final System.Logger LOGGER = System.getLogger(SynchronizeTask.class.getName());
 
     public SynchronizeTask(final HiveEssenceDataProvider essenceDataProvider, final SynchronizerConfiguration config) {
-        this.client = HttpClient.newHttpClient();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build();
         this.essenceDataProvider = essenceDataProvider;
         this.config = config;
     }
@@ -64,16 +97,20 @@ public class SynchronizeTask implements Runnable {
             LOGGER.log(INFO, "Starting synchronization");
 
             // FUTURE_WORK: If consistency model is > eventual -> send data request immediatly
-            HttpRequest request;
-            if (dataToSend != null && dataToSend.hasData()) {
-                isDataRequest = true;
-                request = buildDataRequest();
+            if (config.isPush()) {
+                synchronizePush();
             } else {
-                isDataRequest = false;
-                request = buildEssenceRequest(essenceDataProvider.determineEssence());
+                HttpResponse<byte[]> response;
+                isToRunAgain = false;
+                if (dataToSend != null && dataToSend.hasData()) {
+                    isDataRequest = true;
+                    response = client.send(buildDataRequest(), BodyHandlers.ofByteArray());
+                } else {
+                    isDataRequest = false;
+                    response = sendEssence(essenceDataProvider.determineEssence(config.getEssenceType(), config.isEssenceRanges()));
+                }
+                processResponse(response);
             }
-            HttpResponse<byte[]> response = client.send(request, BodyHandlers.ofByteArray());
-            processResponse(response);
 
             LOGGER.log(INFO, "Synchronization finished");
         } catch (IOException | InterruptedException ex) {
@@ -82,6 +119,200 @@ public class SynchronizeTask implements Runnable {
         }
     }
 
+    /**
+     * @return true when long polling and the task can be run again right away,
+     * false when the last request failed or the Hivemind does not hold
+     * requests
+     */
+    public boolean isToRunAgain() {
+        return isToRunAgain;
+    }
+
+    /**
+     * Close the connection to the push transport, when connected
+     */
+    public synchronized void disconnect() {
+        if (push != null) {
+            push.close();
+            push = null;
+        }
+    }
+
+    /**
+     * Connects when not connected and sends the fingerprint or the essence,
+     * the Hivemind pushes its response as soon as there is something to
+     * respond
+     */
+    private synchronized void synchronizePush() throws IOException, InterruptedException {
+        if (push == null || !push.isOpen()) {
+            push = PushConnection.connect(client, config.getUri(), traceparent, this::processMessage);
+        }
+
+        sendMessage();
+    }
+
+    /**
+     * Over the push transport the sketch and the summary are not sent, the
+     * essence is sent when the Hivemind does not know the fingerprint
+     */
+    private void sendMessage() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (traceparent != null && !traceparent.isEmpty()) {
+            headers.put(KEY_TRACEPARENT, traceparent);
+        }
+
+        if (dataToSend != null && dataToSend.hasData()) {
+            isDataRequest = true;
+            headers.put(KEY_CONTENT_TYPE, (contentTypeOfDataToSend != null
+                    ? contentTypeOfDataToSend.getValue() : ContentType.SERIALIZED.getValue()));
+            push.send(headers, dataToSend.getData());
+        } else {
+            isDataRequest = false;
+            byte[] essence = essenceDataProvider.determineEssence(config.getEssenceType(), config.isEssenceRanges());
+            String fingerprint = (config.isFingerprintFirst() ? EssenceFingerprint.of(essence, config.getEssenceType()) : null);
+            headers.put(KEY_CONTENT_TYPE, determineEssenceRequestContentType(config.getEssenceType()));
+            if (fingerprint != null) {
+                headers.put(KEY_FINGERPRINT, fingerprint);
+                push.send(headers, new byte[0]);
+            } else {
+                push.send(headers, essence);
+            }
+        }
+    }
+
+    private void sendEssenceMessage() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (traceparent != null && !traceparent.isEmpty()) {
+            headers.put(KEY_TRACEPARENT, traceparent);
+        }
+        headers.put(KEY_CONTENT_TYPE, determineEssenceRequestContentType(config.getEssenceType()));
+
+        isDataRequest = false;
+        push.send(headers, essenceDataProvider.determineEssence(config.getEssenceType(), config.isEssenceRanges()));
+    }
+
+    /**
+     * Having read a response, the data requested is sent or the fingerprint is
+     * sent again for the Hivemind to push the next change. Having nothing to
+     * respond to the fingerprint or the essence, the Hivemind does not respond
+     * until there is
+     */
+    private synchronized void processMessage(final PushConnection.Message message) {
+        if (push == null) {
+            return;
+        }
+        if (traceparent == null || traceparent.isEmpty()) {
+            updateTraceparent(message.getHeader(KEY_TRACEPARENT));
+        }
+
+        int status = message.getStatus();
+        if (status == 412) {
+            LOGGER.log(INFO, "Hivemind does not know the essence having the fingerprint, sending the essence");
+            sendEssenceMessage();
+        } else if (isSuccessful(status)) {
+            boolean isRespondedToData = isDataRequest;
+            readResponse(status, getContentType(message.getHeader(KEY_CONTENT_TYPE)), message.getBody());
+            if (status != 204 || isRespondedToData) {
+                sendMessage();
+            }
+        } else {
+            LOGGER.log(ERROR, "Unexpected status received from Hivemind: {0}, sending the fingerprint again next period", status);
+        }
+    }
+
+    /**
+     * When enabled the fingerprint of the essence is sent first, the essence is
+     * only sent when the Hivemind responds not to know the essence (412) or
+     * when the essence has no fingerprint
+     */
+    private HttpResponse<byte[]> sendEssence(final byte[] essence) throws IOException, InterruptedException {
+        String fingerprint = (config.isFingerprintFirst() ? EssenceFingerprint.of(essence, config.getEssenceType()) : null);
+        if (fingerprint != null) {
+            HttpResponse<byte[]> response = client.send(buildFingerprintRequest(fingerprint), BodyHandlers.ofByteArray());
+            if (response.statusCode() != 412) {
+                return response;
+            }
+
+            LOGGER.log(INFO, "Hivemind does not know the essence having the fingerprint, sending its summary or the essence");
+            if (traceparent == null || traceparent.isEmpty()) {
+                updateTraceparent(response.headers().allValues(KEY_TRACEPARENT));
+            }
+
+            response = sendSketch(essence, fingerprint);
+            if (response == null) {
+                response = sendSummary(essence, fingerprint);
+            }
+            if (response != null) {
+                return response;
+            }
+        }
+
+        return client.send(buildEssenceRequest(essence, config.getEssenceType()), BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * When configured the sketch of the essence is sent, the Hivemind
+     * determines the essence from the sketch unless too many resources differ
+     * (412)
+     *
+     * @return the response or null when the summary or the essence has to be
+     * sent instead
+     */
+    private HttpResponse<byte[]> sendSketch(final byte[] essence, final String fingerprint) throws IOException, InterruptedException {
+        int cells = config.getSketchCells();
+        byte[] sketch = (cells > 0 && essence != null ? EssenceSketch.of(essence, config.getEssenceType(), cells) : null);
+        if (sketch == null || sketch.length >= essence.length) {
+            return null;
+        }
+
+        HttpRequest.Builder buidler = HttpRequest.newBuilder();
+        buidler.uri(URI.create(config.getUri()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(sketch))
+                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType(config.getEssenceType()))
+                .header(KEY_SKETCH, String.valueOf(cells))
+                .header(KEY_FINGERPRINT, fingerprint);
+        if (traceparent != null && !traceparent.isEmpty()) {
+            buidler.header(KEY_TRACEPARENT, traceparent);
+        }
+
+        HttpResponse<byte[]> response = client.send(buidler.build(), BodyHandlers.ofByteArray());
+
+        return (response.statusCode() != 412 ? response : null);
+    }
+
+    /**
+     * Large essences are summarized, the summary is descended level by level
+     * into the nodes the Hivemind responds to differ (412). Having reached the
+     * leaves, only the resources in the leaves that differ are sent
+     *
+     * @return the response or null when the essence has to be sent instead
+     */
+    private HttpResponse<byte[]> sendSummary(final byte[] essence, final String fingerprint) throws IOException, InterruptedException {
+        int threshold = config.getSummaryThreshold();
+        EssenceSummary summary = (threshold > 0 ? EssenceSummary.of(essence, config.getEssenceType()) : null);
+        if (summary == null || summary.size() < threshold) {
+            return null;
+        }
+
+        int[] nodes = EssenceSummary.rootNodes();
+        for (int level = 1; level <= EssenceSummary.DEPTH; level++) {
+            HttpResponse<byte[]> response = client.send(buildSummaryRequest(level, summary.describe(level, nodes)), BodyHandlers.ofByteArray());
+            if (response.statusCode() != 412) {
+                return response;
+            }
+
+            int[] differing = EssenceSummary.readNodes(response.body());
+            if (differing == null || differing.length == 0 || differing.length > MAX_DIFFERING_NODES) {
+                return null;
+            }
+            nodes = (level < EssenceSummary.DEPTH ? EssenceSummary.childrenOf(differing) : differing);
+        }
+
+        HttpResponse<byte[]> response = client.send(buildLeavesRequest(nodes, summary.essenceOf(nodes), fingerprint), BodyHandlers.ofByteArray());
+
+        return (response.statusCode() != 412 ? response : null);
+    }
+
     private HttpRequest buildDataRequest() {
         HttpRequest.Builder buidler = HttpRequest.newBuilder();
         buidler.uri(URI.create(config.getUri()))
@@ -95,11 +326,51 @@ public class SynchronizeTask implements Runnable {
         return buidler.build();
     }
 
-    private HttpRequest buildEssenceRequest(final byte[] bytes) {
+    private HttpRequest buildEssenceRequest(final byte[] bytes, final ContentType essenceType) {
         HttpRequest.Builder buidler = HttpRequest.newBuilder();
         buidler.uri(URI.create(config.getUri()))
                 .POST(HttpRequest.BodyPublishers.ofByteArray(bytes))
-                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType());
+                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType(essenceType));
+        if (traceparent != null && !traceparent.isEmpty()) {
+            buidler.header(KEY_TRACEPARENT, traceparent);
+        }
+        allowWaiting(buidler);
+
+        return buidler.build();
+    }
+
+    private HttpRequest buildFingerprintRequest(final String fingerprint) {
+        HttpRequest.Builder buidler = HttpRequest.newBuilder();
+        buidler.uri(URI.create(config.getUri()))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType(config.getEssenceType()))
+                .header(KEY_FINGERPRINT, fingerprint);
+        if (traceparent != null && !traceparent.isEmpty()) {
+            buidler.header(KEY_TRACEPARENT, traceparent);
+        }
+        allowWaiting(buidler);
+
+        return buidler.build();
+    }
+
+    /**
+     * The Hivemind may hold the request for the long poll timeout, the request
+     * times out when the Hivemind does not respond some time after
+     */
+    private void allowWaiting(final HttpRequest.Builder builder) {
+        int wait = config.getLongPollTimeout();
+        if (wait > 0) {
+            builder.header(KEY_WAIT, String.valueOf(wait))
+                    .timeout(Duration.ofSeconds((long) wait + WAIT_MARGIN));
+        }
+    }
+
+    private HttpRequest buildSummaryRequest(final int level, final byte[] nodes) {
+        HttpRequest.Builder buidler = HttpRequest.newBuilder();
+        buidler.uri(URI.create(config.getUri()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(nodes))
+                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType(config.getEssenceType()))
+                .header(KEY_SUMMARY, String.valueOf(level));
         if (traceparent != null && !traceparent.isEmpty()) {
             buidler.header(KEY_TRACEPARENT, traceparent);
         }
@@ -107,9 +378,34 @@ public class SynchronizeTask implements Runnable {
         return buidler.build();
     }
 
-    private String determineEssenceRequestContentType() {
+    /**
+     * The resources in the leaves are sent as text, being few
+     */
+    private HttpRequest buildLeavesRequest(final int[] leaves, final byte[] essence, final String fingerprint) {
         StringBuilder sb = new StringBuilder();
-        sb.append(ContentType.HIVE_ESSENCE.getValue());
+        for (int leaf : leaves) {
+            if (sb.length() > 0) {
+                sb.append(LEAF_SEPARATOR);
+            }
+            sb.append(leaf);
+        }
+
+        HttpRequest.Builder buidler = HttpRequest.newBuilder();
+        buidler.uri(URI.create(config.getUri()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(essence))
+                .header(KEY_CONTENT_TYPE, determineEssenceRequestContentType(ContentType.HIVE_ESSENCE))
+                .header(KEY_LEAVES, sb.toString())
+                .header(KEY_FINGERPRINT, fingerprint);
+        if (traceparent != null && !traceparent.isEmpty()) {
+            buidler.header(KEY_TRACEPARENT, traceparent);
+        }
+
+        return buidler.build();
+    }
+
+    private String determineEssenceRequestContentType(final ContentType essenceType) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(essenceType.getValue());
 
         ContentType configured = config.getContentType();
         if (configured != null && ContentType.SERIALIZED != configured) {
@@ -123,11 +419,15 @@ public class SynchronizeTask implements Runnable {
     // FUTURE_WORK: Now reading all bytes to the heap, better in some cases to buffer
     private void processResponse(final HttpResponse<byte[]> response) {
         if (traceparent == null || traceparent.isEmpty()) {
-            updateTraceparent(response);
+            updateTraceparent(response.headers().allValues(KEY_TRACEPARENT));
         }
 
-        if (isSuccessful(response)) {
-            readResponse(response);
+        if (isSuccessful(response.statusCode())) {
+            readResponse(response.statusCode(), getContentType(response.headers().allValues(KEY_CONTENT_TYPE)), response.body());
+
+            boolean isHeldByHive = response.headers().firstValue(KEY_WAIT).isPresent();
+            isToRunAgain = (config.getLongPollTimeout() > 0
+                    && (isHeldByHive || isDataRequest || (dataToSend != null && dataToSend.hasData())));
         } else {
             LOGGER.log(ERROR, """
                 Unexpected response code received from Hivemind, this points to 
@@ -136,8 +436,7 @@ public class SynchronizeTask implements Runnable {
         }
     }
 
-    private void updateTraceparent(final HttpResponse<byte[]> response) {
-        List<String> traceparentValues = response.headers().allValues(KEY_TRACEPARENT);
+    private void updateTraceparent(final List<String> traceparentValues) {
         if (!traceparentValues.isEmpty()) {
             traceparent = traceparentValues.get(traceparentValues.size() - 1);
         } else {
@@ -147,33 +446,30 @@ public class SynchronizeTask implements Runnable {
         }
     }
 
-    private boolean isSuccessful(final HttpResponse<byte[]> response) {
-        int code = response.statusCode();
+    private boolean isSuccessful(final int code) {
         return code == 200 || code == 204 || code == 409;
     }
 
-    private void readResponse(final HttpResponse<byte[]> response) {
-        switch (response.statusCode()) {
+    private void readResponse(final int status, final ContentType contentType, final byte[] body) {
+        switch (status) {
             case 204 ->
                 LOGGER.log(INFO, "Synchronization task succeeded, application is up to date");
             case 200 -> {
-                ContentType contentType = getContentType(response);
-                if (ContentType.HIVE_ESSENCE == contentType) {
+                if (contentType != null && contentType.isHiveEssence()) {
                     LOGGER.log(INFO, "Synchronization task succeeded, application received data request");
 
-                    byte[] respondingEssence = response.body();
-                    if (respondingEssence != null && respondingEssence.length > 0) {
-                        dataToSend = new PreparedData(essenceDataProvider.getDataForEssence(respondingEssence));
+                    if (body != null && body.length > 0) {
+                        dataToSend = new PreparedData(essenceDataProvider.getDataForEssence(body, contentType));
                     }
                 } else {
                     LOGGER.log(INFO, "Synchronization task succeeded, application received data");
 
-                    essenceDataProvider.saveData(response.body(), contentType);
+                    essenceDataProvider.saveData(body, contentType);
                 }
             }
             case 409 -> {
                 LOGGER.log(INFO, "Synchronization task succeeded, application received priority request");
-                essenceDataProvider.processPriorityEssence(response.body());
+                essenceDataProvider.processPriorityEssence(body, contentType);
             }
             default -> {
                 LOGGER.log(ERROR, "Unexpected response code received from Hivemind, this points to inproper code since the status code has been deemed succesfull");
@@ -185,10 +481,10 @@ public class SynchronizeTask implements Runnable {
         }
     }
 
-    private ContentType getContentType(final HttpResponse<byte[]> response) {
-        List<String> contentTypeValues = response.headers().allValues(KEY_CONTENT_TYPE);
+    private ContentType getContentType(final List<String> contentTypeValues) {
         if (!contentTypeValues.isEmpty()) {
-            return ContentType.enumFor(contentTypeValues.get(contentTypeValues.size() - 1));
+            // A data request has the essence first, followed by the requested type
+            return ContentType.enumFor(contentTypeValues.get(contentTypeValues.size() - 1).split(CONTENT_TYPE_SEPARATOR)[0]);
         } else {
             LOGGER.log(WARNING, """
                 Response from Hivemind received that did not have a content type 
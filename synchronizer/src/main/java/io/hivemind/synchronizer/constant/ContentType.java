@@ -20,6 +20,7 @@ package io.hivemind.synchronizer.constant;
  * content type is per synchronizer, currently supporting:
  * <ul>
  * <li>- Hive essence</li>
+ * <li>- Hive essence in binary</li>
  * <li>- Serialized</li>
  * <li>- JSON</li>
  * </ul>
@@ -29,6 +30,7 @@ package io.hivemind.synchronizer.constant;
 public enum ContentType {
 
     HIVE_ESSENCE("application/hive-essence"),
+    HIVE_ESSENCE_BINARY("application/hive-essence+binary"),
     SERIALIZED("application/ser"),
     JSON("application/json");
 
@@ -45,6 +47,13 @@ public enum ContentType {
         return value;
     }
 
+    /**
+     * @return true if this is a hive essence, either as text or binary
+     */
+    public boolean isHiveEssence() {
+        return HIVE_ESSENCE == this || HIVE_ESSENCE_BINARY == this;
+    }
+
     /**
      * Determine the content type based on the value. This is the preferred way
      * to create this enum.
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+/**
+ * Hash of the set of resources (id,version) of an essence, the same for every
+ * order of the resources. The hash is the sum of the hashes of the resources,
+ * as such it is kept up to date by adding and removing resources when they
+ * change, without hashing all resources again.
+ * <p>
+ * The Hivemind determines the same hash, it is the fingerprint of the
+ * essence.</p>
+ *
+ * @author Patrick-4488
+ * @see EssenceFingerprint
+ */
+public final class EssenceSetHash {
+
+    private long hash;
+
+    /**
+     * Add a resource to the set
+     *
+     * @param id the id of the resource
+     * @param version the version of the resource
+     */
+    public void add(final long id, final long version) {
+        hash += of(id, version);
+    }
+
+    /**
+     * Remove a resource from the set
+     *
+     * @param id the id of the resource
+     * @param version the version of the resource
+     */
+    public void remove(final long id, final long version) {
+        hash -= of(id, version);
+    }
+
+    /**
+     * Update the version of a resource in the set
+     *
+     * @param id the id of the resource
+     * @param previousVersion the version before the update
+     * @param version the version after the update
+     */
+    public void update(final long id, final long previousVersion, final long version) {
+        remove(id, previousVersion);
+        add(id, version);
+    }
+
+    /**
+     * @return the hash of the set
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @param id the id of the resource
+     * @param version the version of the resource
+     * @return the hash of a single resource
+     */
+    public static long of(final long id, final long version) {
+        return mix(mix(id) + version);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading every bit of the value over the hash
+     */
+    static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
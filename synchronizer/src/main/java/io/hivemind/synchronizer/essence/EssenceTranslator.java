@@ -16,7 +16,9 @@
 package io.hivemind.synchronizer.essence;
 
 import io.hivemind.synchronizer.HiveEssencePart;
+import io.hivemind.synchronizer.HiveEssenceRange;
 import io.hivemind.synchronizer.HiveResource;
+import io.hivemind.synchronizer.constant.ContentType;
 import io.hivemind.synchronizer.exception.HiveCeption;
 import io.hivemind.synchronizer.exception.InvalidEssenceException;
 import io.hivemind.synchronizer.exception.NotSupportedException;
@@ -24,6 +26,7 @@ import io.hivemind.synchronizer.validator.EssenceValidator;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import static java.lang.System.Logger.Level.ERROR;
@@ -32,6 +35,17 @@ import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Essence translator translates resources to essence and vice versa
+ * <p>
+ * The essence is either text (application/hive-essence), being
+ * `id,version;` per resource, or binary (application/hive-essence+binary).
+ * The binary essence has the resources sorted by id, every resource being the
+ * difference with the id before it followed by the version. Both written in
+ * as few bytes as possible, 7 bits per byte with the high bit set on every
+ * byte but the last</p>
+ * <p>
+ * The essence as text can have ranges of ids having the same version,
+ * `firstId-lastId,version;`. Ranges are translated to HiveEssenceRange without
+ * determining every resource of the range</p>
  *
  * @author Patrick-4488
  */
@@ -40,11 +54,17 @@ public class EssenceTranslator {
     // FUTURE_WORK: move to configuration?
     private static final byte SEPARATOR = ";".getBytes()[0];
     private static final byte SPLITTER = ",".getBytes()[0];
+    private static final byte RANGE_SEPARATOR = "-".getBytes()[0];
+    private static final int PAYLOAD_BITS = 7;
+    private static final int PAYLOAD = 0x7F;
+    private static final int CONTINUATION = 0x80;
+    private static final int MAX_VARIABLE_LENGTH_BYTES = 9;
 
     private static final System.Logger LOGGER = System.getLogger(EssenceTranslator.class.getName());
 
     /**
-     * Determine the resources that correspond to the essence
+     * Determine the resources that correspond to the essence, a range of ids
+     * being a single HiveEssenceRange
      *
      * @param essence the essence to determine for
      * @return the found resources or empty
@@ -63,9 +83,16 @@ public class EssenceTranslator {
                         baos.reset();
                         resources.add(resource);
                         resource = new HiveEssencePart();
+                    } else if (essenceByte == SPLITTER && resource instanceof HiveEssenceRange range) {
+                        range.setLastId(baos.toByteArray());
+                        baos.reset();
                     } else if (essenceByte == SPLITTER) {
                         resource.setId(baos.toByteArray());
                         baos.reset();
+                    } else if (essenceByte == RANGE_SEPARATOR) {
+                        resource = new HiveEssenceRange();
+                        resource.setId(baos.toByteArray());
+                        baos.reset();
                     } else {
                         baos.write(essenceByte);
                     }
@@ -80,6 +107,51 @@ public class EssenceTranslator {
         return resources;
     }
 
+    /**
+     * Determine the resources that correspond to the essence in the given
+     * content type
+     *
+     * @param essence the essence to determine for
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the found resources or empty
+     * @throws InvalidEssenceException when an invalid essence has been provided
+     */
+    public List<HiveResource> interpolateResourcesFromEssence(final byte[] essence, final ContentType essenceType) throws InvalidEssenceException {
+        if (ContentType.HIVE_ESSENCE_BINARY != essenceType) {
+            return interpolateResourcesFromEssence(essence);
+        }
+
+        List<HiveResource> resources = new ArrayList<>();
+        if (essence != null && essence.length > 0) {
+            long id = 0;
+            int offset = 0;
+            while (offset < essence.length) {
+                long difference = readVariableLength(essence, offset);
+                if (difference < 0 || (difference == 0 && !resources.isEmpty()) || difference > Long.MAX_VALUE - id) {
+                    throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE);
+                }
+                offset += variableLength(difference);
+
+                long version = readVariableLength(essence, offset);
+                if (version < 0) {
+                    throw new InvalidEssenceException(HiveCeption.INVALID_ESSENCE);
+                }
+                offset += variableLength(version);
+
+                id += difference;
+                HiveEssencePart resource = new HiveEssencePart();
+                resource.setId(Long.toString(id).getBytes());
+                resource.setVersion(Long.toString(version).getBytes());
+                resources.add(resource);
+            }
+        } else {
+            LOGGER.log(DEBUG, "Attempted to interpolate resources, but no essence was provided");
+        }
+
+        return resources;
+    }
+
     /**
      * Determine the essence based on resources
      *
@@ -110,6 +182,116 @@ public class EssenceTranslator {
         return essence;
     }
 
+    /**
+     * Determine the essence based on resources in the given content type
+     *
+     * @param resources the resources to generate the essence for
+     * @param essenceType the content type of the essence, HIVE_ESSENCE or
+     * HIVE_ESSENCE_BINARY
+     * @return the essence or empty
+     */
+    public byte[] determineEssenceForResources(final List<HiveResource> resources, final ContentType essenceType) {
+        if (ContentType.HIVE_ESSENCE_BINARY != essenceType || resources == null || resources.isEmpty()) {
+            return determineEssenceForResources(resources);
+        }
+
+        byte[] essence = new byte[0];
+        try {
+            List<long[]> tuples = new ArrayList<>(resources.size());
+            for (HiveResource resource : resources) {
+                tuples.add(new long[]{getLongValue(resource.getId()), getLongValue(resource.getVersion())});
+            }
+            tuples.sort(Comparator.comparingLong(tuple -> tuple[0]));
+
+            try ( ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                long previous = 0;
+                for (int i = 0; i < tuples.size(); i++) {
+                    long[] tuple = tuples.get(i);
+                    if (i > 0 && tuple[0] == previous) {
+                        throw new NotSupportedException(HiveCeption.HIVE_RESOURCE_ID_NOT_UNIQUE);
+                    }
+                    writeVariableLength(tuple[0] - previous, baos);
+                    writeVariableLength(tuple[1], baos);
+                    previous = tuple[0];
+                }
+
+                essence = baos.toByteArray();
+            }
+        } catch (IOException | NotSupportedException ex) {
+            LOGGER.log(ERROR, "Failed to determine binary essence from object, exception: {0}", ex);
+        }
+
+        return essence;
+    }
+
+    /**
+     * Determine the essence as text based on resources, having a range for
+     * every run of consecutive ids having the same version. The essence has
+     * the resources sorted by id, its size is proportional to the amount of
+     * runs instead of the amount of resources
+     *
+     * @param resources the resources to generate the essence for
+     * @return the essence or empty
+     */
+    public byte[] determineRangedEssenceForResources(final List<HiveResource> resources) {
+        if (resources == null || resources.isEmpty()) {
+            return determineEssenceForResources(resources);
+        }
+
+        byte[] essence = new byte[0];
+        try {
+            List<long[]> tuples = new ArrayList<>(resources.size());
+            for (HiveResource resource : resources) {
+                tuples.add(new long[]{getLongValue(resource.getId()), getLongValue(resource.getVersion())});
+            }
+            tuples.sort(Comparator.comparingLong(tuple -> tuple[0]));
+
+            StringBuilder sb = new StringBuilder();
+            int first = 0;
+            for (int i = 1; i <= tuples.size(); i++) {
+                long[] previous = tuples.get(i - 1);
+                if (i < tuples.size() && tuples.get(i)[0] == previous[0]) {
+                    throw new NotSupportedException(HiveCeption.HIVE_RESOURCE_ID_NOT_UNIQUE);
+                } else if (i == tuples.size() || tuples.get(i)[0] != previous[0] + 1 || tuples.get(i)[1] != previous[1]) {
+                    sb.append(tuples.get(first)[0]);
+                    if (i - 1 > first) {
+                        sb.append((char) RANGE_SEPARATOR).append(previous[0]);
+                    }
+                    sb.append((char) SPLITTER).append(previous[1]).append((char) SEPARATOR);
+                    first = i;
+                }
+            }
+
+            essence = sb.toString().getBytes();
+        } catch (NotSupportedException ex) {
+            LOGGER.log(ERROR, "Failed to determine ranged essence from object, exception: {0}", ex);
+        }
+
+        return essence;
+    }
+
+    /**
+     * Determine the hash of the set of resources, the same for every order of
+     * the resources. Keep the hash up to date when resources change using
+     * EssenceSetHash, instead of determining it for all resources again
+     *
+     * @param resources the resources to determine the hash for
+     * @return the hash of the set of resources
+     * @throws NotSupportedException when the id or version of a resource is
+     * not a whole number
+     * @see EssenceSetHash
+     */
+    public long determineSetHash(final List<HiveResource> resources) throws NotSupportedException {
+        EssenceSetHash setHash = new EssenceSetHash();
+        if (resources != null) {
+            for (HiveResource resource : resources) {
+                setHash.add(getLongValue(resource.getId()), getLongValue(resource.getVersion()));
+            }
+        }
+
+        return setHash.getHash();
+    }
+
     // FUTURE_WORK: Java 19 -> use pattern matching
     private byte[] getByteValue(final Object o) throws NotSupportedException {
         if (o instanceof Number num) {
@@ -120,4 +302,49 @@ public class EssenceTranslator {
             throw new NotSupportedException(HiveCeption.HIVE_RESOURCE_ID_OR_VERSION_NOT_NUMBER);
         }
     }
+
+    private long getLongValue(final Object o) throws NotSupportedException {
+        try {
+            long value = Long.parseLong(new String(getByteValue(o)));
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException ex) {
+            // Not a whole number, not supported
+        }
+
+        throw new NotSupportedException(HiveCeption.HIVE_RESOURCE_ID_OR_VERSION_NOT_NUMBER);
+    }
+
+    static int variableLength(final long value) {
+        int significantBits = Long.SIZE - Long.numberOfLeadingZeros(value | 1);
+        return (significantBits + PAYLOAD_BITS - 1) / PAYLOAD_BITS;
+    }
+
+    private static void writeVariableLength(final long value, final ByteArrayOutputStream target) {
+        long remaining = value;
+        while ((remaining & ~PAYLOAD) != 0) {
+            target.write((int) ((remaining & PAYLOAD) | CONTINUATION));
+            remaining >>>= PAYLOAD_BITS;
+        }
+        target.write((int) remaining);
+    }
+
+    /**
+     * @return the value or -1 when the bytes end before the value does, the
+     * value is too long or not written in as few bytes as possible
+     */
+    static long readVariableLength(final byte[] source, final int offset) {
+        long result = 0;
+        int limit = Math.min(source.length, offset + MAX_VARIABLE_LENGTH_BYTES);
+        for (int i = offset, shift = 0; i < limit; i++, shift += PAYLOAD_BITS) {
+            int current = source[i] & 0xFF;
+            result |= (long) (current & PAYLOAD) << shift;
+            if ((current & CONTINUATION) == 0) {
+                return (current == 0 && i != offset ? -1 : result);
+            }
+        }
+
+        return -1;
+    }
 }
@@ -34,7 +34,14 @@ public enum HiveCeption {
        It is not possible to request data in a hive essence format. Data is is not a
        essence to be send but is the actual data. This can be JSON or Serialized or 
       other formats."""
-    );
+    ),
+    NOT_AN_ESSENCE_TYPE("The essence can only be communicated as hive essence, either as text or binary"),
+    HIVE_RESOURCE_ID_NOT_UNIQUE("""
+        While attempting to generate the essence in binary, an id of the hive 
+        resources was found more then once. The binary essence requires every 
+        id to be unique"""
+    ),
+    SKETCH_CELLS_NOT_SUPPORTED("The amount of cells of the sketch has to be a multiple of three, from 0 up to 196608");
 
     private final String message;
 
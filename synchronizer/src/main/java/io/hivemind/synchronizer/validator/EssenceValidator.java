@@ -26,10 +26,11 @@ import java.util.regex.Pattern;
  */
 public class EssenceValidator {
 
-    private static final Pattern PATTERN = Pattern.compile("([^\\d,;]+)");
+    private static final Pattern PATTERN = Pattern.compile("([^\\d,;-]+)");
 
     /**
-     * Validate if an essence is valid<br>
+     * Validate if an essence is valid, having ids, versions and ranges of ids
+     * (`id-lastId,version;`)<br>
      * Will accept null and empty as valid
      *
      * FUTURE_WORK: in future maybe we should support identifiers that contain
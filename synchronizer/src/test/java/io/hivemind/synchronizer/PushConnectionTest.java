@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for push connection
+ *
+ * @author Patrick-4488
+ */
+public class PushConnectionTest {
+
+    private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+    private static final String FINGERPRINT = "1b09046d66166742";
+    private static final byte[] ESSENCE = "0,5;1,1;73,2;".getBytes();
+
+    @Test
+    public void pushUriFollowsTheSchemeOfTheUri() {
+        assertEquals("ws://localhost:8000/push", PushConnection.pushUriOf("http://localhost:8000/").toString());
+        assertEquals("wss://hive.example:8443/push", PushConnection.pushUriOf("https://hive.example:8443").toString());
+    }
+
+    @Test
+    public void encodeMessageWithoutStatus() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("traceparent", TRACEPARENT);
+        headers.put("hive-essence-fingerprint", FINGERPRINT);
+
+        PushConnection.Message message = PushConnection.decode(PushConnection.encode(headers, ESSENCE));
+
+        assertEquals(0, message.getStatus());
+        assertEquals(List.of(TRACEPARENT), message.getHeader("Traceparent"));
+        assertEquals(List.of(FINGERPRINT), message.getHeader("hive-essence-fingerprint"));
+        assertTrue(message.getHeader("content-type").isEmpty());
+        assertArrayEquals(ESSENCE, message.getBody());
+    }
+
+    @Test
+    public void decodeMessageOfHivemind() {
+        byte[] name = "content-type".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "application/hive-essence".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + 4 + name.length + value.length + ESSENCE.length);
+        frame.putShort((short) 409).putShort((short) 1)
+                .putShort((short) name.length).put(name)
+                .putShort((short) value.length).put(value)
+                .put(ESSENCE)
+                .flip();
+
+        PushConnection.Message message = PushConnection.decode(frame);
+
+        assertEquals(409, message.getStatus());
+        assertEquals(List.of("application/hive-essence"), message.getHeader("content-type"));
+        assertArrayEquals(ESSENCE, message.getBody());
+    }
+
+    @Test
+    public void decodeTruncatedMessage() {
+        ByteBuffer frame = ByteBuffer.allocate(6).putShort((short) 200).putShort((short) 1).putShort((short) 12).flip();
+
+        assertThrows(IllegalArgumentException.class, () -> PushConnection.decode(frame));
+    }
+}
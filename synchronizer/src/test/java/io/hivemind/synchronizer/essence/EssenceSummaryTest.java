@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) p-it
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hivemind.synchronizer.essence;
+
+import io.hivemind.synchronizer.constant.ContentType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for essence summary
+ *
+ * @author Patrick-4488
+ */
+public class EssenceSummaryTest {
+
+    private static final byte[] ESSENCE = "73,2;72,1;".getBytes();
+    private static final byte[] ESSENCE_SINGLE = "73,2;".getBytes();
+    private static final byte[] ESSENCE_INVALID = "1,1;mock;".getBytes();
+    private static final byte[] BINARY_ESSENCE = {72, 1, 1, 2};
+    // The same as determined by the Hivemind, the resource 73,2 is below node 10 of level 1 and leaf 42900
+    private static final byte[] NODES_OF_SINGLE = "0,0;1,0;2,0;3,0;4,0;5,0;6,0;7,0;8,0;9,0;10,8a8a8b5e93679810;11,0;12,0;13,0;14,0;15,0;".getBytes();
+    private static final int LEAF_OF_SINGLE = 42900;
+
+    @Test
+    public void summaryOfEssenceNotBeingNumbers() {
+        assertNull(EssenceSummary.of(ESSENCE_INVALID, ContentType.HIVE_ESSENCE));
+    }
+
+    @Test
+    public void describeNodes() {
+        EssenceSummary summary = EssenceSummary.of(ESSENCE_SINGLE, ContentType.HIVE_ESSENCE);
+
+        assertArrayEquals(NODES_OF_SINGLE, summary.describe(1, EssenceSummary.rootNodes()));
+        assertEquals(1, summary.size());
+    }
+
+    @Test
+    public void describeNodesOfBinaryEssence() {
+        EssenceSummary text = EssenceSummary.of(ESSENCE, ContentType.HIVE_ESSENCE);
+        EssenceSummary binary = EssenceSummary.of(BINARY_ESSENCE, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertArrayEquals(text.describe(1, EssenceSummary.rootNodes()), binary.describe(1, EssenceSummary.rootNodes()));
+        assertEquals(EssenceFingerprint.of(ESSENCE, ContentType.HIVE_ESSENCE), binary.getFingerprint());
+    }
+
+    @Test
+    public void essenceOfLeaves() {
+        EssenceSummary summary = EssenceSummary.of(ESSENCE, ContentType.HIVE_ESSENCE);
+
+        assertArrayEquals(ESSENCE_SINGLE, summary.essenceOf(new int[]{LEAF_OF_SINGLE}));
+        assertArrayEquals(new byte[0], summary.essenceOf(new int[]{0}));
+    }
+
+    @Test
+    public void childrenOfNodes() {
+        int[] children = EssenceSummary.childrenOf(new int[]{10});
+
+        assertEquals(16, children.length);
+        assertEquals(160, children[0]);
+        assertEquals(175, children[15]);
+    }
+
+    @Test
+    public void readNodes() {
+        assertArrayEquals(new int[]{10, 42}, EssenceSummary.readNodes("10;42;".getBytes()));
+        assertArrayEquals(new int[0], EssenceSummary.readNodes(null));
+        assertNull(EssenceSummary.readNodes("10;x;".getBytes()));
+    }
+}
@@ -16,16 +16,20 @@
 package io.hivemind.synchronizer.essence;
 
 import io.hivemind.synchronizer.HiveEssencePart;
+import io.hivemind.synchronizer.HiveEssenceRange;
 import io.hivemind.synchronizer.HiveResource;
+import io.hivemind.synchronizer.constant.ContentType;
 import io.hivemind.synchronizer.exception.HiveCeption;
 import io.hivemind.synchronizer.exception.HiveException;
 import io.hivemind.synchronizer.exception.InvalidEssenceException;
+import io.hivemind.synchronizer.exception.NotSupportedException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -47,6 +51,10 @@ public class EssenceTranslatorTest {
     private static final byte[] ESSENCE_INVALID = "mock".getBytes();
     private static final byte[] ESSENCE_VALID_ONE = "1,1;".getBytes();
     private static final byte[] ESSENCE_VALID_TWO = "1,1;2,1;".getBytes();
+    private static final byte[] ESSENCE_HAVING_RANGES = "0,5;1-3,1;4,2;73-74,2;".getBytes();
+    private static final byte[] BINARY_ESSENCE = {0, 5, 1, 1, 72, 2};
+    private static final byte[] BINARY_ESSENCE_TRUNCATED = {0, 5, 1, (byte) 0x81};
+    private static final byte[] BINARY_ESSENCE_DUPLICATE_ID = {1, 1, 0, 2};
 
     @BeforeEach
     public void setup() {
@@ -216,6 +224,134 @@ public class EssenceTranslatorTest {
         assertTrue(Arrays.compare(ESSENCE_VALID_ONE, result) == 0);
     }
 
+    @Test
+    public void determineBinaryEssenceForResourcesSortedById() {
+        List<HiveResource> resources = List.of(new ResourceLong(73L, 2L), new ResourceLong(1L, 1L), new ResourceLong(0L, 5L));
+
+        byte[] result = classUnderTest.determineEssenceForResources(resources, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertArrayEquals(BINARY_ESSENCE, result);
+    }
+
+    @Test
+    public void determineRangedEssenceForResources() {
+        List<HiveResource> resources = List.of(new ResourceLong(74L, 2L), new ResourceLong(2L, 1L), new ResourceLong(4L, 2L),
+                new ResourceLong(0L, 5L), new ResourceLong(73L, 2L), new ResourceLong(3L, 1L), new ResourceLong(1L, 1L));
+
+        byte[] result = classUnderTest.determineRangedEssenceForResources(resources);
+
+        assertArrayEquals(ESSENCE_HAVING_RANGES, result);
+    }
+
+    @Test
+    public void determineRangedEssenceForResourcesHavingIdMoreThenOnce() {
+        List<HiveResource> resources = List.of(new ResourceLong(1L, 1L), new ResourceLong(1L, 1L));
+
+        byte[] result = classUnderTest.determineRangedEssenceForResources(resources);
+
+        assertEquals(0, result.length);
+    }
+
+    @Test
+    public void interpolateResourcesFromEssenceHavingRanges() throws InvalidEssenceException {
+        List<HiveResource> result = classUnderTest.interpolateResourcesFromEssence(ESSENCE_HAVING_RANGES);
+
+        assertEquals(4, result.size());
+        assertFalse(result.get(0) instanceof HiveEssenceRange);
+        HiveEssenceRange range = (HiveEssenceRange) result.get(1);
+        assertArrayEquals("1".getBytes(), range.getId());
+        assertArrayEquals("3".getBytes(), range.getLastId());
+        assertArrayEquals("1".getBytes(), range.getVersion());
+        assertArrayEquals("4".getBytes(), (byte[]) result.get(2).getId());
+        assertTrue(result.get(3) instanceof HiveEssenceRange);
+    }
+
+    @Test
+    public void determineSetHashIsFingerprintOfEssence() throws NotSupportedException {
+        List<HiveResource> resources = List.of(new ResourceLong(73L, 2L), new ResourceLong(1L, 1L), new ResourceLong(0L, 5L));
+
+        long result = classUnderTest.determineSetHash(resources);
+
+        assertEquals(EssenceFingerprint.of(BINARY_ESSENCE, ContentType.HIVE_ESSENCE_BINARY), EssenceFingerprint.of(result));
+    }
+
+    @Test
+    public void determineBinaryEssenceForResourcesHavingIdMoreThenOnce() {
+        List<HiveResource> resources = List.of(new ResourceInt(1, 1), new ResourceInt(1, 2));
+
+        byte[] result = classUnderTest.determineEssenceForResources(resources, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertNotNull(result);
+        assertTrue(result.length == 0);
+    }
+
+    @Test
+    public void determineBinaryEssenceForResourcesHavingNegativeId() {
+        List<HiveResource> resources = List.of(new ResourceInt(-1, 1));
+
+        byte[] result = classUnderTest.determineEssenceForResources(resources, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertNotNull(result);
+        assertTrue(result.length == 0);
+    }
+
+    @Test
+    public void determineEssenceForResourcesAsText() {
+        List<HiveResource> resources = List.of(getResourceFor(EXPECTED_ID_FIRST, EXPECTED_VERSION));
+
+        byte[] result = classUnderTest.determineEssenceForResources(resources, ContentType.HIVE_ESSENCE);
+
+        assertArrayEquals(ESSENCE_VALID_ONE, result);
+    }
+
+    @Test
+    public void interpolateResourcesFromBinaryEssence() throws InvalidEssenceException {
+        List<HiveResource> result = classUnderTest.interpolateResourcesFromEssence(BINARY_ESSENCE, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertEquals(3, result.size());
+        assertArrayEquals("0".getBytes(), (byte[]) result.get(0).getId());
+        assertArrayEquals("5".getBytes(), (byte[]) result.get(0).getVersion());
+        assertArrayEquals("1".getBytes(), (byte[]) result.get(1).getId());
+        assertArrayEquals("73".getBytes(), (byte[]) result.get(2).getId());
+        assertArrayEquals("2".getBytes(), (byte[]) result.get(2).getVersion());
+    }
+
+    @Test
+    public void interpolateResourcesFromDeterminedBinaryEssence() throws InvalidEssenceException {
+        List<HiveResource> resources = List.of(new ResourceLong(1L << 40, 300L), new ResourceLong(Long.MAX_VALUE, 1L));
+
+        List<HiveResource> result = classUnderTest.interpolateResourcesFromEssence(
+                classUnderTest.determineEssenceForResources(resources, ContentType.HIVE_ESSENCE_BINARY), ContentType.HIVE_ESSENCE_BINARY);
+
+        assertEquals(2, result.size());
+        assertArrayEquals(Long.toString(1L << 40).getBytes(), (byte[]) result.get(0).getId());
+        assertArrayEquals("300".getBytes(), (byte[]) result.get(0).getVersion());
+        assertArrayEquals(Long.toString(Long.MAX_VALUE).getBytes(), (byte[]) result.get(1).getId());
+    }
+
+    @Test
+    public void interpolateResourcesFromBinaryEssenceWithoutEssence() throws InvalidEssenceException {
+        List<HiveResource> result = classUnderTest.interpolateResourcesFromEssence(null, ContentType.HIVE_ESSENCE_BINARY);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void interpolateResourcesFromBinaryEssenceTruncated() {
+        HiveException exception = assertThrows(HiveException.class,
+                () -> classUnderTest.interpolateResourcesFromEssence(BINARY_ESSENCE_TRUNCATED, ContentType.HIVE_ESSENCE_BINARY));
+
+        assertEquals(HiveCeption.INVALID_ESSENCE.getMessage(), exception.getLocalizedMessage());
+    }
+
+    @Test
+    public void interpolateResourcesFromBinaryEssenceHavingIdMoreThenOnce() {
+        HiveException exception = assertThrows(HiveException.class,
+                () -> classUnderTest.interpolateResourcesFromEssence(BINARY_ESSENCE_DUPLICATE_ID, ContentType.HIVE_ESSENCE_BINARY));
+
+        assertEquals(HiveCeption.INVALID_ESSENCE.getMessage(), exception.getLocalizedMessage());
+    }
+
     private HiveResource getResourceFor(final byte[] id, final byte[] version) {
         HiveEssencePart resource = new HiveEssencePart();
         resource.setId(id);
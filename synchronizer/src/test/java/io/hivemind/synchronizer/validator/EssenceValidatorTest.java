@@ -37,6 +37,7 @@ public class EssenceValidatorTest {
     private static final byte[] ESSENCE_VALID_START_INVALID_END = "1,1;2,1;mock".getBytes();
     private static final byte[] ESSENCE_VALID = "1,1;2,1;".getBytes();
     private static final byte[] ESSENCE_VALID_NOT_ENDING_WITH_SEPARATOR = "1,1;1,2".getBytes();
+    private static final byte[] ESSENCE_VALID_HAVING_RANGES = "1000-1999,3;2000,1;".getBytes();
     private static final byte[] ESSENCE_VALID_LONG = """
         73,1;72,1;71,1;70,1;69,1;68,1;67,1;66,1;65,1;64,1;63,1;61,1;60,1;59,1;58,1;57,1;56,1;54,1;53,1;52,1;51,1;49,1;46,1;45,1;34,1;33,1;32,1;29,1;30,1;27,1;26,1;25,1;24,1;23,1;22,1;21,1;20,1;19,1;18,1;17,1;16,1;15,1;14,1;13,1;12,1;11,1;10,1;6,1;5,1;4,1;2,1;1,1;
         """.getBytes();
@@ -65,6 +66,12 @@ public class EssenceValidatorTest {
         assertDoesNotThrow(() -> classUnderTest.validateEssence(ESSENCE_VALID_NOT_ENDING_WITH_SEPARATOR));
     }
 
+    @Test
+    public void validateEssenceValidHavingRanges() {
+        EssenceValidator classUnderTest = new EssenceValidator();
+        assertDoesNotThrow(() -> classUnderTest.validateEssence(ESSENCE_VALID_HAVING_RANGES));
+    }
+
     @Test
     public void validateEssenceBeingInvalid() {
         EssenceValidator classUnderTest = new EssenceValidator();